@@ -0,0 +1,140 @@
+#include <jni.h>
+#include <string>
+#include <vector>
+#include <mutex>
+#include <optional>
+#include <android/log.h>
+
+#define LOG_TAG "PiperNative"
+#define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
+#define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
+
+// Conditional compilation for Piper (VITS on ONNX Runtime) integration
+#ifdef USE_PIPER
+#include "piper.hpp"
+
+// Loaded voice; Piper sessions are not re-entrant so synthesis is serialized
+static piper::PiperConfig g_piper_config;
+static piper::Voice g_voice;
+static bool g_piper_initialized = false;
+static std::mutex g_piper_mutex;
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_egyptian_agent_core_PiperNative_loadVoice(JNIEnv *env, jclass clazz, jstring model_path,
+                                                   jstring config_path, jstring espeak_data_path) {
+    std::lock_guard<std::mutex> lock(g_piper_mutex);
+
+    if (g_piper_initialized) {
+        piper::terminate(g_piper_config);
+        g_piper_initialized = false;
+    }
+
+    const char* model = env->GetStringUTFChars(model_path, 0);
+    const char* config = env->GetStringUTFChars(config_path, 0);
+    const char* espeak = env->GetStringUTFChars(espeak_data_path, 0);
+
+    int result = 0;
+    try {
+        g_piper_config.eSpeakDataPath = espeak;
+        g_piper_config.useESpeak = true;
+
+        std::optional<piper::SpeakerId> speaker_id;
+        piper::loadVoice(g_piper_config, model, config, g_voice, speaker_id, false);
+
+        piper::initialize(g_piper_config);
+        g_piper_initialized = true;
+        LOGI("Piper voice loaded: %s (sample rate %d)", model, g_voice.synthesisConfig.sampleRate);
+    } catch (const std::exception& e) {
+        LOGE("Failed to load Piper voice %s: %s", model, e.what());
+        result = -1;
+    }
+
+    env->ReleaseStringUTFChars(model_path, model);
+    env->ReleaseStringUTFChars(config_path, config);
+    env->ReleaseStringUTFChars(espeak_data_path, espeak);
+    return result;
+}
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_egyptian_agent_core_PiperNative_getSampleRate(JNIEnv *env, jclass clazz) {
+    return g_piper_initialized ? g_voice.synthesisConfig.sampleRate : 0;
+}
+
+extern "C"
+JNIEXPORT jshortArray JNICALL
+Java_com_egyptian_agent_core_PiperNative_synthesize(JNIEnv *env, jclass clazz, jstring text,
+                                                    jfloat length_scale) {
+    std::lock_guard<std::mutex> lock(g_piper_mutex);
+
+    if (!g_piper_initialized) {
+        return nullptr;
+    }
+
+    const char* text_str = env->GetStringUTFChars(text, 0);
+
+    std::vector<int16_t> audio;
+    try {
+        g_voice.synthesisConfig.lengthScale = length_scale;
+        // Sentence silence is handled on the Java side between streamed chunks
+        g_voice.synthesisConfig.sentenceSilenceSeconds = 0.0f;
+
+        piper::SynthesisResult result;
+        piper::textToAudio(g_piper_config, g_voice, text_str, audio, result, nullptr);
+    } catch (const std::exception& e) {
+        LOGE("Piper synthesis failed: %s", e.what());
+        env->ReleaseStringUTFChars(text, text_str);
+        return nullptr;
+    }
+
+    env->ReleaseStringUTFChars(text, text_str);
+
+    jshortArray pcm = env->NewShortArray(audio.size());
+    if (pcm != nullptr && !audio.empty()) {
+        env->SetShortArrayRegion(pcm, 0, audio.size(), reinterpret_cast<const jshort*>(audio.data()));
+    }
+    return pcm;
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_egyptian_agent_core_PiperNative_unloadVoice(JNIEnv *env, jclass clazz) {
+    std::lock_guard<std::mutex> lock(g_piper_mutex);
+
+    if (g_piper_initialized) {
+        piper::terminate(g_piper_config);
+        g_piper_initialized = false;
+        LOGI("Piper voice unloaded");
+    }
+}
+
+#else
+// Stub implementation when Piper is not available; Java falls back to system TTS
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_egyptian_agent_core_PiperNative_loadVoice(JNIEnv *env, jclass clazz, jstring model_path,
+                                                   jstring config_path, jstring espeak_data_path) {
+    LOGI("Piper not compiled in, voice not loaded");
+    return -1;
+}
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_egyptian_agent_core_PiperNative_getSampleRate(JNIEnv *env, jclass clazz) {
+    return 0;
+}
+
+extern "C"
+JNIEXPORT jshortArray JNICALL
+Java_com_egyptian_agent_core_PiperNative_synthesize(JNIEnv *env, jclass clazz, jstring text,
+                                                    jfloat length_scale) {
+    return nullptr;
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_egyptian_agent_core_PiperNative_unloadVoice(JNIEnv *env, jclass clazz) {
+}
+#endif
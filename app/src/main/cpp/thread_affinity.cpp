@@ -0,0 +1,35 @@
+#include <jni.h>
+#include <sched.h>
+#include <errno.h>
+
+// Pins the calling thread to the given CPUs.
+// Returns 0 on success or -errno; the kernel intersects the mask with the app's cpuset,
+// so EINVAL means none of the requested CPUs are currently available to the app.
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_egyptian_agent_core_ThreadPlacement_nativeSetAffinity(JNIEnv *env, jclass clazz, jintArray cpus) {
+    if (cpus == nullptr) {
+        return -EINVAL;
+    }
+
+    jsize count = env->GetArrayLength(cpus);
+    jint* ids = env->GetIntArrayElements(cpus, nullptr);
+    if (ids == nullptr) {
+        return -ENOMEM;
+    }
+
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    for (jsize i = 0; i < count; i++) {
+        if (ids[i] >= 0 && ids[i] < CPU_SETSIZE) {
+            CPU_SET(ids[i], &set);
+        }
+    }
+    env->ReleaseIntArrayElements(cpus, ids, JNI_ABORT);
+
+    // pid 0 targets the calling thread, not the whole process
+    if (sched_setaffinity(0, sizeof(set), &set) != 0) {
+        return -errno;
+    }
+    return 0;
+}
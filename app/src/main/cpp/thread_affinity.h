@@ -0,0 +1,20 @@
+#pragma once
+
+#include <sched.h>
+
+// Number of CPUs the calling thread may run on, clamped to [1, max_threads].
+// Inference threads are pinned to the performance cores from Java (ThreadPlacement),
+// and worker threads spawned from them inherit that mask, so sizing the native
+// thread pool from the mask avoids oversubscribing the big cluster.
+static inline int affinity_thread_count(int max_threads) {
+    cpu_set_t set;
+    CPU_ZERO(&set);
+    int count = 0;
+    if (sched_getaffinity(0, sizeof(set), &set) == 0) {
+        count = CPU_COUNT(&set);
+    }
+    if (count <= 0 || count > max_threads) {
+        return max_threads;
+    }
+    return count;
+}
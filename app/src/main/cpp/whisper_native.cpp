@@ -6,6 +6,7 @@
 #include <android/asset_manager.h>
 #include <android/asset_manager_jni.h>
 #include <android/log.h>
+#include "thread_affinity.h"
 
 #define LOG_TAG "EgyptianWhisper"
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
@@ -74,7 +75,7 @@ Java_com_egyptian_agent_ai_EgyptianWhisperASR_transcribeNative(JNIEnv *env, jobj
     params.print_special    = false;
     params.translate        = false;
     params.language         = "ar";  // Arabic
-    params.n_threads        = 4;
+    params.n_threads        = affinity_thread_count(4);
     params.n_max_text_ctx   = 16384;
     params.offset_ms        = 0;
     params.duration_ms      = 0;
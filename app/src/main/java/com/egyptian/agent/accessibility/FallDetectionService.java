@@ -1,47 +1,57 @@
 package com.egyptian.agent.accessibility;
 
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.speech.RecognizerIntent;
 import android.util.Log;
+import com.egyptian.agent.core.SensorFanout;
+import com.egyptian.agent.core.SensorHub;
+import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.utils.CrashLogger;
+import com.egyptian.agent.utils.VibrationManager;
 
-public class FallDetectionService extends Service implements SensorEventListener {
+/**
+ * Foreground service running fall detection while the app is in the background
+ * Shares the SensorHub's accelerometer registration with FallDetector; samples are batched in
+ * the sensor FIFO and processed on the hub thread by the same FallSignalProcessor pipeline.
+ */
+public class FallDetectionService extends Service implements SensorFanout.Subscriber, FallSignalProcessor.Listener {
 
     private static final String TAG = "FallDetectionService";
     
-    private SensorManager sensorManager;
-    private Sensor accelerometer;
+    private SensorHub sensorHub;
+    private Handler mainHandler;
+    private FallSignalProcessor processor;
+    private boolean isRegistered = false;
     
     // Fall detection parameters
-    private static final int FALL_THRESHOLD = 15; // Adjust based on testing
-    private static final int VIBRATION_THRESHOLD = 5;
+    private static final long RESPONSE_TIMEOUT_MS = 10000;
     
     @Override
     public void onCreate() {
         super.onCreate();
         Log.i(TAG, "Fall Detection Service created");
         
-        // Initialize sensor manager and accelerometer
-        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        sensorHub = SensorHub.getInstance(this);
+        processor = new FallSignalProcessor(FallSignalProcessor.SAMPLE_BUFFER_CAPACITY, this);
+        mainHandler = new Handler(Looper.getMainLooper());
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.i(TAG, "Fall Detection Service started");
         
-        // Register the accelerometer sensor
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_NORMAL);
-        } else {
+        // Subscribe to the accelerometer, once even if started repeatedly
+        if (!isRegistered) {
+            isRegistered = sensorHub.subscribe(Sensor.TYPE_ACCELEROMETER,
+                FallSignalProcessor.SAMPLING_PERIOD_US, FallSignalProcessor.MAX_REPORT_LATENCY_US, this);
+        }
+        if (!isRegistered) {
             Log.e(TAG, "Accelerometer not available on this device");
             CrashLogger.logError(this, new Exception("Accelerometer not available on this device"));
         }
@@ -62,38 +72,35 @@ public class FallDetectionService extends Service implements SensorEventListener
         super.onDestroy();
         Log.i(TAG, "Fall Detection Service destroyed");
         
-        // Unregister the sensor listener
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
-        }
+        // Drop the subscription; the hub releases the sensor once nobody needs it
+        sensorHub.unsubscribe(Sensor.TYPE_ACCELEROMETER, this);
+        isRegistered = false;
+        mainHandler.removeCallbacksAndMessages(null);
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            float x = event.values[0];
-            float y = event.values[1];
-            float z = event.values[2];
-            
-            // Calculate the magnitude of acceleration
-            double acceleration = Math.sqrt(x * x + y * y + z * z);
-            
-            // Check if acceleration exceeds fall threshold
-            if (acceleration > FALL_THRESHOLD) {
-                Log.w(TAG, "Potential fall detected with acceleration: " + acceleration);
-                
-                // Here you could implement more sophisticated fall detection logic
-                // For example, checking for a sudden impact followed by lack of movement
-                
-                // For now, just log the potential fall
-                handlePotentialFall(acceleration);
-            }
-        }
+    public void onSample(int sensorType, long timestampNanos, float[] values) {
+        processor.onSample(timestampNanos, values[0], values[1], values[2]);
+    }
+
+    @Override
+    public void onFallSuspected(long timestampNanos, float peakAcceleration) {
+        Log.w(TAG, "Potential fall detected with acceleration: " + peakAcceleration);
+    }
+
+    @Override
+    public void onFallConfirmed(long timestampNanos) {
+        mainHandler.post(this::handlePotentialFall);
+    }
+
+    @Override
+    public void onFallDismissed(long timestampNanos) {
+        Log.i(TAG, "Fall suspicion dismissed - user moved");
     }
 
-    private void handlePotentialFall(double acceleration) {
+    private void handlePotentialFall() {
         // Trigger appropriate actions for potential fall
-        Log.i(TAG, "Handling potential fall with acceleration: " + acceleration);
+        Log.i(TAG, "Handling potential fall");
 
         // Vibrate to alert the user
         VibrationManager.vibrateEmergency(this);
@@ -102,7 +109,7 @@ public class FallDetectionService extends Service implements SensorEventListener
         TTSManager.speak(this, "يا كبير، لقيت إنك وقعت؟ لو مفيش رد هيتم الاتصال بجهات الطوارئ خلال 10 ثواني");
 
         // Start a countdown timer to trigger emergency if no response
-        new android.os.Handler(Looper.getMainLooper()).postDelayed(() -> {
+        mainHandler.postDelayed(() -> {
             // Check if user responded (this would be implemented with voice recognition)
             boolean userResponded = checkUserResponse();
 
@@ -113,7 +120,7 @@ public class FallDetectionService extends Service implements SensorEventListener
             } else {
                 Log.i(TAG, "User responded after potential fall - no emergency needed");
             }
-        }, 10000); // 10 seconds to respond
+        }, RESPONSE_TIMEOUT_MS);
     }
 
     /**
@@ -143,9 +150,4 @@ public class FallDetectionService extends Service implements SensorEventListener
         // For now, we'll just log that this would happen
         Log.d(TAG, "Voice recognition would start to listen for user response");
     }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Handle accuracy changes if needed
-    }
 }
\ No newline at end of file
@@ -5,33 +5,32 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import androidx.core.app.ActivityCompat;
+import com.egyptian.agent.core.SensorFanout;
+import com.egyptian.agent.core.SensorHub;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.executors.EmergencyHandler;
 import com.egyptian.agent.utils.CrashLogger;
 import com.egyptian.agent.utils.SpeechConfirmation;
 import com.egyptian.agent.utils.VibrationManager;
 
-public class FallDetector implements SensorEventListener {
+/**
+ * Fall detector
+ * Streams accelerometer samples from the SensorHub into a FallSignalProcessor on the hub thread.
+ * The subscription allows a report latency so the hardware FIFO collects samples while the CPU
+ * sleeps; each batch is processed by sample timestamp, so batching does not blur the timing
+ * of free fall, impact and stillness.
+ */
+public class FallDetector implements SensorFanout.Subscriber, FallSignalProcessor.Listener {
 
     private static final String TAG = "FallDetector";
-    private static final int FALL_ACCELERATION_THRESHOLD = 20; // m/s²
-    private static final int POST_FALL_MOVEMENT_THRESHOLD = 2;  // m/s² (low movement after fall)
-    private static final int FALL_CONFIRMATION_TIME = 5000;     // 5 seconds
-    private static final int MOVEMENT_CHECK_INTERVAL = 1000;    // 1 second
 
     private Context context;
-    private SensorManager sensorManager;
-    private Sensor accelerometer;
-    private boolean isFallSuspected = false;
-    private long fallStartTime = 0;
-    private float lastX, lastY, lastZ;
+    private final SensorHub sensorHub;
+    private final FallSignalProcessor processor;
     private boolean isMonitoring = false;
     private Handler mainHandler;
 
@@ -39,8 +38,8 @@ public class FallDetector implements SensorEventListener {
 
     private FallDetector(Context context) {
         this.context = context;
-        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        this.sensorHub = SensorHub.getInstance(context);
+        this.processor = new FallSignalProcessor(FallSignalProcessor.SAMPLE_BUFFER_CAPACITY, this);
         this.mainHandler = new Handler(Looper.getMainLooper());
     }
 
@@ -63,8 +62,11 @@ public class FallDetector implements SensorEventListener {
     }
 
     private void startMonitoring() {
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_NORMAL);
+        if (isMonitoring) {
+            return;
+        }
+        if (sensorHub.subscribe(Sensor.TYPE_ACCELEROMETER,
+                FallSignalProcessor.SAMPLING_PERIOD_US, FallSignalProcessor.MAX_REPORT_LATENCY_US, this)) {
             isMonitoring = true;
             Log.i(TAG, "Fall detection monitoring started");
         } else {
@@ -75,86 +77,34 @@ public class FallDetector implements SensorEventListener {
     }
 
     private void stopMonitoring() {
-        sensorManager.unregisterListener(this);
+        sensorHub.unsubscribe(Sensor.TYPE_ACCELEROMETER, this);
         isMonitoring = false;
-        isFallSuspected = false;
+        processor.clear();
         Log.i(TAG, "Fall detection monitoring stopped");
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            float x = event.values[0];
-            float y = event.values[1];
-            float z = event.values[2];
-
-            // Calculate acceleration magnitude ignoring gravity
-            double acceleration = Math.sqrt(x*x + y*y + z*z) - SensorManager.GRAVITY_EARTH;
-            acceleration = Math.abs(acceleration);
-
-            // For debugging
-            if (acceleration > 10) {
-                Log.d(TAG, "Acceleration: " + acceleration);
-            }
-
-            if (!isFallSuspected) {
-                // Check for initial fall impact (high acceleration)
-                if (acceleration > FALL_ACCELERATION_THRESHOLD) {
-                    Log.w(TAG, "Potential fall detected! Initial acceleration: " + acceleration);
-                    isFallSuspected = true;
-                    fallStartTime = System.currentTimeMillis();
-                    lastX = x;
-                    lastY = y;
-                    lastZ = z;
-
-                    // Start confirmation process
-                    startFallConfirmationProcess();
-                }
-            } else {
-                // Track movement during confirmation period
-                lastX = x;
-                lastY = y;
-                lastZ = z;
-            }
-        }
+    public void onSample(int sensorType, long timestampNanos, float[] values) {
+        processor.onSample(timestampNanos, values[0], values[1], values[2]);
     }
 
-    private void startFallConfirmationProcess() {
-        // Schedule the confirmation check
-        mainHandler.postDelayed(this::checkFallConfirmation, FALL_CONFIRMATION_TIME);
+    @Override
+    public void onFallSuspected(long timestampNanos, float peakAcceleration) {
+        Log.w(TAG, "Potential fall detected! Impact: " + peakAcceleration);
     }
 
-    private void checkFallConfirmation() {
-        if (!isFallSuspected) return;
-
-        // Check if the confirmation period has elapsed
-        if (System.currentTimeMillis() - fallStartTime < FALL_CONFIRMATION_TIME) {
-            // Reschedule if not enough time has passed
-            mainHandler.postDelayed(this::checkFallConfirmation, 100);
-            return;
-        }
-
-        // Check for minimal movement after the fall (person is down and not moving much)
-        double movement = Math.sqrt(
-            Math.pow(lastX, 2) +
-            Math.pow(lastY, 2) +
-            Math.pow(lastZ, 2)
-        );
-
-        Log.i(TAG, "Post-fall movement level: " + movement);
+    @Override
+    public void onFallConfirmed(long timestampNanos) {
+        mainHandler.post(this::confirmFall);
+    }
 
-        if (movement < POST_FALL_MOVEMENT_THRESHOLD) {
-            // Fall confirmed - trigger emergency
-            confirmFall();
-        } else {
-            // False alarm - person got up or was just moving suddenly
-            cancelFallSuspicion();
-        }
+    @Override
+    public void onFallDismissed(long timestampNanos) {
+        Log.i(TAG, "Fall suspicion cancelled - false alarm");
     }
 
     private void confirmFall() {
         Log.e(TAG, "FALL CONFIRMED! Triggering emergency response");
-        isFallSuspected = false;
 
         // Trigger emergency without confirmation for falls
         EmergencyHandler.trigger(context, true);
@@ -286,19 +236,6 @@ public class FallDetector implements SensorEventListener {
 
         return null;
     }
-        //     }
-        // });
-    }
-
-    private void cancelFallSuspicion() {
-        Log.i(TAG, "Fall suspicion cancelled - false alarm");
-        isFallSuspected = false;
-    }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
-        // Not used
-    }
 
     /**
      * Cleanup resources
@@ -0,0 +1,262 @@
+package com.egyptian.agent.accessibility;
+
+/**
+ * Fall Signal Processor
+ * Streaming fall detector over raw accelerometer samples. A fall is free fall (the magnitude
+ * drops well below 1 g), then an impact within a second, then stillness in a new orientation
+ * once the body has settled. A hard impact alone also counts, since seniors often slump rather
+ * than drop. Only sample timestamps are used, never the wall clock, so samples delivered late
+ * in a batch are judged by when they were measured. Has no Android dependencies and allocates
+ * nothing per sample.
+ *
+ * Samples are kept in a fixed float[] ring (x, y, z interleaved) so stillness and orientation are
+ * judged over the whole window after the impact, not from the last sample.
+ *
+ * The thresholds apply to the magnitude including gravity, not to a high-passed signal: free
+ * fall is that magnitude dropping toward zero, which removing gravity would hide, and the
+ * stillness test uses its standard deviation, which the constant gravity term does not change.
+ * The low-passed gravity is used for the orientation check.
+ */
+public final class FallSignalProcessor {
+    static final float GRAVITY = 9.80665f;
+
+    // Accelerometer subscription shared by FallDetector and FallDetectionService
+    static final int SAMPLING_PERIOD_US = 20000;          // 50 Hz
+    static final int MAX_REPORT_LATENCY_US = 2000000;     // Batches of up to 2 seconds
+    // Covers the stillness window even if the sensor runs faster than requested
+    static final int SAMPLE_BUFFER_CAPACITY = 512;
+
+    // Free fall: smoothed magnitude below 0.5 g for at least 60 ms
+    static final float FREE_FALL_THRESHOLD = 0.5f * GRAVITY;
+    static final long MIN_FREE_FALL_NANOS = 60_000_000L;
+    // An impact must follow the end of free fall within a second
+    static final long IMPACT_WINDOW_NANOS = 1_000_000_000L;
+    static final float IMPACT_THRESHOLD = 2.0f * GRAVITY;
+    // Hard enough to count as a fall without free fall first
+    static final float STRONG_IMPACT_THRESHOLD = 3.0f * GRAVITY;
+    // Bounces and the scramble right after an impact are ignored
+    static final long SETTLE_NANOS = 1_500_000_000L;
+    static final long STILL_WINDOW_NANOS = 2_500_000_000L;
+    // Standard deviation of the magnitude over the window; lying still is well under this
+    static final float STILL_STDDEV = 0.6f;
+    // A phone that ends up in its old orientation was most likely caught, not dropped with its owner
+    static final float MIN_ORIENTATION_CHANGE_DEGREES = 30f;
+
+    // Low-pass time constants: gravity follows slow posture changes, the magnitude filter
+    // only removes sensor noise
+    private static final float GRAVITY_TIME_CONSTANT_SECONDS = 1.0f;
+    private static final float MAGNITUDE_TIME_CONSTANT_SECONDS = 0.03f;
+
+    /**
+     * Receives detector events; called on the thread that feeds samples
+     */
+    public interface Listener {
+        /** An impact after free fall, or a hard impact; stillness is being checked */
+        void onFallSuspected(long timestampNanos, float peakAcceleration);
+        /** The user lay still in a new orientation after the impact */
+        void onFallConfirmed(long timestampNanos);
+        /** The user moved or the phone returned to its old orientation */
+        void onFallDismissed(long timestampNanos);
+    }
+
+    private enum State { MONITORING, FREE_FALL, SETTLING }
+
+    private final Listener listener;
+    private final float[] samples;
+    private final long[] times;
+    private final int capacity;
+    private int head;   // Slot the next sample goes into
+    private int count;
+
+    private State state = State.MONITORING;
+    private long lastTime = Long.MIN_VALUE;
+    // Low-passed gravity vector and smoothed magnitude
+    private float gravityX, gravityY, gravityZ;
+    private float smoothedMagnitude;
+    // Gravity before the fall, to compare orientation against
+    private float fallGravityX, fallGravityY, fallGravityZ;
+    private long freeFallStart = -1;
+    private long freeFallEnd;
+    private long impactTime;
+    private float peakAcceleration;
+
+    /**
+     * @param capacity Samples kept; must cover STILL_WINDOW_NANOS at the sensor rate
+     */
+    public FallSignalProcessor(int capacity, Listener listener) {
+        this.capacity = capacity;
+        this.samples = new float[capacity * 3];
+        this.times = new long[capacity];
+        this.listener = listener;
+    }
+
+    /**
+     * Feeds one accelerometer sample, in m/s² including gravity
+     */
+    public void onSample(long timestampNanos, float x, float y, float z) {
+        if (timestampNanos <= lastTime) {
+            return; // Duplicate or reordered sample from a FIFO flush
+        }
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        filter(timestampNanos, x, y, z, magnitude);
+        store(timestampNanos, x, y, z);
+
+        switch (state) {
+            case MONITORING:
+                if (magnitude >= STRONG_IMPACT_THRESHOLD) {
+                    snapshotGravity();
+                    impact(timestampNanos, magnitude);
+                } else if (trackFreeFall(timestampNanos)) {
+                    state = State.FREE_FALL;
+                }
+                break;
+
+            case FREE_FALL:
+                if (smoothedMagnitude < FREE_FALL_THRESHOLD) {
+                    freeFallEnd = timestampNanos;
+                } else if (magnitude >= IMPACT_THRESHOLD) {
+                    impact(timestampNanos, magnitude);
+                } else if (timestampNanos - freeFallEnd > IMPACT_WINDOW_NANOS) {
+                    reset(); // Free fall without impact: the phone was tossed or caught
+                }
+                break;
+
+            case SETTLING:
+                peakAcceleration = Math.max(peakAcceleration, magnitude);
+                if (timestampNanos - impactTime >= SETTLE_NANOS + STILL_WINDOW_NANOS) {
+                    judgeStillness(timestampNanos);
+                }
+                break;
+        }
+    }
+
+    private void filter(long timestampNanos, float x, float y, float z, float magnitude) {
+        if (lastTime == Long.MIN_VALUE) {
+            gravityX = x;
+            gravityY = y;
+            gravityZ = z;
+            smoothedMagnitude = magnitude;
+        } else {
+            float dt = (timestampNanos - lastTime) / 1e9f;
+            float gravityAlpha = dt / (GRAVITY_TIME_CONSTANT_SECONDS + dt);
+            float magnitudeAlpha = dt / (MAGNITUDE_TIME_CONSTANT_SECONDS + dt);
+            gravityX += gravityAlpha * (x - gravityX);
+            gravityY += gravityAlpha * (y - gravityY);
+            gravityZ += gravityAlpha * (z - gravityZ);
+            smoothedMagnitude += magnitudeAlpha * (magnitude - smoothedMagnitude);
+        }
+        lastTime = timestampNanos;
+    }
+
+    private void store(long timestampNanos, float x, float y, float z) {
+        int slot = head * 3;
+        samples[slot] = x;
+        samples[slot + 1] = y;
+        samples[slot + 2] = z;
+        times[head] = timestampNanos;
+        head = (head + 1) % capacity;
+        count = Math.min(count + 1, capacity);
+    }
+
+    // Returns true once the smoothed magnitude has stayed low long enough
+    private boolean trackFreeFall(long timestampNanos) {
+        if (smoothedMagnitude >= FREE_FALL_THRESHOLD) {
+            freeFallStart = -1;
+            return false;
+        }
+        if (freeFallStart < 0) {
+            freeFallStart = timestampNanos;
+            snapshotGravity();
+        }
+        freeFallEnd = timestampNanos;
+        return timestampNanos - freeFallStart >= MIN_FREE_FALL_NANOS;
+    }
+
+    private void snapshotGravity() {
+        fallGravityX = gravityX;
+        fallGravityY = gravityY;
+        fallGravityZ = gravityZ;
+    }
+
+    private void impact(long timestampNanos, float magnitude) {
+        state = State.SETTLING;
+        impactTime = timestampNanos;
+        peakAcceleration = magnitude;
+        listener.onFallSuspected(timestampNanos, magnitude);
+    }
+
+    /**
+     * Decides from the samples in the stillness window whether the user is down
+     */
+    private void judgeStillness(long timestampNanos) {
+        long windowStart = impactTime + SETTLE_NANOS;
+        double sum = 0;
+        double sumSquares = 0;
+        double meanX = 0;
+        double meanY = 0;
+        double meanZ = 0;
+        int n = 0;
+        for (int i = 1; i <= count; i++) {
+            int index = (head - i + capacity) % capacity;
+            if (times[index] < windowStart) {
+                break;
+            }
+            float x = samples[index * 3];
+            float y = samples[index * 3 + 1];
+            float z = samples[index * 3 + 2];
+            double magnitude = Math.sqrt(x * x + y * y + z * z);
+            sum += magnitude;
+            sumSquares += magnitude * magnitude;
+            meanX += x;
+            meanY += y;
+            meanZ += z;
+            n++;
+        }
+
+        boolean fallen = false;
+        if (n > 1) {
+            double mean = sum / n;
+            double stddev = Math.sqrt(Math.max(0, sumSquares / n - mean * mean));
+            double angle = angleDegrees(fallGravityX, fallGravityY, fallGravityZ, meanX / n, meanY / n, meanZ / n);
+            fallen = stddev < STILL_STDDEV && angle >= MIN_ORIENTATION_CHANGE_DEGREES;
+        }
+
+        reset();
+        if (fallen) {
+            listener.onFallConfirmed(timestampNanos);
+        } else {
+            listener.onFallDismissed(timestampNanos);
+        }
+    }
+
+    private static double angleDegrees(double ax, double ay, double az, double bx, double by, double bz) {
+        double lengths = Math.sqrt(ax * ax + ay * ay + az * az) * Math.sqrt(bx * bx + by * by + bz * bz);
+        if (lengths == 0) {
+            return 0;
+        }
+        double cos = Math.max(-1, Math.min(1, (ax * bx + ay * by + az * bz) / lengths));
+        return Math.toDegrees(Math.acos(cos));
+    }
+
+    private void reset() {
+        state = State.MONITORING;
+        freeFallStart = -1;
+    }
+
+    /**
+     * Checks whether a suspected fall is being confirmed
+     */
+    public boolean isFallSuspected() {
+        return state == State.SETTLING;
+    }
+
+    /**
+     * Forgets any suspected fall and the sample history
+     */
+    public void clear() {
+        reset();
+        head = 0;
+        count = 0;
+        lastTime = Long.MIN_VALUE;
+    }
+}
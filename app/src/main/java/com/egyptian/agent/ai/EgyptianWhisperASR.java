@@ -2,6 +2,7 @@ package com.egyptian.agent.ai;
 
 import android.content.Context;
 import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
 import java.io.File;
 
 /**
@@ -27,7 +28,7 @@ public class EgyptianWhisperASR {
         this.context = context;
         
         // Initialize Whisper ASR in the background
-        new Thread(() -> {
+        BackgroundTaskManager.getInstance(context).executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.i(TAG, "Initializing Whisper Egyptian ASR...");
                 
@@ -51,7 +52,7 @@ public class EgyptianWhisperASR {
             } catch (Exception e) {
                 Log.e(TAG, "Error initializing Whisper ASR", e);
             }
-        }).start();
+        });
     }
 
     /**
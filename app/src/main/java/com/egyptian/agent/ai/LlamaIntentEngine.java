@@ -2,17 +2,23 @@ package com.egyptian.agent.ai;
 
 import android.content.Context;
 import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
+import com.egyptian.agent.hybrid.IntentLabelScorer;
+import com.egyptian.agent.hybrid.LlamaNative;
 import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.performance.QualityGovernor;
 import com.egyptian.agent.stt.EgyptianNormalizer;
+import com.egyptian.agent.stt.VoskSTTEngine;
 import com.egyptian.agent.utils.MemoryOptimizer;
 import com.egyptian.agent.utils.CrashLogger;
 import org.json.JSONObject;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Advanced Intent Engine using Llama 3.2 3B for Egyptian dialect understanding
@@ -23,19 +29,28 @@ public class LlamaIntentEngine {
     private static final int MODEL_LOAD_TIMEOUT = 30000; // 30 seconds
     private static final float MIN_CONFIDENCE_THRESHOLD = 0.85f; // Higher threshold for accuracy
 
-    private ExecutorService inferenceExecutor;
+    // Instruction text is tokenized once; only the command is tokenized per call
+    private static final LlamaNative.PromptTemplate CLASSIFICATION_PROMPT = LlamaNative.createPromptTemplate(
+        "Egyptian Arabic Voice Assistant. Classify the following command into one of these categories: " +
+        "CALL_PERSON, SEND_WHATSAPP, SEND_VOICE_MESSAGE, SET_ALARM, READ_TIME, READ_MISSED_CALLS, EMERGENCY, UNKNOWN. " +
+        "Provide the response in JSON format with 'intent', 'entities' (person_name, time, message), and 'confidence' fields. " +
+        "Command: \"",
+        "\". Response:");
+
+    private final BackgroundTaskManager taskManager;
     private boolean isModelLoaded = false;
     private long lastInferenceTime = 0;
     private Context context;
     private EgyptianWhisperASR whisperASR;
+    private VoskSTTEngine voskASR;  // Created on first use, when the quality tier drops Whisper
 
     public LlamaIntentEngine(Context context) {
         this.context = context;
-        inferenceExecutor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
         this.whisperASR = new EgyptianWhisperASR(context);
 
         // Load the Llama model in the background
-        new Thread(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.i(TAG, "Loading Llama 3.2 3B Q4_K_M model for Egyptian dialect...");
 
@@ -65,7 +80,7 @@ public class LlamaIntentEngine {
                 CrashLogger.logError(context, e);
                 TTSManager.speak(context, "حصل مشكلة في تشغيل نموذج لاما. المزايا الأساسية شغالة");
             }
-        }).start();
+        });
     }
 
     /**
@@ -80,21 +95,26 @@ public class LlamaIntentEngine {
         }
 
         try {
-            // 1. Whisper Egyptian ASR
-            String egyptianText = whisperASR.transcribe(audioPath);
-            Log.d(TAG, "Whisper ASR result: " + egyptianText);
+            // 1. Whisper Egyptian ASR (Vosk when the device is throttled)
+            String egyptianText = transcribe(audioPath);
+            Log.d(TAG, "ASR result: " + egyptianText);
 
             // Apply Egyptian dialect normalization
             String normalizedText = EgyptianNormalizer.normalize(egyptianText);
             
-            // 2. Llama 3.2 3B Intent Classification
-            String prompt = createClassificationPrompt(normalizedText);
-            String intentJson = LlamaNative.infer(prompt, 128);
-            
-            Log.d(TAG, "Llama classification result: " + intentJson);
+            // 2. Llama 3.2 3B Intent Classification, in one forward pass over the label logits
+            IntentResult result = IntentLabelScorer.classify(normalizedText, egyptianText);
+
+            if (result == null) {
+                // Label scoring unavailable; generate and parse the JSON response
+                String intentJson = LlamaNative.infer(CLASSIFICATION_PROMPT, normalizedText,
+                    QualityGovernor.getInstance().getTier().llmMaxTokens);
 
-            // 3. Parse + Execute
-            IntentResult result = parseIntent(intentJson, normalizedText);
+                Log.d(TAG, "Llama classification result: " + intentJson);
+
+                // 3. Parse + Execute
+                result = parseIntent(intentJson, normalizedText);
+            }
             
             // Apply Egyptian-specific post-processing
             applyEgyptianPostProcessing(result);
@@ -106,18 +126,6 @@ public class LlamaIntentEngine {
         }
     }
 
-    /**
-     * Creates a prompt for Llama to classify Egyptian dialect commands
-     * @param text The input text to classify
-     * @return Formatted prompt for Llama
-     */
-    private String createClassificationPrompt(String text) {
-        return "Egyptian Arabic Voice Assistant. Classify the following command into one of these categories: " +
-               "CALL_PERSON, SEND_WHATSAPP, SEND_VOICE_MESSAGE, SET_ALARM, READ_TIME, READ_MISSED_CALLS, EMERGENCY, UNKNOWN. " +
-               "Provide the response in JSON format with 'intent', 'entities' (person_name, time, message), and 'confidence' fields. " +
-               "Command: \"" + text + "\". Response:";
-    }
-
     /**
      * Parses the Llama model response into an IntentResult
      * @param rawResponse Raw response from the model
@@ -203,10 +211,37 @@ public class LlamaIntentEngine {
      */
     private IntentResult fallbackProcessing(String audioPath) {
         // Use Whisper ASR + basic rule-based processing
-        String egyptianText = whisperASR.transcribe(audioPath);
+        String egyptianText = transcribe(audioPath);
         return EgyptianNormalizer.classifyBasicIntent(egyptianText);
     }
 
+    /**
+     * Transcribes with Whisper, or with the lighter Vosk model when the quality tier says so
+     */
+    private synchronized String transcribe(String audioPath) {
+        if (QualityGovernor.getInstance().getTier().whisperAsr) {
+            return whisperASR.transcribe(audioPath);
+        }
+
+        try {
+            if (voskASR == null) {
+                voskASR = new VoskSTTEngine(context);
+            }
+            byte[] audio = Files.readAllBytes(new File(audioPath).toPath());
+            // 16 kHz mono PCM; skip the canonical WAV header if present
+            int offset = audio.length > 44 && audio[0] == 'R' && audio[1] == 'I' && audio[2] == 'F' && audio[3] == 'F' ? 44 : 0;
+            byte[] pcm = offset == 0 ? audio : Arrays.copyOfRange(audio, offset, audio.length);
+            String text = voskASR.recognizeAudio(pcm, pcm.length);
+            if (text != null) {
+                return text;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading audio for Vosk", e);
+        }
+        Log.w(TAG, "Vosk transcription unavailable, using Whisper");
+        return whisperASR.transcribe(audioPath);
+    }
+
     /**
      * Calculates a default confidence score based on response quality
      * @param response Model response
@@ -285,14 +320,13 @@ public class LlamaIntentEngine {
      * Cleans up resources
      */
     public void destroy() {
-        if (inferenceExecutor != null) {
-            inferenceExecutor.shutdownNow();
-        }
-
         // Unload the native model
         LlamaNative.unloadModel();
         
         // Clean up Whisper ASR
         whisperASR.cleanup();
+        if (voskASR != null) {
+            voskASR.destroy();
+        }
     }
 }
\ No newline at end of file
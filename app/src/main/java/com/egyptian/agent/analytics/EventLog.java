@@ -0,0 +1,349 @@
+package com.egyptian.agent.analytics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Event Log
+ * Segmented append-only log of fixed-size analytics records. The tail segment is memory-mapped,
+ * so an append is a few buffer writes; full segments rotate and the oldest is dropped once
+ * MAX_SEGMENTS are kept. Per-event counters over the retained records are kept up to date on
+ * append and rotation, so counts never scan the log. Has no Android dependencies.
+ *
+ * Segment layout: 16 byte header (magic, version, record count, reserved) followed by
+ * RECORDS_PER_SEGMENT records of RECORD_SIZE bytes: timestamp (long), event id (int),
+ * property length (short) and up to MAX_PROPERTY_BYTES of UTF-8 properties. Event ids index
+ * names.txt, one event name per line.
+ */
+public final class EventLog implements Closeable {
+    static final int RECORD_SIZE = 64;
+    static final int RECORDS_PER_SEGMENT = 1024;
+    static final int MAX_SEGMENTS = 4;
+
+    private static final int MAGIC = 0x45564c31; // "EVL1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+    private static final int PROPERTIES_OFFSET = 14;
+    private static final int MAX_PROPERTY_BYTES = RECORD_SIZE - PROPERTIES_OFFSET;
+    private static final long SEGMENT_BYTES = HEADER_SIZE + (long) RECORDS_PER_SEGMENT * RECORD_SIZE;
+    private static final String NAMES_FILE = "names.txt";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private Writer namesWriter;
+    private long[] counts = new long[16];
+    private long totalCount;
+
+    // Sequence numbers of the retained segments, oldest first; the last one is the tail
+    private final Deque<Long> segments = new ArrayDeque<>();
+    private RandomAccessFile tailFile;
+    private MappedByteBuffer tail;
+    private int tailCount;
+
+    private EventLog(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens or creates a log, rebuilding the counters from the retained segments
+     */
+    public static EventLog open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        EventLog log = new EventLog(directory);
+        log.load();
+        return log;
+    }
+
+    private void load() throws IOException {
+        File namesFile = new File(directory, NAMES_FILE);
+        if (namesFile.exists()) {
+            for (String name : Files.readAllLines(namesFile.toPath(), StandardCharsets.UTF_8)) {
+                nameIds.put(name, names.size());
+                names.add(name);
+            }
+        }
+        namesWriter = new OutputStreamWriter(new FileOutputStream(namesFile, true), StandardCharsets.UTF_8);
+
+        long[] sequences = listSegments();
+        for (long sequence : sequences) {
+            segments.addLast(sequence);
+        }
+        for (long sequence : sequences) {
+            addCounts(sequence, 1);
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(0L);
+        }
+        mapTail(segments.peekLast());
+    }
+
+    /**
+     * Appends an event
+     * @param properties Already sanitized properties; truncated to fit the record
+     */
+    public synchronized void append(String name, long timestampMillis, String properties) throws IOException {
+        if (tail == null) {
+            throw new IOException("Event log is closed");
+        }
+        if (tailCount == RECORDS_PER_SEGMENT) {
+            rotate();
+        }
+
+        int id = idFor(name);
+        int position = HEADER_SIZE + tailCount * RECORD_SIZE;
+        tail.putLong(position, timestampMillis);
+        tail.putInt(position + 8, id);
+        int length = putProperties(position + PROPERTIES_OFFSET, properties);
+        tail.putShort(position + 12, (short) length);
+        // The record counts only once the header says so
+        tail.putInt(COUNT_OFFSET, ++tailCount);
+
+        counts[id]++;
+        totalCount++;
+    }
+
+    private int putProperties(int position, String properties) {
+        if (properties == null || properties.isEmpty()) {
+            return 0;
+        }
+        byte[] bytes = properties.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_PROPERTY_BYTES);
+        // Do not cut a multi-byte character in half
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            tail.put(position + i, bytes[i]);
+        }
+        return length;
+    }
+
+    private int idFor(String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        // Names are stored one per line
+        String stored = name.replace('\n', ' ').replace('\r', ' ');
+        id = nameIds.get(stored);
+        if (id == null) {
+            id = names.size();
+            namesWriter.write(stored);
+            namesWriter.write('\n');
+            namesWriter.flush();
+            names.add(stored);
+            nameIds.put(stored, id);
+            if (id >= counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+        }
+        nameIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Starts a new tail segment, first dropping the oldest if MAX_SEGMENTS are kept
+     * Every step that can fail comes before the state it would change, so a failed rotation
+     * leaves the log as it was and the append can be retried.
+     */
+    private void rotate() throws IOException {
+        while (segments.size() >= MAX_SEGMENTS) {
+            long oldest = segments.peekFirst();
+            ByteBuffer dropped = readSegment(oldest);
+            File file = segmentFile(oldest);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+            segments.removeFirst();
+            addCounts(dropped, -1);
+        }
+
+        tail.force();
+        RandomAccessFile full = tailFile;
+        long next = segments.peekLast() + 1;
+        mapTail(next);
+        segments.addLast(next);
+        full.close();
+    }
+
+    private void mapTail(long sequence) throws IOException {
+        File file = segmentFile(sequence);
+        boolean created = !file.exists();
+        RandomAccessFile mappedFile = new RandomAccessFile(file, "rw");
+        MappedByteBuffer mapped;
+        try {
+            mapped = mappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        } catch (IOException e) {
+            mappedFile.close();
+            throw e;
+        }
+        if (created || mapped.getInt(0) != MAGIC) {
+            mapped.putInt(0, MAGIC);
+            mapped.putInt(4, VERSION);
+            mapped.putInt(COUNT_OFFSET, 0);
+        }
+        tailFile = mappedFile;
+        tail = mapped;
+        tailCount = Math.min(Math.max(tail.getInt(COUNT_OFFSET), 0), RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Adds (sign 1) or removes (sign -1) a segment's records from the counters
+     */
+    private void addCounts(long sequence, int sign) throws IOException {
+        addCounts(readSegment(sequence), sign);
+    }
+
+    private void addCounts(ByteBuffer buffer, int sign) {
+        if (buffer == null) {
+            return;
+        }
+        int recordCount = Math.min(Math.max(buffer.getInt(COUNT_OFFSET), 0), RECORDS_PER_SEGMENT);
+        for (int i = 0; i < recordCount; i++) {
+            int id = buffer.getInt(HEADER_SIZE + i * RECORD_SIZE + 8);
+            if (id >= 0 && id < names.size()) {
+                if (id >= counts.length) {
+                    counts = Arrays.copyOf(counts, Math.max(counts.length * 2, id + 1));
+                }
+                counts[id] += sign;
+                totalCount += sign;
+            }
+        }
+    }
+
+    private ByteBuffer readSegment(long sequence) throws IOException {
+        File file = segmentFile(sequence);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(in.length(), SEGMENT_BYTES));
+            in.getChannel().read(buffer, 0);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                return null;
+            }
+            return buffer;
+        }
+    }
+
+    private long[] listSegments() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new long[0];
+        }
+        long[] sequences = new long[files.length];
+        int count = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    sequences[count++] = Long.parseLong(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        sequences = Arrays.copyOf(sequences, count);
+        Arrays.sort(sequences);
+        return sequences;
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format(Locale.ROOT, "%s%08d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Gets how many retained records have this event name
+     */
+    public synchronized long getCount(String name) {
+        Integer id = nameIds.get(name);
+        return id == null ? 0 : counts[id];
+    }
+
+    /**
+     * Gets the number of retained records
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the non-zero per-event counts, in order of first appearance
+     */
+    public synchronized Map<String, Long> getCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (counts[id] > 0) {
+                result.put(names.get(id), counts[id]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes every record and event name
+     */
+    public synchronized void clear() throws IOException {
+        closeFiles();
+        for (long sequence : segments) {
+            segmentFile(sequence).delete();
+        }
+        new File(directory, NAMES_FILE).delete();
+        segments.clear();
+        names.clear();
+        nameIds.clear();
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+
+        namesWriter = new OutputStreamWriter(new FileOutputStream(new File(directory, NAMES_FILE), true), StandardCharsets.UTF_8);
+        segments.addLast(0L);
+        mapTail(0L);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (tail != null) {
+            tail.force();
+        }
+        closeFiles();
+    }
+
+    private void closeFiles() throws IOException {
+        tail = null;
+        if (tailFile != null) {
+            tailFile.close();
+            tailFile = null;
+        }
+        if (namesWriter != null) {
+            namesWriter.close();
+            namesWriter = null;
+        }
+    }
+}
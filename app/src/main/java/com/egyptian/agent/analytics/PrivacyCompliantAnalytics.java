@@ -3,12 +3,12 @@ package com.egyptian.agent.analytics;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
+import com.egyptian.agent.utils.PiiScanner;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -16,22 +16,26 @@ import java.util.Locale;
 /**
  * Privacy-compliant analytics system for Egyptian Agent
  * Collects usage data while protecting user privacy
+ * Events go to an append-only EventLog under files/analytics; reports and counts come from its
+ * per-event counters. The log is only opened and read on the FILE_IO lane, and results are
+ * delivered on the main thread.
  */
 public class PrivacyCompliantAnalytics {
     private static final String TAG = "Analytics";
     private static final String ANALYTICS_PREFS = "analytics_prefs";
-    private static final String ANALYTICS_DATA_KEY = "analytics_data";
-    private static final int MAX_EVENTS = 100; // Maximum number of events to store
+    private static final String ANALYTICS_DATA_KEY = "analytics_data"; // Pre-EventLog JSON array, removed on open
+    private static final String EVENT_LOG_DIR = "analytics";
 
     private static PrivacyCompliantAnalytics instance;
     private SharedPreferences prefs;
-    private ExecutorService executor;
+    private final BackgroundTaskManager taskManager;
     private Context context;
+    private EventLog eventLog;
 
     private PrivacyCompliantAnalytics(Context context) {
         this.context = context.getApplicationContext();
         this.prefs = context.getSharedPreferences(ANALYTICS_PREFS, Context.MODE_PRIVATE);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
     }
 
     public static synchronized PrivacyCompliantAnalytics getInstance(Context context) {
@@ -45,19 +49,13 @@ public class PrivacyCompliantAnalytics {
      * Logs an event without collecting personal information
      */
     public void logEvent(String eventName, Map<String, Object> properties) {
-        executor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
             try {
                 // Sanitize properties to ensure no PII is collected
                 Map<String, Object> sanitizedProps = sanitizeProperties(properties);
 
-                // Create event object
-                Map<String, Object> event = new HashMap<>();
-                event.put("name", eventName);
-                event.put("timestamp", System.currentTimeMillis());
-                event.put("properties", sanitizedProps);
-
                 // Store event
-                storeEvent(event);
+                storeEvent(eventName, System.currentTimeMillis(), sanitizedProps);
 
                 Log.d(TAG, "Logged event: " + eventName);
             } catch (Exception e) {
@@ -121,103 +119,96 @@ public class PrivacyCompliantAnalytics {
     }
 
     /**
-     * Checks if a string value contains potential PII
+     * Checks if a string value contains potential PII: Egyptian mobile numbers, emails or
+     * long runs of Arabic words that are likely names
      */
     private boolean containsPII(String value) {
-        // Basic check for phone number patterns (Egyptian numbers typically start with 01x)
-        if (value.matches(".*01[0-9]{9}.*")) {
-            return true;
-        }
-
-        // Check for email patterns
-        if (value.matches(".*[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}.*")) {
-            return true;
-        }
+        return PiiScanner.containsPii(value);
+    }
 
-        // Check for potential Arabic names (basic heuristic)
-        // This is a simplified check - in production, you'd want more sophisticated PII detection
-        if (value.length() < 50 && value.matches(".*[\\u0600-\\u06FF\\s]+.*")) {
-            // Contains Arabic characters, could be a name
-            // For now, we'll allow short Arabic text but flag longer sequences
-            String[] words = value.trim().split("\\s+");
-            if (words.length > 5) {
-                return true; // Likely contains personal information
+    /**
+     * Appends an event to the log; O(1) apart from the occasional segment rotation
+     */
+    private synchronized void storeEvent(String eventName, long timestamp, Map<String, Object> properties) {
+        try {
+            StringBuilder encoded = new StringBuilder();
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                if (encoded.length() > 0) {
+                    encoded.append(',');
+                }
+                encoded.append(entry.getKey()).append('=').append(entry.getValue());
             }
+            openEventLog().append(eventName, timestamp, encoded.toString());
+        } catch (IOException e) {
+            Log.e(TAG, "Error storing event", e);
         }
-
-        return false;
     }
 
     /**
-     * Stores an event in shared preferences
+     * Opens the event log on first use, dropping the old SharedPreferences store
      */
-    private void storeEvent(Map<String, Object> event) {
-        try {
-            // Retrieve existing events
-            String existingJson = prefs.getString(ANALYTICS_DATA_KEY, "[]");
-            JSONArray jsonArray = new JSONArray(existingJson);
-
-            // Add new event
-            JSONObject eventJson = new JSONObject(event);
-            jsonArray.put(eventJson);
-
-            // Limit the number of stored events
-            while (jsonArray.length() > MAX_EVENTS) {
-                // Remove oldest event (at index 0)
-                jsonArray = removeJsonAtIndex(jsonArray, 0);
+    private synchronized EventLog openEventLog() throws IOException {
+        if (eventLog == null) {
+            eventLog = EventLog.open(getEventLogDirectory());
+            if (prefs.contains(ANALYTICS_DATA_KEY)) {
+                prefs.edit().remove(ANALYTICS_DATA_KEY).apply();
             }
-
-            // Save back to preferences
-            prefs.edit().putString(ANALYTICS_DATA_KEY, jsonArray.toString()).apply();
-        } catch (Exception e) {
-            Log.e(TAG, "Error storing event", e);
         }
+        return eventLog;
     }
 
     /**
-     * Removes an item at a specific index from JSONArray (helper method)
+     * Closes the event log so its files can be replaced, e.g. by a backup restore
+     * The next event reopens it.
      */
-    private JSONArray removeJsonAtIndex(JSONArray jsonArray, int index) {
-        JSONArray result = new JSONArray();
-        for (int i = 0; i < jsonArray.length(); i++) {
-            if (i != index) {
-                try {
-                    result.put(jsonArray.get(i));
-                } catch (Exception e) {
-                    Log.e(TAG, "Error removing JSON at index", e);
-                }
+    public synchronized void closeEventLog() {
+        if (eventLog != null) {
+            try {
+                eventLog.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing event log", e);
             }
+            eventLog = null;
         }
-        return result;
     }
 
     /**
-     * Gets analytics data for reporting (without PII)
+     * Gets the event log directory
      */
-    public String getAnalyticsReport() {
+    public File getEventLogDirectory() {
+        return new File(context.getFilesDir(), EVENT_LOG_DIR);
+    }
+
+    /**
+     * Receives an analytics result on the main thread
+     */
+    public interface ResultCallback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Builds the analytics report (without PII) on the FILE_IO lane
+     */
+    public void getAnalyticsReport(ResultCallback<String> callback) {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW,
+            () -> {
+                String report = buildAnalyticsReport();
+                taskManager.postToUIThread(() -> callback.onResult(report));
+            },
+            () -> taskManager.postToUIThread(() -> callback.onResult("Error generating report: busy")));
+    }
+
+    private String buildAnalyticsReport() {
         try {
-            String jsonStr = prefs.getString(ANALYTICS_DATA_KEY, "[]");
-            JSONArray jsonArray = new JSONArray(jsonStr);
+            EventLog log = openEventLog();
 
             StringBuilder report = new StringBuilder();
             report.append("Egyptian Agent Analytics Report\n");
             report.append("Generated: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date())).append("\n");
-            report.append("Total Events: ").append(jsonArray.length()).append("\n\n");
-
-            // Count event types
-            Map<String, Integer> eventTypeCounts = new HashMap<>();
-            for (int i = 0; i < jsonArray.length(); i++) {
-                try {
-                    JSONObject event = jsonArray.getJSONObject(i);
-                    String eventName = event.getString("name");
-                    eventTypeCounts.put(eventName, eventTypeCounts.getOrDefault(eventName, 0) + 1);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing event for report", e);
-                }
-            }
+            report.append("Total Events: ").append(log.getTotalCount()).append("\n\n");
 
             // Add counts to report
-            for (Map.Entry<String, Integer> entry : eventTypeCounts.entrySet()) {
+            for (Map.Entry<String, Long> entry : log.getCounts().entrySet()) {
                 report.append(entry.getKey()).append(": ").append(entry.getValue()).append(" times\n");
             }
 
@@ -232,36 +223,34 @@ public class PrivacyCompliantAnalytics {
      * Clears all analytics data
      */
     public void clearAnalyticsData() {
-        executor.execute(() -> {
-            prefs.edit().remove(ANALYTICS_DATA_KEY).apply();
-            Log.d(TAG, "Analytics data cleared");
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
+            try {
+                openEventLog().clear();
+                Log.d(TAG, "Analytics data cleared");
+            } catch (IOException e) {
+                Log.e(TAG, "Error clearing analytics data", e);
+            }
         });
     }
 
     /**
-     * Gets the count of specific event type
+     * Counts the events of a type on the FILE_IO lane; 0 if the log cannot be read
      */
-    public int getEventCount(String eventName) {
-        try {
-            String jsonStr = prefs.getString(ANALYTICS_DATA_KEY, "[]");
-            JSONArray jsonArray = new JSONArray(jsonStr);
-
-            int count = 0;
-            for (int i = 0; i < jsonArray.length(); i++) {
-                try {
-                    JSONObject event = jsonArray.getJSONObject(i);
-                    if (eventName.equals(event.getString("name"))) {
-                        count++;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error counting events", e);
-                }
-            }
+    public void getEventCount(String eventName, ResultCallback<Integer> callback) {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW,
+            () -> {
+                int count = readEventCount(eventName);
+                taskManager.postToUIThread(() -> callback.onResult(count));
+            },
+            () -> taskManager.postToUIThread(() -> callback.onResult(0)));
+    }
 
-            return count;
-        } catch (Exception e) {
+    private int readEventCount(String eventName) {
+        try {
+            return (int) openEventLog().getCount(eventName);
+        } catch (IOException e) {
             Log.e(TAG, "Error getting event count", e);
             return 0;
         }
     }
-}
\ No newline at end of file
+}
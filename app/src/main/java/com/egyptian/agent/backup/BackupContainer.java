@@ -0,0 +1,515 @@
+package com.egyptian.agent.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Backup Container
+ * Streaming, encrypted backup store. Entries are read in CHUNK_SIZE pieces; each chunk is
+ * compressed and AES-GCM encrypted on the executor, so several cores work on one backup while
+ * at most parallelism chunks are held in memory. Chunks are content-addressed and shared by
+ * all backups in the directory: a chunk already stored is not written again, so an incremental
+ * backup only writes what changed. Has no Android dependencies.
+ *
+ * Layout of the directory:
+ * - store.key: random salt for chunk ids, encrypted
+ * - chunks/ID: nonce, then AES-GCM of (codec, length, data) with the chunk id as associated data
+ * - one manifest file per backup: nonce, then AES-GCM of the entry list (name, size, SHA-256 of
+ *   the content, chunk ids)
+ *
+ * A chunk id is SHA-256(salt + chunk), so equal chunks share storage without the ids revealing
+ * the content of guessable chunks. Restores check every chunk id and every entry hash.
+ */
+public final class BackupContainer {
+    public static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final int MANIFEST_MAGIC = 0x4541424d; // "EABM"
+    private static final int STORE_MAGIC = 0x45414253; // "EABS"
+    private static final int VERSION = 1;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int ID_BYTES = 32;
+    private static final int SALT_BYTES = 32;
+    private static final byte CODEC_STORED = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final String CHUNK_DIR = "chunks";
+    private static final String STORE_KEY_FILE = "store.key";
+
+    private final File chunkDir;
+    private final SecretKey key;
+    private final Executor executor;
+    private final int parallelism;
+    private final byte[] salt;
+
+    /**
+     * Opens or creates a store
+     * @param key AES key for chunks and manifests
+     * @param executor Runs chunk compression and encryption
+     * @param parallelism Chunks compressed at once per entry
+     */
+    public BackupContainer(File directory, SecretKey key, Executor executor, int parallelism) throws IOException {
+        this.chunkDir = new File(directory, CHUNK_DIR);
+        this.key = key;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        if (!chunkDir.isDirectory() && !chunkDir.mkdirs()) {
+            throw new IOException("Cannot create " + chunkDir);
+        }
+        this.salt = loadSalt(new File(directory, STORE_KEY_FILE));
+    }
+
+    private byte[] loadSalt(File file) throws IOException {
+        byte[] header = header(STORE_MAGIC);
+        if (file.exists()) {
+            return decrypt(Files.readAllBytes(file.toPath()), header, header.length);
+        }
+        byte[] newSalt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(newSalt);
+        writeAtomically(file, concat(header, encrypt(newSalt, header)));
+        return newSalt;
+    }
+
+    /**
+     * Starts a backup; entries are added in order and the manifest written by commit
+     */
+    public Writer newBackup() {
+        return new Writer();
+    }
+
+    /**
+     * Writes one backup
+     */
+    public final class Writer {
+        private final List<Manifest.Entry> entries = new ArrayList<>();
+        private final AtomicInteger chunksWritten = new AtomicInteger();
+        private final AtomicInteger chunksReused = new AtomicInteger();
+
+        private Writer() {
+        }
+
+        /**
+         * Streams an entry into the store
+         */
+        public void addEntry(String name, InputStream in) throws IOException {
+            MessageDigest contentHash = sha256();
+            List<byte[]> ids = new ArrayList<>();
+            Deque<FutureTask<byte[]>> inFlight = new ArrayDeque<>();
+            long size = 0;
+
+            while (true) {
+                byte[] chunk = readChunk(in);
+                if (chunk.length == 0) {
+                    break;
+                }
+                size += chunk.length;
+                contentHash.update(chunk);
+
+                FutureTask<byte[]> task = new FutureTask<>(() -> storeChunk(chunk, this));
+                executor.execute(task);
+                inFlight.addLast(task);
+                if (inFlight.size() >= parallelism) {
+                    ids.add(await(inFlight.removeFirst()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                ids.add(await(inFlight.removeFirst()));
+            }
+            entries.add(new Manifest.Entry(name, size, contentHash.digest(), ids));
+        }
+
+        /**
+         * Writes the manifest, completing the backup
+         */
+        public Manifest commit(File manifestFile, long createdMillis) throws IOException {
+            Manifest manifest = new Manifest(createdMillis, entries);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(createdMillis);
+            out.writeInt(entries.size());
+            for (Manifest.Entry entry : entries) {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.size);
+                out.write(entry.sha256);
+                out.writeInt(entry.chunkIds.size());
+                for (byte[] id : entry.chunkIds) {
+                    out.write(id);
+                }
+            }
+            out.flush();
+
+            byte[] header = header(MANIFEST_MAGIC);
+            writeAtomically(manifestFile, concat(header, encrypt(bytes.toByteArray(), header)));
+            return manifest;
+        }
+
+        public int getChunksWritten() {
+            return chunksWritten.get();
+        }
+
+        public int getChunksReused() {
+            return chunksReused.get();
+        }
+    }
+
+    /**
+     * Compresses, encrypts and stores a chunk unless an identical one is already stored
+     * @return The chunk id
+     */
+    private byte[] storeChunk(byte[] chunk, Writer writer) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(salt);
+        byte[] id = digest.digest(chunk);
+        File file = chunkFile(id);
+        if (file.exists()) {
+            writer.chunksReused.incrementAndGet();
+            return id;
+        }
+
+        byte[] compressed = deflate(chunk);
+        boolean useDeflate = compressed.length < chunk.length;
+        byte[] payload = useDeflate ? compressed : chunk;
+        ByteBuffer plain = ByteBuffer.allocate(5 + payload.length);
+        plain.put(useDeflate ? CODEC_DEFLATE : CODEC_STORED).putInt(chunk.length).put(payload);
+
+        writeAtomically(file, encrypt(plain.array(), id));
+        writer.chunksWritten.incrementAndGet();
+        return id;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[16 * 1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads and checks a chunk
+     */
+    private byte[] loadChunk(byte[] id) throws IOException {
+        File file = chunkFile(id);
+        if (!file.exists()) {
+            throw new IOException("Missing backup chunk " + hex(id));
+        }
+        ByteBuffer plain = ByteBuffer.wrap(decrypt(Files.readAllBytes(file.toPath()), id, 0));
+        byte codec = plain.get();
+        int length = plain.getInt();
+        byte[] chunk = new byte[length];
+
+        if (codec == CODEC_STORED) {
+            plain.get(chunk);
+        } else if (codec == CODEC_DEFLATE) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(plain.array(), plain.position(), plain.remaining());
+                int filled = 0;
+                while (filled < length && !inflater.finished()) {
+                    int count = inflater.inflate(chunk, filled, length - filled);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    filled += count;
+                }
+                if (filled != length) {
+                    throw new IOException("Truncated backup chunk " + hex(id));
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt backup chunk " + hex(id), e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            throw new IOException("Unknown codec in backup chunk " + hex(id));
+        }
+
+        MessageDigest digest = sha256();
+        digest.update(salt);
+        if (!Arrays.equals(digest.digest(chunk), id)) {
+            throw new IOException("Backup chunk " + hex(id) + " does not match its id");
+        }
+        return chunk;
+    }
+
+    /**
+     * Reads a manifest written by commit
+     */
+    public Manifest readManifest(File manifestFile) throws IOException {
+        byte[] header = header(MANIFEST_MAGIC);
+        byte[] bytes = Files.readAllBytes(manifestFile.toPath());
+        if (bytes.length < header.length || !Arrays.equals(Arrays.copyOf(bytes, header.length), header)) {
+            throw new IOException("Not a backup manifest: " + manifestFile);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(decrypt(bytes, header, header.length)));
+
+        long createdMillis = in.readLong();
+        int entryCount = in.readInt();
+        List<Manifest.Entry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            String name = in.readUTF();
+            long size = in.readLong();
+            byte[] sha256 = new byte[ID_BYTES];
+            in.readFully(sha256);
+            int chunkCount = in.readInt();
+            List<byte[]> ids = new ArrayList<>(chunkCount);
+            for (int c = 0; c < chunkCount; c++) {
+                byte[] id = new byte[ID_BYTES];
+                in.readFully(id);
+                ids.add(id);
+            }
+            entries.add(new Manifest.Entry(name, size, sha256, ids));
+        }
+        return new Manifest(createdMillis, entries);
+    }
+
+    /**
+     * Opens an entry for streaming; the content hash is checked when the stream reaches its end
+     */
+    public InputStream openEntry(Manifest.Entry entry) {
+        return new EntryInputStream(entry);
+    }
+
+    private final class EntryInputStream extends InputStream {
+        private final Manifest.Entry entry;
+        private final MessageDigest contentHash = sha256();
+        private int nextChunk;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        EntryInputStream(Manifest.Entry entry) {
+            this.entry = entry;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == chunk.length) {
+                if (nextChunk == entry.chunkIds.size()) {
+                    return false;
+                }
+                chunk = loadChunk(entry.chunkIds.get(nextChunk++));
+                position = 0;
+                contentHash.update(chunk);
+                if (nextChunk == entry.chunkIds.size()
+                        && !MessageDigest.isEqual(contentHash.digest(), entry.sha256)) {
+                    throw new IOException("Backup entry " + entry.name + " does not match its hash");
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    /**
+     * Deletes chunks no remaining manifest refers to
+     * @return Number of chunks deleted
+     */
+    public int collectGarbage(List<Manifest> liveManifests) {
+        Set<String> live = new HashSet<>();
+        for (Manifest manifest : liveManifests) {
+            for (Manifest.Entry entry : manifest.entries) {
+                for (byte[] id : entry.chunkIds) {
+                    live.add(hex(id));
+                }
+            }
+        }
+        File[] files = chunkDir.listFiles();
+        int deleted = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (!live.contains(file.getName()) && file.delete()) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Contents of one backup
+     */
+    public static final class Manifest {
+        public final long createdMillis;
+        public final List<Entry> entries;
+
+        Manifest(long createdMillis, List<Entry> entries) {
+            this.createdMillis = createdMillis;
+            this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        }
+
+        public static final class Entry {
+            public final String name;
+            public final long size;
+            final byte[] sha256;
+            final List<byte[]> chunkIds;
+
+            Entry(String name, long size, byte[] sha256, List<byte[]> chunkIds) {
+                this.name = name;
+                this.size = size;
+                this.sha256 = sha256;
+                this.chunkIds = chunkIds;
+            }
+        }
+    }
+
+    // Runs the task here if no worker has started it, so a busy or single-threaded executor
+    // cannot stall the backup
+    private static byte[] await(FutureTask<byte[]> task) throws IOException {
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Backup interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Backup chunk failed", cause);
+        }
+    }
+
+    private static byte[] readChunk(InputStream in) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        int filled = 0;
+        while (filled < buffer.length) {
+            int count = in.read(buffer, filled, buffer.length - filled);
+            if (count == -1) {
+                break;
+            }
+            filled += count;
+        }
+        return filled == buffer.length ? buffer : Arrays.copyOf(buffer, filled);
+    }
+
+    /**
+     * Encrypts with a fresh nonce chosen by the cipher
+     * @return nonce followed by ciphertext and tag
+     */
+    private byte[] encrypt(byte[] plain, byte[] associatedData) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            cipher.updateAAD(associatedData);
+            byte[] nonce = cipher.getIV();
+            if (nonce.length != NONCE_BYTES) {
+                throw new IOException("Unexpected GCM nonce length " + nonce.length);
+            }
+            return concat(nonce, cipher.doFinal(plain));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Backup encryption failed", e);
+        }
+    }
+
+    private byte[] decrypt(byte[] data, byte[] associatedData, int offset) throws IOException {
+        if (data.length < offset + NONCE_BYTES) {
+            throw new IOException("Truncated encrypted backup data");
+        }
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, data, offset, NONCE_BYTES));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(data, offset + NONCE_BYTES, data.length - offset - NONCE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Backup data failed authentication", e);
+        }
+    }
+
+    private static byte[] header(int magic) {
+        return ByteBuffer.allocate(8).putInt(magic).putInt(VERSION).array();
+    }
+
+    private File chunkFile(byte[] id) {
+        return new File(chunkDir, hex(id));
+    }
+
+    private static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
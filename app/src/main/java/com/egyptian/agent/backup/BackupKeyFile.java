@@ -0,0 +1,124 @@
+package com.egyptian.agent.backup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Backup Key File
+ * Holds the random AES-256 key of a backup store, sealed with a key derived from the user's
+ * passphrase (PBKDF2-HMAC-SHA256). It lives next to the backups, so a copied backup directory
+ * restores on a new phone or after a reinstall given the passphrase. Has no Android dependencies.
+ *
+ * Layout: magic, version, iterations, salt, nonce, then AES-GCM of the key with the header
+ * as associated data.
+ */
+public final class BackupKeyFile {
+    public static final String FILE_NAME = "backup.key";
+
+    private static final int MAGIC = 0x4541424b; // "EABK"
+    private static final int VERSION = 1;
+    // Stored in the file, so it can be raised later without breaking older backups
+    private static final int ITERATIONS = 210_000;
+    private static final int SALT_BYTES = 16;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KEY_BITS = 256;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private BackupKeyFile() {
+    }
+
+    /**
+     * Generates a new store key and seals it with the passphrase
+     */
+    public static SecretKey create(File file, char[] passphrase) throws IOException, GeneralSecurityException {
+        byte[] raw = new byte[KEY_BITS / 8];
+        random.nextBytes(raw);
+        SecretKey key = new SecretKeySpec(raw, "AES");
+        write(file, key, passphrase);
+        return key;
+    }
+
+    /**
+     * Seals an existing store key with a passphrase, replacing the file atomically
+     */
+    public static void write(File file, SecretKey key, char[] passphrase) throws IOException, GeneralSecurityException {
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(salt);
+        random.nextBytes(nonce);
+        byte[] header = header(ITERATIONS, salt, nonce);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, deriveKey(passphrase, salt, ITERATIONS), new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(header);
+        byte[] sealed = cipher.doFinal(key.getEncoded());
+
+        File temp = new File(file.getPath() + ".tmp");
+        byte[] contents = Arrays.copyOf(header, header.length + sealed.length);
+        System.arraycopy(sealed, 0, contents, header.length, sealed.length);
+        Files.write(temp.toPath(), contents);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens the store key with the passphrase
+     * @throws javax.crypto.AEADBadTagException if the passphrase is wrong or the file was altered
+     */
+    public static SecretKey unlock(File file, char[] passphrase) throws IOException, GeneralSecurityException {
+        byte[] contents = Files.readAllBytes(file.toPath());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a backup key file");
+        }
+        int iterations = in.readInt();
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] nonce = new byte[NONCE_BYTES];
+        in.readFully(salt);
+        in.readFully(nonce);
+        int headerLength = contents.length - in.available();
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, deriveKey(passphrase, salt, iterations), new GCMParameterSpec(TAG_BITS, nonce));
+        cipher.updateAAD(contents, 0, headerLength);
+        byte[] raw = cipher.doFinal(contents, headerLength, contents.length - headerLength);
+        return new SecretKeySpec(raw, "AES");
+    }
+
+    private static byte[] header(int iterations, byte[] salt, byte[] nonce) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(iterations);
+        out.write(salt);
+        out.write(nonce);
+        return bytes.toByteArray();
+    }
+
+    private static SecretKey deriveKey(char[] passphrase, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, KEY_BITS);
+        try {
+            byte[] raw = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(raw, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
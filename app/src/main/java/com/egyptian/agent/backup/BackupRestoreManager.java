@@ -4,38 +4,76 @@ import android.content.Context;
 import android.os.Environment;
 import android.util.Log;
 
+import com.egyptian.agent.analytics.PrivacyCompliantAnalytics;
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.security.DataEncryptionManager;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.utils.CrashLogger;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import javax.crypto.SecretKey;
 
 /**
  * Backup and restore utility for user data and settings
- * Securely backs up sensitive information with encryption
+ * Backups are written to an encrypted BackupContainer: entries are streamed in chunks that are
+ * compressed and encrypted on the file I/O lane, and chunks unchanged since an earlier backup are
+ * reused rather than written again. Zip backups from older versions can still be restored.
  */
 public class BackupRestoreManager {
     private static final String TAG = "BackupRestoreManager";
     private static final String BACKUP_DIRECTORY = "egyptian_agent_backup";
     private static final String BACKUP_FILE_PREFIX = "egyptian_agent_backup_";
-    private static final String BACKUP_FILE_EXTENSION = ".zip";
+    private static final String BACKUP_FILE_EXTENSION = ".ebk";
+    private static final String LEGACY_BACKUP_FILE_EXTENSION = ".zip";
+
+    // Chunks compressed at once; matches the file I/O lane size
+    private static final int COMPRESSION_PARALLELISM = 3;
+    // Upper bound for the small text entries that are parsed in memory
+    private static final int MAX_TEXT_ENTRY_BYTES = 64 * 1024;
+
+    private static final String FEEDBACK_DIRECTORY = "egyptian_agent_feedback";
+    private static final String FEEDBACK_FILE = "user_feedback.txt";
+
+    private static final String ENTRY_EMERGENCY_CONTACT = "emergency_contact.txt";
+    private static final String ENTRY_GUARDIAN_INFO = "guardian_info.txt";
+    private static final String ENTRY_PREFERENCES = "preferences.txt";
+    private static final String ENTRY_METADATA = "metadata.txt";
+    private static final String ENTRY_FEEDBACK = "feedback/" + FEEDBACK_FILE;
+    private static final String ENTRY_ANALYTICS_PREFIX = "analytics/";
+    private static final String RESTORE_SUFFIX = ".restore";
     
     private static BackupRestoreManager instance;
     private Context context;
     private DataEncryptionManager encryptionManager;
+    private BackgroundTaskManager taskManager;
     
     private BackupRestoreManager(Context context) {
         this.context = context.getApplicationContext();
         this.encryptionManager = DataEncryptionManager.getInstance(context);
+        this.taskManager = BackgroundTaskManager.getInstance(context);
     }
     
     public static synchronized BackupRestoreManager getInstance(Context context) {
@@ -45,13 +83,55 @@ public class BackupRestoreManager {
         return instance;
     }
     
+    /**
+     * Sets the passphrase protecting backups
+     * The backup key is sealed with it in the backup directory, so backups restore on a new phone
+     * or after a reinstall; this device keeps its own wrapped copy, so later backups do not ask
+     * again. Changing the passphrase keeps existing backups readable. Blocks for the key
+     * derivation, so call it from a background lane.
+     */
+    public synchronized boolean setBackupPassphrase(char[] passphrase) {
+        try {
+            File backupDir = getBackupDirectory();
+            if (!backupDir.isDirectory() && !backupDir.mkdirs()) {
+                throw new IOException("Cannot create " + backupDir);
+            }
+            File keyFile = new File(backupDir, BackupKeyFile.FILE_NAME);
+            SecretKey key = encryptionManager.getBackupKey();
+            if (key != null) {
+                BackupKeyFile.write(keyFile, key, passphrase);
+            } else if (keyFile.exists()) {
+                // Backups copied from another phone: the passphrase must be theirs
+                key = BackupKeyFile.unlock(keyFile, passphrase);
+            } else {
+                key = BackupKeyFile.create(keyFile, passphrase);
+            }
+            encryptionManager.storeBackupKey(key);
+            Log.i(TAG, "Backup passphrase set");
+            return true;
+        } catch (IOException | GeneralSecurityException e) {
+            Log.e(TAG, "Failed to set backup passphrase", e);
+            return false;
+        }
+    }
+
     /**
      * Create a backup of user data and settings
+     * Needs setBackupPassphrase() once: without the passphrase-sealed key next to them, backups
+     * could only be opened on this phone. The backup directory is app storage, which Android
+     * removes on uninstall, so copy it off the phone to keep it.
+     * Blocks until the backup is written, so call it from a background lane.
      */
-    public boolean createBackup() {
+    public synchronized boolean createBackup() {
         try {
+            if (encryptionManager.getBackupKey() == null) {
+                Log.w(TAG, "No backup passphrase set; not creating a backup");
+                TTSManager.speak(context, "لازم تحدد كلمة سر للنسخة الاحتياطية الأول.");
+                return false;
+            }
+
             // Create backup directory
-            File backupDir = new File(context.getExternalFilesDir(null), BACKUP_DIRECTORY);
+            File backupDir = getBackupDirectory();
             if (!backupDir.exists()) {
                 backupDir.mkdirs();
             }
@@ -75,52 +155,86 @@ public class BackupRestoreManager {
             return false;
         }
     }
+
+    private File getBackupDirectory() {
+        return new File(context.getExternalFilesDir(null), BACKUP_DIRECTORY);
+    }
+
+    /**
+     * Opens the chunk store shared by all backups in the backup directory with this device's key
+     */
+    private BackupContainer openContainer() throws IOException {
+        SecretKey key;
+        try {
+            key = encryptionManager.getBackupKey();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Backup key unavailable", e);
+        }
+        if (key == null) {
+            throw new IOException("No backup passphrase set up on this device");
+        }
+        return openContainer(key);
+    }
+
+    private BackupContainer openContainer(SecretKey key) throws IOException {
+        return new BackupContainer(getBackupDirectory(), key,
+            task -> taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO,
+                BackgroundTaskManager.TaskPriority.LOW, task),
+            COMPRESSION_PARALLELISM);
+    }
     
     /**
      * Create the actual backup file with encrypted data
      */
     private void createBackupFile(File backupFile) throws IOException {
-        try (ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(backupFile))) {
-            // Add emergency contact info
-            addEmergencyContactToBackup(zipOut);
-            
-            // Add guardian info
-            addGuardianInfoToBackup(zipOut);
-            
-            // Add preferences
-            addPreferencesToBackup(zipOut);
-            
-            // Add any other sensitive data that needs backup
-            addOtherDataToBackup(zipOut);
-        }
+        BackupContainer.Writer writer = openContainer().newBackup();
+
+        // Add emergency contact info
+        addEmergencyContactToBackup(writer);
+
+        // Add guardian info
+        addGuardianInfoToBackup(writer);
+
+        // Add preferences
+        addPreferencesToBackup(writer);
+
+        // Add feedback log and analytics event log, streamed from disk
+        addFeedbackToBackup(writer);
+        addAnalyticsToBackup(writer);
+
+        // Add any other sensitive data that needs backup
+        addOtherDataToBackup(writer);
+
+        writer.commit(backupFile, System.currentTimeMillis());
+        Log.d(TAG, "Backup wrote " + writer.getChunksWritten() + " chunks, reused " + writer.getChunksReused());
     }
     
     /**
      * Add emergency contact info to backup
      */
-    private void addEmergencyContactToBackup(ZipOutputStream zipOut) throws IOException {
+    private void addEmergencyContactToBackup(BackupContainer.Writer writer) throws IOException {
         String[] emergencyContact = encryptionManager.retrieveEmergencyContact();
         if (emergencyContact[0] != null && emergencyContact[1] != null) {
             String data = emergencyContact[0] + "|" + emergencyContact[1];
-            addToZip(zipOut, "emergency_contact.txt", data.getBytes());
+            addText(writer, ENTRY_EMERGENCY_CONTACT, data);
         }
     }
     
     /**
      * Add guardian info to backup
      */
-    private void addGuardianInfoToBackup(ZipOutputStream zipOut) throws IOException {
+    private void addGuardianInfoToBackup(BackupContainer.Writer writer) throws IOException {
         String[] guardianInfo = encryptionManager.retrieveGuardianInfo();
         if (guardianInfo[0] != null && guardianInfo[1] != null) {
             String data = guardianInfo[0] + "|" + guardianInfo[1];
-            addToZip(zipOut, "guardian_info.txt", data.getBytes());
+            addText(writer, ENTRY_GUARDIAN_INFO, data);
         }
     }
     
     /**
      * Add preferences to backup
      */
-    private void addPreferencesToBackup(ZipOutputStream zipOut) throws IOException {
+    private void addPreferencesToBackup(BackupContainer.Writer writer) throws IOException {
         // Add any other preferences that need to be backed up
         // This could include senior mode settings, wake word preferences, etc.
         android.content.SharedPreferences prefs = context.getSharedPreferences("egyptian_agent_prefs", Context.MODE_PRIVATE);
@@ -135,34 +249,69 @@ public class BackupRestoreManager {
         prefsData.append("speech_rate=").append(speechRate).append("\n");
         
         // Add other preferences as needed
-        addToZip(zipOut, "preferences.txt", prefsData.toString().getBytes());
+        addText(writer, ENTRY_PREFERENCES, prefsData.toString());
+    }
+
+    /**
+     * Add the feedback log to backup
+     */
+    private void addFeedbackToBackup(BackupContainer.Writer writer) throws IOException {
+        File feedbackFile = new File(new File(context.getExternalFilesDir(null), FEEDBACK_DIRECTORY), FEEDBACK_FILE);
+        if (feedbackFile.isFile()) {
+            try (InputStream in = new FileInputStream(feedbackFile)) {
+                writer.addEntry(ENTRY_FEEDBACK, in);
+            }
+        }
+    }
+
+    /**
+     * Add the analytics event log segments to backup
+     */
+    private void addAnalyticsToBackup(BackupContainer.Writer writer) throws IOException {
+        File[] files = PrivacyCompliantAnalytics.getInstance(context).getEventLogDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile()) {
+                try (InputStream in = new FileInputStream(file)) {
+                    writer.addEntry(ENTRY_ANALYTICS_PREFIX + file.getName(), in);
+                }
+            }
+        }
     }
     
     /**
      * Add other data to backup
      */
-    private void addOtherDataToBackup(ZipOutputStream zipOut) throws IOException {
+    private void addOtherDataToBackup(BackupContainer.Writer writer) throws IOException {
         // Add any other data that needs to be backed up
         // For now, just add a timestamp
         String timestamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date());
         String data = "backup_timestamp=" + timestamp + "\n";
-        addToZip(zipOut, "metadata.txt", data.getBytes());
+        addText(writer, ENTRY_METADATA, data);
     }
     
     /**
-     * Add data to zip file
+     * Add a small text entry to the backup
      */
-    private void addToZip(ZipOutputStream zipOut, String fileName, byte[] data) throws IOException {
-        ZipEntry entry = new ZipEntry(fileName);
-        zipOut.putNextEntry(entry);
-        zipOut.write(data);
-        zipOut.closeEntry();
+    private void addText(BackupContainer.Writer writer, String name, String data) throws IOException {
+        writer.addEntry(name, new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
     }
     
     /**
-     * Restore from a backup file
+     * Restore from a backup file with this device's backup key
      */
-    public boolean restoreFromBackup(String backupFilePath) {
+    public synchronized boolean restoreFromBackup(String backupFilePath) {
+        return restoreFromBackup(backupFilePath, null);
+    }
+
+    /**
+     * Restore from a backup file, e.g. copied from another phone
+     * @param passphrase Opens the backup key next to the backup, which this device then keeps;
+     *                   null to use this device's key
+     */
+    public synchronized boolean restoreFromBackup(String backupFilePath, char[] passphrase) {
         try {
             File backupFile = new File(backupFilePath);
             if (!backupFile.exists()) {
@@ -172,7 +321,18 @@ public class BackupRestoreManager {
             }
             
             // Extract and restore the backup
-            restoreFromBackupFile(backupFile);
+            if (backupFile.getName().endsWith(LEGACY_BACKUP_FILE_EXTENSION)) {
+                restoreFromLegacyBackupFile(backupFile);
+            } else {
+                SecretKey key = passphrase != null
+                    ? BackupKeyFile.unlock(new File(getBackupDirectory(), BackupKeyFile.FILE_NAME), passphrase)
+                    : null;
+                restoreFromBackupFile(backupFile, key);
+                if (key != null) {
+                    // Later backups continue the restored store
+                    encryptionManager.storeBackupKey(key);
+                }
+            }
             
             Log.i(TAG, "Backup restored successfully from: " + backupFilePath);
             TTSManager.speak(context, "النسخة الاحتياطية اترممت بنجاح.");
@@ -187,50 +347,126 @@ public class BackupRestoreManager {
     }
     
     /**
-     * Restore from the actual backup file
+     * Restore from a container backup
+     * Every entry is read to its end, which is where its hash is checked, before any live data
+     * is touched; a corrupt or truncated backup leaves the current data as it was.
      */
-    private void restoreFromBackupFile(File backupFile) throws IOException {
-        try (ZipInputStream zipIn = new ZipInputStream(new FileInputStream(backupFile))) {
-            ZipEntry entry;
-            while ((entry = zipIn.getNextEntry()) != null) {
-                String fileName = entry.getName();
-                
-                // Read the entry content
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                StringBuilder content = new StringBuilder();
-                
-                while ((bytesRead = zipIn.read(buffer)) != -1) {
-                    content.append(new String(buffer, 0, bytesRead));
+    private void restoreFromBackupFile(File backupFile, SecretKey key) throws IOException {
+        BackupContainer container = key != null ? openContainer(key) : openContainer();
+        BackupContainer.Manifest manifest = container.readManifest(backupFile);
+
+        StagedRestore staged = new StagedRestore();
+        try {
+            for (BackupContainer.Manifest.Entry entry : manifest.entries) {
+                try (InputStream in = container.openEntry(entry)) {
+                    stageBackupEntry(staged, entry.name, in);
                 }
-                
-                // Process the entry based on its name
-                processBackupEntry(fileName, content.toString());
-                
-                zipIn.closeEntry();
             }
+            applyStagedRestore(staged);
+        } finally {
+            staged.discard();
         }
     }
-    
+
     /**
-     * Process a backup entry
+     * Restore from a zip backup written by older versions, staged the same way
      */
-    private void processBackupEntry(String fileName, String content) {
+    private void restoreFromLegacyBackupFile(File backupFile) throws IOException {
+        StagedRestore staged = new StagedRestore();
+        try {
+            try (ZipInputStream zipIn = new ZipInputStream(new FileInputStream(backupFile))) {
+                ZipEntry entry;
+                while ((entry = zipIn.getNextEntry()) != null) {
+                    // Entry readers must not close the zip stream itself
+                    stageBackupEntry(staged, entry.getName(), new FilterInputStream(zipIn) {
+                        @Override
+                        public void close() {
+                        }
+                    });
+                    zipIn.closeEntry();
+                }
+            }
+            applyStagedRestore(staged);
+        } finally {
+            staged.discard();
+        }
+    }
+
+    /**
+     * Entries read from a backup and verified, not yet applied
+     * Files are staged next to their targets so they can be renamed into place.
+     */
+    private static final class StagedRestore {
+        final Map<String, String> texts = new HashMap<>();
+        File feedback;
+        File analyticsDirectory;
+
+        // Removes whatever was not moved into place
+        void discard() {
+            if (feedback != null) {
+                feedback.delete();
+            }
+            if (analyticsDirectory != null) {
+                deleteDirectory(analyticsDirectory);
+            }
+        }
+    }
+
+    /**
+     * Reads one backup entry into the staged restore
+     */
+    private void stageBackupEntry(StagedRestore staged, String fileName, InputStream content) throws IOException {
         switch (fileName) {
-            case "emergency_contact.txt":
-                restoreEmergencyContact(content);
-                break;
-            case "guardian_info.txt":
-                restoreGuardianInfo(content);
+            case ENTRY_EMERGENCY_CONTACT:
+            case ENTRY_GUARDIAN_INFO:
+            case ENTRY_PREFERENCES:
+                staged.texts.put(fileName, readText(content));
                 break;
-            case "preferences.txt":
-                restorePreferences(content);
+            case ENTRY_FEEDBACK:
+                staged.feedback = new File(getFeedbackFile().getPath() + RESTORE_SUFFIX);
+                copyToFile(content, staged.feedback);
                 break;
             default:
+                if (fileName.startsWith(ENTRY_ANALYTICS_PREFIX)) {
+                    stageAnalyticsFile(staged, fileName.substring(ENTRY_ANALYTICS_PREFIX.length()), content);
+                }
                 // Handle other entries as needed
                 break;
         }
     }
+
+    /**
+     * Applies a fully read backup; files replace the live ones by rename
+     */
+    private void applyStagedRestore(StagedRestore staged) throws IOException {
+        String text = staged.texts.get(ENTRY_EMERGENCY_CONTACT);
+        if (text != null) {
+            restoreEmergencyContact(text);
+        }
+        text = staged.texts.get(ENTRY_GUARDIAN_INFO);
+        if (text != null) {
+            restoreGuardianInfo(text);
+        }
+        text = staged.texts.get(ENTRY_PREFERENCES);
+        if (text != null) {
+            restorePreferences(text);
+        }
+
+        if (staged.feedback != null) {
+            Files.move(staged.feedback.toPath(), getFeedbackFile().toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            staged.feedback = null;
+            Log.i(TAG, "Feedback log restored from backup");
+        }
+        if (staged.analyticsDirectory != null) {
+            replaceAnalyticsLog(staged.analyticsDirectory);
+            staged.analyticsDirectory = null;
+        }
+    }
+
+    private File getFeedbackFile() {
+        return new File(new File(context.getExternalFilesDir(null), FEEDBACK_DIRECTORY), FEEDBACK_FILE);
+    }
     
     /**
      * Restore emergency contact from backup content
@@ -257,12 +493,13 @@ public class BackupRestoreManager {
     /**
      * Restore preferences from backup content
      */
-    private void restorePreferences(String content) {
+    private void restorePreferences(String content) throws IOException {
         android.content.SharedPreferences prefs = context.getSharedPreferences("egyptian_agent_prefs", Context.MODE_PRIVATE);
         android.content.SharedPreferences.Editor editor = prefs.edit();
         
-        String[] lines = content.split("\n");
-        for (String line : lines) {
+        BufferedReader reader = new BufferedReader(new StringReader(content));
+        String line;
+        while ((line = reader.readLine()) != null) {
             if (line.startsWith("senior_mode_enabled=")) {
                 boolean enabled = Boolean.parseBoolean(line.substring("senior_mode_enabled=".length()));
                 editor.putBoolean("senior_mode_enabled", enabled);
@@ -275,18 +512,102 @@ public class BackupRestoreManager {
         editor.apply();
         Log.i(TAG, "Preferences restored from backup");
     }
+
+    /**
+     * Stages one analytics event log file in a directory beside the live log
+     */
+    private void stageAnalyticsFile(StagedRestore staged, String name, InputStream content) throws IOException {
+        if (staged.analyticsDirectory == null) {
+            File live = PrivacyCompliantAnalytics.getInstance(context).getEventLogDirectory();
+            staged.analyticsDirectory = new File(live.getPath() + RESTORE_SUFFIX);
+            deleteDirectory(staged.analyticsDirectory); // Left over from an interrupted restore
+        }
+        File target = new File(staged.analyticsDirectory, name);
+        // Entry names come from the backup, so never write outside the log directory
+        if (name.isEmpty() || !staged.analyticsDirectory.equals(target.getParentFile())) {
+            Log.w(TAG, "Skipping analytics entry with invalid name: " + name);
+            return;
+        }
+        copyToFile(content, target);
+    }
+
+    /**
+     * Closes the analytics event log and swaps the restored segments in for the live ones
+     */
+    private void replaceAnalyticsLog(File restoredDirectory) throws IOException {
+        PrivacyCompliantAnalytics analytics = PrivacyCompliantAnalytics.getInstance(context);
+        analytics.closeEventLog();
+        File live = analytics.getEventLogDirectory();
+        File old = new File(live.getPath() + ".old");
+        deleteDirectory(old);
+        if (live.exists() && !live.renameTo(old)) {
+            throw new IOException("Cannot move aside " + live);
+        }
+        if (!restoredDirectory.renameTo(live)) {
+            old.renameTo(live);
+            throw new IOException("Cannot move restored analytics into " + live);
+        }
+        deleteDirectory(old);
+        Log.i(TAG, "Analytics event log restored from backup");
+    }
+
+    /**
+     * Deletes a directory of plain files
+     */
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Streams an entry into a file, replacing it
+     */
+    private void copyToFile(InputStream in, File target) throws IOException {
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[16 * 1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * Reads a small text entry
+     */
+    private String readText(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            if (out.size() + bytesRead > MAX_TEXT_ENTRY_BYTES) {
+                throw new IOException("Backup text entry too large");
+            }
+            out.write(buffer, 0, bytesRead);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
     
     /**
-     * Get list of available backups
+     * Get list of available backups, including zip backups from older versions
      */
     public File[] getAvailableBackups() {
-        File backupDir = new File(context.getExternalFilesDir(null), BACKUP_DIRECTORY);
+        File backupDir = getBackupDirectory();
         if (!backupDir.exists()) {
             return new File[0];
         }
         
-        File[] files = backupDir.listFiles((dir, name) -> 
-            name.startsWith(BACKUP_FILE_PREFIX) && name.endsWith(BACKUP_FILE_EXTENSION));
+        File[] files = backupDir.listFiles((dir, name) -> name.startsWith(BACKUP_FILE_PREFIX)
+            && (name.endsWith(BACKUP_FILE_EXTENSION) || name.endsWith(LEGACY_BACKUP_FILE_EXTENSION)));
         
         if (files == null) {
             return new File[0];
@@ -301,12 +622,15 @@ public class BackupRestoreManager {
     /**
      * Delete a specific backup file
      */
-    public boolean deleteBackup(String backupFilePath) {
+    public synchronized boolean deleteBackup(String backupFilePath) {
         File backupFile = new File(backupFilePath);
         if (backupFile.exists()) {
             boolean deleted = backupFile.delete();
             if (deleted) {
                 Log.i(TAG, "Backup file deleted: " + backupFilePath);
+                if (backupFile.getName().endsWith(BACKUP_FILE_EXTENSION)) {
+                    deleteUnusedChunks();
+                }
                 TTSManager.speak(context, "النسخة الاحتياطية اتمسحت.");
             } else {
                 Log.e(TAG, "Failed to delete backup file: " + backupFilePath);
@@ -319,17 +643,49 @@ public class BackupRestoreManager {
             return false;
         }
     }
+
+    /**
+     * Deletes chunks that no remaining backup refers to
+     * Leaves everything in place if any backup cannot be read, since its chunks are unknown.
+     */
+    private void deleteUnusedChunks() {
+        try {
+            BackupContainer container = openContainer();
+            List<BackupContainer.Manifest> live = new ArrayList<>();
+            for (File file : getAvailableBackups()) {
+                if (file.getName().endsWith(BACKUP_FILE_EXTENSION)) {
+                    live.add(container.readManifest(file));
+                }
+            }
+            int deleted = container.collectGarbage(live);
+            Log.d(TAG, "Deleted " + deleted + " unused backup chunks");
+        } catch (IOException e) {
+            Log.w(TAG, "Skipping backup chunk cleanup", e);
+        }
+    }
     
     /**
      * Get the size of a backup file in human-readable format
      */
     public String getBackupFileSize(String backupFilePath) {
         File backupFile = new File(backupFilePath);
-        if (backupFile.exists()) {
-            long sizeBytes = backupFile.length();
+        if (!backupFile.exists()) {
+            return "N/A";
+        }
+        if (!backupFile.getName().endsWith(BACKUP_FILE_EXTENSION)) {
+            return formatFileSize(backupFile.length());
+        }
+        // Container backups share chunks, so report the data they hold
+        try {
+            long sizeBytes = 0;
+            for (BackupContainer.Manifest.Entry entry : openContainer().readManifest(backupFile).entries) {
+                sizeBytes += entry.size;
+            }
             return formatFileSize(sizeBytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read backup manifest: " + backupFilePath, e);
+            return "N/A";
         }
-        return "N/A";
     }
     
     /**
@@ -4,75 +4,124 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Background task manager for smooth UI performance
- * Handles all computationally intensive operations off the main thread
+ * Process-wide scheduler: every component submits its background work here instead of
+ * creating its own executors. Work is split into named lanes, each with a bounded
+ * priority queue and a backpressure policy. EMERGENCY tasks bypass every lane queue.
+ * The one exception is a stream loop that stays busy for as long as a device is open
+ * (microphone capture, speech playback): it would hold a lane thread indefinitely, so it
+ * gets a stream executor of its own, with threads named and placed like the lane threads.
  */
 public class BackgroundTaskManager {
     private static final String TAG = "BackgroundTaskManager";
-    
+
+    // Idle lane threads are released after this long, so quiet lanes hold no threads
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private static final int MAX_EMERGENCY_THREADS = 4;
+    // Longest a background thread waits for room in a WAIT lane before its task is dropped
+    private static final long MAX_SUBMIT_WAIT_MS = 2000;
+
+    private static BackgroundTaskManager instance;
+
     private final Context context;
     private final DeviceClassDetector.DeviceClass deviceClass;
-    
-    // Thread pools for different types of tasks
-    private final ExecutorService inferenceExecutor;      // For AI model inference
-    private final ExecutorService audioProcessingExecutor; // For audio processing
-    private final ExecutorService networkExecutor;         // For network operations
-    private final ExecutorService fileIOExecutor;          // For file I/O operations
-    private final ExecutorService generalExecutor;         // For general background tasks
-    
+
+    // One lane per task type
+    private final Map<TaskType, Lane> lanes = new EnumMap<>(TaskType.class);
+
+    // EMERGENCY work never waits behind queued work in any lane
+    private final ThreadPoolExecutor emergencyExecutor;
+    // Takes emergency work once every emergency thread is busy, so it never runs on the submitter
+    private final ThreadPoolExecutor emergencyOverflowExecutor;
+    private final AtomicLong emergencyTasksRun = new AtomicLong();
+
     // Main thread handler for UI updates
     private final Handler mainHandler;
-    
-    public BackgroundTaskManager(Context context) {
-        this.context = context;
-        this.deviceClass = ((MainApplication) context.getApplicationContext()).getDeviceClass();
-        
-        // Create thread pools based on device class
-        this.inferenceExecutor = createExecutorForDeviceClass("inference");
-        this.audioProcessingExecutor = createExecutorForDeviceClass("audio");
-        this.networkExecutor = Executors.newFixedThreadPool(getThreadPoolSize(2));
-        this.fileIOExecutor = Executors.newFixedThreadPool(getThreadPoolSize(3));
-        this.generalExecutor = createExecutorForDeviceClass("general");
-        
+
+    private BackgroundTaskManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.deviceClass = ((MainApplication) this.context).getDeviceClass();
+
+        // Create lanes based on device class
+        // Inference threads are pinned to the performance cores, so never run more than there are
+        int inferenceThreads = Math.max(1, Math.min(getThreadPoolSize(4), ThreadPlacement.getInferenceThreadCount()));
+        lanes.put(TaskType.INFERENCE, new Lane("inference", inferenceThreads, 4,
+            BackpressurePolicy.DROP_OLDEST, ThreadPlacement.Role.INFERENCE));
+        lanes.put(TaskType.AUDIO_PROCESSING, new Lane("audio", getThreadPoolSize(2), 8,
+            BackpressurePolicy.DROP_OLDEST, ThreadPlacement.Role.AUDIO_PROCESSING));
+        lanes.put(TaskType.NETWORK, new Lane("network", getThreadPoolSize(2), 16,
+            BackpressurePolicy.REJECT, ThreadPlacement.Role.BACKGROUND));
+        // Parallel chunk fetches of a download already running on the network lane
+        lanes.put(TaskType.DOWNLOAD, new Lane("download", getThreadPoolSize(3), 4,
+            BackpressurePolicy.REJECT, ThreadPlacement.Role.BACKGROUND));
+        lanes.put(TaskType.FILE_IO, new Lane("fileio", getThreadPoolSize(3), 64,
+            BackpressurePolicy.WAIT, ThreadPlacement.Role.BACKGROUND));
+        lanes.put(TaskType.GENERAL, new Lane("general", getThreadPoolSize(4), 32,
+            BackpressurePolicy.REJECT, ThreadPlacement.Role.INTERACTIVE));
+
+        // Beyond MAX_EMERGENCY_THREADS, emergency work queues (unbounded) on one overflow thread;
+        // the submitter may be the main thread, which must never run it
+        this.emergencyOverflowExecutor = new ThreadPoolExecutor(
+            1, 1,
+            IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new LaneThreadFactory("emergency-overflow", ThreadPlacement.Role.EMERGENCY),
+            (runnable, executor) -> ((PrioritizedTask<?>) runnable).drop()
+        );
+        emergencyOverflowExecutor.allowCoreThreadTimeOut(true);
+
+        // Direct hand-off: each emergency task gets a thread immediately
+        this.emergencyExecutor = new ThreadPoolExecutor(
+            0, MAX_EMERGENCY_THREADS,
+            IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(),
+            new LaneThreadFactory("emergency", ThreadPlacement.Role.EMERGENCY),
+            (runnable, executor) -> {
+                if (executor.isShutdown()) {
+                    ((PrioritizedTask<?>) runnable).drop();
+                } else {
+                    Log.w(TAG, "All emergency threads busy, queueing on the overflow thread");
+                    emergencyOverflowExecutor.execute(runnable);
+                }
+            }
+        );
+
         this.mainHandler = new Handler(Looper.getMainLooper());
-        
+
         Log.i(TAG, "BackgroundTaskManager initialized for device class: " + deviceClass.name());
     }
-    
+
     /**
-     * Creates an executor service based on device class
+     * Gets the process-wide BackgroundTaskManager
+     * @param context Context for the operation
+     * @return The BackgroundTaskManager instance
      */
-    private ExecutorService createExecutorForDeviceClass(String name) {
-        int poolSize = getThreadPoolSize(1); // Default to 1 for most tasks
-        switch (deviceClass) {
-            case LOW:
-                // For low-end devices, use minimal threads to conserve resources
-                poolSize = 1;
-                break;
-            case MID:
-                // For mid-range devices (like Honor X6c), use moderate threading
-                poolSize = 2;
-                break;
-            case HIGH:
-                // For high-end devices, use more threads
-                poolSize = 3;
-                break;
-            case ELITE:
-                // For elite devices, use maximum threads
-                poolSize = 4;
-                break;
+    public static synchronized BackgroundTaskManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new BackgroundTaskManager(context);
         }
-        
-        Log.d(TAG, "Creating " + name + " executor with pool size: " + poolSize);
-        return Executors.newFixedThreadPool(poolSize);
+        return instance;
     }
-    
+
     /**
      * Gets appropriate thread pool size based on device class
      */
@@ -90,105 +139,507 @@ public class BackgroundTaskManager {
                 return defaultSize;
         }
     }
-    
+
     /**
      * Executes an inference task (AI model processing)
      */
     public Future<?> executeInferenceTask(Runnable task) {
-        Log.d(TAG, "Executing inference task on background thread");
-        return inferenceExecutor.submit(task);
+        return executeTask(TaskType.INFERENCE, TaskPriority.NORMAL, task);
     }
-    
+
     /**
      * Executes an audio processing task
      */
     public Future<?> executeAudioProcessingTask(Runnable task) {
-        Log.d(TAG, "Executing audio processing task on background thread");
-        return audioProcessingExecutor.submit(task);
+        return executeTask(TaskType.AUDIO_PROCESSING, TaskPriority.NORMAL, task);
     }
-    
+
     /**
      * Executes a network task
      */
     public Future<?> executeNetworkTask(Runnable task) {
-        Log.d(TAG, "Executing network task on background thread");
-        return networkExecutor.submit(task);
+        return executeTask(TaskType.NETWORK, TaskPriority.NORMAL, task);
     }
-    
+
     /**
      * Executes a file I/O task
      */
     public Future<?> executeFileIOTask(Runnable task) {
-        Log.d(TAG, "Executing file I/O task on background thread");
-        return fileIOExecutor.submit(task);
+        return executeTask(TaskType.FILE_IO, TaskPriority.NORMAL, task);
     }
-    
+
     /**
      * Executes a general background task
      */
     public Future<?> executeGeneralTask(Runnable task) {
-        Log.d(TAG, "Executing general task on background thread");
-        return generalExecutor.submit(task);
+        return executeTask(TaskType.GENERAL, TaskPriority.NORMAL, task);
+    }
+
+    /**
+     * Executes a safety-critical task ahead of all queued work
+     */
+    public Future<?> executeEmergencyTask(Runnable task) {
+        return executeTask(TaskType.GENERAL, TaskPriority.EMERGENCY, task);
+    }
+
+    /**
+     * Gets an Executor that submits to a lane at the given priority
+     * Tasks the lane drops are cancelled; callers that must not lose work run it themselves
+     * when it was not started.
+     */
+    public Executor laneExecutor(TaskType taskType, TaskPriority priority) {
+        return task -> executeTask(taskType, priority, task);
     }
-    
+
+    /**
+     * Creates a single-thread executor for a stream loop that stays busy for as long as a device
+     * is open, such as microphone capture or speech playback
+     * Such a loop would hold a lane thread indefinitely. The thread exits when idle; the owner
+     * shuts the executor down when done with it.
+     * @param name Thread name, prefixed like the lane threads
+     * @param role Cores and Linux thread priority the thread runs at
+     */
+    public ExecutorService newStreamExecutor(String name, ThreadPlacement.Role role) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1,
+            IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new LaneThreadFactory(name, role)
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Posts a task to the main UI thread
      */
     public void postToUIThread(Runnable task) {
         mainHandler.post(task);
     }
-    
+
     /**
      * Posts a task to the main UI thread after a delay
      */
     public void postToUIThreadDelayed(Runnable task, long delayMillis) {
         mainHandler.postDelayed(task, delayMillis);
     }
-    
+
     /**
      * Executes a task with proper threading based on its type
      */
     public Future<?> executeTask(TaskType taskType, Runnable task) {
-        switch (taskType) {
-            case INFERENCE:
-                return executeInferenceTask(task);
-            case AUDIO_PROCESSING:
-                return executeAudioProcessingTask(task);
-            case NETWORK:
-                return executeNetworkTask(task);
-            case FILE_IO:
-                return executeFileIOTask(task);
-            case GENERAL:
-            default:
-                return executeGeneralTask(task);
+        return executeTask(taskType, TaskPriority.NORMAL, task);
+    }
+
+    /**
+     * Executes a task on the lane for its type with the given priority
+     * The task may be dropped under backpressure; use the overload taking onDropped when someone
+     * is waiting on its outcome.
+     */
+    public Future<?> executeTask(TaskType taskType, TaskPriority priority, Runnable task) {
+        return executeTask(taskType, priority, task, null);
+    }
+
+    /**
+     * Executes a task on the lane for its type, reporting back if it never runs
+     * @param onDropped Runs instead of the task when the lane rejects or evicts it, or the manager
+     *                  is shut down; runs on whichever thread dropped it
+     */
+    public Future<?> executeTask(TaskType taskType, TaskPriority priority, Runnable task, Runnable onDropped) {
+        PrioritizedTask<Void> prioritized = new PrioritizedTask<Void>(task, null, priority);
+        prioritized.onDropped = onDropped;
+        return submit(taskType, priority, prioritized);
+    }
+
+    /**
+     * Submits a task that produces a result
+     */
+    public <T> Future<T> submitTask(TaskType taskType, TaskPriority priority, Callable<T> task) {
+        return submit(taskType, priority, new PrioritizedTask<T>(task, priority));
+    }
+
+    private <T> Future<T> submit(TaskType taskType, TaskPriority priority, PrioritizedTask<T> task) {
+        if (priority == TaskPriority.EMERGENCY) {
+            emergencyTasksRun.incrementAndGet();
+            emergencyExecutor.execute(task);
+        } else {
+            lanes.get(taskType).executor.execute(task);
         }
+        return task;
     }
-    
+
     /**
-     * Task type enumeration
+     * Task type enumeration; each type is served by its own lane
      */
     public enum TaskType {
         INFERENCE,
         AUDIO_PROCESSING,
         NETWORK,
+        DOWNLOAD,
         FILE_IO,
         GENERAL
     }
-    
+
+    /**
+     * Task priority; lower ordinal runs first within a lane
+     */
+    public enum TaskPriority {
+        EMERGENCY,
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    /**
+     * What a lane does when its queue is full
+     */
+    public enum BackpressurePolicy {
+        REJECT,         // Drop the new task
+        DROP_OLDEST,    // Evict the oldest lowest-priority queued task (stale results are useless)
+        WAIT            // Make a background submitter wait briefly for room; never blocks the main thread
+    }
+
+    /**
+     * FutureTask ordered by priority, then by submission order
+     */
+    private static class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
+        final TaskPriority priority;
+        final long sequence = SEQUENCE.getAndIncrement();
+        final long enqueuedAtNanos = System.nanoTime();
+        Runnable onDropped;
+
+        PrioritizedTask(Callable<T> callable, TaskPriority priority) {
+            super(callable);
+            this.priority = priority;
+        }
+
+        PrioritizedTask(Runnable runnable, T result, TaskPriority priority) {
+            super(runnable, result);
+            this.priority = priority;
+        }
+
+        /**
+         * Cancels a task that will never run and tells its submitter
+         */
+        void drop() {
+            if (cancel(false) && onDropped != null) {
+                try {
+                    onDropped.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Dropped-task handler failed", e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Priority queue that refuses offers beyond its capacity
+     * Takes notify the queue's monitor, so a submitter can wait for room.
+     */
+    private static class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable> {
+        private final int capacity;
+
+        BoundedPriorityQueue(int capacity) {
+            super(capacity);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable task) {
+            if (size() >= capacity) {
+                return false;
+            }
+            return super.offer(task);
+        }
+
+        /**
+         * Offers a task, waiting up to the timeout for room
+         */
+        synchronized boolean offerWithin(Runnable task, long timeoutMs) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (size() >= capacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return super.offer(task);
+        }
+
+        @Override
+        public Runnable take() throws InterruptedException {
+            Runnable task = super.take();
+            signalRoom();
+            return task;
+        }
+
+        @Override
+        public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+            Runnable task = super.poll(timeout, unit);
+            if (task != null) {
+                signalRoom();
+            }
+            return task;
+        }
+
+        private synchronized void signalRoom() {
+            notifyAll();
+        }
+
+        /**
+         * Swaps the incoming task for the oldest task of the lowest priority present, if that ranks
+         * no higher than the incoming one. Both happen under the queue lock, so no other offer can
+         * take the freed slot.
+         * @return The evicted task, or null if nothing was evicted and the incoming task was not queued
+         */
+        synchronized PrioritizedTask<?> replaceLowest(PrioritizedTask<?> incoming) {
+            PrioritizedTask<?> victim = null;
+            for (Iterator<Runnable> it = iterator(); it.hasNext(); ) {
+                PrioritizedTask<?> queued = (PrioritizedTask<?>) it.next();
+                if (victim == null
+                    || queued.priority.compareTo(victim.priority) > 0
+                    || (queued.priority == victim.priority && queued.sequence < victim.sequence)) {
+                    victim = queued;
+                }
+            }
+            if (victim == null || victim.priority.compareTo(incoming.priority) < 0) {
+                return null;
+            }
+            if (!remove(victim)) {
+                return null;
+            }
+            super.offer(incoming);
+            return victim;
+        }
+    }
+
+    /**
+     * Names lane threads and places them on the lane's cores at the lane's Linux thread priority
+     */
+    private static class LaneThreadFactory implements ThreadFactory {
+        private final String laneName;
+        private final ThreadPlacement.Role role;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        LaneThreadFactory(String laneName, ThreadPlacement.Role role) {
+            this.laneName = laneName;
+            this.role = role;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                ThreadPlacement.applyToCurrentThread(role);
+                runnable.run();
+            }, "egy-" + laneName + "-" + threadCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * A named pool with a bounded priority queue, backpressure and wait-time metrics
+     */
+    private static class Lane {
+        final String name;
+        final int capacity;
+        final BackpressurePolicy policy;
+        final BoundedPriorityQueue queue;
+        final LaneExecutor executor;
+
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong waited = new AtomicLong();
+        final AtomicLong started = new AtomicLong();
+        final AtomicLong totalWaitNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+
+        Lane(String name, int poolSize, int capacity, BackpressurePolicy policy, ThreadPlacement.Role role) {
+            this.name = name;
+            this.capacity = capacity;
+            this.policy = policy;
+            this.queue = new BoundedPriorityQueue(capacity);
+            this.executor = new LaneExecutor(this, poolSize, new LaneThreadFactory(name, role));
+            Log.d(TAG, "Created " + name + " lane: threads=" + poolSize + ", capacity=" + capacity + ", policy=" + policy);
+        }
+
+        void recordStart(PrioritizedTask<?> task) {
+            long waitNanos = System.nanoTime() - task.enqueuedAtNanos;
+            started.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            long max;
+            while (waitNanos > (max = maxWaitNanos.get())) {
+                if (maxWaitNanos.compareAndSet(max, waitNanos)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Applies the lane's backpressure policy to a task that did not fit in the queue
+         */
+        void onQueueFull(Runnable runnable, ThreadPoolExecutor pool) {
+            PrioritizedTask<?> task = (PrioritizedTask<?>) runnable;
+            if (pool.isShutdown()) {
+                task.drop();
+                return;
+            }
+
+            switch (policy) {
+                case DROP_OLDEST:
+                    PrioritizedTask<?> victim = queue.replaceLowest(task);
+                    if (victim != null) {
+                        victim.drop();
+                        dropped.incrementAndGet();
+                        Log.w(TAG, name + " lane full, dropped oldest " + victim.priority + " task");
+                        return;
+                    }
+                    task.drop();
+                    dropped.incrementAndGet();
+                    Log.w(TAG, name + " lane full, dropped incoming " + task.priority + " task");
+                    break;
+                case WAIT:
+                    if (Looper.myLooper() != Looper.getMainLooper() && offerWithin(task)) {
+                        waited.incrementAndGet();
+                        return;
+                    }
+                    task.drop();
+                    rejected.incrementAndGet();
+                    Log.w(TAG, name + " lane full, rejected " + task.priority + " task");
+                    break;
+                case REJECT:
+                default:
+                    task.drop();
+                    rejected.incrementAndGet();
+                    Log.w(TAG, name + " lane full, rejected " + task.priority + " task");
+                    break;
+            }
+        }
+
+        private boolean offerWithin(PrioritizedTask<?> task) {
+            try {
+                return queue.offerWithin(task, MAX_SUBMIT_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        LaneMetrics snapshot() {
+            long startedCount = started.get();
+            return new LaneMetrics(
+                name,
+                executor.getCorePoolSize(),
+                executor.getActiveCount(),
+                queue.size(),
+                capacity,
+                executor.getCompletedTaskCount(),
+                rejected.get(),
+                dropped.get(),
+                waited.get(),
+                startedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / startedCount),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get())
+            );
+        }
+    }
+
+    private static class LaneExecutor extends ThreadPoolExecutor {
+        private final Lane lane;
+
+        LaneExecutor(Lane lane, int poolSize, ThreadFactory threadFactory) {
+            super(poolSize, poolSize, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                lane.queue, threadFactory, new LaneRejectionHandler(lane));
+            this.lane = lane;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        protected void beforeExecute(Thread thread, Runnable runnable) {
+            super.beforeExecute(thread, runnable);
+            lane.recordStart((PrioritizedTask<?>) runnable);
+        }
+    }
+
+    private static class LaneRejectionHandler implements RejectedExecutionHandler {
+        private final Lane lane;
+
+        LaneRejectionHandler(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            lane.onQueueFull(runnable, executor);
+        }
+    }
+
+    /**
+     * Gets the current queue depth of a lane
+     */
+    public int getQueueDepth(TaskType taskType) {
+        return lanes.get(taskType).queue.size();
+    }
+
     /**
      * Gets performance metrics for the background task manager
      */
     public TaskManagerMetrics getMetrics() {
-        return new TaskManagerMetrics(
-            deviceClass,
-            inferenceExecutor,
-            audioProcessingExecutor,
-            networkExecutor,
-            fileIOExecutor,
-            generalExecutor
-        );
+        Map<TaskType, LaneMetrics> laneMetrics = new EnumMap<>(TaskType.class);
+        for (Map.Entry<TaskType, Lane> entry : lanes.entrySet()) {
+            laneMetrics.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new TaskManagerMetrics(deviceClass, laneMetrics, emergencyTasksRun.get());
     }
-    
+
+    /**
+     * Point-in-time metrics for a single lane
+     */
+    public static class LaneMetrics {
+        public final String name;
+        public final int poolSize;
+        public final int activeThreads;
+        public final int queueDepth;
+        public final int queueCapacity;
+        public final long completedTasks;
+        public final long rejectedTasks;
+        public final long droppedTasks;
+        public final long waitedTasks;
+        public final long averageWaitMs;
+        public final long maxWaitMs;
+
+        public LaneMetrics(String name, int poolSize, int activeThreads, int queueDepth, int queueCapacity,
+                           long completedTasks, long rejectedTasks, long droppedTasks, long waitedTasks,
+                           long averageWaitMs, long maxWaitMs) {
+            this.name = name;
+            this.poolSize = poolSize;
+            this.activeThreads = activeThreads;
+            this.queueDepth = queueDepth;
+            this.queueCapacity = queueCapacity;
+            this.completedTasks = completedTasks;
+            this.rejectedTasks = rejectedTasks;
+            this.droppedTasks = droppedTasks;
+            this.waitedTasks = waitedTasks;
+            this.averageWaitMs = averageWaitMs;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%s{pool=%d, active=%d, queue=%d/%d, completed=%d, rejected=%d, dropped=%d, waited=%d, avgWait=%dms, maxWait=%dms}",
+                name, poolSize, activeThreads, queueDepth, queueCapacity, completedTasks,
+                rejectedTasks, droppedTasks, waitedTasks, averageWaitMs, maxWaitMs
+            );
+        }
+    }
+
     /**
      * Metrics class for task manager performance
      */
@@ -199,59 +650,59 @@ public class BackgroundTaskManager {
         public final int networkPoolSize;
         public final int fileIOPoolSize;
         public final int generalPoolSize;
-        
+        public final long emergencyTasksRun;
+        public final Map<TaskType, LaneMetrics> lanes;
+
         public TaskManagerMetrics(
             DeviceClassDetector.DeviceClass deviceClass,
-            ExecutorService inferenceExecutor,
-            ExecutorService audioExecutor,
-            ExecutorService networkExecutor,
-            ExecutorService fileIOExecutor,
-            ExecutorService generalExecutor) {
-            
+            Map<TaskType, LaneMetrics> lanes,
+            long emergencyTasksRun) {
+
             this.deviceClass = deviceClass;
-            this.inferencePoolSize = getPoolSize(inferenceExecutor);
-            this.audioPoolSize = getPoolSize(audioExecutor);
-            this.networkPoolSize = getPoolSize(networkExecutor);
-            this.fileIOPoolSize = getPoolSize(fileIOExecutor);
-            this.generalPoolSize = getPoolSize(generalExecutor);
-        }
-        
-        private static int getPoolSize(ExecutorService executor) {
-            if (executor instanceof java.util.concurrent.ThreadPoolExecutor) {
-                return ((java.util.concurrent.ThreadPoolExecutor) executor).getCorePoolSize();
-            }
-            return 1; // Default fallback
+            this.lanes = lanes;
+            this.emergencyTasksRun = emergencyTasksRun;
+            this.inferencePoolSize = lanes.get(TaskType.INFERENCE).poolSize;
+            this.audioPoolSize = lanes.get(TaskType.AUDIO_PROCESSING).poolSize;
+            this.networkPoolSize = lanes.get(TaskType.NETWORK).poolSize;
+            this.fileIOPoolSize = lanes.get(TaskType.FILE_IO).poolSize;
+            this.generalPoolSize = lanes.get(TaskType.GENERAL).poolSize;
         }
-        
+
         @Override
         public String toString() {
             return String.format(
-                "TaskManagerMetrics{deviceClass=%s, inferencePool=%d, audioPool=%d, networkPool=%d, fileIOPool=%d, generalPool=%d}",
-                deviceClass.name(), inferencePoolSize, audioPoolSize, networkPoolSize, fileIOPoolSize, generalPoolSize
+                "TaskManagerMetrics{deviceClass=%s, emergencyTasks=%d, lanes=%s}",
+                deviceClass.name(), emergencyTasksRun, lanes.values()
             );
         }
     }
-    
+
     /**
      * Cleans up resources
      */
     public void destroy() {
         Log.i(TAG, "Shutting down BackgroundTaskManager");
-        
+
         // Shutdown all executors gracefully
-        shutdownExecutor(inferenceExecutor, "inference");
-        shutdownExecutor(audioProcessingExecutor, "audio");
-        shutdownExecutor(networkExecutor, "network");
-        shutdownExecutor(fileIOExecutor, "fileIO");
-        shutdownExecutor(generalExecutor, "general");
-        
+        for (Lane lane : lanes.values()) {
+            shutdownExecutor(lane.executor, lane.name);
+        }
+        shutdownExecutor(emergencyExecutor, "emergency");
+        shutdownExecutor(emergencyOverflowExecutor, "emergency-overflow");
+
+        synchronized (BackgroundTaskManager.class) {
+            if (instance == this) {
+                instance = null;
+            }
+        }
+
         Log.i(TAG, "BackgroundTaskManager destroyed");
     }
-    
+
     /**
      * Shuts down an executor service gracefully
      */
-    private void shutdownExecutor(ExecutorService executor, String name) {
+    private void shutdownExecutor(ThreadPoolExecutor executor, String name) {
         try {
             executor.shutdown(); // Disable new tasks from being submitted
             if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
@@ -267,4 +718,4 @@ public class BackgroundTaskManager {
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+}
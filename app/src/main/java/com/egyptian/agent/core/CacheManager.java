@@ -6,9 +6,6 @@ import android.provider.ContactsContract;
 import android.util.Log;
 import android.database.Cursor;
 
-import com.egyptian.agent.stt.EgyptianNormalizer;
-
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.List;
@@ -34,7 +31,7 @@ public class CacheManager {
     private final Map<String, Long> cacheTimestamps = new ConcurrentHashMap<>();
     
     // Cache for contacts
-    private final Map<String, String> contactCache = new ConcurrentHashMap<>();
+    private final ContactIndex contactCache = new ContactIndex();
     private volatile boolean contactsLoaded = false;
     
     // Cache for previous results
@@ -106,14 +103,8 @@ public class CacheManager {
                     String number = cursor.getString(1);
                     
                     if (name != null && number != null) {
-                        // Add the original name
-                        contactCache.put(name.toLowerCase(), number);
-                        
-                        // Add normalized versions for Egyptian dialect
-                        String normalized = EgyptianNormalizer.normalizeContactName(name);
-                        if (!normalized.equals(name)) {
-                            contactCache.put(normalized.toLowerCase(), number);
-                        }
+                        // Indexed under the original and the Egyptian-normalized name
+                        contactCache.add(name, number);
                     }
                 }
                 cursor.close();
@@ -134,34 +125,7 @@ public class CacheManager {
             loadContactsToCache();
         }
         
-        if (contactName == null) {
-            return null;
-        }
-        
-        String normalizedContact = contactName.toLowerCase();
-        
-        // Try exact match first
-        String number = contactCache.get(normalizedContact);
-        if (number != null) {
-            return number;
-        }
-        
-        // Try normalized match
-        String normalized = EgyptianNormalizer.normalizeContactName(contactName).toLowerCase();
-        number = contactCache.get(normalized);
-        if (number != null) {
-            return number;
-        }
-        
-        // Try partial match
-        for (Map.Entry<String, String> entry : contactCache.entrySet()) {
-            if (entry.getKey().contains(normalizedContact) || 
-                normalizedContact.contains(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-        
-        return null;
+        return contactCache.find(contactName);
     }
     
     /**
@@ -172,7 +136,7 @@ public class CacheManager {
             loadContactsToCache();
         }
         
-        return new HashMap<>(contactCache);
+        return contactCache.toMap();
     }
     
     /**
@@ -0,0 +1,77 @@
+package com.egyptian.agent.core;
+
+import com.egyptian.agent.stt.EgyptianNormalizer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Contact Index
+ * Name to number lookup used by CacheManager, keyed by both the lower-cased and the
+ * Egyptian-normalized form of each contact name. Has no Android dependencies.
+ */
+public class ContactIndex {
+    private final Map<String, String> contacts = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a contact under its original and normalized names
+     */
+    public void add(String name, String number) {
+        contacts.put(name.toLowerCase(), number);
+
+        String normalized = EgyptianNormalizer.normalizeContactName(name);
+        if (!normalized.equals(name)) {
+            contacts.put(normalized.toLowerCase(), number);
+        }
+    }
+
+    /**
+     * Finds a number by exact, normalized, then partial name match
+     * @return The number, or null if no contact matches
+     */
+    public String find(String contactName) {
+        if (contactName == null) {
+            return null;
+        }
+
+        String lowerName = contactName.toLowerCase();
+
+        // Try exact match first
+        String number = contacts.get(lowerName);
+        if (number != null) {
+            return number;
+        }
+
+        // Try normalized match
+        String normalized = EgyptianNormalizer.normalizeContactName(contactName).toLowerCase();
+        number = contacts.get(normalized);
+        if (number != null) {
+            return number;
+        }
+
+        // Try partial match
+        for (Map.Entry<String, String> entry : contacts.entrySet()) {
+            if (entry.getKey().contains(lowerName) || lowerName.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return contacts.size();
+    }
+
+    /**
+     * Gets a copy of all indexed names and numbers
+     */
+    public Map<String, String> toMap() {
+        return new HashMap<>(contacts);
+    }
+
+    public void clear() {
+        contacts.clear();
+    }
+}
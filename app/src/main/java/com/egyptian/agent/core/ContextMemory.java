@@ -2,172 +2,459 @@ package com.egyptian.agent.core;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.AtomicFile;
 import android.util.Log;
+import com.egyptian.agent.nlp.DialogueState;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * ContextMemory - Manages contextual information across conversations
  * Stores last interactions, preferences, and conversation history
+ *
+ * State lives in typed fields and is read without locking. Changes only mark the memory
+ * dirty; a write-behind task persists everything changed within PERSIST_DELAY_MS as one
+ * atomic file write, so a command that updates several fields costs a single write.
+ * Recent turns are kept in a DialogueState, saved with the rest, to resolve follow-ups such as
+ * "كلمه تاني" or "ابعتله رسالة".
  */
 public class ContextMemory {
     private static final String TAG = "ContextMemory";
     private static final String PREFS_NAME = "context_memory_prefs";
-    
+    private static final String STATE_FILE = "context_memory.json";
+    private static final long PERSIST_DELAY_MS = 500;
+    private static final int DIALOGUE_TURNS = 16;
+    private static final long DIALOGUE_MAX_AGE_MS = 5 * 60 * 1000;
+
+    private static final String KEY_LAST_CONTACT = "last_contact";
+    private static final String KEY_LAST_APP = "last_app";
+    private static final String KEY_LAST_ACTION = "last_action";
+    private static final String KEY_LOCATION = "user_preference_location";
+    private static final String KEY_VOLUME = "user_preference_volume";
+    private static final String KEY_SENIOR_MODE = "senior_mode_enabled";
+    private static final String DEFAULT_VOLUME = "medium";
+
     private static ContextMemory instance;
-    private SharedPreferences prefs;
-    private Map<String, String> volatileMemory; // In-memory cache for quick access
-    
+    private final Context context;
+    private final AtomicFile stateFile;
+    private final BackgroundTaskManager taskManager;
+
+    private volatile String lastContact = "";
+    private volatile String lastApp = "";
+    private volatile String lastAction = "";
+    private volatile String preferredLocation = "";
+    private volatile String preferredVolume = DEFAULT_VOLUME;
+    private volatile boolean seniorModeEnabled;
+    private final Map<String, String> extras = new ConcurrentHashMap<>();
+    private final DialogueState dialogue = new DialogueState(DIALOGUE_TURNS, DIALOGUE_MAX_AGE_MS);
+
+    // Incremented on every change; the persister writes when it is ahead of what was saved
+    private long version;
+    private long savedVersion;
+    private final AtomicBoolean persistScheduled = new AtomicBoolean();
+    private final Object writeLock = new Object();
+
     private ContextMemory(Context context) {
-        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-        volatileMemory = new HashMap<>();
-        
-        // Load persistent values into volatile memory
+        this.context = context;
+        this.stateFile = new AtomicFile(new File(context.getFilesDir(), STATE_FILE));
+        this.taskManager = BackgroundTaskManager.getInstance(context);
+
+        // Load persistent values into memory
         loadPersistentMemory();
     }
-    
+
     public static synchronized ContextMemory getInstance(Context context) {
         if (instance == null) {
             instance = new ContextMemory(context.getApplicationContext());
         }
         return instance;
     }
-    
+
     /**
-     * Loads persistent memory values into volatile memory
+     * Loads the state file, or migrates values from the SharedPreferences used before it
      */
     private void loadPersistentMemory() {
-        volatileMemory.put("last_contact", prefs.getString("last_contact", ""));
-        volatileMemory.put("last_app", prefs.getString("last_app", ""));
-        volatileMemory.put("last_action", prefs.getString("last_action", ""));
-        volatileMemory.put("user_preference_location", prefs.getString("user_preference_location", ""));
-        volatileMemory.put("user_preference_volume", prefs.getString("user_preference_volume", "medium"));
-        volatileMemory.put("senior_mode_enabled", prefs.getString("senior_mode_enabled", "false"));
+        try {
+            byte[] bytes = stateFile.readFully();
+            readState(new JSONObject(new String(bytes, StandardCharsets.UTF_8)));
+            return;
+        } catch (FileNotFoundException e) {
+            // First run with the state file
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Corrupt context memory, starting fresh", e);
+            return;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (prefs.getAll().isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            lastContact = prefs.getString(KEY_LAST_CONTACT, "");
+            lastApp = prefs.getString(KEY_LAST_APP, "");
+            lastAction = prefs.getString(KEY_LAST_ACTION, "");
+            preferredLocation = prefs.getString(KEY_LOCATION, "");
+            preferredVolume = prefs.getString(KEY_VOLUME, DEFAULT_VOLUME);
+            seniorModeEnabled = Boolean.parseBoolean(prefs.getString(KEY_SENIOR_MODE, "false"));
+            version++;
+        }
+        if (flush()) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    private synchronized void readState(JSONObject json) throws JSONException {
+        lastContact = json.optString(KEY_LAST_CONTACT, "");
+        lastApp = json.optString(KEY_LAST_APP, "");
+        lastAction = json.optString(KEY_LAST_ACTION, "");
+        preferredLocation = json.optString(KEY_LOCATION, "");
+        preferredVolume = json.optString(KEY_VOLUME, DEFAULT_VOLUME);
+        seniorModeEnabled = json.optBoolean(KEY_SENIOR_MODE, false);
+
+        JSONObject extrasJson = json.optJSONObject("extras");
+        if (extrasJson != null) {
+            Iterator<String> keys = extrasJson.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                extras.put(key, extrasJson.getString(key));
+            }
+        }
+
+        // Stored newest first
+        JSONArray turnsJson = json.optJSONArray("turns");
+        if (turnsJson != null) {
+            List<DialogueState.Turn> turns = new ArrayList<>();
+            for (int i = 0; i < turnsJson.length(); i++) {
+                JSONObject turn = turnsJson.getJSONObject(i);
+                IntentType intent;
+                try {
+                    intent = IntentType.valueOf(turn.optString("intent"));
+                } catch (IllegalArgumentException e) {
+                    continue; // Intent no longer exists
+                }
+                Map<String, String> entities = new HashMap<>();
+                JSONObject entitiesJson = turn.optJSONObject("entities");
+                if (entitiesJson != null) {
+                    Iterator<String> entityKeys = entitiesJson.keys();
+                    while (entityKeys.hasNext()) {
+                        String key = entityKeys.next();
+                        entities.put(key, entitiesJson.getString(key));
+                    }
+                }
+                turns.add(new DialogueState.Turn(intent, entities, turn.optLong("time")));
+            }
+            dialogue.restore(turns);
+        }
     }
-    
+
+    private synchronized JSONObject writeState() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(KEY_LAST_CONTACT, lastContact);
+        json.put(KEY_LAST_APP, lastApp);
+        json.put(KEY_LAST_ACTION, lastAction);
+        json.put(KEY_LOCATION, preferredLocation);
+        json.put(KEY_VOLUME, preferredVolume);
+        json.put(KEY_SENIOR_MODE, seniorModeEnabled);
+        json.put("extras", new JSONObject(extras));
+
+        JSONArray turnsJson = new JSONArray();
+        for (DialogueState.Turn turn : dialogue.getTurns()) {
+            turnsJson.put(new JSONObject()
+                .put("intent", turn.intent.name())
+                .put("time", turn.timeMillis)
+                .put("entities", new JSONObject(turn.getEntities())));
+        }
+        json.put("turns", turnsJson);
+        return json;
+    }
+
     /**
-     * Saves volatile memory to persistent storage
+     * Marks the memory changed and schedules one write for everything changed until it runs
+     * Callers hold the lock
      */
-    private void saveToPersistentStorage() {
-        SharedPreferences.Editor editor = prefs.edit();
-        
-        for (Map.Entry<String, String> entry : volatileMemory.entrySet()) {
-            editor.putString(entry.getKey(), entry.getValue());
+    private void markDirty() {
+        version++;
+        if (persistScheduled.compareAndSet(false, true)) {
+            taskManager.postToUIThreadDelayed(() ->
+                taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO,
+                    BackgroundTaskManager.TaskPriority.LOW, () -> {
+                        persistScheduled.set(false);
+                        flush();
+                    }, () -> persistScheduled.set(false)), PERSIST_DELAY_MS);
         }
-        
-        editor.apply();
     }
-    
+
+    /**
+     * Writes pending changes now, replacing the state file atomically
+     * @return true if the file is up to date
+     */
+    public boolean flush() {
+        synchronized (writeLock) {
+            long snapshotVersion;
+            byte[] bytes;
+            synchronized (this) {
+                if (version == savedVersion) {
+                    return true;
+                }
+                snapshotVersion = version;
+                try {
+                    bytes = writeState().toString().getBytes(StandardCharsets.UTF_8);
+                } catch (JSONException e) {
+                    Log.e(TAG, "Failed to serialize context memory", e);
+                    return false;
+                }
+            }
+
+            FileOutputStream out = null;
+            try {
+                out = stateFile.startWrite();
+                out.write(bytes);
+                stateFile.finishWrite(out);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save context memory", e);
+                if (out != null) {
+                    stateFile.failWrite(out);
+                }
+                return false;
+            }
+
+            synchronized (this) {
+                savedVersion = Math.max(savedVersion, snapshotVersion);
+            }
+            return true;
+        }
+    }
+
     /**
      * Gets a value from context memory
      */
     public String getValue(String key) {
-        return volatileMemory.getOrDefault(key, "");
+        switch (key) {
+            case KEY_LAST_CONTACT:
+                return lastContact;
+            case KEY_LAST_APP:
+                return lastApp;
+            case KEY_LAST_ACTION:
+                return lastAction;
+            case KEY_LOCATION:
+                return preferredLocation;
+            case KEY_VOLUME:
+                return preferredVolume;
+            case KEY_SENIOR_MODE:
+                return Boolean.toString(seniorModeEnabled);
+            default:
+                String value = extras.get(key);
+                return value != null ? value : "";
+        }
     }
-    
+
     /**
      * Sets a value in context memory
      */
-    public void setValue(String key, String value) {
-        volatileMemory.put(key, value);
-        // Also save to persistent storage
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putString(key, value);
-        editor.apply();
+    public synchronized void setValue(String key, String value) {
+        String safeValue = value != null ? value : "";
+        switch (key) {
+            case KEY_LAST_CONTACT:
+                lastContact = safeValue;
+                break;
+            case KEY_LAST_APP:
+                lastApp = safeValue;
+                break;
+            case KEY_LAST_ACTION:
+                lastAction = safeValue;
+                break;
+            case KEY_LOCATION:
+                preferredLocation = safeValue;
+                break;
+            case KEY_VOLUME:
+                preferredVolume = safeValue;
+                break;
+            case KEY_SENIOR_MODE:
+                seniorModeEnabled = Boolean.parseBoolean(safeValue);
+                break;
+            default:
+                extras.put(key, safeValue);
+        }
+        markDirty();
     }
-    
+
     /**
      * Gets the last mentioned contact
      */
     public String getLastContact() {
-        return getValue("last_contact");
+        return lastContact;
     }
-    
+
     /**
      * Sets the last mentioned contact
      */
     public void setLastContact(String contact) {
-        setValue("last_contact", contact);
+        setValue(KEY_LAST_CONTACT, contact);
     }
-    
+
     /**
      * Gets the last used app
      */
     public String getLastApp() {
-        return getValue("last_app");
+        return lastApp;
     }
-    
+
     /**
      * Sets the last used app
      */
     public void setLastApp(String app) {
-        setValue("last_app", app);
+        setValue(KEY_LAST_APP, app);
     }
-    
+
     /**
      * Gets the last performed action
      */
     public String getLastAction() {
-        return getValue("last_action");
+        return lastAction;
     }
-    
+
     /**
      * Sets the last performed action
      */
     public void setLastAction(String action) {
-        setValue("last_action", action);
+        setValue(KEY_LAST_ACTION, action);
     }
-    
+
+    public String getPreferredVolume() {
+        return preferredVolume;
+    }
+
+    public boolean isSeniorModeEnabled() {
+        return seniorModeEnabled;
+    }
+
     /**
      * Clears all context memory
      */
-    public void clearAll() {
-        volatileMemory.clear();
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.clear();
-        editor.apply();
-        
-        // Reinitialize with defaults
-        loadPersistentMemory();
+    public synchronized void clearAll() {
+        lastContact = "";
+        lastApp = "";
+        lastAction = "";
+        preferredLocation = "";
+        preferredVolume = DEFAULT_VOLUME;
+        seniorModeEnabled = false;
+        extras.clear();
+        dialogue.clear();
+        markDirty();
     }
-    
+
     /**
-     * Updates context based on current interaction
+     * Updates context based on current interaction, recording it as one turn and one write
      */
-    public void updateContext(String intent, String entity, String value) {
+    public synchronized void updateContext(String intent, String entity, String value) {
         switch (intent.toLowerCase()) {
             case "call_person":
-                setLastContact(value);
-                setLastAction("call");
+                recordTurn(IntentType.CALL_CONTACT, DialogueState.CONTACT, value);
                 break;
             case "send_msg":
+                recordTurn(IntentType.SEND_WHATSAPP, DialogueState.CONTACT, value);
+                break;
             case "send_voice":
-                setLastContact(value);
-                setLastAction("message");
+                recordTurn(IntentType.SEND_VOICE_MESSAGE, DialogueState.CONTACT, value);
                 break;
             case "play_music":
             case "play_quran":
-                setLastApp(entity); // Could be artist, song, etc.
-                setLastAction("media");
+                lastApp = entity; // Could be artist, song, etc.
+                lastAction = "media";
+                markDirty();
                 break;
             case "open_app":
-                setLastApp(value);
-                setLastAction("open_app");
+                recordTurn(IntentType.OPEN_APP, DialogueState.APP, value);
                 break;
             default:
                 Log.d(TAG, "Unknown intent for context update: " + intent);
         }
     }
-    
+
+    private void recordTurn(IntentType intent, String entityType, String value) {
+        Map<String, String> entities = new HashMap<>();
+        entities.put(entityType, value);
+        recordTurn(intent, entities);
+    }
+
+    /**
+     * Records a handled command: updates the last contact, app and action, and adds a
+     * dialogue turn, persisted as one write
+     */
+    public void recordTurn(IntentResult result) {
+        recordTurn(result.getIntentType(), result.getEntities());
+    }
+
+    private synchronized void recordTurn(IntentType intent, Map<String, String> entities) {
+        String contact = entities.get(DialogueState.CONTACT);
+        if (contact != null && !contact.isEmpty()) {
+            lastContact = contact;
+        }
+        String app = entities.get(DialogueState.APP);
+        if (app != null && !app.isEmpty()) {
+            lastApp = app;
+        }
+        String action = actionFor(intent);
+        if (action != null) {
+            lastAction = action;
+        }
+        dialogue.record(intent, entities, System.currentTimeMillis());
+        markDirty();
+    }
+
+    private static String actionFor(IntentType intent) {
+        switch (intent) {
+            case CALL_CONTACT:
+                return "call";
+            case SEND_WHATSAPP:
+            case SEND_SMS:
+            case SEND_VOICE_MESSAGE:
+                return "message";
+            case OPEN_APP:
+                return "open_app";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the recent dialogue turns, for resolving follow-up commands
+     */
+    public DialogueState getDialogueState() {
+        return dialogue;
+    }
+
     /**
      * Gets context summary for debugging
      */
-    public String getContextSummary() {
+    public synchronized String getContextSummary() {
         StringBuilder sb = new StringBuilder();
         sb.append("Context Memory Summary:\n");
-        for (Map.Entry<String, String> entry : volatileMemory.entrySet()) {
+        sb.append(KEY_LAST_CONTACT).append(": ").append(lastContact).append("\n");
+        sb.append(KEY_LAST_APP).append(": ").append(lastApp).append("\n");
+        sb.append(KEY_LAST_ACTION).append(": ").append(lastAction).append("\n");
+        sb.append(KEY_LOCATION).append(": ").append(preferredLocation).append("\n");
+        sb.append(KEY_VOLUME).append(": ").append(preferredVolume).append("\n");
+        sb.append(KEY_SENIOR_MODE).append(": ").append(seniorModeEnabled).append("\n");
+        for (Map.Entry<String, String> entry : extras.entrySet()) {
             sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
         }
+        sb.append("turns: ").append(dialogue.getTurns().size()).append("\n");
         return sb.toString();
     }
-}
\ No newline at end of file
+}
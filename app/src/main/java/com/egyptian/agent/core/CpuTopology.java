@@ -0,0 +1,194 @@
+package com.egyptian.agent.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * CPU topology read from /sys/devices/system/cpu
+ * Splits the online cores into performance and efficiency classes on big.LITTLE SoCs
+ * (e.g. Helio G81: 2x Cortex-A75 + 6x Cortex-A55)
+ */
+public final class CpuTopology {
+    static final String SYSFS_CPU_ROOT = "/sys/devices/system/cpu";
+    private static final Pattern CPU_DIR = Pattern.compile("cpu[0-9]+");
+
+    private static volatile CpuTopology current;
+
+    private final int[] allCores;
+    private final int[] performanceCores;
+    private final int[] efficiencyCores;
+
+    private CpuTopology(int[] allCores, int[] performanceCores, int[] efficiencyCores) {
+        this.allCores = allCores;
+        this.performanceCores = performanceCores;
+        this.efficiencyCores = efficiencyCores;
+    }
+
+    /**
+     * Gets the topology of this device, parsed once
+     */
+    public static CpuTopology get() {
+        if (current == null) {
+            synchronized (CpuTopology.class) {
+                if (current == null) {
+                    current = parse(new File(SYSFS_CPU_ROOT));
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Parses a sysfs cpu directory
+     * Cores are ranked by cpu_capacity, falling back to cpufreq/cpuinfo_max_freq; every core
+     * faster than the slowest class is a performance core. Unreadable or uniform topologies
+     * report all cores in both classes.
+     * @param root Directory laid out like /sys/devices/system/cpu
+     */
+    public static CpuTopology parse(File root) {
+        int[] cores = parseCpuList(readLine(new File(root, "online")));
+        if (cores.length == 0) {
+            cores = listCpuDirectories(root);
+        }
+        if (cores.length == 0) {
+            int count = Math.max(1, Runtime.getRuntime().availableProcessors());
+            cores = new int[count];
+            for (int i = 0; i < count; i++) {
+                cores[i] = i;
+            }
+            return new CpuTopology(cores, cores, cores);
+        }
+
+        long[] ranks = new long[cores.length];
+        long minRank = Long.MAX_VALUE;
+        long maxRank = Long.MIN_VALUE;
+        for (int i = 0; i < cores.length; i++) {
+            ranks[i] = readCoreRank(root, cores[i]);
+            minRank = Math.min(minRank, ranks[i]);
+            maxRank = Math.max(maxRank, ranks[i]);
+        }
+
+        if (minRank <= 0 || minRank == maxRank) {
+            return new CpuTopology(cores, cores, cores);
+        }
+
+        List<Integer> performance = new ArrayList<>();
+        List<Integer> efficiency = new ArrayList<>();
+        for (int i = 0; i < cores.length; i++) {
+            if (ranks[i] > minRank) {
+                performance.add(cores[i]);
+            } else {
+                efficiency.add(cores[i]);
+            }
+        }
+        return new CpuTopology(cores, toArray(performance), toArray(efficiency));
+    }
+
+    /**
+     * Parses a kernel cpu list such as "0-3,6,7"
+     */
+    public static int[] parseCpuList(String list) {
+        if (list == null || list.trim().isEmpty()) {
+            return new int[0];
+        }
+
+        List<Integer> cpus = new ArrayList<>();
+        for (String part : list.trim().split(",")) {
+            try {
+                int dash = part.indexOf('-');
+                if (dash < 0) {
+                    cpus.add(Integer.parseInt(part.trim()));
+                } else {
+                    int from = Integer.parseInt(part.substring(0, dash).trim());
+                    int to = Integer.parseInt(part.substring(dash + 1).trim());
+                    for (int cpu = from; cpu <= to; cpu++) {
+                        cpus.add(cpu);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                // Skip malformed ranges
+            }
+        }
+        return toArray(cpus);
+    }
+
+    private static long readCoreRank(File root, int cpu) {
+        File cpuDir = new File(root, "cpu" + cpu);
+        long capacity = parseLong(readLine(new File(cpuDir, "cpu_capacity")));
+        if (capacity > 0) {
+            return capacity;
+        }
+        return parseLong(readLine(new File(cpuDir, "cpufreq/cpuinfo_max_freq")));
+    }
+
+    private static int[] listCpuDirectories(File root) {
+        File[] dirs = root.listFiles(file -> CPU_DIR.matcher(file.getName()).matches());
+        if (dirs == null) {
+            return new int[0];
+        }
+        int[] cpus = new int[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            cpus[i] = Integer.parseInt(dirs[i].getName().substring(3));
+        }
+        Arrays.sort(cpus);
+        return cpus;
+    }
+
+    private static String readLine(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            return reader.readLine();
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the SoC has distinct performance and efficiency cores
+     */
+    public boolean isHeterogeneous() {
+        return performanceCores.length < allCores.length;
+    }
+
+    public int[] getAllCores() {
+        return allCores.clone();
+    }
+
+    public int[] getPerformanceCores() {
+        return performanceCores.clone();
+    }
+
+    public int[] getEfficiencyCores() {
+        return efficiencyCores.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "CpuTopology{performance=" + Arrays.toString(performanceCores) +
+               ", efficiency=" + Arrays.toString(efficiencyCores) + "}";
+    }
+}
@@ -5,8 +5,6 @@ import android.util.Log;
 import java.io.File;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Gemma2 2B Q4 model integration for NLU/intent processing
@@ -20,12 +18,13 @@ public class Gemma2NLUProcessor {
     private final DeviceClassDetector.DeviceClass deviceClass;
     
     private boolean isModelLoaded = false;
-    private final ExecutorService inferenceExecutor = Executors.newSingleThreadExecutor();
+    private final BackgroundTaskManager taskManager;
     
     public Gemma2NLUProcessor(Context context, String modelPath) {
         this.context = context;
         this.modelPath = modelPath;
         this.deviceClass = ((MainApplication) context.getApplicationContext()).getDeviceClass();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
         
         Log.i(TAG, "Gemma2 NLU Processor initialized for device class: " + deviceClass.name() + 
               " with model: " + modelPath);
@@ -61,8 +60,8 @@ public class Gemma2NLUProcessor {
             return;
         }
         
-        // Submit inference task to executor
-        inferenceExecutor.submit(() -> {
+        // Submit inference task to the shared inference lane
+        taskManager.executeTask(BackgroundTaskManager.TaskType.INFERENCE, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.d(TAG, "Processing text with Gemma2: " + inputText);
                 
@@ -388,7 +387,6 @@ public class Gemma2NLUProcessor {
      * Cleans up resources
      */
     public void destroy() {
-        inferenceExecutor.shutdown();
         isModelLoaded = false;
         Log.i(TAG, "Gemma2 NLU Processor destroyed");
     }
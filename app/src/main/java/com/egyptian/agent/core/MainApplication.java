@@ -10,6 +10,7 @@ import com.egyptian.agent.backup.BackupRestoreManager;
 import com.egyptian.agent.feedback.UserFeedbackSystem;
 import com.egyptian.agent.performance.HonorX6cPerformanceOptimizer;
 import com.egyptian.agent.core.DeviceClassDetector;
+import com.egyptian.agent.updates.ModelDownloadManager;
 
 public class MainApplication extends Application {
 
@@ -74,6 +75,9 @@ public class MainApplication extends Application {
         DeviceClassDetector.ModelConfiguration config =
             DeviceClassDetector.getRecommendedModelConfig(deviceClass);
         Log.i(TAG, "Recommended model configuration: " + config.toString());
+
+        // Finish model downloads interrupted when the process last stopped
+        ModelDownloadManager.getInstance(this).resumePendingDownloads();
     }
 
     @Override
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.egyptian.agent.core.DeviceClassDetector;
+import com.egyptian.agent.updates.ModelDownloadManager;
 
 import java.io.File;
 
@@ -76,12 +77,18 @@ public class ModelManager {
 
     /**
      * Gets the Llama model path based on device class
-     * @return The Llama model path
+     * @return An absolute path if the model was downloaded, else its asset path
      */
     public String getLlamaModelPath() {
         // Return the Llama 3.2 3B Q4_K_M model
         String modelPath = "model/llama-3.2-3b-Q4_K_M.gguf";
 
+        // A downloaded model takes precedence over one bundled in the APK
+        File downloaded = ModelDownloadManager.getInstance(context).getModelFile(new File(modelPath).getName());
+        if (downloaded != null) {
+            return downloaded.getAbsolutePath();
+        }
+
         // Check if model exists in assets
         if (modelExists(modelPath)) {
             return modelPath;
@@ -114,8 +121,8 @@ public class ModelManager {
     public void initializeModels(ModelInitializationCallback callback) {
         Log.i(TAG, "Initializing models for device class: " + deviceClass.name());
 
-        // Simulate initialization process
-        new Thread(() -> {
+        // Model loading runs on the file I/O lane at high priority so it is never dropped
+        BackgroundTaskManager.getInstance(context).executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.d(TAG, "Starting model initialization...");
 
@@ -139,7 +146,7 @@ public class ModelManager {
                 Log.e(TAG, "Error initializing models", e);
                 callback.onError(e);
             }
-        }).start();
+        });
     }
 
     /**
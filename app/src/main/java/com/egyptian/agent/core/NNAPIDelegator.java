@@ -4,14 +4,11 @@ import android.content.Context;
 import android.os.Build;
 import android.system.Os;
 import android.util.Log;
-import android.os.Process;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * NNAPI delegation manager for Helio G81 NPU acceleration
@@ -25,7 +22,6 @@ public class NNAPIDelegator {
     
     private boolean isNNAPISupported = false;
     private boolean isInitialized = false;
-    private final ExecutorService nnapiExecutor = Executors.newSingleThreadExecutor();
     
     public NNAPIDelegator(Context context) {
         this.context = context;
@@ -129,17 +125,12 @@ public class NNAPIDelegator {
     
     /**
      * Sets CPU binding for optimal performance on Helio G81
+     * Helio G81 has 2x ARM Cortex-A75 + 6x ARM Cortex-A55 cores. Binding is per thread: the
+     * inference lane pins its own threads to the performance cores, so the caller is left alone.
      */
     private void setCPUBindingForHelioG81() {
-        // Helio G81 has 2x ARM Cortex-A75 + 6x ARM Cortex-A55 cores
-        // Bind to performance cores for AI tasks
-        try {
-            // This is a simplified approach - in practice, you'd use more sophisticated CPU affinity
-            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
-            Log.d(TAG, "Set thread priority for Helio G81 performance");
-        } catch (Exception e) {
-            Log.w(TAG, "Could not set thread priority", e);
-        }
+        CpuTopology topology = CpuTopology.get();
+        Log.d(TAG, "Inference threads bound to performance cores: " + topology);
     }
     
     /**
@@ -241,7 +232,6 @@ public class NNAPIDelegator {
      * Cleans up resources
      */
     public void destroy() {
-        nnapiExecutor.shutdown();
         isInitialized = false;
         Log.i(TAG, "NNAPI Delegator destroyed");
     }
@@ -2,181 +2,281 @@ package com.egyptian.agent.core;
 
 import android.content.Context;
 import android.util.Log;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.pytorch.IValue;
 import org.pytorch.Module;
 import org.pytorch.Tensor;
-import org.pytorch.torchvision.TensorImageUtils;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import java.nio.FloatBuffer;
-import java.util.Map;
-import java.util.HashMap;
 
 /**
  * OpenPhoneModel - Integrates with the OpenPhone-3B model for local AI processing
  * Handles model loading, inference, and management for Egyptian dialect understanding
+ *
+ * The TorchScript model in model/openphone-3b is a joint intent and slot classifier:
+ *   forward(input_ids: int64[1, 64], attention_mask: int64[1, 64])
+ *     -> (intent_logits: float[1, intents], slot_logits: float[1, 64, slot_tags])
+ * vocab.txt holds its WordPiece vocabulary and labels.txt its label names, one per line as
+ * "intent NAME" (an IntentType) or "slot TAG" (O, B-entity or I-entity), in output order.
+ * Input tensors are allocated once and refilled for every call.
  */
 public class OpenPhoneModel {
     private static final String TAG = "OpenPhoneModel";
-    
+    private static final String MODEL_DIR = "model/openphone-3b/";
+    private static final int MAX_SEQUENCE_LENGTH = 64;
+
     private Module torchModule;
     private Context context;
-    private boolean isModelLoaded = false;
-    
+    // Set after torchModule and cleared before it is destroyed, so isReady needs no lock
+    private volatile boolean isModelLoaded = false;
+
+    private WordPieceTokenizer tokenizer;
+    private IntentType[] intentLabels;
+    // Per slot tag: entity name, or null for O; and whether the tag begins an entity
+    private String[] slotEntities;
+    private boolean[] slotBegins;
+
+    // Reused across calls; guarded by this
+    private final long[] tokenIds = new long[MAX_SEQUENCE_LENGTH];
+    private final int[] tokenWords = new int[MAX_SEQUENCE_LENGTH];
+    private final List<String> words = new ArrayList<>(MAX_SEQUENCE_LENGTH);
+    private final StringBuilder entityText = new StringBuilder();
+    private final LongBuffer inputIdsBuffer = Tensor.allocateLongBuffer(MAX_SEQUENCE_LENGTH);
+    private final LongBuffer attentionMaskBuffer = Tensor.allocateLongBuffer(MAX_SEQUENCE_LENGTH);
+    private final IValue[] inputs = {
+        IValue.from(Tensor.fromBlob(inputIdsBuffer, new long[]{1, MAX_SEQUENCE_LENGTH})),
+        IValue.from(Tensor.fromBlob(attentionMaskBuffer, new long[]{1, MAX_SEQUENCE_LENGTH}))
+    };
+
     public OpenPhoneModel(Context context, String modelAssetName) {
         this.context = context;
         loadModel(modelAssetName);
     }
-    
+
     /**
-     * Loads the PyTorch model from assets
+     * Loads the PyTorch model, vocabulary and labels from assets
      */
     private void loadModel(String modelAssetName) {
         try {
+            try (InputStream vocab = context.getAssets().open(MODEL_DIR + "vocab.txt")) {
+                tokenizer = WordPieceTokenizer.load(vocab);
+            }
+            loadLabels();
+
             // Construct the model file path
             String modelPath = getModelPath(modelAssetName);
-            
+
             // Load the model
             torchModule = Module.load(modelPath);
             isModelLoaded = true;
-            
-            Log.i(TAG, "OpenPhone model loaded successfully from: " + modelPath);
+
+            Log.i(TAG, "OpenPhone model loaded successfully from: " + modelPath + " (" +
+                  intentLabels.length + " intents, " + slotEntities.length + " slot tags, " +
+                  tokenizer.getVocabularySize() + " tokens)");
         } catch (Exception e) {
             Log.e(TAG, "Failed to load OpenPhone model", e);
             isModelLoaded = false;
         }
     }
-    
+
+    private void loadLabels() throws IOException {
+        List<IntentType> intents = new ArrayList<>();
+        List<String> slotTags = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                context.getAssets().open(MODEL_DIR + "labels.txt"), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("intent ")) {
+                    intents.add(IntentType.fromOpenPhoneString(line.substring(7).trim()));
+                } else if (line.startsWith("slot ")) {
+                    slotTags.add(line.substring(5).trim());
+                }
+            }
+        }
+        if (intents.isEmpty() || slotTags.isEmpty()) {
+            throw new IOException("labels.txt needs intent and slot labels");
+        }
+
+        intentLabels = intents.toArray(new IntentType[0]);
+        slotEntities = new String[slotTags.size()];
+        slotBegins = new boolean[slotTags.size()];
+        for (int i = 0; i < slotTags.size(); i++) {
+            String tag = slotTags.get(i);
+            if (tag.startsWith("B-") || tag.startsWith("I-")) {
+                slotEntities[i] = tag.substring(2);
+                slotBegins[i] = tag.charAt(0) == 'B';
+            }
+        }
+    }
+
     /**
-     * Gets the model path, downloading if necessary
+     * Gets the model path, copying it out of assets on first use
      */
     private String getModelPath(String modelAssetName) throws IOException {
         // First check if model exists in internal storage
         File modelFile = new File(context.getFilesDir(), modelAssetName + ".pt");
-        
+
         if (!modelFile.exists()) {
             // Copy model from assets to internal storage
-            InputStream inputStream = context.getAssets().open("model/openphone-3b/model.pt");
-            FileOutputStream outputStream = new FileOutputStream(modelFile);
-            
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            try (InputStream inputStream = context.getAssets().open(MODEL_DIR + "model.pt");
+                 FileOutputStream outputStream = new FileOutputStream(modelFile)) {
+                byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, bytesRead);
+                }
             }
-            
-            inputStream.close();
-            outputStream.close();
-            
+
             Log.i(TAG, "Model copied to internal storage: " + modelFile.getAbsolutePath());
         }
-        
+
         return modelFile.getAbsolutePath();
     }
-    
+
     /**
-     * Performs inference on the input text
+     * Classifies the input text and extracts its entities
+     * @return The intent with its softmax probability as confidence, or UNKNOWN with zero
+     *         confidence if the model is unavailable
      */
-    public Map<String, Object> analyze(String inputText) {
-        if (!isModelLoaded) {
+    public synchronized IntentResult analyze(String inputText) {
+        if (!isReady()) {
             Log.e(TAG, "Model not loaded, returning fallback result");
             return createFallbackResult(inputText);
         }
-        
+
         try {
-            // Prepare input for the model
-            // This is a simplified representation - in reality, you'd need proper tokenization
-            // for the specific model architecture
-            Tensor inputTensor = prepareInput(inputText);
-            
+            int length = prepareInput(inputText);
+
             // Perform inference
-            IValue[] outputTuple = torchModule.forward(IValue.from(inputTensor)).toList();
-            
-            // Process the output
-            Map<String, Object> result = processOutput(outputTuple);
-            
-            Log.d(TAG, "Model analysis completed for: " + inputText);
+            IValue[] outputs = torchModule.forward(inputs).toTuple();
+
+            IntentResult result = processOutput(outputs, length);
+            Log.d(TAG, "Model analysis completed for: " + inputText + " -> " + result);
             return result;
-            
         } catch (Exception e) {
             Log.e(TAG, "Error during model inference", e);
             return createFallbackResult(inputText);
         }
     }
-    
+
     /**
-     * Prepares input tensor for the model
+     * Tokenizes the input into the reused input tensors
+     * @return Number of tokens before padding
      */
-    private Tensor prepareInput(String inputText) {
-        // Tokenizing the input text
-        // Converting tokens to IDs
-        // Creating attention masks
-        // Converting to appropriate tensor format
-
-        // For now, we'll create a dummy tensor
-        // This is just placeholder code - real implementation would depend on model architecture
-        float[] dummyInput = new float[512]; // Assuming sequence length of 512
-        for (int i = 0; i < Math.min(inputText.length(), 512); i++) {
-            dummyInput[i] = inputText.charAt(i);
-        }
+    private int prepareInput(String inputText) {
+        int length = tokenizer.encode(inputText, tokenIds, tokenWords, words);
 
-        return Tensor.fromBlob(dummyInput, new long[]{1, 512});
+        inputIdsBuffer.clear();
+        inputIdsBuffer.put(tokenIds);
+        attentionMaskBuffer.clear();
+        for (int i = 0; i < MAX_SEQUENCE_LENGTH; i++) {
+            attentionMaskBuffer.put(i < length ? 1L : 0L);
+        }
+        return length;
     }
-    
+
     /**
-     * Processes the model output
+     * Decodes the intent and BIO slot logits straight into an IntentResult
      */
-    private Map<String, Object> processOutput(IValue[] outputTuple) {
-        // Extract intent probabilities
-        // Extract entity information
-        // Calculate confidence scores
+    private IntentResult processOutput(IValue[] outputs, int length) {
+        float[] intentLogits = outputs[0].toTensor().getDataAsFloatArray();
+        int bestIntent = argmax(intentLogits, 0, intentLabels.length);
+        IntentResult result = new IntentResult(intentLabels[bestIntent],
+            softmaxProbability(intentLogits, 0, intentLabels.length, bestIntent));
 
-        // For now, return a dummy result
-        Map<String, Object> result = new HashMap<>();
-        result.put("intent", "UNKNOWN");
-        result.put("confidence", 0.5f);
-        result.put("entities", new HashMap<String, String>());
+        // Tag each word by its first piece; continuation pieces, [CLS] and [SEP] are skipped
+        float[] slotLogits = outputs[1].toTensor().getDataAsFloatArray();
+        int tags = slotEntities.length;
+        String entity = null;
+        entityText.setLength(0);
+        for (int position = 0; position < length; position++) {
+            int word = tokenWords[position];
+            if (word < 0) {
+                continue;
+            }
+
+            int tag = argmax(slotLogits, position * tags, tags);
+            String tagEntity = slotEntities[tag];
+            if (tagEntity != null && !slotBegins[tag] && tagEntity.equals(entity)) {
+                entityText.append(' ').append(words.get(word));
+                continue;
+            }
+
+            putEntity(result, entity);
+            entity = tagEntity;
+            entityText.setLength(0);
+            if (entity != null) {
+                entityText.append(words.get(word));
+            }
+        }
+        putEntity(result, entity);
 
         return result;
     }
-    
+
+    // Keeps the first span of each entity type
+    private void putEntity(IntentResult result, String entity) {
+        if (entity != null && result.getEntity(entity).isEmpty()) {
+            result.setEntity(entity, entityText.toString());
+        }
+    }
+
+    private static int argmax(float[] values, int offset, int count) {
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (values[offset + i] > values[offset + best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static float softmaxProbability(float[] logits, int offset, int count, int index) {
+        float max = logits[offset + index];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += Math.exp(logits[offset + i] - max);
+        }
+        return (float) (1.0 / sum);
+    }
+
     /**
      * Creates a fallback result when model is unavailable
      */
-    private Map<String, Object> createFallbackResult(String inputText) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("intent", "UNKNOWN");
-        result.put("confidence", 0.0f);
-        result.put("entities", new HashMap<String, String>());
-        
+    private IntentResult createFallbackResult(String inputText) {
         Log.w(TAG, "Returning fallback result for: " + inputText);
-        return result;
+        return new IntentResult(IntentType.UNKNOWN, 0.0f);
     }
-    
+
     /**
      * Checks if the model is ready for inference
      */
     public boolean isReady() {
-        return isModelLoaded && torchModule != null;
+        return isModelLoaded;
     }
-    
+
     /**
      * Unloads the model to free memory
      */
-    public void unload() {
+    public synchronized void unload() {
         if (torchModule != null) {
+            isModelLoaded = false;
             torchModule.destroy();
             torchModule = null;
-            isModelLoaded = false;
             Log.i(TAG, "Model unloaded successfully");
         }
     }
-    
+
     /**
      * Gets model information
      */
@@ -197,11 +297,11 @@ public class OpenPhoneModel {
             return "OpenPhone-3B Model - Local AI for Egyptian Dialect Understanding\n" +
                    "Version: 1.0.0\n" +
                    "Training Data: Egyptian Arabic dialect corpus\n" +
-                   "Parameters: 3B\n" +
-                   "Precision: Q4_K_M quantization\n" +
-                   "Performance: Optimized for MediaTek Helio G81 Ultra\n" +
+                   "Intents: " + intentLabels.length + ", slot tags: " + slotEntities.length + "\n" +
+                   "Vocabulary: " + tokenizer.getVocabularySize() + " WordPiece tokens\n" +
+                   "Max sequence length: " + MAX_SEQUENCE_LENGTH + "\n" +
                    "Features: Egyptian dialect recognition, intent classification, entity extraction";
         }
         return "Model not available";
     }
-}
\ No newline at end of file
+}
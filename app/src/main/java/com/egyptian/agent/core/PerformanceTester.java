@@ -347,7 +347,7 @@ public class PerformanceTester {
         long startTime = System.currentTimeMillis();
         
         try {
-            BackgroundTaskManager taskManager = new BackgroundTaskManager(context);
+            BackgroundTaskManager taskManager = BackgroundTaskManager.getInstance(context);
             
             // Execute a simple task to test the manager
             CountDownLatch latch = new CountDownLatch(1);
@@ -371,7 +371,6 @@ public class PerformanceTester {
             });
             
             latch.await(5, TimeUnit.SECONDS); // Wait up to 5 seconds
-            taskManager.destroy();
         } catch (Exception e) {
             Log.e(TAG, "Error during background processing test", e);
             results.backgroundProcessingError = e.getMessage();
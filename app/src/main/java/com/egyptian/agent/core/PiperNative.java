@@ -0,0 +1,81 @@
+package com.egyptian.agent.core;
+
+import android.util.Log;
+
+/**
+ * JNI wrapper for on-device Piper (VITS) speech synthesis
+ * Synthesis is done one sentence at a time so audio can be streamed as it is produced
+ */
+public class PiperNative {
+    private static final String TAG = "PiperNative";
+    private static boolean libraryLoaded = false;
+    private static volatile boolean voiceLoaded = false;
+
+    static {
+        try {
+            System.loadLibrary("piper_native");
+            libraryLoaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Failed to load piper_native library, Piper synthesis unavailable", e);
+        }
+    }
+
+    /**
+     * Loads a Piper voice
+     * @param modelPath Path to the .onnx voice model
+     * @param configPath Path to the voice's .onnx.json config
+     * @param espeakDataPath Path to the extracted espeak-ng-data directory
+     * @return true if the voice is ready for synthesis
+     */
+    public static synchronized boolean load(String modelPath, String configPath, String espeakDataPath) {
+        if (!libraryLoaded) {
+            return false;
+        }
+
+        voiceLoaded = loadVoice(modelPath, configPath, espeakDataPath) == 0;
+        return voiceLoaded;
+    }
+
+    /**
+     * Synthesizes a single sentence
+     * @param sentence Text of one sentence
+     * @param lengthScale Phoneme duration scale (>1.0 = slower speech)
+     * @return 16-bit mono PCM at {@link #sampleRate()}, or null on failure
+     */
+    public static short[] synthesizeSentence(String sentence, float lengthScale) {
+        if (!voiceLoaded) {
+            return null;
+        }
+        return synthesize(sentence, lengthScale);
+    }
+
+    /**
+     * Gets the output sample rate of the loaded voice
+     */
+    public static int sampleRate() {
+        return voiceLoaded ? getSampleRate() : 0;
+    }
+
+    /**
+     * Checks if a voice is loaded and ready
+     */
+    public static boolean isVoiceLoaded() {
+        return voiceLoaded;
+    }
+
+    /**
+     * Unloads the voice and frees native resources
+     */
+    public static synchronized void unload() {
+        if (voiceLoaded) {
+            unloadVoice();
+            voiceLoaded = false;
+        }
+    }
+
+    // Native methods
+    private static native int loadVoice(String modelPath, String configPath, String espeakDataPath);
+    private static native int getSampleRate();
+    private static native short[] synthesize(String text, float lengthScale);
+    private static native void unloadVoice();
+}
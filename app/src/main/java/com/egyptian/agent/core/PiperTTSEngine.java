@@ -1,18 +1,31 @@
 package com.egyptian.agent.core;
 
 import android.content.Context;
+import android.content.res.AssetManager;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.media.AudioTrack;
 import android.media.MediaPlayer;
 import android.os.Build;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Piper TTS engine for Egyptian Arabic text-to-speech
@@ -20,6 +33,17 @@ import java.util.concurrent.Executors;
  */
 public class PiperTTSEngine {
     private static final String TAG = "PiperTTSEngine";
+    private static final String ESPEAK_DATA_ASSET_DIR = "piper/espeak-ng-data";
+
+    // Sentence boundaries used to stream synthesis (Latin and Arabic punctuation)
+    private static final Pattern SENTENCE_BOUNDARY = Pattern.compile("(?<=[.!?؟؛\\n])\\s*");
+    // Pause inserted between streamed sentences
+    private static final int SENTENCE_GAP_MS = 150;
+    // Chunks synthesized ahead of playback; bounds memory for long replies
+    private static final int MAX_PENDING_CHUNKS = 4;
+    private static final short[] END_OF_STREAM = new short[0];
+    // Longest speech waits for the system TTS to finish binding
+    private static final long FALLBACK_INIT_TIMEOUT_MS = 5000;
     
     private final Context context;
     private final String modelPath;
@@ -32,12 +56,27 @@ public class PiperTTSEngine {
     // For the actual Piper integration, we'll use a placeholder approach
     // since the real Piper TTS would require JNI bindings
     private TextToSpeech fallbackTTS; // Fallback to Android's TTS
-    private final ExecutorService ttsExecutor = Executors.newSingleThreadExecutor();
+    // Counted down by onInit; speech waits on it, so nothing reaches the engine before it is bound
+    private CountDownLatch fallbackInitLatch;
+    private volatile boolean fallbackReady = false;
+    // Speech and playback each stay busy for a whole reply, so they run on stream executors
+    private final ExecutorService ttsExecutor;
+
+    // Native Piper synthesis streams PCM chunks from ttsExecutor to the playback thread
+    private boolean nativeVoiceReady = false;
+    private final ExecutorService playbackExecutor;
+    private final BlockingQueue<short[]> pendingChunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS);
+    private volatile boolean stopRequested = false;
+    private AudioTrack audioTrack;
+    private float speechRate = 1.0f;
     
     public PiperTTSEngine(Context context, String modelPath) {
         this.context = context;
         this.modelPath = modelPath;
         this.deviceClass = ((MainApplication) context.getApplicationContext()).getDeviceClass();
+        BackgroundTaskManager taskManager = BackgroundTaskManager.getInstance(context);
+        this.ttsExecutor = taskManager.newStreamExecutor("tts", ThreadPlacement.Role.AUDIO_PROCESSING);
+        this.playbackExecutor = taskManager.newStreamExecutor("tts-playback", ThreadPlacement.Role.AUDIO_PROCESSING);
         
         Log.i(TAG, "Piper TTS Engine initialized for device class: " + deviceClass.name() + 
               " with model: " + modelPath);
@@ -49,25 +88,137 @@ public class PiperTTSEngine {
     public void initialize() throws Exception {
         Log.i(TAG, "Initializing Piper TTS engine with model: " + modelPath);
         
-        // Verify model exists
+        initializeNativeVoice();
+        
+        // The system TTS is only needed when native Piper synthesis is unavailable
+        if (!nativeVoiceReady) {
+            initializeFallbackTTS();
+        }
+        
+        isInitialized = true;
+        Log.i(TAG, "Piper TTS engine initialized successfully");
+    }
+    
+    /**
+     * Loads the native Piper voice without starting the system TTS
+     * Does file I/O; call off the main thread.
+     * @return true if the engine can speak through Piper
+     */
+    public boolean initializeNativeVoice() {
         File modelFile = new File(modelPath);
         if (!modelFile.exists()) {
             Log.w(TAG, "Piper model not found: " + modelPath + ", using fallback TTS");
         } else {
             Log.i(TAG, "Piper model found, preparing for synthesis");
+            nativeVoiceReady = loadNativeVoice();
         }
-        
-        // Initialize fallback TTS in case Piper isn't available
-        initializeFallbackTTS();
-        
-        isInitialized = true;
-        Log.i(TAG, "Piper TTS engine initialized successfully");
+        if (nativeVoiceReady) {
+            isInitialized = true;
+        }
+        return nativeVoiceReady;
     }
-    
+
+    /**
+     * Loads the Piper voice through the native bridge
+     */
+    private boolean loadNativeVoice() {
+        String configPath = modelPath + ".json";
+        if (!new File(configPath).exists()) {
+            Log.w(TAG, "Piper voice config not found: " + configPath);
+            return false;
+        }
+
+        File espeakDataDir = new File(context.getFilesDir(), "espeak-ng-data");
+        if (!espeakDataDir.exists() && !extractAssetDirectory(ESPEAK_DATA_ASSET_DIR, espeakDataDir)) {
+            Log.w(TAG, "espeak-ng data not available, cannot phonemize for Piper");
+            return false;
+        }
+
+        if (!PiperNative.load(modelPath, configPath, espeakDataDir.getAbsolutePath())) {
+            Log.w(TAG, "Native Piper voice could not be loaded");
+            return false;
+        }
+
+        int sampleRate = PiperNative.sampleRate();
+        audioTrack = createStreamingTrack(sampleRate);
+        Log.i(TAG, "Native Piper voice ready at " + sampleRate + " Hz");
+        return audioTrack != null;
+    }
+
+    /**
+     * Creates the streaming AudioTrack that synthesized chunks are written into
+     */
+    private AudioTrack createStreamingTrack(int sampleRate) {
+        if (sampleRate <= 0) {
+            return null;
+        }
+
+        int minBuffer = AudioTrack.getMinBufferSize(
+            sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+
+        return new AudioTrack.Builder()
+            .setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_ASSISTANT)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                .build())
+            .setAudioFormat(new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setSampleRate(sampleRate)
+                .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                .build())
+            .setTransferMode(AudioTrack.MODE_STREAM)
+            .setBufferSizeInBytes(minBuffer * 2)
+            .build();
+    }
+
+    /**
+     * Copies an asset directory tree into internal storage
+     */
+    private boolean extractAssetDirectory(String assetPath, File targetDir) {
+        AssetManager assetManager = context.getAssets();
+        try {
+            String[] entries = assetManager.list(assetPath);
+            if (entries == null || entries.length == 0) {
+                return false;
+            }
+
+            if (!targetDir.exists() && !targetDir.mkdirs()) {
+                return false;
+            }
+
+            for (String entry : entries) {
+                String childAsset = assetPath + "/" + entry;
+                File childTarget = new File(targetDir, entry);
+                String[] children = assetManager.list(childAsset);
+                if (children != null && children.length > 0) {
+                    if (!extractAssetDirectory(childAsset, childTarget)) {
+                        return false;
+                    }
+                    continue;
+                }
+
+                try (InputStream in = assetManager.open(childAsset);
+                     FileOutputStream out = new FileOutputStream(childTarget)) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error extracting asset directory: " + assetPath, e);
+            return false;
+        }
+    }
+
     /**
      * Initializes the fallback Android TTS engine
      */
     private void initializeFallbackTTS() {
+        CountDownLatch initLatch = new CountDownLatch(1);
+        fallbackInitLatch = initLatch;
         fallbackTTS = new TextToSpeech(context, status -> {
             if (status == TextToSpeech.SUCCESS) {
                 int result = fallbackTTS.setLanguage(new Locale("ar", "EG")); // Egyptian Arabic
@@ -106,10 +257,12 @@ public class PiperTTSEngine {
                 }
                 
                 isInitialized = true;
+                fallbackReady = true;
                 Log.i(TAG, "Fallback TTS initialized successfully");
             } else {
                 Log.e(TAG, "Fallback TTS initialization failed");
             }
+            initLatch.countDown();
         });
         
         // Set up utterance progress listener
@@ -188,11 +341,159 @@ public class PiperTTSEngine {
      * Speaks text using the actual Piper TTS via JNI
      */
     private void speakWithActualPiperTTS(String text, TTSCompletionCallback callback) {
-        // For now, we'll use the fallback TTS
-        // this would interface with the native Piper TTS library
+        if (nativeVoiceReady) {
+            List<String> sentences = splitSentences(text);
+            int synthesized;
+            try {
+                synthesized = streamNativeSpeech(sentences, callback);
+            } catch (Exception e) {
+                // Part of the reply may already have been heard, so never start it over
+                Log.e(TAG, "Native Piper playback failed", e);
+                if (callback != null) {
+                    callback.onError(e);
+                }
+                return;
+            }
+
+            if (synthesized == sentences.size() || stopRequested) {
+                if (callback != null) {
+                    callback.onComplete();
+                }
+                return;
+            }
+            // The sentences before the failure were played; only the rest goes to the fallback
+            Log.w(TAG, "Native Piper synthesis failed at sentence " + synthesized + ", using fallback TTS for the rest");
+            text = String.join(" ", sentences.subList(synthesized, sentences.size()));
+        }
+
+        if (fallbackTTS == null) {
+            initializeFallbackTTS();
+        }
         speakWithFallbackTTS(text, callback);
     }
+
+    /**
+     * Synthesizes sentence by sentence and streams each chunk to the AudioTrack as
+     * soon as it is ready, so playback starts after the first sentence only
+     * @return Number of sentences synthesized and played; fewer than given if synthesis failed or speech was stopped
+     * @throws Exception if playback did not finish
+     */
+    private int streamNativeSpeech(List<String> sentences, TTSCompletionCallback callback) throws Exception {
+        stopRequested = false;
+        pendingChunks.clear();
+        isSpeaking = true;
+
+        Future<?> playback = playbackExecutor.submit(() -> drainChunksToAudioTrack(callback));
+        float lengthScale = 1.0f / speechRate;
+        short[] sentenceGap = new short[PiperNative.sampleRate() * SENTENCE_GAP_MS / 1000];
+
+        int synthesized = 0;
+        try {
+            for (; synthesized < sentences.size() && !stopRequested; synthesized++) {
+                short[] pcm;
+                try {
+                    pcm = PiperNative.synthesizeSentence(sentences.get(synthesized), lengthScale);
+                } catch (Exception e) {
+                    Log.e(TAG, "Piper synthesis error on sentence " + synthesized, e);
+                    break;
+                }
+                if (pcm == null) {
+                    Log.w(TAG, "Piper returned no audio for sentence " + synthesized);
+                    break;
+                }
+                pendingChunks.put(pcm);
+                if (synthesized < sentences.size() - 1) {
+                    pendingChunks.put(sentenceGap);
+                }
+            }
+        } finally {
+            try {
+                if (stopRequested) {
+                    // Playback thread has already exited; never block on a full queue
+                    pendingChunks.offer(END_OF_STREAM);
+                } else {
+                    pendingChunks.put(END_OF_STREAM);
+                }
+                // Wait for the tail of the reply to be played out
+                playback.get(60, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // Silence whatever is left rather than let it play over the next reply
+                stopRequested = true;
+                pendingChunks.clear();
+                pendingChunks.offer(END_OF_STREAM);
+                throw e;
+            } finally {
+                isSpeaking = false;
+            }
+        }
+        return synthesized;
+    }
+
+    /**
+     * Playback loop run on the playback thread
+     */
+    private void drainChunksToAudioTrack(TTSCompletionCallback callback) {
+        audioTrack.play();
+        boolean started = false;
+        try {
+            while (true) {
+                short[] chunk = pendingChunks.take();
+                if (chunk == END_OF_STREAM || stopRequested) {
+                    break;
+                }
+                // Blocking write; returns once the chunk is queued in the mixer buffer
+                audioTrack.write(chunk, 0, chunk.length);
+                if (callback != null && !started) {
+                    started = true;
+                    callback.onStarted();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (stopRequested) {
+                audioTrack.pause();
+                audioTrack.flush();
+            } else {
+                audioTrack.stop(); // Plays out remaining buffered audio
+            }
+        }
+    }
+
+    /**
+     * Splits text into sentences for incremental synthesis
+     */
+    static List<String> splitSentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        for (String sentence : SENTENCE_BOUNDARY.split(text)) {
+            String trimmed = sentence.trim();
+            if (!trimmed.isEmpty()) {
+                sentences.add(trimmed);
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * Sets the speech rate used for native synthesis
+     * @param rate 1.0 = normal, <1.0 = slower (senior mode), >1.0 = faster
+     */
+    public void setSpeechRate(float rate) {
+        if (rate > 0) {
+            this.speechRate = rate;
+        }
+    }
     
+    /**
+     * Sets the playback volume of native speech
+     * @param volume 1.0 = full track volume; higher values are clamped
+     */
+    public void setVolume(float volume) {
+        if (audioTrack != null) {
+            audioTrack.setVolume(Math.max(0f, Math.min(volume, AudioTrack.getMaxVolume())));
+        }
+    }
+
     /**
      * Speaks text using the fallback Android TTS
      */
@@ -200,6 +501,20 @@ public class PiperTTSEngine {
         final String utteranceId = "piper_utt_" + System.currentTimeMillis();
         
         Log.i(TAG, "Speaking with fallback TTS: " + text);
+
+        // Speech requested before the engine bound waits here, holding later speech behind it
+        try {
+            fallbackInitLatch.await(FALLBACK_INIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!fallbackReady) {
+            Log.e(TAG, "Fallback TTS not ready, dropping speech");
+            if (callback != null) {
+                callback.onError(new Exception("Fallback TTS not ready"));
+            }
+            return;
+        }
         
         // Set up parameters
         HashMap<String, String> params = new HashMap<>();
@@ -235,6 +550,12 @@ public class PiperTTSEngine {
      * Stops current speech
      */
     public void stopSpeaking() {
+        if (nativeVoiceReady && isSpeaking) {
+            stopRequested = true;
+            pendingChunks.clear();
+            pendingChunks.offer(END_OF_STREAM);
+        }
+
         if (fallbackTTS != null && isSpeaking) {
             fallbackTTS.stop();
             isSpeaking = false;
@@ -260,6 +581,8 @@ public class PiperTTSEngine {
      * Callback interface for TTS completion
      */
     public interface TTSCompletionCallback {
+        default void onStarted() {
+        }
         void onComplete();
         void onError(Exception error);
     }
@@ -276,6 +599,16 @@ public class PiperTTSEngine {
         }
         
         ttsExecutor.shutdown();
+        playbackExecutor.shutdown();
+
+        if (audioTrack != null) {
+            audioTrack.release();
+            audioTrack = null;
+        }
+        if (nativeVoiceReady) {
+            PiperNative.unload();
+            nativeVoiceReady = false;
+        }
         isInitialized = false;
         
         Log.i(TAG, "Piper TTS engine destroyed");
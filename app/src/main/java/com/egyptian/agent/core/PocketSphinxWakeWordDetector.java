@@ -11,8 +11,6 @@ import edu.cmu.pocketsphinx.RecognitionListener;
 import edu.cmu.pocketsphinx.SpeechRecognizer;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * PocketSphinx wake word detector for efficient, low-power keyword spotting
@@ -31,7 +29,6 @@ public class PocketSphinxWakeWordDetector implements RecognitionListener {
     private boolean isListening = false;
     private AudioRecord audioRecord;
     private Thread recordingThread;
-    private ExecutorService executor;
     
     // Wake word variations for Egyptian dialect
     private static final String[] EGYPTIAN_WAKE_WORDS = {
@@ -50,7 +47,6 @@ public class PocketSphinxWakeWordDetector implements RecognitionListener {
     public PocketSphinxWakeWordDetector(Context context, WakeWordCallback callback) {
         this.context = context;
         this.callback = callback;
-        this.executor = Executors.newSingleThreadExecutor();
     }
     
     /**
@@ -189,10 +185,6 @@ public class PocketSphinxWakeWordDetector implements RecognitionListener {
             recognizer = null;
         }
         
-        if (executor != null) {
-            executor.shutdown();
-        }
-        
         Log.i(TAG, "PocketSphinx wake word detector destroyed");
     }
 }
\ No newline at end of file
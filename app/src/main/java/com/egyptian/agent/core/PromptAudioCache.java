@@ -0,0 +1,329 @@
+package com.egyptian.agent.core;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prompt Audio Cache
+ * Keeps pre-synthesized PCM for the fixed assistant prompts so they can be
+ * played straight through AudioTrack instead of going through the TTS engine
+ */
+public class PromptAudioCache {
+    private static final String TAG = "PromptAudioCache";
+    private static final String CACHE_DIR_NAME = "prompt_audio";
+
+    // Prompts spoken after the wake word, on recognition failure and during emergencies
+    public static final List<String> FIXED_PROMPTS = Arrays.asList(
+        "أوامرك؟",
+        "قول يا كبير",
+        "مش فاهمك. قول حاجة تانية",
+        "مش فاهمك كويس. قول الأمر تاني",
+        "حالة طوارئ! ببدأ الإجراءات الطارئة",
+        "بحاول الاتصال بخدمة الطوارئ",
+        "مقدرش أتصل بخدمات الطوارئ",
+        "التطبيق محتاج إذن الاتصال بالطوارئ",
+        "تم إخطار جهات الاتصال الطارئة"
+    );
+
+    private final File cacheDir;
+    private final TTSEngine ttsEngine;
+    private final Map<String, PcmClip> clips = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> pendingSynthesis = new ConcurrentHashMap<>();
+    private final BackgroundTaskManager taskManager;
+    private volatile boolean destroyed = false;
+
+    private final Object playbackLock = new Object();
+    private AudioTrack currentTrack;
+
+    public PromptAudioCache(Context context, TTSEngine ttsEngine) {
+        this.cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        this.ttsEngine = ttsEngine;
+        this.taskManager = BackgroundTaskManager.getInstance(context);
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            Log.w(TAG, "Could not create prompt audio cache directory: " + cacheDir);
+        }
+    }
+
+    /**
+     * Settings that change how a prompt sounds and therefore select a cache entry
+     */
+    public static class VoiceSettings {
+        public final TTSEngine.VoiceType voiceType;
+        public final float rate;
+        public final float pitch;
+        public final boolean seniorMode;
+
+        public VoiceSettings(TTSEngine.VoiceType voiceType, float rate, float pitch, boolean seniorMode) {
+            this.voiceType = voiceType;
+            this.rate = rate;
+            this.pitch = pitch;
+            this.seniorMode = seniorMode;
+        }
+
+        String cacheKey(String text) {
+            return String.format(Locale.US, "%s|%s|%.2f|%.2f|%b", text, voiceType.name(), rate, pitch, seniorMode);
+        }
+    }
+
+    /**
+     * Pre-warms the cache for the fixed prompt set under the given settings.
+     * Clips already on disk are loaded; missing ones are synthesized once.
+     * @param processedPrompts Prompts after TTS text transformations
+     * @param settings Voice settings to pre-warm for
+     */
+    public void prewarm(List<String> processedPrompts, VoiceSettings settings) {
+        for (String prompt : processedPrompts) {
+            ensureCached(prompt, settings);
+        }
+        Log.i(TAG, "Pre-warming " + processedPrompts.size() + " prompts for voice " + settings.voiceType.name());
+    }
+
+    /**
+     * Loads or synthesizes a single prompt in the background
+     */
+    private void ensureCached(String text, VoiceSettings settings) {
+        final String key = settings.cacheKey(text);
+        if (destroyed || clips.containsKey(key) || pendingSynthesis.putIfAbsent(key, Boolean.TRUE) != null) {
+            return;
+        }
+
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
+            if (destroyed) {
+                return;
+            }
+            File wavFile = new File(cacheDir, hashKey(key) + ".wav");
+            if (wavFile.exists() && loadClip(key, wavFile)) {
+                pendingSynthesis.remove(key);
+                return;
+            }
+            synthesize(text, settings, key, wavFile);
+        });
+    }
+
+    private void synthesize(String text, VoiceSettings settings, String key, File wavFile) {
+        TTSEngine.SpeechParams params = new TTSEngine.SpeechParams();
+        params.setRate(settings.rate);
+        params.setPitch(settings.pitch);
+
+        ttsEngine.synthesizeToFile(text, params, wavFile, new TTSEngine.SpeechCallback() {
+            @Override
+            public void onCompleted() {
+                taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
+                    if (destroyed) {
+                        return;
+                    }
+                    loadClip(key, wavFile);
+                    pendingSynthesis.remove(key);
+                });
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.w(TAG, "Could not synthesize prompt for cache: " + errorMessage);
+                wavFile.delete();
+                pendingSynthesis.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Plays a cached prompt if one exists for these settings
+     * @param text Prompt text after TTS transformations
+     * @param settings Current voice settings
+     * @param volume Playback volume (clamped to the AudioTrack range)
+     * @return true if the prompt was played from cache, false on a miss
+     */
+    public boolean play(String text, VoiceSettings settings, float volume) {
+        String key = settings.cacheKey(text);
+        PcmClip clip = clips.get(key);
+        if (clip == null) {
+            // Fill the cache for next time if this is one of the fixed prompts
+            if (FIXED_PROMPTS.contains(text)) {
+                ensureCached(text, settings);
+            }
+            return false;
+        }
+
+        synchronized (playbackLock) {
+            stopLocked();
+            try {
+                AudioTrack track = new AudioTrack.Builder()
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_ASSISTANT)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .build())
+                    .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(clip.encoding)
+                        .setSampleRate(clip.sampleRate)
+                        .setChannelMask(clip.channelMask)
+                        .build())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(clip.pcm.length)
+                    .build();
+
+                track.write(clip.pcm, 0, clip.pcm.length);
+                track.setVolume(Math.max(0f, Math.min(volume, AudioTrack.getMaxVolume())));
+                track.play();
+                currentTrack = track;
+                return true;
+            } catch (Exception e) {
+                Log.e(TAG, "Cached prompt playback failed, falling back to TTS", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Stops any cached prompt that is currently playing
+     */
+    public void stop() {
+        synchronized (playbackLock) {
+            stopLocked();
+        }
+    }
+
+    private void stopLocked() {
+        if (currentTrack != null) {
+            try {
+                currentTrack.stop();
+            } catch (IllegalStateException e) {
+                // Track was never started
+            }
+            currentTrack.release();
+            currentTrack = null;
+        }
+    }
+
+    /**
+     * Reads a synthesized WAV file into memory
+     */
+    private boolean loadClip(String key, File wavFile) {
+        try {
+            PcmClip clip = PcmClip.fromWav(readFully(wavFile));
+            clips.put(key, clip);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable cached prompt: " + wavFile.getName(), e);
+            wavFile.delete();
+            return false;
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+                offset += read;
+            }
+        }
+        return data;
+    }
+
+    private static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * Gets the number of prompts currently held in memory
+     */
+    public int getCachedClipCount() {
+        return clips.size();
+    }
+
+    /**
+     * Releases playback resources and drops in-memory clips (disk cache is kept)
+     */
+    public void destroy() {
+        destroyed = true;
+        stop();
+        clips.clear();
+        pendingSynthesis.clear();
+    }
+
+    /**
+     * Decoded PCM audio for a single prompt
+     */
+    static class PcmClip {
+        final byte[] pcm;
+        final int sampleRate;
+        final int channelMask;
+        final int encoding;
+
+        PcmClip(byte[] pcm, int sampleRate, int channelMask, int encoding) {
+            this.pcm = pcm;
+            this.sampleRate = sampleRate;
+            this.channelMask = channelMask;
+            this.encoding = encoding;
+        }
+
+        /**
+         * Parses a RIFF/WAVE file as written by TextToSpeech.synthesizeToFile
+         */
+        static PcmClip fromWav(byte[] wav) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+            if (wav.length < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {
+                throw new IOException("Not a RIFF/WAVE file");
+            }
+
+            int channels = 0;
+            int sampleRate = 0;
+            int bitsPerSample = 0;
+            int position = 12;
+            while (position + 8 <= wav.length) {
+                int chunkId = buffer.getInt(position);
+                int chunkSize = buffer.getInt(position + 4);
+                int dataStart = position + 8;
+
+                if (chunkId == 0x20746d66) { // "fmt "
+                    channels = buffer.getShort(dataStart + 2);
+                    sampleRate = buffer.getInt(dataStart + 4);
+                    bitsPerSample = buffer.getShort(dataStart + 14);
+                } else if (chunkId == 0x61746164) { // "data"
+                    if (sampleRate == 0) {
+                        throw new IOException("WAV data chunk before fmt chunk");
+                    }
+                    int length = Math.min(chunkSize, wav.length - dataStart);
+                    byte[] pcm = Arrays.copyOfRange(wav, dataStart, dataStart + length);
+                    int channelMask = channels == 2 ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO;
+                    int encoding = bitsPerSample == 8 ? AudioFormat.ENCODING_PCM_8BIT : AudioFormat.ENCODING_PCM_16BIT;
+                    return new PcmClip(pcm, sampleRate, channelMask, encoding);
+                }
+
+                // Chunks are word aligned
+                position = dataStart + chunkSize + (chunkSize & 1);
+            }
+            throw new IOException("WAV file has no data chunk");
+        }
+    }
+}
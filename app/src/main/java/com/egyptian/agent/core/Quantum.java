@@ -5,6 +5,7 @@ import android.util.Log;
 import com.egyptian.agent.executors.CallExecutor;
 import com.egyptian.agent.executors.WhatsAppExecutor;
 import com.egyptian.agent.executors.AlarmExecutor;
+import com.egyptian.agent.nlp.DialogueState;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 import com.egyptian.agent.utils.CrashLogger;
 
@@ -15,17 +16,19 @@ import com.egyptian.agent.utils.CrashLogger;
 public class Quantum {
     private static final String TAG = "Quantum";
     private Context context;
-    private String lastContact = "";
+    private final ContextMemory memory;
 
     public Quantum(Context context) {
         this.context = context;
+        this.memory = ContextMemory.getInstance(context);
     }
 
     /**
      * Processes a command using advanced pattern matching and fallback mechanisms
      * @param command The command to process
+     * @return true if the command was handled, false if the user was told it was not understood
      */
-    public void processCommand(String command) {
+    public boolean processCommand(String command) {
         Log.d(TAG, "Processing command: " + command);
         
         try {
@@ -33,39 +36,64 @@ public class Quantum {
             String normalizedCommand = EgyptianNormalizer.normalize(command);
             
             // Try different processing strategies
-            if (processCallCommand(normalizedCommand)) {
-                return;
+            // Pronouns are matched on the spoken command, which normalization may rewrite
+            if (processCallCommand(normalizedCommand, command)) {
+                return true;
             }
             
-            if (processWhatsAppCommand(normalizedCommand)) {
-                return;
+            if (processWhatsAppCommand(normalizedCommand, command)) {
+                return true;
             }
             
             if (processAlarmCommand(normalizedCommand)) {
-                return;
+                return true;
             }
             
             // If no specific command matched, try general processing
-            processGeneralCommand(normalizedCommand);
+            return processGeneralCommand(normalizedCommand);
             
         } catch (Exception e) {
             Log.e(TAG, "Error processing command: " + command, e);
             CrashLogger.logError(context, e);
+            return false;
         }
     }
 
+    /**
+     * Gets the contact a follow-up like "كلمه تاني" or "ابعتله" refers to
+     * A contact named in the command always wins, so "اتصل على سارة تاني" calls سارة.
+     * @param extractedName The name extracted from the command, possibly "" or a pronoun
+     * @return The contact, or "" if the command has no reference or nothing recent matches
+     */
+    private String resolveContactReference(String spokenCommand, String extractedName) {
+        if (!extractedName.isEmpty() && !DialogueState.isPronoun(extractedName)) {
+            return "";
+        }
+        if (!DialogueState.isRepeatRequest(spokenCommand)
+                && !DialogueState.refersTo(DialogueState.CONTACT, spokenCommand)) {
+            return "";
+        }
+        return memory.getDialogueState().resolve(DialogueState.CONTACT, System.currentTimeMillis());
+    }
+
     /**
      * Processes call-related commands
      * @param command The normalized command
+     * @param spokenCommand The command before normalization
      * @return true if command was processed, false otherwise
      */
-    private boolean processCallCommand(String command) {
+    private boolean processCallCommand(String command, String spokenCommand) {
         // Check for call-related keywords
         if (command.contains("اتصل") || command.contains("كلم") || command.contains("رن على")) {
-            // Extract contact name
+            // Extract contact name, or take it from the dialogue for "كلمه تاني"
             String contactName = extractContactName(command);
+            String referenced = resolveContactReference(spokenCommand, contactName);
+            if (!referenced.isEmpty()) {
+                contactName = referenced;
+                command = "اتصل على " + contactName;
+            }
             if (!contactName.isEmpty()) {
-                lastContact = contactName;
+                memory.updateContext("call_person", "contact", contactName);
                 CallExecutor.handleCommand(context, command);
                 TTSManager.speak(context, "بتتصل بـ " + contactName);
                 return true;
@@ -77,17 +105,23 @@ public class Quantum {
     /**
      * Processes WhatsApp-related commands
      * @param command The normalized command
+     * @param spokenCommand The command before normalization
      * @return true if command was processed, false otherwise
      */
-    private boolean processWhatsAppCommand(String command) {
+    private boolean processWhatsAppCommand(String command, String spokenCommand) {
         // Check for WhatsApp-related keywords
         if (command.contains("واتساب") || command.contains("رسالة") || command.contains("ابعت")) {
             // Extract recipient and message
             String recipient = extractContactName(command);
             String message = extractMessage(command);
+            String referenced = resolveContactReference(spokenCommand, recipient);
+            if (!referenced.isEmpty()) {
+                recipient = referenced;
+                command = "رسالة لـ " + recipient + " قول " + message;
+            }
             
             if (!recipient.isEmpty()) {
-                lastContact = recipient;
+                memory.updateContext("send_msg", "contact", recipient);
                 WhatsAppExecutor.handleCommand(context, command);
                 TTSManager.speak(context, "ببعت رسالة لـ " + recipient);
                 return true;
@@ -114,23 +148,25 @@ public class Quantum {
     /**
      * Processes general commands
      * @param command The normalized command
+     * @return true if command was processed, false otherwise
      */
-    private void processGeneralCommand(String command) {
+    private boolean processGeneralCommand(String command) {
         // Handle general commands that don't fit specific categories
         if (command.contains("الوقت") || command.contains("الساعة")) {
             String currentTime = new java.text.SimpleDateFormat("hh:mm a", java.util.Locale.getDefault()).format(new java.util.Date());
             TTSManager.speak(context, "الساعة " + currentTime);
-            return;
+            return true;
         }
         
         if (command.contains("المكالمات") || command.contains("الفايتة")) {
             // Read missed calls
             TTSManager.speak(context, "بتشوف المكالمات الفايتة");
-            return;
+            return true;
         }
         
         // If no pattern matched, inform user
         TTSManager.speak(context, "مش فاهمك. قول الأمر تاني");
+        return false;
     }
 
     /**
@@ -184,10 +220,10 @@ public class Quantum {
     }
 
     /**
-     * Gets the last processed contact name
+     * Gets the last contact handled by any command, kept across Quantum instances
      * @return The last contact name, or empty string if none
      */
     public String getLastContact() {
-        return lastContact;
+        return memory.getLastContact();
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.egyptian.agent.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sensor Fanout
+ * Subscriber bookkeeping behind SensorHub: works out the single registration each sensor needs
+ * (the fastest sampling period and the shortest report latency any subscriber asked for) and
+ * hands each sample to every subscriber, thinned to the rate that subscriber asked for. Has no
+ * Android dependencies.
+ *
+ * Subscribers may change from any thread; dispatch runs on the hub thread and reads a
+ * copy-on-write array, so it neither locks nor allocates.
+ */
+public final class SensorFanout {
+    // Sensors jitter around their nominal period, so a sample a little early still counts
+    private static final long PERIOD_TOLERANCE_PERCENT = 10;
+
+    /**
+     * Receives samples on the hub thread
+     * The values array is reused for the next sample and must not be kept.
+     */
+    public interface Subscriber {
+        void onSample(int sensorType, long timestampNanos, float[] values);
+    }
+
+    /**
+     * The registration a sensor needs for its current subscribers
+     */
+    public static final class Rate {
+        public final int samplingPeriodUs;
+        public final int maxReportLatencyUs;
+
+        Rate(int samplingPeriodUs, int maxReportLatencyUs) {
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Rate)) {
+                return false;
+            }
+            Rate rate = (Rate) other;
+            return samplingPeriodUs == rate.samplingPeriodUs && maxReportLatencyUs == rate.maxReportLatencyUs;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * samplingPeriodUs + maxReportLatencyUs;
+        }
+
+        @Override
+        public String toString() {
+            return samplingPeriodUs + "us, latency " + maxReportLatencyUs + "us";
+        }
+    }
+
+    private static final class Entry {
+        final Subscriber subscriber;
+        final int samplingPeriodUs;
+        final int maxReportLatencyUs;
+        final long periodNanos;
+        final long toleranceNanos;
+        long nextDue = Long.MIN_VALUE; // Only touched by dispatch
+
+        Entry(Subscriber subscriber, int samplingPeriodUs, int maxReportLatencyUs) {
+            this.subscriber = subscriber;
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+            this.periodNanos = samplingPeriodUs * 1000L;
+            this.toleranceNanos = periodNanos * PERIOD_TOLERANCE_PERCENT / 100;
+        }
+    }
+
+    private static final Entry[] NONE = new Entry[0];
+
+    private final ConcurrentHashMap<Integer, Entry[]> bySensor = new ConcurrentHashMap<>();
+
+    /**
+     * Adds or updates a subscriber
+     * @return The registration the sensor now needs
+     */
+    public synchronized Rate add(int sensorType, Subscriber subscriber, int samplingPeriodUs, int maxReportLatencyUs) {
+        Entry[] entries = without(bySensor.getOrDefault(sensorType, NONE), subscriber);
+        entries = Arrays.copyOf(entries, entries.length + 1);
+        entries[entries.length - 1] = new Entry(subscriber, samplingPeriodUs, maxReportLatencyUs);
+        bySensor.put(sensorType, entries);
+        return rateOf(entries);
+    }
+
+    /**
+     * Removes a subscriber
+     * @return The registration the sensor now needs, or null if it has no subscribers left
+     */
+    public synchronized Rate remove(int sensorType, Subscriber subscriber) {
+        Entry[] entries = without(bySensor.getOrDefault(sensorType, NONE), subscriber);
+        if (entries.length == 0) {
+            bySensor.remove(sensorType);
+            return null;
+        }
+        bySensor.put(sensorType, entries);
+        return rateOf(entries);
+    }
+
+    /**
+     * Gets the registration a sensor needs
+     * @return The rate, or null if the sensor has no subscribers
+     */
+    public Rate getRate(int sensorType) {
+        Entry[] entries = bySensor.get(sensorType);
+        return entries != null ? rateOf(entries) : null;
+    }
+
+    /**
+     * Gets the number of subscribers to a sensor
+     */
+    public int getSubscriberCount(int sensorType) {
+        Entry[] entries = bySensor.get(sensorType);
+        return entries != null ? entries.length : 0;
+    }
+
+    /**
+     * Hands a sample to each subscriber that is due one
+     * Due times advance by whole periods rather than from the last delivery, so jitter does not
+     * push a subscriber's rate above what it asked for.
+     */
+    public void dispatch(int sensorType, long timestampNanos, float[] values) {
+        Entry[] entries = bySensor.get(sensorType);
+        if (entries == null) {
+            return;
+        }
+        for (Entry entry : entries) {
+            if (entry.nextDue != Long.MIN_VALUE && timestampNanos < entry.nextDue - entry.toleranceNanos) {
+                continue;
+            }
+            // After a gap, e.g. a re-registration, start over from this sample
+            entry.nextDue = entry.nextDue == Long.MIN_VALUE || timestampNanos - entry.nextDue >= entry.periodNanos
+                ? timestampNanos + entry.periodNanos
+                : entry.nextDue + entry.periodNanos;
+            entry.subscriber.onSample(sensorType, timestampNanos, values);
+        }
+    }
+
+    private static Entry[] without(Entry[] entries, Subscriber subscriber) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].subscriber == subscriber) {
+                Entry[] result = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, result, 0, i);
+                System.arraycopy(entries, i + 1, result, i, entries.length - i - 1);
+                return result;
+            }
+        }
+        return entries;
+    }
+
+    private static Rate rateOf(Entry[] entries) {
+        int period = Integer.MAX_VALUE;
+        int latency = Integer.MAX_VALUE;
+        for (Entry entry : entries) {
+            period = Math.min(period, entry.samplingPeriodUs);
+            latency = Math.min(latency, entry.maxReportLatencyUs);
+        }
+        return new Rate(period, latency);
+    }
+}
@@ -0,0 +1,178 @@
+package com.egyptian.agent.core;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sensor hub
+ * Shares sensors between the always-on monitors. Each sensor is registered once, at the fastest
+ * rate and shortest report latency any subscriber needs, with the latency letting the hardware
+ * FIFO batch samples while the CPU sleeps. All samples arrive on one background thread and are
+ * handed to the subscribers there, thinned to each subscriber's own rate.
+ */
+public class SensorHub {
+    private static final String TAG = "SensorHub";
+    // Leave a quarter of a shared FIFO for other sensors and other apps
+    private static final int FIFO_SHARE_PERCENT = 75;
+
+    private static SensorHub instance;
+    private final SensorManager sensorManager;
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;
+    private final SensorFanout fanout = new SensorFanout();
+    // Sensor type -> registration currently held with the framework; guarded by this
+    private final Map<Integer, SensorFanout.Rate> registrations = new HashMap<>();
+    private final Map<Integer, Sensor> sensors = new HashMap<>();
+    private final AtomicLong deliveredEvents = new AtomicLong();
+
+    private final SensorEventListener listener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            deliveredEvents.incrementAndGet();
+            fanout.dispatch(event.sensor.getType(), event.timestamp, event.values);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            // Not used
+        }
+    };
+
+    private SensorHub(Context context) {
+        this.sensorManager = (SensorManager) context.getApplicationContext().getSystemService(Context.SENSOR_SERVICE);
+        this.sensorThread = new HandlerThread("sensor-hub") {
+            @Override
+            protected void onLooperPrepared() {
+                ThreadPlacement.applyToCurrentThread(ThreadPlacement.Role.BACKGROUND);
+            }
+        };
+        this.sensorThread.start();
+        this.sensorHandler = new Handler(sensorThread.getLooper());
+    }
+
+    public static synchronized SensorHub getInstance(Context context) {
+        if (instance == null) {
+            instance = new SensorHub(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the hub if something has already started it, without starting its thread
+     * @return The hub, or null if no one has used sensors yet
+     */
+    public static synchronized SensorHub getExistingInstance() {
+        return instance;
+    }
+
+    /**
+     * Subscribes to a sensor, or changes the rate of an existing subscription
+     * @param sensorType A Sensor.TYPE_* constant
+     * @param samplingPeriodUs How often the subscriber needs a sample
+     * @param maxReportLatencyUs How long the subscriber can wait for a sample; 0 for no batching
+     * @return false if the device has no such sensor
+     */
+    public synchronized boolean subscribe(int sensorType, int samplingPeriodUs, int maxReportLatencyUs,
+                                          SensorFanout.Subscriber subscriber) {
+        Sensor sensor = getSensor(sensorType);
+        if (sensor == null) {
+            Log.w(TAG, "Sensor type " + sensorType + " not available on this device");
+            return false;
+        }
+        apply(sensorType, sensor, fanout.add(sensorType, subscriber, samplingPeriodUs, maxReportLatencyUs));
+        return true;
+    }
+
+    /**
+     * Removes a subscription; the sensor is released once nobody needs it
+     */
+    public synchronized void unsubscribe(int sensorType, SensorFanout.Subscriber subscriber) {
+        Sensor sensor = sensors.get(sensorType);
+        if (sensor != null) {
+            apply(sensorType, sensor, fanout.remove(sensorType, subscriber));
+        }
+    }
+
+    /**
+     * Checks whether the device has a sensor
+     */
+    public synchronized boolean hasSensor(int sensorType) {
+        return getSensor(sensorType) != null;
+    }
+
+    /**
+     * Gets the number of sensors currently registered with the framework
+     */
+    public synchronized int getRegistrationCount() {
+        return registrations.size();
+    }
+
+    /**
+     * Gets the number of sensor events received since the process started
+     */
+    public long getDeliveredEventCount() {
+        return deliveredEvents.get();
+    }
+
+    // Re-registers the sensor only when what its subscribers need has changed
+    private void apply(int sensorType, Sensor sensor, SensorFanout.Rate rate) {
+        SensorFanout.Rate current = registrations.get(sensorType);
+        if (rate != null && rate.equals(current)) {
+            return;
+        }
+        if (current != null) {
+            sensorManager.unregisterListener(listener, sensor);
+            registrations.remove(sensorType);
+        }
+        if (rate == null) {
+            Log.i(TAG, "Released " + sensor.getName());
+            return;
+        }
+
+        int latencyUs = getReportLatencyUs(sensor, rate);
+        if (sensorManager.registerListener(listener, sensor, rate.samplingPeriodUs, latencyUs, sensorHandler)) {
+            registrations.put(sensorType, rate);
+            Log.i(TAG, "Registered " + sensor.getName() + " at " + rate.samplingPeriodUs + "us, latency "
+                + latencyUs + "us, FIFO " + sensor.getFifoMaxEventCount() + " events, wake-up " + sensor.isWakeUpSensor());
+        } else {
+            Log.e(TAG, "Could not register " + sensor.getName());
+        }
+    }
+
+    /**
+     * Gets the longest report latency, up to the requested one, the sensor's FIFO can hold
+     * without dropping samples
+     */
+    private static int getReportLatencyUs(Sensor sensor, SensorFanout.Rate rate) {
+        int fifoEvents = sensor.getFifoMaxEventCount();
+        if (fifoEvents <= 0) {
+            return 0; // No hardware batching: events are delivered as they come
+        }
+        long fifoLatencyUs = (long) fifoEvents * FIFO_SHARE_PERCENT / 100 * rate.samplingPeriodUs;
+        return (int) Math.min(rate.maxReportLatencyUs, fifoLatencyUs);
+    }
+
+    private Sensor getSensor(int sensorType) {
+        Sensor sensor = sensors.get(sensorType);
+        if (sensor == null) {
+            // The wake-up variant wakes the CPU when its FIFO needs draining instead of dropping samples
+            sensor = sensorManager.getDefaultSensor(sensorType, true);
+            if (sensor == null) {
+                sensor = sensorManager.getDefaultSensor(sensorType);
+            }
+            if (sensor != null) {
+                sensors.put(sensorType, sensor);
+            }
+        }
+        return sensor;
+    }
+}
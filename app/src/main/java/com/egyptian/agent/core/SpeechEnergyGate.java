@@ -0,0 +1,115 @@
+package com.egyptian.agent.core;
+
+/**
+ * Speech Energy Gate
+ * Cheap energy check in front of a streaming recognizer, so silence never reaches the decoder.
+ * Whole utterances still do: when the gate opens, the buffers just before the onset are fed
+ * first, and it stays open for a hangover after the energy drops, so the decoder never sees
+ * speech with pieces cut out. Has no Android dependencies and allocates nothing per buffer.
+ *
+ * Works on 16-bit little-endian mono PCM; the noise floor adapts while the gate is closed.
+ */
+public final class SpeechEnergyGate {
+    // Speech must be this much louder than the noise floor, and never quieter than MIN_OPEN_RMS
+    private static final float OPEN_RATIO = 3.0f;
+    private static final float MIN_OPEN_RMS = 300f;
+    // Noise floor follows quiet buffers slowly so a long utterance does not raise it
+    private static final float FLOOR_ALPHA = 0.05f;
+
+    /**
+     * Receives the audio that passes the gate
+     */
+    public interface Sink {
+        void feed(byte[] buffer, int length);
+        /** The gate closed; the decoder can finish the utterance */
+        void onSegmentEnd();
+    }
+
+    private final byte[][] preRoll;
+    private final int[] preRollLengths;
+    private final int hangoverBytes;
+    private int preRollHead;
+    private int preRollCount;
+    private boolean open;
+    private int quietBytes;
+    private float noiseFloor = -1;
+
+    /**
+     * @param bufferBytes Largest buffer that will be passed in
+     * @param preRollBuffers Buffers kept from before the onset
+     * @param hangoverBytes Quiet audio still fed after the energy drops
+     */
+    public SpeechEnergyGate(int bufferBytes, int preRollBuffers, int hangoverBytes) {
+        this.preRoll = new byte[preRollBuffers][bufferBytes];
+        this.preRollLengths = new int[preRollBuffers];
+        this.hangoverBytes = hangoverBytes;
+    }
+
+    /**
+     * Passes one buffer through the gate
+     */
+    public void process(byte[] buffer, int length, Sink sink) {
+        float rms = rms(buffer, length);
+        boolean loud = rms >= Math.max(MIN_OPEN_RMS, noiseFloor * OPEN_RATIO);
+
+        if (open) {
+            sink.feed(buffer, length);
+            quietBytes = loud ? 0 : quietBytes + length;
+            if (quietBytes >= hangoverBytes) {
+                open = false;
+                sink.onSegmentEnd();
+            }
+            return;
+        }
+
+        if (loud) {
+            open = true;
+            quietBytes = 0;
+            // Oldest first, so the decoder hears the onset in order
+            for (int i = preRollCount; i > 0; i--) {
+                int slot = (preRollHead - i + preRoll.length) % preRoll.length;
+                sink.feed(preRoll[slot], preRollLengths[slot]);
+            }
+            preRollCount = 0;
+            sink.feed(buffer, length);
+            return;
+        }
+
+        noiseFloor = noiseFloor < 0 ? rms : noiseFloor + FLOOR_ALPHA * (rms - noiseFloor);
+        if (preRoll.length > 0) {
+            System.arraycopy(buffer, 0, preRoll[preRollHead], 0, length);
+            preRollLengths[preRollHead] = length;
+            preRollHead = (preRollHead + 1) % preRoll.length;
+            preRollCount = Math.min(preRollCount + 1, preRoll.length);
+        }
+    }
+
+    /**
+     * Checks whether audio is currently passing
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes the gate and forgets buffered audio, e.g. after the recorder was paused
+     */
+    public void reset() {
+        open = false;
+        quietBytes = 0;
+        preRollCount = 0;
+    }
+
+    static float rms(byte[] buffer, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            short sample = (short) ((buffer[2 * i] & 0xff) | (buffer[2 * i + 1] << 8));
+            sum += sample * sample;
+        }
+        return (float) Math.sqrt(sum / samples);
+    }
+}
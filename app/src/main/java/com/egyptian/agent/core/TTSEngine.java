@@ -1,24 +1,36 @@
 package com.egyptian.agent.core;
 
 import android.content.Context;
+import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
 import com.egyptian.agent.accessibility.SeniorMode;
 import com.egyptian.agent.utils.CrashLogger;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Enhanced TTS Engine implementation for the Egyptian Agent
  */
 public class TTSEngine implements TTSEngineInterface {
     private static final String TAG = "TTSEngine";
+    // Per-request rate and pitch (percent of normal); the values of the hidden
+    // TextToSpeech.Engine.KEY_PARAM_RATE and KEY_PARAM_PITCH, which override the engine-wide settings
+    private static final String PARAM_RATE = "rate";
+    private static final String PARAM_PITCH = "pitch";
     private TextToSpeech textToSpeech;
     private boolean isInitialized = false;
     private Context context;
     private VoiceType currentVoiceType = VoiceType.NORMAL;
+    private Runnable onReadyListener;
+
+    // Callbacks keyed by utterance ID, so speech and file synthesis can run side by side
+    private final Map<String, SpeechCallback> pendingCallbacks = new ConcurrentHashMap<>();
 
     public enum VoiceType {
         NORMAL, SENIOR
@@ -45,6 +57,11 @@ public class TTSEngine implements TTSEngineInterface {
                     // Set default parameters
                     setLanguage("ar-EG");
                     setVoiceType(currentVoiceType);
+                    textToSpeech.setOnUtteranceProgressListener(new CallbackDispatcher());
+
+                    if (onReadyListener != null) {
+                        onReadyListener.run();
+                    }
                 }
             } else {
                 Log.e(TAG, "Initialization Failed!");
@@ -68,31 +85,9 @@ public class TTSEngine implements TTSEngineInterface {
         }
 
         // Create utterance ID for callbacks
-        String utteranceId = "utterance_" + System.currentTimeMillis();
-
-        // Set up progress listener if callback is provided
+        String utteranceId = "utterance_" + System.nanoTime();
         if (callback != null) {
-            textToSpeech.setOnUtteranceProgressListener(new UtteranceProgressListener() {
-                @Override
-                public void onStart(String utteranceId) {
-                    // Started speaking
-                }
-
-                @Override
-                public void onDone(String utteranceId) {
-                    callback.onCompleted();
-                }
-
-                @Override
-                public void onError(String utteranceId) {
-                    callback.onError("Error occurred while speaking");
-                }
-
-                @Override
-                public void onError(String utteranceId, int errorCode) {
-                    callback.onError("Error occurred while speaking: " + errorCode);
-                }
-            });
+            pendingCallbacks.put(utteranceId, callback);
         }
 
         // Speak the text
@@ -105,12 +100,122 @@ public class TTSEngine implements TTSEngineInterface {
         int result = textToSpeech.speak(text, TextToSpeech.QUEUE_FLUSH, paramsMap, utteranceId);
         if (result == TextToSpeech.ERROR) {
             Log.e(TAG, "Error occurred while speaking");
+            pendingCallbacks.remove(utteranceId);
             if (callback != null) {
                 callback.onError("Error occurred while speaking");
             }
         }
     }
 
+    /**
+     * Synthesizes text into a WAV file instead of playing it
+     * @param text Text to synthesize
+     * @param params Speech parameters (rate and pitch are applied to this file only, leaving live
+     *               speech untouched)
+     * @param outputFile Destination WAV file
+     * @param callback Invoked once the file has been fully written
+     */
+    public void synthesizeToFile(String text, SpeechParams params, File outputFile, SpeechCallback callback) {
+        if (!isInitialized || text == null || text.isEmpty()) {
+            if (callback != null) {
+                callback.onError("TTS not initialized or text is empty");
+            }
+            return;
+        }
+
+        // Runs off the main thread, so never change the shared engine's rate and pitch here
+        Bundle synthesisParams = new Bundle();
+        if (params != null) {
+            putPercent(synthesisParams, PARAM_RATE, params.getRate());
+            putPercent(synthesisParams, PARAM_PITCH, params.getPitch());
+        }
+
+        String utteranceId = "synth_" + System.nanoTime();
+        if (callback != null) {
+            pendingCallbacks.put(utteranceId, callback);
+        }
+
+        int result = textToSpeech.synthesizeToFile(text, synthesisParams, outputFile, utteranceId);
+        if (result == TextToSpeech.ERROR) {
+            Log.e(TAG, "Error occurred while synthesizing to file: " + outputFile);
+            pendingCallbacks.remove(utteranceId);
+            if (callback != null) {
+                callback.onError("Error occurred while synthesizing");
+            }
+        }
+    }
+
+    private static void putPercent(Bundle bundle, String key, float value) {
+        int percent = (int) (value * 100);
+        if (percent > 0) {
+            bundle.putInt(key, percent);
+        }
+    }
+
+    /**
+     * Registers a listener that runs once the engine has finished initializing
+     * @param listener Listener to run; invoked immediately if already initialized
+     */
+    public void setOnReadyListener(Runnable listener) {
+        this.onReadyListener = listener;
+        if (isInitialized && listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Checks if the underlying TextToSpeech engine is ready
+     * @return true if ready, false otherwise
+     */
+    public boolean isReady() {
+        return isInitialized;
+    }
+
+    /**
+     * Gets the currently selected voice type
+     * @return The current voice type
+     */
+    public VoiceType getVoiceType() {
+        return currentVoiceType;
+    }
+
+    /**
+     * Routes utterance progress events to the callback registered for that utterance
+     */
+    private class CallbackDispatcher extends UtteranceProgressListener {
+        @Override
+        public void onStart(String utteranceId) {
+            SpeechCallback callback = pendingCallbacks.get(utteranceId);
+            if (callback != null) {
+                callback.onStarted();
+            }
+        }
+
+        @Override
+        public void onDone(String utteranceId) {
+            SpeechCallback callback = pendingCallbacks.remove(utteranceId);
+            if (callback != null) {
+                callback.onCompleted();
+            }
+        }
+
+        @Override
+        public void onError(String utteranceId) {
+            SpeechCallback callback = pendingCallbacks.remove(utteranceId);
+            if (callback != null) {
+                callback.onError("Error occurred while speaking");
+            }
+        }
+
+        @Override
+        public void onError(String utteranceId, int errorCode) {
+            SpeechCallback callback = pendingCallbacks.remove(utteranceId);
+            if (callback != null) {
+                callback.onError("Error occurred while speaking: " + errorCode);
+            }
+        }
+    }
+
     @Override
     public void stopSpeaking() {
         if (isInitialized && textToSpeech.isSpeaking()) {
@@ -53,6 +53,8 @@ public interface TTSEngineInterface {
     }
 
     interface SpeechCallback {
+        default void onStarted() {
+        }
         void onCompleted();
         void onError(String errorMessage);
     }
@@ -3,13 +3,31 @@ package com.egyptian.agent.core;
 import android.content.Context;
 import android.util.Log;
 
+import com.egyptian.agent.performance.PipelineTracer;
+import com.egyptian.agent.updates.ModelDownloadManager;
+import com.egyptian.agent.utils.PhraseRewriter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Text-to-Speech Manager for Egyptian Agent
  * Handles speaking functionality with Egyptian dialect support
  */
 public class TTSManager {
     private static final String TAG = "TTSManager";
+    // Piper voice in the model registry; its config is the same name plus .json
+    private static final String PIPER_VOICE_MODEL = "ar_JO-kareem-medium.onnx";
     private static TTSEngine ttsEngine;
+    // Streams replies sentence by sentence once a Piper voice is installed and loads
+    private static volatile PiperTTSEngine piperEngine;
+    private static final AtomicBoolean piperLoadStarted = new AtomicBoolean();
+    private static PromptAudioCache promptCache;
     private static Context applicationContext;
     private static boolean isInitialized = false;
     private static boolean isSeniorMode = false;
@@ -27,6 +45,12 @@ public class TTSManager {
         ttsEngine = new TTSEngine();
         ttsEngine.initialize(context);
 
+        // Pre-synthesize the fixed prompts once the engine is up
+        promptCache = new PromptAudioCache(applicationContext, ttsEngine);
+        ttsEngine.setOnReadyListener(TTSManager::prewarmPromptCache);
+
+        loadPiperVoice();
+
         isInitialized = true;
         Log.i(TAG, "TTS Manager initialized successfully");
     }
@@ -42,17 +66,57 @@ public class TTSManager {
             return;
         }
 
+        // TTS span: from the speak request until audio starts playing
+        final long traceId = PipelineTracer.currentTraceId();
+        final long ttsStart = PipelineTracer.startSpan();
+
         // Apply Egyptian dialect transformations if needed
         String processedText = applyEgyptianTransformations(text);
 
+        // Fixed prompts are played straight from the pre-synthesized cache
+        float effectiveVolume = isSeniorMode ? volume * 1.5f : volume;
+        if (promptCache != null && promptCache.play(processedText, currentVoiceSettings(), effectiveVolume)) {
+            PipelineTracer.endSpan(traceId, PipelineTracer.Stage.TTS, ttsStart);
+            Log.d(TAG, "Played cached prompt: " + processedText);
+            return;
+        }
+
+        PiperTTSEngine piper = piperEngine;
+        if (piper != null) {
+            piper.setSpeechRate(speechRate);
+            piper.setVolume(effectiveVolume);
+            piper.speak(processedText, new PiperTTSEngine.TTSCompletionCallback() {
+                @Override
+                public void onStarted() {
+                    PipelineTracer.endSpan(traceId, PipelineTracer.Stage.TTS, ttsStart);
+                }
+
+                @Override
+                public void onComplete() {
+                    Log.d(TAG, "Piper TTS completed: " + processedText);
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    Log.e(TAG, "Piper TTS error: " + error.getMessage());
+                }
+            });
+            return;
+        }
+
         // Create speech parameters
         TTSEngine.SpeechParams params = new TTSEngine.SpeechParams();
         params.setRate(speechRate);
         params.setPitch(pitch);
-        params.setVolume(isSeniorMode ? volume * 1.5f : volume);
+        params.setVolume(effectiveVolume);
 
         // Speak the text
         ttsEngine.speak(processedText, params, new TTSEngine.SpeechCallback() {
+            @Override
+            public void onStarted() {
+                PipelineTracer.endSpan(traceId, PipelineTracer.Stage.TTS, ttsStart);
+            }
+
             @Override
             public void onCompleted() {
                 Log.d(TAG, "TTS completed: " + processedText);
@@ -66,31 +130,133 @@ public class TTSManager {
     }
 
     /**
-     * Applies Egyptian dialect transformations to the text
-     * @param text Original text
-     * @return Processed text with Egyptian dialect considerations
+     * Loads the installed Piper voice on the file I/O lane
+     * Until it is ready, and on phones without one, speech goes through the system TTS.
      */
-    private static String applyEgyptianTransformations(String text) {
-        String transformedText = text;
+    private static void loadPiperVoice() {
+        File voice = ModelDownloadManager.getInstance(applicationContext).getModelFile(PIPER_VOICE_MODEL);
+        if (voice == null || !piperLoadStarted.compareAndSet(false, true)) {
+            return;
+        }
 
-        // Example transformations (these would be more extensive in reality):
-        // Replace formal Arabic words with Egyptian colloquial equivalents
-        // This is a simplified example - a real implementation would be more comprehensive
-        transformedText = transformedText.replace("السيد", "العم");
-        transformedText = transformedText.replace("السيدة", "الست");
-        transformedText = transformedText.replace("الرجل", "الراجل");
+        BackgroundTaskManager.getInstance(applicationContext).executeTask(
+            BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
+                PiperTTSEngine engine = new PiperTTSEngine(applicationContext, voice.getPath());
+                if (engine.initializeNativeVoice()) {
+                    piperEngine = engine;
+                    Log.i(TAG, "Speaking through Piper voice " + PIPER_VOICE_MODEL);
+                } else {
+                    engine.destroy();
+                    Log.w(TAG, "Piper voice did not load, staying on system TTS");
+                }
+            }, () -> piperLoadStarted.set(false));
+    }
 
-        // Additional Egyptian dialect transformations
-        transformedText = transformedText.replace("أنا", "انا");
-        transformedText = transformedText.replace("إلى", "لـ");
-        transformedText = transformedText.replace("في", "فـ");
-        transformedText = transformedText.replace("أن", "إن");
+    /**
+     * Builds the cache settings that match what speak() would use right now
+     */
+    private static PromptAudioCache.VoiceSettings currentVoiceSettings() {
+        TTSEngine.VoiceType voiceType = isSeniorMode ? TTSEngine.VoiceType.SENIOR : TTSEngine.VoiceType.NORMAL;
+        return new PromptAudioCache.VoiceSettings(voiceType, speechRate, pitch, isSeniorMode);
+    }
+
+    /**
+     * Pre-warms the prompt cache for the current voice settings
+     */
+    private static void prewarmPromptCache() {
+        if (promptCache == null) {
+            return;
+        }
 
+        List<String> processedPrompts = new ArrayList<>();
+        for (String prompt : PromptAudioCache.FIXED_PROMPTS) {
+            processedPrompts.add(applyEgyptianTransformations(prompt));
+        }
+        promptCache.prewarm(processedPrompts, currentVoiceSettings());
+    }
+
+    // Dialect rules compiled once into single-pass rewriters. When patterns overlap,
+    // the longest match at a position wins; for identical patterns the first rule wins.
+    private static final PhraseRewriter EGYPTIAN_REWRITER = PhraseRewriter.builder()
+        // Replace formal Arabic words with Egyptian colloquial equivalents
+        .add("السيد", "العم")
+        .add("السيدة", "الست")
+        .add("الرجل", "الراجل")
+        // Additional Egyptian dialect transformations
+        .add("أنا", "انا")
+        .add("إلى", "لـ")
+        .add("في", "فـ")
+        .add("أن", "إن")
         // Normalize common Egyptian expressions
-        transformedText = transformedText.replace("إزاى", "إزي");
-        transformedText = transformedText.replace("أزاى", "أزي");
-        transformedText = transformedText.replace("فين", "mana");
+        .add("إزاى", "إزي")
+        .add("أزاى", "أزي")
+        .add("فين", "mana")
+        .build();
 
+    private static final PhraseRewriter COMPREHENSIVE_REWRITER = PhraseRewriter.builder()
+        // Common Egyptian expressions
+        .add("أهلاً وسهلاً", "اهلا وسهلا")
+        .add("شكراً", "شكرا")
+        .add("من فضلك", "من فضلك ياريت")
+        .add("عذراً", "آسف")
+        // More phonetic adaptations
+        .add("محمد", "محمود") // Common mispronunciation adaptation
+        .add("الUniversity", "الجامعة") // Adapt foreign terms
+        // Verb conjugations and informal expressions
+        .add("أريد", "عايز")
+        .add("أريدي", "عايزة") // Feminine form
+        .add("يريد", "عايز")
+        .add("تريد", "عايزة")
+        .add("أحب", "بحب")
+        .add("أكره", "مبيحبش")
+        .add("لا أعرف", "ماعرفش")
+        .add("لا أستطيع", "ماقدرش")
+        .add("متى", "إمتى")
+        .add("أين", "فين")
+        .add("لماذا", "ليه")
+        .add("الآن", "دلوقتي")
+        .add("غداً", "بكرة")
+        .add("البارحة", "النهاردة")
+        // Common Egyptian colloquial phrases
+        .add("كيف الحال", "إزيك")
+        .add("كيف حالك", "إزيك")
+        .add("كيف حالها", "إزيها")
+        .add("كيف حاله", "إزيه")
+        .add("هل تسمعني", "الله يسمعك")
+        .add("أراك لاحقاً", "بلاش")
+        .add("لا بأس", "أكيد")
+        .add("ربما", "ممكن")
+        .build();
+
+    // Memo of recently transformed strings; most utterances are repeated prompts
+    private static final int TRANSFORM_MEMO_SIZE = 64;
+    private static final Map<String, String> basicTransformMemo = createTransformMemo();
+    private static final Map<String, String> comprehensiveTransformMemo = createTransformMemo();
+
+    private static Map<String, String> createTransformMemo() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(TRANSFORM_MEMO_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TRANSFORM_MEMO_SIZE;
+            }
+        });
+    }
+
+    /**
+     * Applies Egyptian dialect transformations to the text
+     * @param text Original text
+     * @return Processed text with Egyptian dialect considerations
+     */
+    private static String applyEgyptianTransformations(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+
+        String transformedText = basicTransformMemo.get(text);
+        if (transformedText == null) {
+            transformedText = EGYPTIAN_REWRITER.rewrite(text);
+            basicTransformMemo.put(text, transformedText);
+        }
         return transformedText;
     }
 
@@ -100,49 +266,16 @@ public class TTSManager {
      * @return Processed text with Egyptian dialect considerations
      */
     public static String applyComprehensiveEgyptianTransformations(String text) {
-        String transformedText = applyEgyptianTransformations(text);
-
-        // Additional transformations specific to Egyptian dialect
-        // These might include phonetic adaptations, common expressions, etc.
-
-        // Common Egyptian expressions
-        transformedText = transformedText.replace("أهلاً وسهلاً", "اهلا وسهلا");
-        transformedText = transformedText.replace("شكراً", "شكرا");
-        transformedText = transformedText.replace("من فضلك", "من فضلك ياريت");
-        transformedText = transformedText.replace("عذراً", "آسف");
-
-        // More phonetic adaptations
-        transformedText = transformedText.replace("محمد", "محمود"); // Common mispronunciation adaptation
-        transformedText = transformedText.replace("الUniversity", "الجامعة"); // Adapt foreign terms
-
-        // Additional Egyptian dialect transformations
-        // Verb conjugations and informal expressions
-        transformedText = transformedText.replace("أريد", "عايز");
-        transformedText = transformedText.replace("أريدي", "عايزة"); // Feminine form
-        transformedText = transformedText.replace("يريد", "عايز");
-        transformedText = transformedText.replace("تريد", "عايزة");
-        transformedText = transformedText.replace("أحب", "بحب");
-        transformedText = transformedText.replace("أكره", "مبيحبش");
-        transformedText = transformedText.replace("لا أعرف", "ماعرفش");
-        transformedText = transformedText.replace("لا أستطيع", "ماقدرش");
-        transformedText = transformedText.replace("متى", "إمتى");
-        transformedText = transformedText.replace("أين", "فين");
-        transformedText = transformedText.replace("لماذا", "ليه");
-        transformedText = transformedText.replace("الآن", "دلوقتي");
-        transformedText = transformedText.replace("غداً", "بكرة");
-        transformedText = transformedText.replace("البارحة", "النهاردة");
-        transformedText = transformedText.replace("البارحة", "امبارح");
-
-        // Common Egyptian colloquial phrases
-        transformedText = transformedText.replace("كيف الحال", "إزيك");
-        transformedText = transformedText.replace("كيف حالك", "إزيك");
-        transformedText = transformedText.replace("كيف حالها", "إزيها");
-        transformedText = transformedText.replace("كيف حاله", "إزيه");
-        transformedText = transformedText.replace("هل تسمعني", "الله يسمعك");
-        transformedText = transformedText.replace("أراك لاحقاً", "بلاش");
-        transformedText = transformedText.replace("لا بأس", "أكيد");
-        transformedText = transformedText.replace("ربما", "ممكن");
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
 
+        String transformedText = comprehensiveTransformMemo.get(text);
+        if (transformedText == null) {
+            // The comprehensive rules apply on top of the basic ones
+            transformedText = COMPREHENSIVE_REWRITER.rewrite(applyEgyptianTransformations(text));
+            comprehensiveTransformMemo.put(text, transformedText);
+        }
         return transformedText;
     }
 
@@ -195,6 +328,9 @@ public class TTSManager {
         // Apply settings to current TTS engine if available
         if (ttsEngine != null && isInitialized) {
             ttsEngine.setVoiceType(TTSEngine.VoiceType.SENIOR);
+            if (ttsEngine.isReady()) {
+                prewarmPromptCache();
+            }
         }
     }
 
@@ -211,6 +347,9 @@ public class TTSManager {
         // Apply settings to current TTS engine if available
         if (ttsEngine != null && isInitialized) {
             ttsEngine.setVoiceType(TTSEngine.VoiceType.NORMAL);
+            if (ttsEngine.isReady()) {
+                prewarmPromptCache();
+            }
         }
     }
 
@@ -218,6 +357,12 @@ public class TTSManager {
      * Stops current TTS playback
      */
     public static void stop() {
+        if (promptCache != null) {
+            promptCache.stop();
+        }
+        if (piperEngine != null) {
+            piperEngine.stopSpeaking();
+        }
         if (ttsEngine != null && isInitialized) {
             ttsEngine.stopSpeaking();
         }
@@ -227,6 +372,15 @@ public class TTSManager {
      * Shuts down the TTS engine
      */
     public static void shutdown() {
+        if (promptCache != null) {
+            promptCache.destroy();
+            promptCache = null;
+        }
+        if (piperEngine != null) {
+            piperEngine.destroy();
+            piperEngine = null;
+            piperLoadStarted.set(false);
+        }
         if (ttsEngine != null) {
             // No explicit shutdown method in TTSEngine interface
             isInitialized = false;
@@ -0,0 +1,108 @@
+package com.egyptian.agent.core;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Places the calling thread on the right cores and at the right priority for its role
+ * Inference runs on the performance cores, background I/O on the efficiency cores,
+ * and latency-critical audio anywhere at elevated priority
+ */
+public final class ThreadPlacement {
+    private static final String TAG = "ThreadPlacement";
+    private static boolean libraryLoaded = false;
+    private static volatile boolean affinityFailureLogged = false;
+
+    static {
+        try {
+            System.loadLibrary("thread_affinity");
+            libraryLoaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Failed to load thread_affinity library, using thread priorities only", e);
+        }
+    }
+
+    /**
+     * Which cores a role may run on
+     */
+    public enum CoreClass {
+        PERFORMANCE,
+        EFFICIENCY,
+        ANY
+    }
+
+    /**
+     * Thread roles with their Linux priority and core class
+     */
+    public enum Role {
+        INFERENCE(Process.THREAD_PRIORITY_DEFAULT, CoreClass.PERFORMANCE),
+        AUDIO_CAPTURE(Process.THREAD_PRIORITY_URGENT_AUDIO, CoreClass.ANY),
+        AUDIO_PROCESSING(Process.THREAD_PRIORITY_AUDIO, CoreClass.ANY),
+        INTERACTIVE(Process.THREAD_PRIORITY_DEFAULT, CoreClass.ANY),
+        BACKGROUND(Process.THREAD_PRIORITY_BACKGROUND, CoreClass.EFFICIENCY),
+        EMERGENCY(Process.THREAD_PRIORITY_DISPLAY, CoreClass.ANY);
+
+        final int threadPriority;
+        final CoreClass coreClass;
+
+        Role(int threadPriority, CoreClass coreClass) {
+            this.threadPriority = threadPriority;
+            this.coreClass = coreClass;
+        }
+    }
+
+    private ThreadPlacement() {
+    }
+
+    /**
+     * Applies a role to the calling thread only
+     * Threads the caller starts afterwards (e.g. native inference workers) inherit the core mask
+     * @return true if the core mask was applied, false if only the priority was
+     */
+    public static boolean applyToCurrentThread(Role role) {
+        try {
+            Process.setThreadPriority(role.threadPriority);
+        } catch (Exception e) {
+            Log.w(TAG, "Could not set priority for " + role, e);
+        }
+
+        CpuTopology topology = CpuTopology.get();
+        if (!libraryLoaded || !topology.isHeterogeneous()) {
+            return false;
+        }
+
+        int[] cores = coresFor(role.coreClass, topology);
+        int result = nativeSetAffinity(cores);
+        if (result != 0) {
+            // Usually the app's cpuset excludes the requested cores (e.g. while backgrounded)
+            if (!affinityFailureLogged) {
+                affinityFailureLogged = true;
+                Log.w(TAG, "Could not pin " + role + " thread, errno " + (-result));
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Number of threads an inference pool should use so it fits on the performance cores
+     */
+    public static int getInferenceThreadCount() {
+        return CpuTopology.get().getPerformanceCores().length;
+    }
+
+    private static int[] coresFor(CoreClass coreClass, CpuTopology topology) {
+        switch (coreClass) {
+            case PERFORMANCE:
+                return topology.getPerformanceCores();
+            case EFFICIENCY:
+                return topology.getEfficiencyCores();
+            case ANY:
+            default:
+                // Explicitly widen so the thread does not inherit a pinned parent's mask
+                return topology.getAllCores();
+        }
+    }
+
+    private static native int nativeSetAffinity(int[] cpus);
+}
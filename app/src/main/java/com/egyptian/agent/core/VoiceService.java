@@ -10,7 +10,10 @@ import com.egyptian.agent.executors.EmergencyHandler;
 import com.egyptian.agent.stt.VoskSTTEngine;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 import com.egyptian.agent.hybrid.HybridOrchestrator;
+import com.egyptian.agent.nlp.FastIntentClassifier;
 import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.performance.MetricsRegistry;
+import com.egyptian.agent.performance.PipelineTracer;
 import com.egyptian.agent.ai.LlamaIntentEngine;
 import com.egyptian.agent.utils.CrashLogger;
 import com.egyptian.agent.utils.SystemAppHelper;
@@ -21,12 +24,18 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
 
     private static final String TAG = "VoiceService";
     private static final int NOTIFICATION_ID = 1;
+    private static final float MIN_INTENT_CONFIDENCE = 0.5f;
 
     private VoskSTTEngine sttEngine;
     private WakeWordDetector wakeWordDetector;
     private AudioManager audioManager;
     private HybridOrchestrator hybridOrchestrator;
     private LlamaIntentEngine llamaIntentEngine;  // New Llama integration
+    private volatile FastIntentClassifier fastIntentClassifier;  // Distilled from Llama, tried first
+    private final MetricsRegistry.Counter fastPathServed = MetricsRegistry.counter("intent.fast_path.served");
+    private final MetricsRegistry.Counter fastPathEscalated = MetricsRegistry.counter("intent.fast_path.escalated");
+    private final MetricsRegistry.Counter followUpsResolved = MetricsRegistry.counter("intent.follow_up.resolved");
+    private ContextMemory contextMemory;  // Dialogue turns for follow-ups like "ابعتله رسالة"
     private ModelManager modelManager;
     private boolean isListening = false;
     private boolean isProcessing = false;
@@ -51,6 +60,7 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
 
         // Initialize model manager based on device class
         modelManager = new ModelManager(this);
+        contextMemory = ContextMemory.getInstance(this);
 
         // Critical initialization sequence for Honor X6c
         initializeWakeLock();
@@ -58,6 +68,7 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
         initializeModelBasedOnDeviceClass(); // Initialize models based on device class
         initializeHybridOrchestrator(); // Initialize the new orchestrator
         initializeLlamaIntentEngine(); // Initialize Llama Intent Engine
+        initializeFastIntentClassifier();
         initializeWakeWord();
         initializeForegroundService();
 
@@ -129,6 +140,20 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
         }
     }
 
+    private void initializeFastIntentClassifier() {
+        BackgroundTaskManager.getInstance(this).executeTask(BackgroundTaskManager.TaskType.FILE_IO,
+            BackgroundTaskManager.TaskPriority.HIGH, () -> {
+                try (java.io.InputStream in = getAssets().open(FastIntentClassifier.ASSET_PATH)) {
+                    fastIntentClassifier = FastIntentClassifier.load(in);
+                    Log.i(TAG, "Fast intent classifier loaded, escalation threshold: " +
+                          fastIntentClassifier.getEscalationThreshold());
+                } catch (java.io.IOException e) {
+                    // Every command goes to Llama, as before
+                    Log.e(TAG, "Failed to load fast intent classifier", e);
+                }
+            });
+    }
+
     private void initializeAudioManager() {
         audioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
         audioManager.requestAudioFocus(this, AudioManager.STREAM_VOICE_CALL, AudioManager.AUDIOFOCUS_GAIN_TRANSIENT);
@@ -173,6 +198,7 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
 
         isProcessing = true;
         isListening = true;
+        PipelineTracer.beginTrace();
 
         // Critical audio handling
         audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, 0, 0);
@@ -212,6 +238,29 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
             return;
         }
 
+        // One INTENT span per command, from the fast path through any escalation, ending once an
+        // intent is decided
+        long intentStart = PipelineTracer.startSpan();
+
+        // Fast path: the distilled classifier answers confident commands in microseconds,
+        // leaving only the ambiguous ones for Llama
+        FastIntentClassifier fastClassifier = fastIntentClassifier;
+        if (fastClassifier != null) {
+            IntentResult fastResult = fastClassifier.classify(command);
+
+            // A follow-up completed from the dialogue needs no LLM round-trip to re-read context
+            EgyptianNormalizer.extractEntities(fastResult, command);
+            boolean followUp = resolveFollowUp(fastResult, command);
+            if (!fastClassifier.shouldEscalate(fastResult)
+                    || (followUp && fastResult.getConfidence() >= MIN_INTENT_CONFIDENCE)) {
+                fastPathServed.increment();
+                PipelineTracer.endSpan(PipelineTracer.Stage.INTENT, intentStart);
+                processIntentResult(fastResult, command, followUp);
+                return;
+            }
+            fastPathEscalated.increment();
+        }
+
         // Use the Llama Intent Engine for advanced Egyptian dialect processing
         if (llamaIntentEngine != null && llamaIntentEngine.isReady()) {
             // Process command through Llama Intent Engine
@@ -222,16 +271,21 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                 // If Llama doesn't recognize, try hybrid orchestrator as fallback
                 if (hybridOrchestrator != null) {
                     // Normalize the command using Egyptian dialect processing
+                    long normalizeStart = PipelineTracer.startSpan();
                     String normalizedCommand = EgyptianNormalizer.normalize(command);
+                    PipelineTracer.endSpan(PipelineTracer.Stage.NORMALIZE, normalizeStart);
 
-                    // Use the hybrid orchestrator to determine intent
+                    // Use the hybrid orchestrator to determine intent; the callback may arrive on another thread
+                    long traceId = PipelineTracer.currentTraceId();
                     hybridOrchestrator.determineIntent(normalizedCommand, hybridResult -> {
+                        PipelineTracer.endSpan(traceId, PipelineTracer.Stage.INTENT, intentStart);
                         // Process the result on the main thread
                         new Handler(Looper.getMainLooper()).post(() -> {
                             // If the orchestrator returns unknown, try the Quantum class
                             if (hybridResult.getIntentType() == IntentType.UNKNOWN) {
                                 Quantum quantum = new Quantum(VoiceService.this);
                                 quantum.processCommand(command);
+                                PipelineTracer.endTrace();
                                 restartWakeWordListening();
                             } else {
                                 processIntentResult(hybridResult, command);
@@ -240,28 +294,36 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                     });
                 } else {
                     // Fallback to Quantum class for intent detection
+                    PipelineTracer.endSpan(PipelineTracer.Stage.INTENT, intentStart);
                     Quantum quantum = new Quantum(this);
                     quantum.processCommand(command);
+                    PipelineTracer.endTrace();
                     restartWakeWordListening();
                 }
             } else {
                 // Process the result from Llama Intent Engine
+                PipelineTracer.endSpan(PipelineTracer.Stage.INTENT, intentStart);
                 processIntentResult(result, command);
             }
         } else {
             // Fallback to hybrid orchestrator if Llama is not ready
             if (hybridOrchestrator != null) {
                 // Normalize the command using Egyptian dialect processing
+                long normalizeStart = PipelineTracer.startSpan();
                 String normalizedCommand = EgyptianNormalizer.normalize(command);
+                PipelineTracer.endSpan(PipelineTracer.Stage.NORMALIZE, normalizeStart);
 
-                // Use the hybrid orchestrator to determine intent
+                // Use the hybrid orchestrator to determine intent; the callback may arrive on another thread
+                long traceId = PipelineTracer.currentTraceId();
                 hybridOrchestrator.determineIntent(normalizedCommand, result -> {
+                    PipelineTracer.endSpan(traceId, PipelineTracer.Stage.INTENT, intentStart);
                     // Process the result on the main thread
                     new Handler(Looper.getMainLooper()).post(() -> {
                         // If the orchestrator returns unknown, try the Quantum class
                         if (result.getIntentType() == IntentType.UNKNOWN) {
                             Quantum quantum = new Quantum(VoiceService.this);
                             quantum.processCommand(command);
+                            PipelineTracer.endTrace();
                             restartWakeWordListening();
                         } else {
                             processIntentResult(result, command);
@@ -270,19 +332,45 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                 });
             } else {
                 // Fallback to Quantum class for intent detection
+                PipelineTracer.endSpan(PipelineTracer.Stage.INTENT, intentStart);
                 Quantum quantum = new Quantum(this);
                 quantum.processCommand(command);
+                PipelineTracer.endTrace();
                 restartWakeWordListening();
             }
         }
     }
 
+    /**
+     * Fills a contact or app the command refers to with a pronoun, or rebuilds a bare "تاني",
+     * from the recent dialogue
+     * @return true if the result was completed from the dialogue
+     */
+    private boolean resolveFollowUp(IntentResult result, String command) {
+        boolean resolved = contextMemory.getDialogueState()
+            .resolveReferences(result, command, System.currentTimeMillis());
+        if (resolved) {
+            followUpsResolved.increment();
+        }
+        return resolved;
+    }
+
     private void processIntentResult(IntentResult result, String originalCommand) {
+        // Results from the LLM and orchestrator paths get the same follow-up resolution
+        processIntentResult(result, originalCommand, resolveFollowUp(result, originalCommand));
+    }
+
+    /**
+     * @param followUp Whether the result was completed from the dialogue; resolution fills the
+     *                 result once, so a second attempt would report false
+     */
+    private void processIntentResult(IntentResult result, String originalCommand, boolean followUp) {
         Log.i(TAG, "Processing intent result: " + result.getIntentType() + " with confidence: " + result.getConfidence());
 
         // Check if confidence is too low
-        if (result.getConfidence() < 0.5) {
+        if (result.getConfidence() < MIN_INTENT_CONFIDENCE) {
             TTSManager.speak(this, "مش فاهمك كويس. قول الأمر تاني");
+            PipelineTracer.endTrace();
             restartWakeWordListening();
             return;
         }
@@ -293,7 +381,9 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                 String contactName = result.getEntity("contact", "");
                 if (!contactName.isEmpty()) {
                     TTSManager.speak(this, "بتتصل بـ " + contactName);
-                    CallExecutor.handleCommand(this, originalCommand);
+                    contextMemory.recordTurn(result);
+                    // The executor reads the contact from the command, which only has a pronoun
+                    CallExecutor.handleCommand(this, followUp ? "اتصل على " + contactName : originalCommand);
                 } else {
                     TTSManager.speak(this, "مين اللي عايز تتصل بيه؟");
                 }
@@ -303,7 +393,11 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                 String message = result.getEntity("message", "");
                 if (!recipient.isEmpty() && !message.isEmpty()) {
                     TTSManager.speak(this, "ببعت رسالة لـ " + recipient);
-                    WhatsAppExecutor.handleCommand(this, originalCommand);
+                    contextMemory.recordTurn(result);
+                    long executeStart = PipelineTracer.startSpan();
+                    WhatsAppExecutor.handleCommand(this,
+                        followUp ? "رسالة لـ " + recipient + " قول " + message : originalCommand);
+                    PipelineTracer.endSpan(PipelineTracer.Stage.EXECUTE, executeStart);
                 } else {
                     TTSManager.speak(this, "عايز تبعت رسالة لحد معين؟");
                 }
@@ -312,7 +406,10 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
                 String time = result.getEntity("time", "");
                 if (!time.isEmpty()) {
                     TTSManager.speak(this, "بأضع تنبيه لـ " + time);
+                    contextMemory.recordTurn(result);
+                    long executeStart = PipelineTracer.startSpan();
                     AlarmExecutor.handleCommand(this, originalCommand);
+                    PipelineTracer.endSpan(PipelineTracer.Stage.EXECUTE, executeStart);
                 } else {
                     TTSManager.speak(this, "متى عايز التنبيه؟");
                 }
@@ -326,25 +423,29 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
             default:
                 // Try with Quantum class for additional intent detection
                 Quantum quantum = new Quantum(this);
-                quantum.processCommand(originalCommand);
                 // If still unknown, handle as unknown
-                if (!quantum.getLastContact().isEmpty()) {
+                if (quantum.processCommand(originalCommand)) {
                     // Command was processed by Quantum
                     restartWakeWordListening();
                 } else {
                     handleUnknownCommand(originalCommand);
                 }
         }
+
+        // The call path ends its trace when the call is placed; this closes every other path
+        PipelineTracer.endTrace();
     }
 
     private void handleEmergencyCommand() {
         EmergencyHandler.trigger(this);
         // VibrationManager.vibrateEmergency(this);
+        PipelineTracer.endTrace();
         restartWakeWordListening();
     }
 
     private void handleSeniorRestrictedCommand(String command) {
         SeniorMode.handleRestrictedCommand(this, command);
+        PipelineTracer.endTrace();
         restartWakeWordListening();
     }
 
@@ -389,6 +490,11 @@ public class VoiceService extends Service implements AudioManager.OnAudioFocusCh
             audioManager.abandonAudioFocus(this);
         }
 
+        // The debounced write may not have run yet; the process can die any time after this
+        if (contextMemory != null) {
+            contextMemory.flush();
+        }
+
         // Critical for memory management on 6GB RAM devices
         System.gc();
     }
@@ -6,10 +6,10 @@ import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.util.Log;
 
+import com.egyptian.agent.performance.QualityGovernor;
 import com.egyptian.agent.stt.VoskSTTEngine;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Wake Word Detector
@@ -25,6 +25,11 @@ public class WakeWordDetector {
         AudioFormat.CHANNEL_IN_MONO, 
         AudioFormat.ENCODING_PCM_16BIT
     );
+    private static final int BYTES_PER_MS = SAMPLE_RATE * 2 / 1000;
+    // Enough audio before the onset for the soft "يا" of the wake phrase
+    private static final int GATE_PRE_ROLL_MS = 300;
+    // Pauses between the words of the wake phrase must not close the gate
+    private static final int GATE_HANGOVER_MS = 700;
     
     private Context context;
     private ExecutorService executorService;
@@ -33,12 +38,18 @@ public class WakeWordDetector {
     private byte[] buffer;
     private WakeWordCallback callback;
     private VoskSTTEngine sttEngine;
+    private final SpeechEnergyGate energyGate;
+    private boolean wakeWordHeard;
     
     public WakeWordDetector(Context context, WakeWordCallback callback) {
         this.context = context;
         this.callback = callback;
-        this.executorService = Executors.newSingleThreadExecutor();
+        // Capture runs for as long as the microphone is open, so it has its own thread
+        this.executorService = BackgroundTaskManager.getInstance(context)
+            .newStreamExecutor("wakeword-capture", ThreadPlacement.Role.AUDIO_CAPTURE);
         this.buffer = new byte[BUFFER_SIZE];
+        this.energyGate = new SpeechEnergyGate(BUFFER_SIZE,
+            Math.max(1, GATE_PRE_ROLL_MS * BYTES_PER_MS / BUFFER_SIZE), GATE_HANGOVER_MS * BYTES_PER_MS);
         
         // Initialize STT engine for wake word detection
         initializeSTTEngine();
@@ -87,13 +98,35 @@ public class WakeWordDetector {
                 audioRecord.startRecording();
                 
                 Log.d(TAG, "Started listening for wake words");
-                
+
+                // In the cheaper quality tiers an energy gate keeps silence away from the
+                // recognizer; it only ever drops silence, never part of an utterance
+                QualityGovernor governor = QualityGovernor.getInstance();
+                SpeechEnergyGate.Sink recognizerSink = new SpeechEnergyGate.Sink() {
+                    @Override
+                    public void feed(byte[] audio, int length) {
+                        wakeWordHeard |= detectWakeWord(audio, length);
+                    }
+
+                    @Override
+                    public void onSegmentEnd() {
+                        wakeWordHeard |= sttEngine != null && containsWakeWord(sttEngine.finishAudio());
+                    }
+                };
+
                 while (isListening) {
                     int bytesRead = audioRecord.read(buffer, 0, BUFFER_SIZE);
-                    
+
                     if (bytesRead > 0) {
-                        // Process the audio buffer for wake word detection
-                        if (detectWakeWord(buffer, bytesRead)) {
+                        if (governor.getTier().wakeWordEnergyGate || energyGate.isOpen()) {
+                            energyGate.process(buffer, bytesRead, recognizerSink);
+                        } else {
+                            recognizerSink.feed(buffer, bytesRead);
+                        }
+
+                        if (wakeWordHeard) {
+                            wakeWordHeard = false;
+                            energyGate.reset();
                             Log.i(TAG, "Wake word detected!");
                             
                             // Stop recording temporarily to avoid multiple detections
@@ -177,17 +210,7 @@ public class WakeWordDetector {
             // This is a simplified approach - in reality, you'd need to properly decode the audio
 
             // Use a keyword spotting approach by converting to text first
-            String recognizedText = sttEngine.recognizeAudio(audioBuffer, bufferSize);
-
-            if (recognizedText != null) {
-                // Check for wake words in the recognized text
-                String lowerText = recognizedText.toLowerCase();
-
-                // Check for "يا صاحبي" (ya sa7bi) or "يا كبير" (ya kabeer)
-                return lowerText.contains("يا صاحبي") || lowerText.contains("يا كبير") ||
-                       lowerText.contains("ya sa7bi") || lowerText.contains("ya kabeer") ||
-                       lowerText.contains("ya7ya") || lowerText.contains("big friend");
-            }
+            return containsWakeWord(sttEngine.recognizeAudio(audioBuffer, bufferSize));
         } catch (Exception e) {
             Log.e(TAG, "Error during wake word detection", e);
         }
@@ -195,6 +218,21 @@ public class WakeWordDetector {
         return false;
     }
 
+    /**
+     * Checks recognized text for the wake words
+     */
+    private static boolean containsWakeWord(String recognizedText) {
+        if (recognizedText == null) {
+            return false;
+        }
+        String lowerText = recognizedText.toLowerCase();
+
+        // Check for "يا صاحبي" (ya sa7bi) or "يا كبير" (ya kabeer)
+        return lowerText.contains("يا صاحبي") || lowerText.contains("يا كبير") ||
+               lowerText.contains("ya sa7bi") || lowerText.contains("ya kabeer") ||
+               lowerText.contains("ya7ya") || lowerText.contains("big friend");
+    }
+
     /**
      * Destroys the wake word detector and cleans up resources
      */
@@ -5,11 +5,11 @@ import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.util.Log;
+import com.egyptian.agent.performance.PipelineTracer;
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Whisper-based ASR engine for Egyptian dialect speech recognition
@@ -27,10 +27,10 @@ public class WhisperASREngine {
     private AudioRecord audioRecord;
     private Thread recordingThread;
     private boolean isRecording = false;
-    private boolean isProcessing = false;
+    // Chunk currently queued or running on the audio lane; a dropped chunk reports done as well
+    private volatile Future<?> pendingChunk;
     
-    private final ExecutorService inferenceExecutor = Executors.newSingleThreadExecutor();
-    private final ExecutorService audioProcessingExecutor = Executors.newSingleThreadExecutor();
+    private final BackgroundTaskManager taskManager;
     
     private ASRCallback callback;
     
@@ -43,6 +43,7 @@ public class WhisperASREngine {
         this.context = context;
         this.modelPath = modelPath;
         this.deviceClass = ((MainApplication) context.getApplicationContext()).getDeviceClass();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
         
         Log.i(TAG, "Whisper ASR Engine initialized for device class: " + deviceClass.name() + 
               " with model: " + modelPath);
@@ -108,6 +109,7 @@ public class WhisperASREngine {
         
         recordingThread = new Thread(() -> {
             Log.i(TAG, "Starting audio recording thread");
+            ThreadPlacement.applyToCurrentThread(ThreadPlacement.Role.AUDIO_CAPTURE);
             
             // Buffer to hold audio data
             short[] audioBuffer = new short[BUFFER_SIZE / 2]; // 16-bit samples
@@ -116,22 +118,19 @@ public class WhisperASREngine {
                 try {
                     int numRead = audioRecord.read(audioBuffer, 0, audioBuffer.length);
                     
-                    if (numRead > 0 && !isProcessing) {
+                    if (numRead > 0 && (pendingChunk == null || pendingChunk.isDone())) {
                         // Process the audio chunk in a separate thread to avoid blocking recording
                         final short[] chunk = new short[numRead];
                         System.arraycopy(audioBuffer, 0, chunk, 0, numRead);
                         
-                        isProcessing = true;
-                        
-                        audioProcessingExecutor.submit(() -> {
-                            try {
-                                // Check if this audio chunk has enough energy to warrant processing
-                                if (hasSignificantEnergy(chunk)) {
-                                    // Process the audio chunk for speech recognition
-                                    processAudioChunk(chunk);
-                                }
-                            } finally {
-                                isProcessing = false;
+                        pendingChunk = taskManager.executeAudioProcessingTask(() -> {
+                            // Check if this audio chunk has enough energy to warrant processing
+                            long vadStart = PipelineTracer.startSpan();
+                            boolean hasSpeech = hasSignificantEnergy(chunk);
+                            PipelineTracer.endSpan(PipelineTracer.Stage.VAD, vadStart);
+                            if (hasSpeech) {
+                                // Process the audio chunk for speech recognition
+                                processAudioChunk(chunk);
                             }
                         });
                     }
@@ -166,8 +165,8 @@ public class WhisperASREngine {
      * Processes an audio chunk through Whisper for speech recognition
      */
     private void processAudioChunk(short[] audioData) {
-        // Submit inference task to executor
-        Future<?> inferenceTask = inferenceExecutor.submit(() -> {
+        // Submit inference task to the shared inference lane
+        taskManager.executeTask(BackgroundTaskManager.TaskType.INFERENCE, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.d(TAG, "Starting Whisper inference for audio chunk of " + audioData.length + " samples");
                 
@@ -178,13 +177,17 @@ public class WhisperASREngine {
                 }
                 
                 // Perform Whisper transcription
+                long asrStart = PipelineTracer.startSpan();
                 String result = transcribeWithWhisper(floatAudioData);
+                PipelineTracer.endSpan(PipelineTracer.Stage.ASR, asrStart);
                 
                 if (result != null && !result.trim().isEmpty()) {
                     Log.i(TAG, "Whisper transcription result: " + result);
                     
                     // Apply Egyptian dialect normalization
+                    long normalizeStart = PipelineTracer.startSpan();
                     String normalizedResult = com.egyptian.agent.stt.EgyptianNormalizer.normalize(result);
+                    PipelineTracer.endSpan(PipelineTracer.Stage.NORMALIZE, normalizeStart);
                     
                     if (callback != null) {
                         callback.onResult(normalizedResult);
@@ -198,6 +201,10 @@ public class WhisperASREngine {
                     callback.onError(e);
                 }
             }
+        }, () -> {
+            if (callback != null) {
+                callback.onError(new RejectedExecutionException("Inference lane full, audio chunk dropped"));
+            }
         });
     }
     
@@ -277,9 +284,6 @@ public class WhisperASREngine {
     public void destroy() {
         stopListening();
 
-        inferenceExecutor.shutdown();
-        audioProcessingExecutor.shutdown();
-
         Log.i(TAG, "Whisper ASR engine destroyed");
     }
 }
\ No newline at end of file
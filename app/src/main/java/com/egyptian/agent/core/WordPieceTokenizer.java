@@ -0,0 +1,179 @@
+package com.egyptian.agent.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WordPiece Tokenizer
+ * BERT-style greedy longest-match tokenizer for the OpenPhone model. Encodes into caller-owned
+ * arrays so a fixed-length input can be reused across calls. Has no Android dependencies.
+ */
+public class WordPieceTokenizer {
+    private static final String CONTINUATION = "##";
+    private static final int MAX_WORD_CHARS = 48;
+
+    private final Map<String, Integer> vocab;
+    private final int vocabularySize;
+    private final int padId;
+    private final int unknownId;
+    private final int startId;
+    private final int endId;
+
+    private WordPieceTokenizer(Map<String, Integer> vocab, int vocabularySize) throws IOException {
+        this.vocab = vocab;
+        this.vocabularySize = vocabularySize;
+        this.padId = requireToken("[PAD]");
+        this.unknownId = requireToken("[UNK]");
+        this.startId = requireToken("[CLS]");
+        this.endId = requireToken("[SEP]");
+    }
+
+    /**
+     * Loads a vocabulary with one token per line; the line number is the token id
+     * Blank lines keep their id but hold no token, and a duplicated token takes the id of its
+     * last line, as BERT's own vocabulary loader does.
+     */
+    public static WordPieceTokenizer load(InputStream vocabStream) throws IOException {
+        Map<String, Integer> vocab = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(vocabStream, StandardCharsets.UTF_8));
+        String line;
+        int id = 0;
+        for (; (line = reader.readLine()) != null; id++) {
+            String token = line.trim();
+            if (!token.isEmpty()) {
+                vocab.put(token, id);
+            }
+        }
+        return new WordPieceTokenizer(vocab, id);
+    }
+
+    /**
+     * Encodes text as [CLS] pieces [SEP] followed by [PAD] up to ids.length
+     * @param text The command
+     * @param ids Filled with token ids
+     * @param wordIndex Filled with the index in words of the word a token starts, or -1 for
+     *                  continuation pieces, special tokens and padding
+     * @param words Cleared, then filled with the words that produced at least one token
+     * @return Number of tokens before padding
+     */
+    public int encode(String text, long[] ids, int[] wordIndex, List<String> words) {
+        words.clear();
+        int maxTokens = ids.length - 1; // Leave room for [SEP]
+        int count = 0;
+        ids[count] = startId;
+        wordIndex[count++] = -1;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length && count < maxTokens) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || isDiacritic(c)) {
+                i++;
+                continue;
+            }
+
+            // A word is a run of letters and digits; any other character stands alone
+            int start = i;
+            if (Character.isLetterOrDigit(c)) {
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || isDiacritic(text.charAt(i)))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            String word = normalizeWord(text, start, i);
+            if (word.isEmpty()) {
+                continue;
+            }
+
+            words.add(word);
+            count = encodeWord(word, words.size() - 1, ids, wordIndex, count, maxTokens);
+        }
+
+        ids[count] = endId;
+        wordIndex[count++] = -1;
+        for (int p = count; p < ids.length; p++) {
+            ids[p] = padId;
+            wordIndex[p] = -1;
+        }
+        return count;
+    }
+
+    private int encodeWord(String word, int index, long[] ids, int[] wordIndex, int count, int maxTokens) {
+        if (word.length() > MAX_WORD_CHARS) {
+            ids[count] = unknownId;
+            wordIndex[count] = index;
+            return count + 1;
+        }
+
+        int first = count;
+        int start = 0;
+        while (start < word.length()) {
+            if (count >= maxTokens) {
+                return count;
+            }
+
+            // Longest vocabulary piece starting at start
+            Integer id = null;
+            int end = word.length();
+            while (end > start) {
+                String piece = start == 0 ? word.substring(0, end) : CONTINUATION + word.substring(start, end);
+                id = vocab.get(piece);
+                if (id != null) {
+                    break;
+                }
+                end--;
+            }
+
+            if (id == null) {
+                // No piece matches: the whole word becomes [UNK]
+                ids[first] = unknownId;
+                wordIndex[first] = index;
+                return first + 1;
+            }
+
+            ids[count] = id;
+            wordIndex[count] = start == 0 ? index : -1;
+            count++;
+            start = end;
+        }
+        return count;
+    }
+
+    private static String normalizeWord(String text, int start, int end) {
+        StringBuilder word = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isDiacritic(c)) {
+                word.append(Character.toLowerCase(c));
+            }
+        }
+        return word.toString();
+    }
+
+    // Arabic short vowels, shadda, sukun and tatweel carry no meaning for intent detection
+    private static boolean isDiacritic(char c) {
+        return (c >= '\u064B' && c <= '\u0652') || c == '\u0640';
+    }
+
+    private int requireToken(String token) throws IOException {
+        Integer id = vocab.get(token);
+        if (id == null) {
+            throw new IOException("Vocabulary has no " + token + " token");
+        }
+        return id;
+    }
+
+    /**
+     * Gets the number of ids, which matches the model's embedding rows
+     */
+    public int getVocabularySize() {
+        return vocabularySize;
+    }
+}
@@ -14,6 +14,7 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.egyptian.agent.core.TTSManager;
+import com.egyptian.agent.performance.PipelineTracer;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 
 /**
@@ -33,6 +34,7 @@ public class CallExecutor {
 
         try {
             // Extract contact name from command
+            long resolveStart = PipelineTracer.startSpan();
             String contactName = extractContactName(command);
             if (contactName.isEmpty()) {
                 TTSManager.speak(context, "اسم الشخص مش واضح");
@@ -44,6 +46,7 @@ public class CallExecutor {
             
             // Get phone number for the contact
             String phoneNumber = getPhoneNumberForContact(context, normalizedContact);
+            PipelineTracer.endSpan(PipelineTracer.Stage.ENTITY_RESOLUTION, resolveStart);
             
             if (phoneNumber.isEmpty()) {
                 TTSManager.speak(context, "ملاقيش رقم " + normalizedContact + " في جهات الاتصال");
@@ -151,6 +154,7 @@ public class CallExecutor {
      * @param phoneNumber The phone number to call
      */
     private static void makeCall(Context context, String phoneNumber) {
+        long executeStart = PipelineTracer.startSpan();
         try {
             Intent callIntent = new Intent(Intent.ACTION_CALL);
             callIntent.setData(Uri.parse("tel:" + phoneNumber));
@@ -159,6 +163,9 @@ public class CallExecutor {
             callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             
             context.startActivity(callIntent);
+            PipelineTracer.endSpan(PipelineTracer.Stage.EXECUTE, executeStart);
+            // The call is the action the command asked for, so the trace ends here
+            PipelineTracer.endTrace();
             
             Log.d(TAG, "Initiating call to: " + phoneNumber);
             TTSManager.speak(context, "بتصل على " + phoneNumber);
@@ -14,6 +14,7 @@ import android.util.Log;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
 
 import java.util.Arrays;
@@ -68,11 +69,14 @@ public class EmergencyHandler {
         // Try to call emergency services
         callEmergencyServices(context);
         
-        // Share location if available
-        shareLocation(context);
-        
-        // Notify guardians if configured
-        notifyGuardians(context);
+        // Location lookup, SMS and logging run off the caller's thread, ahead of all queued work
+        BackgroundTaskManager.getInstance(context).executeEmergencyTask(() -> {
+            // Share location if available
+            shareLocation(context);
+
+            // Notify guardians if configured
+            notifyGuardians(context);
+        });
     }
     
     /**
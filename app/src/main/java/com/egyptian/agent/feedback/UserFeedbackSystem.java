@@ -3,8 +3,10 @@ package com.egyptian.agent.feedback;
 import android.content.Context;
 import android.util.Log;
 
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.utils.CrashLogger;
+import com.egyptian.agent.utils.PiiScanner;
 import com.egyptian.agent.executors.GuardianNotificationSystem;
 
 import java.io.File;
@@ -13,8 +15,6 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * User feedback system for collecting user experiences and suggestions
@@ -27,11 +27,11 @@ public class UserFeedbackSystem {
     
     private static UserFeedbackSystem instance;
     private Context context;
-    private ExecutorService executor;
+    private final BackgroundTaskManager taskManager;
     
     private UserFeedbackSystem(Context context) {
         this.context = context.getApplicationContext();
-        this.executor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
     }
     
     public static synchronized UserFeedbackSystem getInstance(Context context) {
@@ -45,13 +45,16 @@ public class UserFeedbackSystem {
      * Submit user feedback
      */
     public void submitFeedback(String feedback, FeedbackCategory category) {
-        executor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
             try {
+                // Phone numbers, emails and names never reach the file or logcat
+                String redacted = PiiScanner.redact(feedback);
+
                 // Save feedback to file
-                saveFeedbackToFile(feedback, category);
+                saveFeedbackToFile(redacted, category);
                 
                 // Log the feedback
-                Log.i(TAG, "User feedback submitted: " + feedback);
+                Log.i(TAG, "User feedback submitted: " + redacted);
                 
                 // Provide positive feedback to user
                 TTSManager.speak(context, "تم استلام ملاحظاتك. شكراً لمساعدتنا.");
@@ -73,9 +76,9 @@ public class UserFeedbackSystem {
     }
     
     /**
-     * Save feedback to file
+     * Save feedback to file; appends are serialized since the file I/O lane is multi-threaded
      */
-    private void saveFeedbackToFile(String feedback, FeedbackCategory category) throws IOException {
+    private synchronized void saveFeedbackToFile(String feedback, FeedbackCategory category) throws IOException {
         // Create feedback directory
         File feedbackDir = new File(context.getExternalFilesDir(null), FEEDBACK_DIRECTORY);
         if (!feedbackDir.exists()) {
@@ -102,7 +105,7 @@ public class UserFeedbackSystem {
             return;
         }
         
-        executor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.LOW, () -> {
             try {
                 String feedback = "Satisfaction Rating: " + rating + "/5";
                 saveFeedbackToFile(feedback, FeedbackCategory.USER_SATISFACTION);
@@ -192,8 +195,6 @@ public class UserFeedbackSystem {
      * Clean up resources
      */
     public void cleanup() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
+        // Background work runs on the shared BackgroundTaskManager lanes, nothing to shut down here
     }
 }
\ No newline at end of file
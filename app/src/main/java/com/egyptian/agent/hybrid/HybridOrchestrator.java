@@ -3,14 +3,12 @@ package com.egyptian.agent.hybrid;
 import android.content.Context;
 import android.util.Log;
 
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.Quantum;
 import com.egyptian.agent.nlp.IntentResult;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 import com.egyptian.agent.utils.CrashLogger;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Hybrid Orchestrator for intent determination
  * Combines multiple AI models for improved accuracy
@@ -19,13 +17,13 @@ public class HybridOrchestrator {
     private static final String TAG = "HybridOrchestrator";
     
     private Context context;
-    private ExecutorService executorService;
+    private final BackgroundTaskManager taskManager;
     private OpenPhoneIntegration openPhoneIntegration;
     private boolean isInitialized = false;
 
     public HybridOrchestrator(Context context) {
         this.context = context;
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
         
         // Initialize OpenPhone integration
         initializeOpenPhoneIntegration();
@@ -55,14 +53,14 @@ public class HybridOrchestrator {
             Log.w(TAG, "Hybrid Orchestrator not initialized, using fallback");
             
             // Use fallback processing
-            executorService.execute(() -> {
+            taskManager.executeTask(BackgroundTaskManager.TaskType.GENERAL, BackgroundTaskManager.TaskPriority.HIGH, () -> {
                 Quantum quantum = new Quantum(context);
                 quantum.processCommand(command);
                 
                 // Return unknown since we can't determine intent without proper initialization
                 IntentResult result = new IntentResult();
                 callback.onResult(result);
-            });
+            }, () -> callback.onResult(new IntentResult()));
             
             return;
         }
@@ -115,10 +113,6 @@ public class HybridOrchestrator {
      * Destroys the orchestrator and cleans up resources
      */
     public void destroy() {
-        if (executorService != null) {
-            executorService.shutdownNow();
-        }
-        
         if (openPhoneIntegration != null) {
             openPhoneIntegration.destroy();
         }
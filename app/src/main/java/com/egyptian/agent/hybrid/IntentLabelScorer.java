@@ -0,0 +1,77 @@
+package com.egyptian.agent.hybrid;
+
+import android.util.Log;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import com.egyptian.agent.stt.EgyptianNormalizer;
+
+/**
+ * Intent Label Scorer
+ * Classifies a command in one Llama forward pass by scoring the first token of each intent
+ * label, so the winning label's probability is a real confidence. No text is generated, so
+ * entities are filled in by EgyptianNormalizer from the command as spoken: the rewritten text
+ * the model scores can merge or split the words that name a contact.
+ */
+public final class IntentLabelScorer {
+    private static final String TAG = "IntentLabelScorer";
+
+    // Each label starts with a different word; INTENTS[i] is the intent of LABELS[i]
+    private static final String[] LABELS = {
+        " call", " whatsapp", " alarm", " time", " missed", " emergency", " other"
+    };
+    private static final IntentType[] INTENTS = {
+        IntentType.CALL_CONTACT, IntentType.SEND_WHATSAPP, IntentType.SET_ALARM, IntentType.READ_TIME,
+        IntentType.READ_MISSED_CALLS, IntentType.EMERGENCY, IntentType.UNKNOWN
+    };
+
+    // Native handles are created on first use, so picking a label needs no native library
+    private static final class Native {
+        // The prompt ends where the category word would be generated
+        static final LlamaNative.PromptTemplate LABEL_PROMPT = LlamaNative.createPromptTemplate(
+            "Egyptian Arabic Voice Assistant. Answer with one word naming the category of the command: " +
+            "call, whatsapp, alarm, time, missed, emergency or other.\nCommand: \"",
+            "\"\nCategory:");
+        static final LlamaNative.LabelSet LABEL_SET = LlamaNative.createLabelSet(LABELS);
+    }
+
+    private IntentLabelScorer() {
+    }
+
+    /**
+     * Classifies a command by label probability
+     * @param text The rewritten command the model scores
+     * @param command The command as spoken, which entities are taken from
+     * @return The most likely intent with its probability as confidence, or null if label
+     *         scoring is unavailable and the caller should generate instead
+     */
+    public static IntentResult classify(String text, String command) {
+        float[] probabilities = LlamaNative.scoreLabels(Native.LABEL_PROMPT, text, Native.LABEL_SET);
+        IntentResult result = fromScores(probabilities, command);
+        if (result != null) {
+            Log.d(TAG, "Scored labels for: " + text + " -> " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Picks the most likely label and fills in entities from the spoken command
+     * @param probabilities Label probabilities, in the order of the intent labels
+     * @return The result, or null if the scores are missing or malformed
+     */
+    public static IntentResult fromScores(float[] probabilities, String command) {
+        if (probabilities == null || probabilities.length != INTENTS.length) {
+            return null;
+        }
+
+        int best = 0;
+        for (int i = 1; i < probabilities.length; i++) {
+            if (probabilities[i] > probabilities[best]) {
+                best = i;
+            }
+        }
+
+        IntentResult result = new IntentResult(INTENTS[best], probabilities[best]);
+        EgyptianNormalizer.extractEntities(result, command);
+        return result;
+    }
+}
@@ -2,6 +2,7 @@ package com.egyptian.agent.hybrid;
 
 import android.content.Context;
 import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.nlp.IntentResult;
 import com.egyptian.agent.stt.EgyptianNormalizer;
@@ -10,8 +11,6 @@ import com.egyptian.agent.utils.CrashLogger;
 import org.json.JSONObject;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Integration class for Llama 3.2 3B model
@@ -22,17 +21,25 @@ public class LlamaModelIntegration {
     private static final int MODEL_LOAD_TIMEOUT = 30000; // 30 seconds
     private static final float MIN_CONFIDENCE_THRESHOLD = 0.65f;
 
-    private ExecutorService inferenceExecutor;
+    // Instruction text is tokenized once; only the command is tokenized per call
+    private static final LlamaNative.PromptTemplate CLASSIFICATION_PROMPT = LlamaNative.createPromptTemplate(
+        "Egyptian Arabic Voice Assistant. Classify the following command into one of these categories: " +
+        "CALL_CONTACT, SEND_WHATSAPP, SET_ALARM, READ_TIME, READ_MISSED_CALLS, EMERGENCY, UNKNOWN. " +
+        "Provide the response in JSON format with 'intent' and 'entities' fields. " +
+        "Command: \"",
+        "\". Response:");
+
+    private final BackgroundTaskManager taskManager;
     private boolean isModelLoaded = false;
     private long lastInferenceTime = 0;
     private Context context;
 
     public LlamaModelIntegration(Context context) {
         this.context = context;
-        inferenceExecutor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
 
         // Load the Llama model in the background
-        new Thread(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.i(TAG, "Loading Llama 3.2 3B Q4_K_M model...");
 
@@ -63,7 +70,7 @@ public class LlamaModelIntegration {
                 CrashLogger.logError(context, e);
                 TTSManager.speak(context, "حصل مشكلة في تشغيل نموذج لاما. المزايا الأساسية شغالة");
             }
-        }).start();
+        });
     }
 
     /**
@@ -85,26 +92,29 @@ public class LlamaModelIntegration {
             return;
         }
 
-        inferenceExecutor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.INFERENCE, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 lastInferenceTime = System.currentTimeMillis();
 
                 // Enhance the text with Egyptian context before sending to the model
                 String enhancedText = applyEgyptianEnhancements(normalizedText);
                 
-                // Format the prompt for the Llama model
-                String prompt = formatPromptForLlama(enhancedText);
-
-                // Run inference
+                // Score the intent labels in one forward pass; the label probability is the confidence
                 long startTime = System.currentTimeMillis();
-                String rawResponse = LlamaNative.infer(prompt, 128); // Limit response length
+                IntentResult intentResult = IntentLabelScorer.classify(enhancedText, normalizedText);
+
+                if (intentResult == null) {
+                    // Label scoring unavailable; run generation on the pre-tokenized classification prompt
+                    String rawResponse = LlamaNative.infer(CLASSIFICATION_PROMPT, enhancedText,
+                        QualityGovernor.getInstance().getTier().llmMaxTokens); // Limit response length
+                    Log.d(TAG, "Raw Llama response: " + rawResponse);
+
+                    // Parse the model response
+                    intentResult = parseLlamaResponse(rawResponse, enhancedText);
+                }
                 long endTime = System.currentTimeMillis();
 
                 Log.i(TAG, String.format("Llama inference completed in %d ms", endTime - startTime));
-                Log.d(TAG, "Raw Llama response: " + rawResponse);
-
-                // Parse the model response
-                IntentResult intentResult = parseLlamaResponse(rawResponse, enhancedText);
 
                 // Apply Egyptian post-processing rules
                 applyEgyptianPostProcessing(intentResult);
@@ -126,20 +136,7 @@ public class LlamaModelIntegration {
                 Log.e(TAG, "Error during Llama inference", e);
                 callback.onFallbackRequired("Processing error: " + e.getMessage());
             }
-        });
-    }
-
-    /**
-     * Formats the input text as a prompt for the Llama model
-     * @param text The input text
-     * @return Formatted prompt
-     */
-    private String formatPromptForLlama(String text) {
-        // Create a structured prompt for intent classification
-        return "Egyptian Arabic Voice Assistant. Classify the following command into one of these categories: " +
-               "CALL_CONTACT, SEND_WHATSAPP, SET_ALARM, READ_TIME, READ_MISSED_CALLS, EMERGENCY, UNKNOWN. " +
-               "Provide the response in JSON format with 'intent' and 'entities' fields. " +
-               "Command: \"" + text + "\". Response:";
+        }, () -> callback.onFallbackRequired("Inference lane busy"));
     }
 
     /**
@@ -294,10 +291,6 @@ public class LlamaModelIntegration {
      * Cleans up resources
      */
     public void destroy() {
-        if (inferenceExecutor != null) {
-            inferenceExecutor.shutdownNow();
-        }
-        
         // Unload the native model
         LlamaNative.unloadModel();
     }
@@ -3,10 +3,13 @@ package com.egyptian.agent.hybrid;
 import android.content.Context;
 import android.util.Log;
 import android.content.res.AssetManager;
+import com.egyptian.agent.performance.QualityGovernor;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * JNI wrapper for Llama 3.2 3B model integration
@@ -16,6 +19,9 @@ public class LlamaNative {
     private static final String TAG = "LlamaNative";
     private static boolean modelInitialized = false;
     private static String modelPath;
+    // Registered natively again whenever a model is loaded, since token IDs depend on the vocabulary
+    private static final List<PromptTemplate> promptTemplates = new ArrayList<>();
+    private static final List<LabelSet> labelSets = new ArrayList<>();
 
     static {
         try {
@@ -24,6 +30,22 @@ public class LlamaNative {
             Log.e(TAG, "Failed to load llama_native library. This indicates the native Llama implementation is not properly built.", e);
             Log.w(TAG, "Using fallback implementation. To enable full Llama functionality, build the native library with llama.cpp support.");
         }
+
+        // Decode threads follow the quality tier so a hot phone runs fewer cores
+        QualityGovernor governor = QualityGovernor.getInstance();
+        setMaxThreads(governor.getTier().llmThreads);
+        governor.addListener((previous, current) -> setMaxThreads(current.llmThreads));
+    }
+
+    /**
+     * Caps the number of threads llama.cpp decodes with, from the next call on
+     */
+    public static void setMaxThreads(int maxThreads) {
+        try {
+            setMaxThreadsNative(maxThreads);
+        } catch (UnsatisfiedLinkError e) {
+            Log.w(TAG, "Native library not loaded, thread cap ignored");
+        }
     }
 
     /**
@@ -52,6 +74,12 @@ public class LlamaNative {
             
             if (result == 0) {
                 modelInitialized = true;
+                for (PromptTemplate template : promptTemplates) {
+                    registerTemplate(template);
+                }
+                for (LabelSet labelSet : labelSets) {
+                    registerLabels(labelSet);
+                }
                 Log.i(TAG, "Llama model initialized successfully: " + modelName);
             } else {
                 Log.e(TAG, "Failed to initialize Llama model: " + modelName);
@@ -70,7 +98,7 @@ public class LlamaNative {
      * @param maxTokens Maximum number of tokens to generate
      * @return The model's response
      */
-    public static String infer(String prompt, int maxTokens) {
+    public static synchronized String infer(String prompt, int maxTokens) {
         if (!modelInitialized) {
             Log.e(TAG, "Model not initialized. Call initializeModel first.");
             return "Model not initialized";
@@ -87,12 +115,117 @@ public class LlamaNative {
         }
     }
 
+    /**
+     * Creates a prompt template whose static text is tokenized once, natively
+     * @param prefix Text before the user input
+     * @param suffix Text after the user input
+     * @return Template to pass to {@link #infer(PromptTemplate, String, int)}
+     */
+    public static synchronized PromptTemplate createPromptTemplate(String prefix, String suffix) {
+        PromptTemplate template = new PromptTemplate(prefix, suffix);
+        promptTemplates.add(template);
+        if (modelInitialized) {
+            registerTemplate(template);
+        }
+        return template;
+    }
+
+    /**
+     * Performs inference on a template with the user input spliced in; only the input is
+     * tokenized per call and the template prefix stays in the KV cache between calls
+     * @param template Template from createPromptTemplate
+     * @param input The user command
+     * @param maxTokens Maximum number of tokens to generate
+     * @return The model's response
+     */
+    public static synchronized String infer(PromptTemplate template, String input, int maxTokens) {
+        if (!modelInitialized) {
+            Log.e(TAG, "Model not initialized. Call initializeModel first.");
+            return "Model not initialized";
+        }
+        if (template.handle < 0) {
+            return infer(template.format(input), maxTokens);
+        }
+
+        try {
+            String response = inferTemplateNative(template.handle, input, maxTokens);
+            Log.d(TAG, "Template inference completed. Input: " + input + ", Response: " + response);
+            return response;
+        } catch (Exception e) {
+            Log.e(TAG, "Error during inference", e);
+            return "Error during inference: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Creates a set of candidate labels for {@link #scoreLabels}; each label is scored by its
+     * first token, so labels should start with distinct words (e.g. " call", " alarm")
+     * @param labels Label texts, in the order their probabilities are returned
+     */
+    public static synchronized LabelSet createLabelSet(String... labels) {
+        LabelSet labelSet = new LabelSet(labels);
+        labelSets.add(labelSet);
+        if (modelInitialized) {
+            registerLabels(labelSet);
+        }
+        return labelSet;
+    }
+
+    /**
+     * Classifies by reading the next-token logits once after prefilling the template and input,
+     * without sampling any tokens
+     * @param template Template ending where the label would be generated
+     * @param input The user command
+     * @param labelSet Candidate labels from createLabelSet
+     * @return Probability of each label (summing to 1), or null if scoring is unavailable
+     */
+    public static synchronized float[] scoreLabels(PromptTemplate template, String input, LabelSet labelSet) {
+        if (!modelInitialized || template.handle < 0 || labelSet.handle < 0) {
+            return null;
+        }
+
+        try {
+            return scoreLabelsNative(template.handle, input, labelSet.handle);
+        } catch (UnsatisfiedLinkError e) {
+            Log.e(TAG, "Label scoring not available", e);
+            return null;
+        }
+    }
+
+    private static void registerLabels(LabelSet labelSet) {
+        try {
+            labelSet.handle = registerLabelsNative(labelSet.labels);
+        } catch (UnsatisfiedLinkError e) {
+            labelSet.handle = -1;
+        }
+        if (labelSet.handle < 0) {
+            Log.w(TAG, "Label set not registered natively, label scoring disabled");
+        }
+    }
+
+    private static void registerTemplate(PromptTemplate template) {
+        try {
+            template.handle = registerTemplateNative(template.prefix, template.suffix);
+        } catch (UnsatisfiedLinkError e) {
+            template.handle = -1;
+        }
+        if (template.handle < 0) {
+            Log.w(TAG, "Prompt template not registered natively, using full prompts");
+        }
+    }
+
     /**
      * Unloads the model and frees resources
      */
     public static synchronized void unloadModel() {
         if (modelInitialized) {
             unload();
+            for (PromptTemplate template : promptTemplates) {
+                template.handle = -1;
+            }
+            for (LabelSet labelSet : labelSets) {
+                labelSet.handle = -1;
+            }
             modelInitialized = false;
             Log.i(TAG, "Llama model unloaded");
         }
@@ -142,8 +275,52 @@ public class LlamaNative {
         }
     }
 
+    /**
+     * Prompt with fixed text around the user input
+     */
+    public static final class PromptTemplate {
+        private final String prefix;
+        private final String suffix;
+        // Native template handle, or -1 when not registered; guarded by LlamaNative.class
+        private int handle = -1;
+
+        private PromptTemplate(String prefix, String suffix) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        /**
+         * Builds the full prompt text for an input
+         */
+        public String format(String input) {
+            return prefix + input + suffix;
+        }
+    }
+
+    /**
+     * Candidate labels scored by their first token
+     */
+    public static final class LabelSet {
+        private final String[] labels;
+        // Native label set handle, or -1 when not registered; guarded by LlamaNative.class
+        private int handle = -1;
+
+        private LabelSet(String[] labels) {
+            this.labels = labels.clone();
+        }
+
+        public int size() {
+            return labels.length;
+        }
+    }
+
     // Native methods
     private static native int init(String modelPath, AssetManager assetManager);
     private static native String inferNative(String prompt, int maxTokens);
+    private static native int registerTemplateNative(String prefix, String suffix);
+    private static native String inferTemplateNative(int handle, String input, int maxTokens);
+    private static native int registerLabelsNative(String[] labels);
+    private static native float[] scoreLabelsNative(int handle, String input, int labelsHandle);
     private static native void unload();
+    private static native void setMaxThreadsNative(int maxThreads);
 }
\ No newline at end of file
@@ -41,34 +41,33 @@ public class ModelLoadingService extends Service {
      * Loads models asynchronously
      */
     private void loadModelsAsync() {
-        new Thread(() -> {
-            try {
-                modelManager.initializeModels(new ModelManager.ModelInitializationCallback() {
-                    @Override
-                    public void onComplete(boolean success) {
-                        Log.i(TAG, "Model loading completed: " + success);
-                        
-                        // Stop service after loading
-                        stopSelf();
-                    }
+        // ModelManager already loads on the background file I/O lane
+        try {
+            modelManager.initializeModels(new ModelManager.ModelInitializationCallback() {
+                @Override
+                public void onComplete(boolean success) {
+                    Log.i(TAG, "Model loading completed: " + success);
                     
-                    @Override
-                    public void onError(Exception error) {
-                        Log.e(TAG, "Error loading models", error);
-                        CrashLogger.logError(ModelLoadingService.this, error);
-                        
-                        // Stop service after error
-                        stopSelf();
-                    }
-                });
-            } catch (Exception e) {
-                Log.e(TAG, "Error starting model loading", e);
-                CrashLogger.logError(ModelLoadingService.this, e);
+                    // Stop service after loading
+                    stopSelf();
+                }
                 
-                // Stop service after error
-                stopSelf();
-            }
-        }).start();
+                @Override
+                public void onError(Exception error) {
+                    Log.e(TAG, "Error loading models", error);
+                    CrashLogger.logError(ModelLoadingService.this, error);
+                    
+                    // Stop service after error
+                    stopSelf();
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error starting model loading", e);
+            CrashLogger.logError(ModelLoadingService.this, e);
+            
+            // Stop service after error
+            stopSelf();
+        }
     }
     
     @Override
@@ -2,14 +2,15 @@ package com.egyptian.agent.hybrid;
 
 import android.content.Context;
 import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 import com.egyptian.agent.utils.MemoryOptimizer;
 import com.egyptian.agent.utils.CrashLogger;
 import org.json.JSONObject;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
 
 /**
  * Updated OpenPhoneIntegration to use Llama 3.2 3B as the primary model
@@ -22,21 +23,26 @@ public class OpenPhoneIntegration {
 
     private LlamaModelIntegration llamaModel;  // Primary model
     private OpenPhoneModel legacyModel;        // Fallback model
-    private ExecutorService inferenceExecutor;
+    private volatile com.egyptian.agent.core.OpenPhoneModel torchModel; // TorchScript OpenPhone model, preferred over the rule model; loaded on FILE_IO, read on INFERENCE
+    private final BackgroundTaskManager taskManager;
     private boolean isLlamaModelLoaded = false;
     private boolean isLegacyModelLoaded = false;
     private long lastInferenceTime = 0;
 
     public OpenPhoneIntegration(Context context) {
-        inferenceExecutor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
 
         // Load the primary Llama model in the background
         llamaModel = new LlamaModelIntegration(context);
         
         // Load the legacy OpenPhone model as fallback
-        new Thread(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 Log.i(TAG, "Loading legacy OpenPhone-3B model as fallback...");
+                com.egyptian.agent.core.OpenPhoneModel loadedTorchModel =
+                    new com.egyptian.agent.core.OpenPhoneModel(context, "openphone-3b");
+                torchModel = loadedTorchModel;
+                Log.i(TAG, "OpenPhone-3B TorchScript model ready: " + loadedTorchModel.isReady());
                 legacyModel = new OpenPhoneModel(context, "openphone-3b");
                 isLegacyModelLoaded = legacyModel.isReady();
                 Log.i(TAG, "OpenPhone-3B fallback model loaded successfully: " + isLegacyModelLoaded);
@@ -49,7 +55,7 @@ public class OpenPhoneIntegration {
                 CrashLogger.logError(context, e);
                 // Continue with just the Llama model
             }
-        }).start();
+        });
     }
 
     /**
@@ -99,30 +105,34 @@ public class OpenPhoneIntegration {
             return;
         }
 
-        inferenceExecutor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.INFERENCE, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 lastInferenceTime = System.currentTimeMillis();
 
                 // Apply Egyptian enhancements before sending to the model
                 String enhancedText = applyEgyptianEnhancements(normalizedText);
 
-                // Run the legacy model
+                // Run the TorchScript model when it loaded, else the rule-based legacy model
                 long startTime = System.currentTimeMillis();
-                Map<String, Object> result = legacyModel.analyze(enhancedText);
+                IntentResult intentResult;
+                com.egyptian.agent.core.OpenPhoneModel model = torchModel;
+                if (model != null && model.isReady()) {
+                    intentResult = model.analyze(enhancedText);
+                } else {
+                    Map<String, Object> result = legacyModel.analyze(enhancedText);
+                    Float confidence = (Float) result.get("confidence");
+                    intentResult = confidence != null ? parseModelResult(result) : new IntentResult();
+                }
                 long endTime = System.currentTimeMillis();
 
                 Log.i(TAG, String.format("Legacy model inference completed in %d ms", endTime - startTime));
 
                 // Check result confidence
-                Float confidence = (Float) result.get("confidence");
-                if (confidence == null || confidence < MIN_CONFIDENCE_THRESHOLD) {
-                    callback.onFallbackRequired("Low confidence: " + (confidence != null ? confidence : 0.0f));
+                if (intentResult.getConfidence() < MIN_CONFIDENCE_THRESHOLD) {
+                    callback.onFallbackRequired("Low confidence: " + intentResult.getConfidence());
                     return;
                 }
 
-                // Parse the model result
-                IntentResult intentResult = parseModelResult(result);
-
                 // Apply Egyptian post-processing
                 applyEgyptianPostProcessing(intentResult);
 
@@ -136,7 +146,7 @@ public class OpenPhoneIntegration {
                 Log.e(TAG, "Error during legacy model inference", e);
                 callback.onFallbackRequired("Processing error");
             }
-        });
+        }, () -> callback.onFallbackRequired("Inference lane busy"));
     }
 
     private String applyEgyptianEnhancements(String text) {
@@ -199,8 +209,9 @@ public class OpenPhoneIntegration {
         if (legacyModel != null) {
             legacyModel.unload();
         }
-        if (inferenceExecutor != null) {
-            inferenceExecutor.shutdownNow();
+        com.egyptian.agent.core.OpenPhoneModel model = torchModel;
+        if (model != null) {
+            model.unload();
         }
     }
 
@@ -0,0 +1,291 @@
+package com.egyptian.agent.nlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dialogue State
+ * Remembers the last few handled turns so follow-ups like "ابعتله رسالة" or "كلمه تاني" can be
+ * completed locally instead of sending the command back through the LLM. Turns live in a
+ * fixed-capacity ring; the newest turn carrying each entity type, and each intent, is indexed
+ * so resolving a reference is a single map lookup. Has no Android dependencies.
+ *
+ * Entities older than maxAgeMillis no longer resolve: a pronoun minutes later is more likely
+ * about someone new than about the last contact.
+ */
+public final class DialogueState {
+    public static final String CONTACT = "contact";
+    public static final String APP = "app";
+
+    // Confidence given to a command rebuilt from the previous turn ("تاني" alone)
+    static final float REPEAT_CONFIDENCE = 0.8f;
+
+    private static final String[] REPEAT_MARKERS = {"تاني", "تانى", "كمان مرة", "كمان مره"};
+
+    // Verb stems that take a pronoun suffix for the person ("ابعتله", "كلمها", "رنله")
+    private static final String[] PERSON_VERBS = {"ابعت", "بعت", "كلم", "اكلم", "رن", "اتصل", "راسل"};
+    private static final String[] PERSON_SUFFIXES = {"ه", "ها", "هو", "له", "لها", "لو", "ليه", "ليها"};
+    // Standalone pronouns after a verb ("اتصل بيه", "رن عليها")
+    private static final String[] PERSON_PRONOUNS = {"بيه", "بيها", "عليه", "عليها", "معاه", "معاها", "له", "لها"};
+    // Verb stems that take a pronoun suffix for the app ("افتحه", "اقفلها")
+    private static final String[] APP_VERBS = {"افتح", "اقفل", "قفل", "شغل"};
+    private static final String[] APP_SUFFIXES = {"ه", "ها", "هو", "و"};
+
+    /**
+     * One handled command and the entities it resolved
+     */
+    public static final class Turn {
+        public final IntentType intent;
+        public final long timeMillis;
+        private final Map<String, String> entities;
+
+        public Turn(IntentType intent, Map<String, String> entities, long timeMillis) {
+            this.intent = intent;
+            this.timeMillis = timeMillis;
+            this.entities = Collections.unmodifiableMap(new HashMap<>(entities));
+        }
+
+        public String getEntity(String type) {
+            String value = entities.get(type);
+            return value != null ? value : "";
+        }
+
+        public Map<String, String> getEntities() {
+            return entities;
+        }
+    }
+
+    private final Turn[] ring;
+    private final long maxAgeMillis;
+    private int next;   // Slot the next turn goes into
+    private int size;
+    private final Map<String, Turn> byEntity = new HashMap<>();
+    private final Map<IntentType, Turn> byIntent = new EnumMap<>(IntentType.class);
+
+    public DialogueState(int capacity, long maxAgeMillis) {
+        this.ring = new Turn[capacity];
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Records a handled turn; empty entities are skipped
+     */
+    public synchronized void record(IntentType intent, Map<String, String> entities, long timeMillis) {
+        Map<String, String> resolved = new HashMap<>();
+        for (Map.Entry<String, String> entry : entities.entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                resolved.put(entry.getKey(), entry.getValue());
+            }
+        }
+        add(new Turn(intent, resolved, timeMillis));
+    }
+
+    private void add(Turn turn) {
+        Turn evicted = ring[next];
+        if (evicted != null) {
+            // The ring drops its oldest turn, so an index entry still pointing at it is the only
+            // turn with that key
+            for (String type : evicted.entities.keySet()) {
+                if (byEntity.get(type) == evicted) {
+                    byEntity.remove(type);
+                }
+            }
+            if (byIntent.get(evicted.intent) == evicted) {
+                byIntent.remove(evicted.intent);
+            }
+        }
+
+        ring[next] = turn;
+        next = (next + 1) % ring.length;
+        size = Math.min(size + 1, ring.length);
+        for (String type : turn.entities.keySet()) {
+            byEntity.put(type, turn);
+        }
+        byIntent.put(turn.intent, turn);
+    }
+
+    /**
+     * Gets the most recent value of an entity type
+     * @return The value, or "" if none is recent enough
+     */
+    public synchronized String resolve(String entityType, long nowMillis) {
+        Turn turn = byEntity.get(entityType);
+        return turn != null && isFresh(turn, nowMillis) ? turn.getEntity(entityType) : "";
+    }
+
+    /**
+     * Gets the most recent turn with this intent
+     * @return The turn, or null if none is recent enough
+     */
+    public synchronized Turn findLast(IntentType intent, long nowMillis) {
+        Turn turn = byIntent.get(intent);
+        return turn != null && isFresh(turn, nowMillis) ? turn : null;
+    }
+
+    /**
+     * Gets the most recent turn
+     * @return The turn, or null if none is recent enough
+     */
+    public synchronized Turn getLastTurn(long nowMillis) {
+        if (size == 0) {
+            return null;
+        }
+        Turn turn = ring[(next - 1 + ring.length) % ring.length];
+        return isFresh(turn, nowMillis) ? turn : null;
+    }
+
+    private boolean isFresh(Turn turn, long nowMillis) {
+        return nowMillis - turn.timeMillis <= maxAgeMillis;
+    }
+
+    /**
+     * Gets the remembered turns, newest first
+     */
+    public synchronized List<Turn> getTurns() {
+        List<Turn> turns = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            turns.add(ring[(next - i + ring.length) % ring.length]);
+        }
+        return turns;
+    }
+
+    /**
+     * Replaces the state with saved turns, newest first
+     */
+    public synchronized void restore(List<Turn> turns) {
+        clear();
+        for (int i = Math.min(turns.size(), ring.length) - 1; i >= 0; i--) {
+            add(turns.get(i));
+        }
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = null;
+        }
+        next = 0;
+        size = 0;
+        byEntity.clear();
+        byIntent.clear();
+    }
+
+    /**
+     * Completes a parsed command from the dialogue: fills a missing contact or app the command
+     * refers to with a pronoun, and rebuilds a bare "تاني" from the previous turn
+     * @param command The command as spoken, before dialect normalization
+     * @return true if the result was changed
+     */
+    public boolean resolveReferences(IntentResult result, String command, long nowMillis) {
+        boolean repeat = isRepeatRequest(command);
+
+        if (result.getIntentType() == IntentType.UNKNOWN) {
+            Turn last = repeat ? getLastTurn(nowMillis) : null;
+            if (last == null) {
+                return false;
+            }
+            result.setIntentType(last.intent);
+            result.setConfidence(Math.max(result.getConfidence(), REPEAT_CONFIDENCE));
+            for (Map.Entry<String, String> entity : last.entities.entrySet()) {
+                result.setEntity(entity.getKey(), entity.getValue());
+            }
+            return true;
+        }
+
+        String entityType = entityTypeFor(result.getIntentType());
+        if (entityType == null || !(repeat || refersTo(entityType, command))) {
+            return false;
+        }
+        String current = result.getEntity(entityType);
+        if (!current.isEmpty() && !isPronoun(current)) {
+            return false;
+        }
+        String value = resolve(entityType, nowMillis);
+        if (value.isEmpty()) {
+            return false;
+        }
+        result.setEntity(entityType, value);
+        return true;
+    }
+
+    /**
+     * Gets the entity type a pronoun in a command of this intent would stand for
+     */
+    static String entityTypeFor(IntentType intent) {
+        switch (intent) {
+            case CALL_CONTACT:
+            case SEND_WHATSAPP:
+            case SEND_SMS:
+            case SEND_VOICE_MESSAGE:
+                return CONTACT;
+            case OPEN_APP:
+            case CLOSE_APP:
+                return APP;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Checks whether the command asks to repeat the previous action
+     */
+    public static boolean isRepeatRequest(String command) {
+        for (String marker : REPEAT_MARKERS) {
+            if (command.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the command refers to an entity of this type with a pronoun
+     */
+    public static boolean refersTo(String entityType, String command) {
+        String[] verbs;
+        String[] suffixes;
+        if (CONTACT.equals(entityType)) {
+            verbs = PERSON_VERBS;
+            suffixes = PERSON_SUFFIXES;
+        } else if (APP.equals(entityType)) {
+            verbs = APP_VERBS;
+            suffixes = APP_SUFFIXES;
+        } else {
+            return false;
+        }
+
+        for (String token : command.split("[\\s،,.؟?!]+")) {
+            if (CONTACT.equals(entityType) && contains(PERSON_PRONOUNS, token)) {
+                return true;
+            }
+            for (String verb : verbs) {
+                if (token.length() > verb.length() && token.startsWith(verb)
+                        && contains(suffixes, token.substring(verb.length()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an extracted entity is really a pronoun; extraction sometimes takes the
+     * pronoun itself for the name
+     */
+    public static boolean isPronoun(String value) {
+        return contains(PERSON_PRONOUNS, value) || contains(PERSON_SUFFIXES, value)
+            || contains(APP_SUFFIXES, value) || "يه".equals(value) || "يها".equals(value);
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String candidate : values) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
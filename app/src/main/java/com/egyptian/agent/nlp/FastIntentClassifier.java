@@ -0,0 +1,179 @@
+package com.egyptian.agent.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fast Intent Classifier
+ * Linear model over hashed character n-grams, distilled offline from Llama-labelled commands
+ * by scripts/train_intent_classifier.py. Classifies a command in microseconds, so only the
+ * commands it is unsure about need to reach the LLM. Has no Android dependencies.
+ *
+ * The featurization must stay identical to featurize() in the training script.
+ */
+public final class FastIntentClassifier {
+    public static final String ASSET_PATH = "model/intent_classifier.bin";
+
+    private static final int MAGIC = 0x45494331; // "EIC1"
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final int buckets;
+    private final int minN;
+    private final int maxN;
+    private final IntentType[] classes;
+    private final float temperature;
+    private final float escalationThreshold;
+    private final float[] bias;
+    // Bucket-major, so the class weights of one n-gram are adjacent: weights[bucket * classes + c]
+    private final float[] weights;
+
+    private FastIntentClassifier(int buckets, int minN, int maxN, IntentType[] classes, float temperature,
+                                 float escalationThreshold, float[] bias, float[] weights) {
+        this.buckets = buckets;
+        this.minN = minN;
+        this.maxN = maxN;
+        this.classes = classes;
+        this.temperature = temperature;
+        this.escalationThreshold = escalationThreshold;
+        this.bias = bias;
+        this.weights = weights;
+    }
+
+    /**
+     * Loads a model written by the training script
+     * @throws IOException If the stream is not a valid model
+     */
+    public static FastIntentClassifier load(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not an intent classifier model");
+        }
+
+        int buckets = data.readInt();
+        int minN = data.readInt();
+        int maxN = data.readInt();
+        int classCount = data.readInt();
+        float temperature = data.readFloat();
+        float escalationThreshold = data.readFloat();
+        if (Integer.bitCount(buckets) != 1 || minN < 1 || maxN < minN || classCount < 1 || temperature <= 0) {
+            throw new IOException("Invalid intent classifier header");
+        }
+
+        IntentType[] classes = new IntentType[classCount];
+        for (int c = 0; c < classCount; c++) {
+            try {
+                classes[c] = IntentType.valueOf(data.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown intent in model", e);
+            }
+        }
+
+        float[] bias = new float[classCount];
+        for (int c = 0; c < classCount; c++) {
+            bias[c] = data.readFloat();
+        }
+        float[] weights = new float[buckets * classCount];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = data.readFloat();
+        }
+
+        return new FastIntentClassifier(buckets, minN, maxN, classes, temperature, escalationThreshold,
+            bias, weights);
+    }
+
+    /**
+     * Classifies a command
+     * @param text The raw or normalized command
+     * @return The most likely intent with its calibrated probability as confidence
+     */
+    public IntentResult classify(String text) {
+        char[] chars = normalize(text);
+        int classCount = classes.length;
+        float[] scores = new float[classCount];
+
+        // Sum the weights of every n-gram; counts are scaled by 1/sqrt(total) afterwards
+        int features = 0;
+        for (int start = 0; start < chars.length; start++) {
+            int hash = FNV_OFFSET;
+            int end = Math.min(chars.length, start + maxN);
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ chars[i]) * FNV_PRIME;
+                if (i - start + 1 >= minN) {
+                    int offset = (hash & (buckets - 1)) * classCount;
+                    for (int c = 0; c < classCount; c++) {
+                        scores[c] += weights[offset + c];
+                    }
+                    features++;
+                }
+            }
+        }
+
+        float scale = features > 0 ? (float) (1.0 / Math.sqrt(features)) : 0f;
+        int best = 0;
+        for (int c = 0; c < classCount; c++) {
+            scores[c] = (bias[c] + scores[c] * scale) / temperature;
+            if (scores[c] > scores[best]) {
+                best = c;
+            }
+        }
+
+        // Softmax, shifted by the maximum for stability
+        float sum = 0f;
+        for (int c = 0; c < classCount; c++) {
+            sum += (float) Math.exp(scores[c] - scores[best]);
+        }
+
+        return new IntentResult(classes[best], 1f / sum);
+    }
+
+    /**
+     * Whether a result should be passed on to the LLM instead of being acted on
+     */
+    public boolean shouldEscalate(IntentResult result) {
+        return result.getIntentType() == IntentType.UNKNOWN || result.getConfidence() < escalationThreshold;
+    }
+
+    /**
+     * Confidence below which results are escalated, chosen at training time for a target precision
+     */
+    public float getEscalationThreshold() {
+        return escalationThreshold;
+    }
+
+    /**
+     * Lower-cases, strips diacritics and tatweel, unifies alef, yeh and teh marbuta, and maps
+     * every run of other characters to one space, padded with a space on both sides
+     */
+    static char[] normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length() + 2);
+        normalized.append(' ');
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if ((c >= '\u064B' && c <= '\u0652') || c == '\u0640') {
+                continue;
+            }
+            if (c == 'أ' || c == 'إ' || c == 'آ') {
+                c = 'ا';
+            } else if (c == 'ى') {
+                c = 'ي';
+            } else if (c == 'ة') {
+                c = 'ه';
+            } else if (!Character.isLetterOrDigit(c)) {
+                c = ' ';
+            }
+            if (c != ' ' || normalized.charAt(normalized.length() - 1) != ' ') {
+                normalized.append(c);
+            }
+        }
+        if (normalized.charAt(normalized.length() - 1) != ' ') {
+            normalized.append(' ');
+        }
+
+        char[] chars = new char[normalized.length()];
+        normalized.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+}
@@ -3,7 +3,7 @@ package com.egyptian.agent.performance;
 import android.content.Context;
 import android.os.Build;
 import android.util.Log;
-import android.os.Process;
+import com.egyptian.agent.core.CpuTopology;
 import java.io.*;
 import java.util.regex.Pattern;
 
@@ -59,18 +59,15 @@ public class HonorX6cPerformanceOptimizer {
         Log.d(TAG, "Optimizing CPU scheduling for MediaTek Helio G81 Ultra");
         
         try {
-            // Set process priority to background for non-critical tasks
-            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
-            
-            // Optimize for the octa-core processor (4xCortex-A75 + 4xCortex-A55)
-            // you'd use more sophisticated CPU affinity settings
+            // Placement is applied per thread by role (see ThreadPlacement): inference on the
+            // performance cores, background I/O on the efficiency cores. The calling thread is
+            // usually the main thread, so its priority is deliberately left unchanged.
             int numCores = getNumberOfCores();
-            Log.d(TAG, "Detected CPU cores: " + numCores);
+            CpuTopology topology = CpuTopology.get();
+            Log.d(TAG, "Detected CPU cores: " + numCores + ", " + topology);
             
-            if (numCores >= 8) {
-                Log.d(TAG, "Optimizing for octa-core processor");
-                // On octa-core processors, we can dedicate cores for different tasks
-                // This is a simplified representation
+            if (!topology.isHeterogeneous()) {
+                Log.d(TAG, "Uniform cores detected, thread placement uses priorities only");
             }
         } catch (Exception e) {
             Log.e(TAG, "Error optimizing CPU scheduling", e);
@@ -0,0 +1,66 @@
+package com.egyptian.agent.performance;
+
+import com.egyptian.agent.core.DeviceClassDetector;
+
+/**
+ * Memory Thresholds
+ * Per device class limits at which PerformanceMonitor asks MemoryOptimizer to act.
+ * Smaller devices act earlier because the low memory killer reaches them sooner.
+ */
+public class MemoryThresholds {
+
+    /**
+     * Action to take for a memory sample
+     */
+    public enum Action {
+        NONE,       // Within limits
+        FREE,       // Release in-memory caches and collect garbage
+        OPTIMIZE    // Also report memory status; disk caches are never cleared, they hold no RAM
+    }
+
+    public final int heapWarnPercent;
+    public final int heapCriticalPercent;
+    public final long minAvailableMb;
+
+    public MemoryThresholds(int heapWarnPercent, int heapCriticalPercent, long minAvailableMb) {
+        this.heapWarnPercent = heapWarnPercent;
+        this.heapCriticalPercent = heapCriticalPercent;
+        this.minAvailableMb = minAvailableMb;
+    }
+
+    /**
+     * Gets the thresholds for a device class
+     */
+    public static MemoryThresholds forDeviceClass(DeviceClassDetector.DeviceClass deviceClass) {
+        if (deviceClass == null) {
+            deviceClass = DeviceClassDetector.DeviceClass.MID;
+        }
+        switch (deviceClass) {
+            case LOW:
+                return new MemoryThresholds(70, 85, 300);
+            case HIGH:
+                return new MemoryThresholds(80, 90, 600);
+            case ELITE:
+                return new MemoryThresholds(85, 92, 800);
+            case MID:
+            default:
+                return new MemoryThresholds(75, 88, 500);
+        }
+    }
+
+    /**
+     * Decides what to do for a memory sample
+     * @param heapPercent Java heap used as a percentage of the heap limit
+     * @param availableMb System memory available in MB
+     * @param lowMemory Whether the system reports a low memory state
+     */
+    public Action evaluate(int heapPercent, long availableMb, boolean lowMemory) {
+        if (lowMemory || heapPercent >= heapCriticalPercent || availableMb < minAvailableMb) {
+            return Action.OPTIMIZE;
+        }
+        if (heapPercent >= heapWarnPercent) {
+            return Action.FREE;
+        }
+        return Action.NONE;
+    }
+}
@@ -0,0 +1,234 @@
+package com.egyptian.agent.performance;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics Registry
+ * Process-wide named counters, gauges and latency histograms. Look a metric up once and keep
+ * the handle; updating a handle is lock-free and never allocates.
+ */
+public final class MetricsRegistry {
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    /**
+     * Gets or creates a counter
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Gets or creates a gauge
+     */
+    public static Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge();
+            gauge = gauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    /**
+     * Gets or creates a latency histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Takes a point-in-time copy of every metric
+     */
+    public static Snapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().get());
+        }
+
+        Map<String, Long> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            gaugeValues.put(entry.getKey(), entry.getValue().get());
+        }
+
+        Map<String, HistogramSummary> histogramValues = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                histogramValues.put(entry.getKey(), new HistogramSummary(entry.getValue()));
+            }
+        }
+
+        return new Snapshot(System.currentTimeMillis(), counterValues, gaugeValues, histogramValues);
+    }
+
+    /**
+     * Resets every metric to zero (handles stay valid)
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.value.set(0);
+        }
+        for (Gauge gauge : gauges.values()) {
+            gauge.value.set(0);
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Monotonic counter
+     */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Last-value gauge
+     */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Percentile summary of a histogram at snapshot time
+     */
+    public static final class HistogramSummary {
+        public final long count;
+        public final long meanMicros;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        HistogramSummary(LatencyHistogram histogram) {
+            this.count = histogram.getCount();
+            this.meanMicros = histogram.getMeanMicros();
+            this.p50Micros = histogram.getPercentileMicros(50);
+            this.p95Micros = histogram.getPercentileMicros(95);
+            this.p99Micros = histogram.getPercentileMicros(99);
+            this.maxMicros = histogram.getMaxMicros();
+        }
+    }
+
+    /**
+     * Immutable copy of all metrics
+     */
+    public static final class Snapshot {
+        public final long timestampMillis;
+        public final Map<String, Long> counters;
+        public final Map<String, Long> gauges;
+        public final Map<String, HistogramSummary> histograms;
+
+        Snapshot(long timestampMillis, Map<String, Long> counters, Map<String, Long> gauges,
+                 Map<String, HistogramSummary> histograms) {
+            this.timestampMillis = timestampMillis;
+            this.counters = Collections.unmodifiableMap(counters);
+            this.gauges = Collections.unmodifiableMap(gauges);
+            this.histograms = Collections.unmodifiableMap(histograms);
+        }
+
+        /**
+         * Serializes the snapshot as a single JSON object
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"ts\":").append(timestampMillis);
+
+            json.append(",\"counters\":{");
+            appendValues(json, counters);
+            json.append("},\"gauges\":{");
+            appendValues(json, gauges);
+            json.append("},\"histograms\":{");
+
+            boolean first = true;
+            for (Map.Entry<String, HistogramSummary> entry : histograms.entrySet()) {
+                HistogramSummary summary = entry.getValue();
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendName(json, entry.getKey());
+                json.append(":{\"count\":").append(summary.count)
+                    .append(",\"mean_us\":").append(summary.meanMicros)
+                    .append(",\"p50_us\":").append(summary.p50Micros)
+                    .append(",\"p95_us\":").append(summary.p95Micros)
+                    .append(",\"p99_us\":").append(summary.p99Micros)
+                    .append(",\"max_us\":").append(summary.maxMicros).append('}');
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendValues(StringBuilder json, Map<String, Long> values) {
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendName(json, entry.getKey());
+                json.append(':').append(entry.getValue());
+            }
+        }
+
+        private static void appendName(StringBuilder json, String name) {
+            json.append('"');
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\');
+                }
+                json.append(c);
+            }
+            json.append('"');
+        }
+    }
+}
@@ -1,31 +1,94 @@
 package com.egyptian.agent.performance;
 
+import android.app.ActivityManager;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import com.egyptian.agent.core.BackgroundTaskManager;
+import com.egyptian.agent.core.DeviceClassDetector;
+import com.egyptian.agent.core.MainApplication;
+import com.egyptian.agent.core.SensorHub;
+import com.egyptian.agent.utils.MemoryOptimizer;
+
+import java.io.File;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Performance Monitor
- * Monitors application performance and resource usage
+ * Samples resource usage into MetricsRegistry gauges, exports snapshots to a rolling file
+ * and triggers MemoryOptimizer when the device class memory thresholds are crossed.
+ * Thermal, battery and latency samples also drive the QualityGovernor.
  */
 public class PerformanceMonitor {
     private static final String TAG = "PerformanceMonitor";
-    
+
+    private static final long SAMPLE_INTERVAL_SECONDS = 30;
+    private static final long OPTIMIZATION_COOLDOWN_MS = 60_000;
+    private static final int HIGH_BATTERY_TEMP_DECI_C = 450;
+    private static final long METRICS_FILE_MAX_BYTES = 256 * 1024;
+    private static final int METRICS_FILE_COUNT = 4;
+    private static final long LATENCY_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final BackgroundTaskManager.TaskType[] TASK_TYPES = BackgroundTaskManager.TaskType.values();
+
     private Context context;
-    private ScheduledExecutorService scheduler;
     private Handler mainHandler;
-    private boolean isMonitoring = false;
-    
+    private volatile boolean isMonitoring = false;
+    // Posted on the main thread between samples, so no thread is parked while waiting
+    private final Runnable sampleTick = this::submitSample;
+
+    private final ActivityManager activityManager;
+    private final PowerManager powerManager;
+    private final QualityGovernor qualityGovernor = QualityGovernor.getInstance();
+    private final QualityGovernor.Listener tierLogger;
+    private final ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+    private final IntentFilter batteryFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+    private final RollingMetricsFile metricsFile;
+    private MemoryThresholds thresholds;
+    private long lastOptimizationAt;
+    private long lastCpuTimeMs;
+    private long lastWallTimeMs;
+
+    // Metric handles are looked up once so sampling does not touch the registry maps
+    private final MetricsRegistry.Gauge heapUsedMb = MetricsRegistry.gauge("memory.heap_used_mb");
+    private final MetricsRegistry.Gauge heapUsedPercent = MetricsRegistry.gauge("memory.heap_used_percent");
+    private final MetricsRegistry.Gauge systemAvailableMb = MetricsRegistry.gauge("memory.system_available_mb");
+    private final MetricsRegistry.Gauge processCpuPercent = MetricsRegistry.gauge("cpu.process_percent");
+    private final MetricsRegistry.Gauge batteryTempDeciC = MetricsRegistry.gauge("thermal.battery_temp_decic");
+    private final MetricsRegistry.Counter memoryOptimizations = MetricsRegistry.counter("memory.optimizations");
+    private final MetricsRegistry.Counter thermalWarnings = MetricsRegistry.counter("thermal.warnings");
+    private final MetricsRegistry.Gauge qualityTier = MetricsRegistry.gauge("quality.tier");
+    private final MetricsRegistry.Counter qualityTierChanges = MetricsRegistry.counter("quality.tier_changes");
+    private final MetricsRegistry.Gauge sensorRegistrations = MetricsRegistry.gauge("sensors.registrations");
+    private final MetricsRegistry.Gauge sensorEvents = MetricsRegistry.gauge("sensors.events_delivered");
+    private final MetricsRegistry.Gauge[] taskQueueDepths = new MetricsRegistry.Gauge[TASK_TYPES.length];
+
     private static PerformanceMonitor instance;
-    
+
     private PerformanceMonitor(Context context) {
         this.context = context.getApplicationContext();
         this.mainHandler = new Handler(Looper.getMainLooper());
+        this.activityManager = (ActivityManager) this.context.getSystemService(Context.ACTIVITY_SERVICE);
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+        this.metricsFile = new RollingMetricsFile(new File(this.context.getFilesDir(), "metrics"),
+            METRICS_FILE_MAX_BYTES, METRICS_FILE_COUNT);
+        for (int i = 0; i < TASK_TYPES.length; i++) {
+            taskQueueDepths[i] = MetricsRegistry.gauge(
+                "tasks.queue_depth." + TASK_TYPES[i].name().toLowerCase(Locale.ROOT));
+        }
+        tierLogger = (previous, current) -> {
+            qualityTierChanges.increment();
+            Log.i(TAG, "Quality tier " + previous + " -> " + current);
+        };
+        qualityGovernor.addListener(tierLogger);
     }
     
     /**
@@ -50,10 +113,10 @@ public class PerformanceMonitor {
         }
         
         isMonitoring = true;
-        scheduler = Executors.newScheduledThreadPool(1);
-        
+        thresholds = MemoryThresholds.forDeviceClass(resolveDeviceClass());
+
         // Schedule periodic performance checks
-        scheduler.scheduleAtFixedRate(this::checkPerformance, 0, 30, TimeUnit.SECONDS);
+        mainHandler.post(sampleTick);
         
         Log.i(TAG, "Performance monitoring started");
     }
@@ -68,151 +131,213 @@ public class PerformanceMonitor {
         }
         
         isMonitoring = false;
+        mainHandler.removeCallbacks(sampleTick);
         
-        if (scheduler != null) {
-            scheduler.shutdown();
-            try {
-                if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                    scheduler.shutdownNow();
+        Log.i(TAG, "Performance monitoring stopped");
+    }
+
+    /**
+     * Takes one sample on the general lane and schedules the next once it is done
+     */
+    private void submitSample() {
+        if (!isMonitoring) {
+            return;
+        }
+        BackgroundTaskManager.getInstance(context).executeTask(
+            BackgroundTaskManager.TaskType.GENERAL, BackgroundTaskManager.TaskPriority.LOW, () -> {
+                try {
+                    checkPerformance();
+                } finally {
+                    scheduleNextSample();
                 }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
+            }, this::scheduleNextSample);
+    }
+
+    private void scheduleNextSample() {
+        if (isMonitoring) {
+            // A restart while a sample was running leaves one tick pending, not two
+            mainHandler.removeCallbacks(sampleTick);
+            mainHandler.postDelayed(sampleTick, TimeUnit.SECONDS.toMillis(SAMPLE_INTERVAL_SECONDS));
+        }
+    }
+
+    private DeviceClassDetector.DeviceClass resolveDeviceClass() {
+        if (context instanceof MainApplication) {
+            DeviceClassDetector.DeviceClass deviceClass = ((MainApplication) context).getDeviceClass();
+            if (deviceClass != null) {
+                return deviceClass;
             }
         }
-        
-        Log.i(TAG, "Performance monitoring stopped");
+        return DeviceClassDetector.detectDevice(context);
     }
     
     /**
-     * Checks current performance metrics
+     * Samples resource usage into the metrics registry and applies memory thresholds
      */
     private void checkPerformance() {
-        // Check memory usage
-        checkMemoryUsage();
-        
-        // Check CPU usage (simplified)
-        checkCpuUsage();
-        
-        // Check if device is overheating
-        checkTemperature();
-        
-        // Log performance metrics periodically
-        logPerformanceMetrics();
+        try {
+            checkMemoryUsage();
+            checkCpuUsage();
+            checkTemperature();
+            publishTaskQueueDepths();
+            publishSensorHubStats();
+            metricsFile.append(MetricsRegistry.snapshot().toJson());
+        } catch (Exception e) {
+            // One failed sample is logged; the next is scheduled regardless
+            Log.e(TAG, "Error sampling performance metrics", e);
+        }
     }
-    
+
     /**
-     * Checks memory usage
+     * Checks heap and system memory against the device class thresholds
      */
     private void checkMemoryUsage() {
         Runtime runtime = Runtime.getRuntime();
-        long maxMemory = runtime.maxMemory();
-        long totalMemory = runtime.totalMemory();
-        long freeMemory = runtime.freeMemory();
-        long usedMemory = totalMemory - freeMemory;
-        
-        double memoryUsagePercent = (double) usedMemory / maxMemory * 100;
-        
-        Log.d(TAG, String.format(
-            "Memory - Used: %d MB, Free: %d MB, Total: %d MB, Usage: %.2f%%",
-            usedMemory / (1024 * 1024),
-            freeMemory / (1024 * 1024),
-            maxMemory / (1024 * 1024),
-            memoryUsagePercent
-        ));
-        
-        // Trigger optimization if memory usage is high
-        if (memoryUsagePercent > 80) {
-            Log.w(TAG, "High memory usage detected: " + String.format("%.2f%%", memoryUsagePercent));
-            triggerMemoryOptimizations(context);
+        long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+        int heapPercent = (int) (usedMemory * 100 / runtime.maxMemory());
+
+        activityManager.getMemoryInfo(memoryInfo);
+        long availableMb = memoryInfo.availMem / (1024 * 1024);
+
+        heapUsedMb.set(usedMemory / (1024 * 1024));
+        heapUsedPercent.set(heapPercent);
+        systemAvailableMb.set(availableMb);
+
+        MemoryThresholds.Action action = thresholds.evaluate(heapPercent, availableMb, memoryInfo.lowMemory);
+        if (action == MemoryThresholds.Action.NONE) {
+            return;
+        }
+
+        // Give the previous action time to take effect before acting again
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastOptimizationAt < OPTIMIZATION_COOLDOWN_MS) {
+            return;
+        }
+        lastOptimizationAt = now;
+
+        Log.w(TAG, "Memory pressure (" + action + "): heap " + heapPercent + "%, available " + availableMb + " MB");
+        memoryOptimizations.increment();
+        if (action == MemoryThresholds.Action.OPTIMIZE) {
+            MemoryOptimizer.triggerMemoryOptimizations(context);
+        } else {
+            MemoryOptimizer.freeMemory();
         }
     }
-    
+
     /**
-     * Checks CPU usage (actual implementation)
+     * Measures process CPU usage since the previous sample
      */
     private void checkCpuUsage() {
-        try {
-            // On Android, we can't directly access CPU usage through standard APIs
-            // Instead, we'll use the ActivityManager to get CPU info
-            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long cpuTimeMs = android.os.Process.getElapsedCpuTime();
+        long wallTimeMs = SystemClock.elapsedRealtime();
 
-            // For Android, we'll use a different approach to estimate CPU usage
-            ActivityManager.MemoryInfo memInfo = new ActivityManager.MemoryInfo();
-            activityManager.getMemoryInfo(memInfo);
+        if (lastWallTimeMs > 0 && wallTimeMs > lastWallTimeMs) {
+            long percent = (cpuTimeMs - lastCpuTimeMs) * 100
+                / ((wallTimeMs - lastWallTimeMs) * Runtime.getRuntime().availableProcessors());
+            processCpuPercent.set(percent);
+        }
+        lastCpuTimeMs = cpuTimeMs;
+        lastWallTimeMs = wallTimeMs;
+    }
 
-            // Calculate approximate CPU usage based on available memory
-            // This is a simplified approximation
-            long totalMemory = memInfo.totalMem;
-            long availableMemory = memInfo.availMem;
-            double approxCpuUsage = 1.0 - ((double) availableMemory / totalMemory);
+    /**
+     * Reads battery temperature from the sticky battery broadcast (no listener is registered)
+     * and feeds it to the quality governor with thermal status, charge and recent latency
+     */
+    private void checkTemperature() {
+        Intent battery = context.registerReceiver(null, batteryFilter);
+        if (battery == null) {
+            return;
+        }
 
-            Log.d(TAG, String.format("Approximate CPU usage: %.2f%%", approxCpuUsage * 100));
+        // Reported in tenths of a degree Celsius
+        int temperature = battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+        batteryTempDeciC.set(temperature);
 
-            // If CPU usage is high, log a warning
-            if (approxCpuUsage > 0.8) { // More than 80% CPU usage
-                Log.w(TAG, String.format("High CPU usage detected: %.2f%%", approxCpuUsage * 100));
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking CPU usage", e);
+        if (temperature >= HIGH_BATTERY_TEMP_DECI_C) {
+            thermalWarnings.increment();
+            Log.w(TAG, String.format("High battery temperature: %.1f°C", temperature / 10.0));
         }
+
+        updateQualityTier(battery, temperature);
     }
-    
+
+    private void updateQualityTier(Intent battery, int temperatureDeciC) {
+        int thermalStatus = QualityGovernor.Sample.UNKNOWN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && powerManager != null) {
+            thermalStatus = powerManager.getCurrentThermalStatus();
+        }
+
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int batteryPercent = level >= 0 && scale > 0 ? level * 100 / scale : QualityGovernor.Sample.UNKNOWN;
+        boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+
+        QualityGovernor.Tier tier = qualityGovernor.update(new QualityGovernor.Sample(
+            thermalStatus, temperatureDeciC, batteryPercent, charging, getProcessingP95Ms()));
+        qualityTier.set(tier.ordinal());
+    }
+
     /**
-     * Checks device temperature
+     * Gets recent p95 latency of the work after speech recognition
+     * The whole COMMAND trace is not used: it starts at the wake word, so it includes the spoken
+     * prompt and however long the user talks, which no quality tier can shorten.
+     * @return Intent plus execution latency in milliseconds, or UNKNOWN if no command ran recently
      */
-    private void checkTemperature() {
-        try {
-            android.hardware.SensorManager sensorManager = (android.hardware.SensorManager)
-                context.getSystemService(Context.SENSOR_SERVICE);
-
-            // TYPE_TEMPERATURE is deprecated, so we'll use alternative sensors
-            android.hardware.Sensor tempSensor = sensorManager.getDefaultSensor(android.hardware.Sensor.TYPE_AMBIENT_TEMPERATURE);
-
-            if (tempSensor != null) {
-                // Register a listener to get temperature readings
-                sensorManager.registerListener(new android.hardware.SensorEventListener() {
-                    @Override
-                    public void onSensorChanged(android.hardware.SensorEvent event) {
-                        float temperature = event.values[0];
-                        Log.d(TAG, String.format("Device temperature: %.2f°C", temperature));
-
-                        // If temperature is high, log a warning
-                        if (temperature > 60.0f) { // High temperature threshold
-                            Log.w(TAG, String.format("High device temperature detected: %.2f°C", temperature));
-                        }
-
-                        // Unregister the listener after getting one reading
-                        sensorManager.unregisterListener(this);
-                    }
-
-                    @Override
-                    public void onAccuracyChanged(android.hardware.Sensor sensor, int accuracy) {
-                        // Handle accuracy changes if needed
-                    }
-                }, tempSensor, android.hardware.SensorManager.SENSOR_DELAY_NORMAL);
-            } else {
-                Log.w(TAG, "Temperature sensor not available on this device");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error checking device temperature", e);
+    private long getProcessingP95Ms() {
+        long intentMicros = PipelineTracer.getRecentPercentileMicros(PipelineTracer.Stage.INTENT, 95,
+            LATENCY_WINDOW_NANOS);
+        long executeMicros = PipelineTracer.getRecentPercentileMicros(PipelineTracer.Stage.EXECUTE, 95,
+            LATENCY_WINDOW_NANOS);
+        if (intentMicros < 0 && executeMicros < 0) {
+            return QualityGovernor.Sample.UNKNOWN;
         }
+        return (Math.max(0, intentMicros) + Math.max(0, executeMicros)) / 1000;
     }
-    
+
+    /**
+     * Publishes background task lane queue depths
+     */
+    private void publishTaskQueueDepths() {
+        BackgroundTaskManager taskManager = BackgroundTaskManager.getInstance(context);
+        for (int i = 0; i < TASK_TYPES.length; i++) {
+            taskQueueDepths[i].set(taskManager.getQueueDepth(TASK_TYPES[i]));
+        }
+    }
+
     /**
-     * Triggers memory optimizations
+     * Publishes how many sensors the hub holds and how many events woke it, to show batching at work
      */
-    private void triggerMemoryOptimizations(Context context) {
-        // Call the MemoryOptimizer to free up memory
-        com.egyptian.agent.utils.MemoryOptimizer.freeMemory();
+    private void publishSensorHubStats() {
+        // Sampling must not start the sensor thread for an app that never used sensors
+        SensorHub sensorHub = SensorHub.getExistingInstance();
+        if (sensorHub == null) {
+            return;
+        }
+        sensorRegistrations.set(sensorHub.getRegistrationCount());
+        sensorEvents.set(sensorHub.getDeliveredEventCount());
     }
 
     /**
-     * Logs performance metrics
+     * Gets the rolling on-disk metrics export
      */
-    private void logPerformanceMetrics() {
-        // Log performance metrics to be used for analytics
-        Log.d(TAG, "Performance metrics logged");
+    public RollingMetricsFile getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Exports recent pipeline spans as Chrome trace JSON (open in ui.perfetto.dev)
+     * @return The written file, or null on failure
+     */
+    public File exportPipelineTrace() {
+        File traceDir = new File(context.getExternalFilesDir(null), "traces");
+        if (!traceDir.exists() && !traceDir.mkdirs()) {
+            Log.w(TAG, "Could not create trace directory: " + traceDir);
+            return null;
+        }
+
+        File traceFile = new File(traceDir, "pipeline-" + System.currentTimeMillis() + ".json");
+        return PipelineTracer.exportChromeTrace(traceFile) ? traceFile : null;
     }
     
     /**
@@ -220,6 +345,7 @@ public class PerformanceMonitor {
      */
     public void cleanup() {
         stopMonitoring();
+        qualityGovernor.removeListener(tierLogger);
         instance = null;
     }
     
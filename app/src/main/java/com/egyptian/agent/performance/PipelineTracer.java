@@ -0,0 +1,292 @@
+package com.egyptian.agent.performance;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pipeline Tracer
+ * Records per-stage latency spans for each voice command, from wake word to action.
+ * Spans go into a preallocated ring buffer (no allocation per span) and into per-stage
+ * MetricsRegistry histograms; the buffer can be exported as Chrome trace JSON for Perfetto (ui.perfetto.dev).
+ */
+public final class PipelineTracer {
+    private static final String TAG = "PipelineTracer";
+
+    // Ring buffer capacity in spans; must be a power of two
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    // Single process in exported traces
+    private static final int TRACE_PID = 1;
+    public static final long NO_TRACE = 0;
+
+    /**
+     * Pipeline stages, in the order a command passes through them
+     */
+    public enum Stage {
+        COMMAND,            // Whole trace: wake word to action
+        CAPTURE,            // Microphone capture window
+        VAD,                // Voice activity / energy gating
+        ASR,                // Speech recognition decode
+        NORMALIZE,          // Egyptian dialect normalization
+        INTENT,             // Intent classification
+        ENTITY_RESOLUTION,  // Contact / entity lookup
+        TTS,                // Time from speak request to audio start
+        EXECUTE;            // Performing the action
+
+        final String traceName = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    // Ring buffer as parallel primitive arrays; published[slot] holds the write index once complete
+    private static final long[] spanTraceIds = new long[CAPACITY];
+    private static final int[] spanStages = new int[CAPACITY];
+    private static final long[] spanStartNanos = new long[CAPACITY];
+    private static final long[] spanDurationNanos = new long[CAPACITY];
+    private static final long[] spanThreadIds = new long[CAPACITY];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong writeIndex = new AtomicLong();
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    private static final AtomicLong nextTraceId = new AtomicLong(1);
+    private static volatile long activeTraceId = NO_TRACE;
+    private static volatile long activeTraceStartNanos;
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = MetricsRegistry.histogram("pipeline." + STAGES[i].traceName);
+        }
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    private PipelineTracer() {
+    }
+
+    /**
+     * Starts a new command trace; a trace that was never ended is abandoned without a COMMAND span
+     * @return The new trace ID
+     */
+    public static synchronized long beginTrace() {
+        long traceId = nextTraceId.getAndIncrement();
+        activeTraceStartNanos = System.nanoTime();
+        activeTraceId = traceId;
+        return traceId;
+    }
+
+    /**
+     * Ends the active trace and records its total duration as a COMMAND span
+     */
+    public static synchronized void endTrace() {
+        long traceId = activeTraceId;
+        if (traceId == NO_TRACE) {
+            return;
+        }
+        activeTraceId = NO_TRACE;
+        record(traceId, Stage.COMMAND, activeTraceStartNanos, System.nanoTime() - activeTraceStartNanos);
+    }
+
+    /**
+     * Gets the ID of the trace in progress, or NO_TRACE
+     */
+    public static long currentTraceId() {
+        return activeTraceId;
+    }
+
+    /**
+     * Marks the start of a span
+     * @return Start timestamp to pass to endSpan
+     */
+    public static long startSpan() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Ends a span that belongs to the active trace
+     */
+    public static void endSpan(Stage stage, long startNanos) {
+        endSpan(activeTraceId, stage, startNanos);
+    }
+
+    /**
+     * Ends a span for a specific trace (for work that completes after the trace moved on)
+     */
+    public static void endSpan(long traceId, Stage stage, long startNanos) {
+        record(traceId, stage, startNanos, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a completed span
+     */
+    public static void record(long traceId, Stage stage, long startNanos, long durationNanos) {
+        histograms[stage.ordinal()].recordNanos(durationNanos);
+
+        long index = writeIndex.getAndIncrement();
+        int slot = (int) (index & MASK);
+        // Invalidate the slot while it is being overwritten
+        published.set(slot, -1);
+        spanTraceIds[slot] = traceId;
+        spanStages[slot] = stage.ordinal();
+        spanStartNanos[slot] = startNanos;
+        spanDurationNanos[slot] = durationNanos;
+        spanThreadIds[slot] = Thread.currentThread().getId();
+        published.set(slot, index);
+    }
+
+    /**
+     * Gets latency percentiles for every stage that has recorded spans
+     */
+    public static Map<Stage, StageSummary> getStageSummaries() {
+        Map<Stage, StageSummary> summaries = new EnumMap<>(Stage.class);
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            if (histogram.getCount() > 0) {
+                summaries.put(stage, new StageSummary(stage, histogram));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Gets the latency histogram of a stage
+     */
+    public static LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Gets a latency percentile over the spans of a stage that started recently
+     * Reads the ring buffer, so it only sees the last CAPACITY spans of all stages.
+     * @param windowNanos How far back to look
+     * @return Latency in microseconds, or -1 if no span of the stage started in the window
+     */
+    public static long getRecentPercentileMicros(Stage stage, double percentile, long windowNanos) {
+        long since = System.nanoTime() - windowNanos;
+        long[] durations = new long[CAPACITY];
+        int count = 0;
+
+        long end = writeIndex.get();
+        for (long index = Math.max(0, end - CAPACITY); index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (published.get(slot) != index) {
+                continue;
+            }
+            boolean matches = spanStages[slot] == stage.ordinal() && spanStartNanos[slot] >= since;
+            long durationNanos = spanDurationNanos[slot];
+            // Skip the span if a writer lapped us while reading it
+            if (matches && published.get(slot) == index) {
+                durations[count++] = durationNanos / 1000;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+
+        Arrays.sort(durations, 0, count);
+        int rank = (int) Math.ceil(count * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        return durations[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Exports the spans currently in the ring buffer as Chrome trace event JSON
+     */
+    public static String exportChromeTrace() {
+        StringBuilder json = new StringBuilder(64 * CAPACITY);
+        json.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        json.append("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":").append(TRACE_PID)
+            .append(",\"args\":{\"name\":\"EgyptianAgent pipeline\"}}");
+
+        long end = writeIndex.get();
+        long start = Math.max(0, end - CAPACITY);
+        for (long index = start; index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (published.get(slot) != index) {
+                continue;
+            }
+            long traceId = spanTraceIds[slot];
+            int stage = spanStages[slot];
+            long startNanos = spanStartNanos[slot];
+            long durationNanos = spanDurationNanos[slot];
+            long threadId = spanThreadIds[slot];
+            // Skip the span if a writer lapped us while reading it
+            if (published.get(slot) != index) {
+                continue;
+            }
+
+            json.append(",{\"name\":\"").append(STAGES[stage].traceName)
+                .append("\",\"cat\":\"pipeline\",\"ph\":\"X\",\"ts\":").append(startNanos / 1000)
+                .append(",\"dur\":").append(durationNanos / 1000)
+                .append(",\"pid\":").append(TRACE_PID)
+                .append(",\"tid\":").append(threadId)
+                .append(",\"args\":{\"trace\":").append(traceId).append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the Chrome trace JSON to a file
+     * @return true if the file was written
+     */
+    public static boolean exportChromeTrace(File outputFile) {
+        try (FileWriter writer = new FileWriter(outputFile)) {
+            writer.write(exportChromeTrace());
+            Log.i(TAG, "Pipeline trace exported to " + outputFile.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to export pipeline trace", e);
+            return false;
+        }
+    }
+
+    /**
+     * Clears recorded spans and histograms
+     */
+    public static synchronized void reset() {
+        activeTraceId = NO_TRACE;
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Latency summary of one stage
+     */
+    public static class StageSummary {
+        public final Stage stage;
+        public final long count;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        StageSummary(Stage stage, LatencyHistogram histogram) {
+            this.stage = stage;
+            this.count = histogram.getCount();
+            this.p50Micros = histogram.getPercentileMicros(50);
+            this.p95Micros = histogram.getPercentileMicros(95);
+            this.p99Micros = histogram.getPercentileMicros(99);
+            this.maxMicros = histogram.getMaxMicros();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                stage.traceName, count, p50Micros / 1000.0, p95Micros / 1000.0,
+                p99Micros / 1000.0, maxMicros / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.egyptian.agent.performance;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Quality Governor
+ * Steps the assistant through quality tiers as the phone heats up, the battery drains or
+ * commands get slow, and back up as conditions recover. PerformanceMonitor feeds it a sample
+ * every 30 seconds; components read the current tier or listen for changes.
+ *
+ * Hysteresis keeps tiers from flapping: a worse tier is taken after DEGRADE_SAMPLES consecutive
+ * samples ask for it, while a better tier needs UPGRADE_SAMPLES consecutive samples that clear
+ * stricter exit thresholds, and is approached one step at a time. A step down caused by latency
+ * alone needs LATENCY_DEGRADE_SAMPLES slow samples and is only taken once the previous tier has
+ * been held for LATENCY_SETTLE_SAMPLES, so one slow command costs at most one tier and the next
+ * step is judged on commands that ran at the new tier.
+ */
+public final class QualityGovernor {
+
+    /**
+     * Quality tiers, from best to cheapest
+     */
+    public enum Tier {
+        FULL(4, 128, true, false),
+        BALANCED(3, 96, true, false),
+        REDUCED(2, 64, false, true),
+        MINIMAL(1, 48, false, true);
+
+        public final int llmThreads;            // llama.cpp decode threads
+        public final int llmMaxTokens;          // Generation budget for classification fallbacks
+        public final boolean whisperAsr;        // Whisper for recorded speech, else Vosk
+        public final boolean wakeWordEnergyGate; // Keep silence away from the wake word recognizer
+
+        Tier(int llmThreads, int llmMaxTokens, boolean whisperAsr, boolean wakeWordEnergyGate) {
+            this.llmThreads = llmThreads;
+            this.llmMaxTokens = llmMaxTokens;
+            this.whisperAsr = whisperAsr;
+            this.wakeWordEnergyGate = wakeWordEnergyGate;
+        }
+    }
+
+    /**
+     * Device conditions at one point in time
+     */
+    public static final class Sample {
+        public static final int UNKNOWN = -1;
+
+        public final int thermalStatus;         // PowerManager.THERMAL_STATUS_*, or UNKNOWN
+        public final int batteryTempDeciC;      // Tenths of a degree Celsius, or UNKNOWN
+        public final int batteryPercent;        // 0-100, or UNKNOWN
+        public final boolean charging;
+        // Recent latency of the on-device work after speech recognition (intent and execution),
+        // or UNKNOWN; excludes prompts and the user's own speech
+        public final long processingP95Ms;
+
+        public Sample(int thermalStatus, int batteryTempDeciC, int batteryPercent, boolean charging,
+                      long processingP95Ms) {
+            this.thermalStatus = thermalStatus;
+            this.batteryTempDeciC = batteryTempDeciC;
+            this.batteryPercent = batteryPercent;
+            this.charging = charging;
+            this.processingP95Ms = processingP95Ms;
+        }
+
+        Sample withoutLatency() {
+            return new Sample(thermalStatus, batteryTempDeciC, batteryPercent, charging, UNKNOWN);
+        }
+    }
+
+    /**
+     * Notified on the sampling thread when the tier changes
+     */
+    public interface Listener {
+        void onTierChanged(Tier previous, Tier current);
+    }
+
+    static final int DEGRADE_SAMPLES = 2;
+    static final int UPGRADE_SAMPLES = 4;
+    static final int LATENCY_DEGRADE_SAMPLES = 4;
+    // Matches PerformanceMonitor's 5 minute latency window at one sample per 30 seconds
+    static final int LATENCY_SETTLE_SAMPLES = 10;
+
+    // PowerManager thermal status levels entering each tier
+    private static final int THERMAL_LIGHT = 1;
+    private static final int THERMAL_MODERATE = 2;
+    private static final int THERMAL_SEVERE = 3;
+
+    // Battery temperature entering BALANCED, REDUCED and MINIMAL; exits need TEMP_MARGIN less
+    private static final int[] TEMP_ENTER_DECI_C = {400, 430, 460};
+    private static final int TEMP_MARGIN_DECI_C = 20;
+
+    // Battery level (when not charging) entering BALANCED, REDUCED and MINIMAL; exits need BATTERY_MARGIN more
+    private static final int[] BATTERY_ENTER_PERCENT = {35, 20, 10};
+    private static final int BATTERY_MARGIN_PERCENT = 5;
+
+    // Processing latency over budget costs a tier; recovering needs it well under budget
+    private static final long LATENCY_BUDGET_MS = 2000;
+    private static final long LATENCY_RECOVERED_MS = 1400;
+
+    private static final Tier[] TIERS = Tier.values();
+    private static final QualityGovernor shared = new QualityGovernor();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Tier tier = Tier.FULL;
+    private int degradeStreak;
+    private int upgradeStreak;
+    private int samplesAtTier = LATENCY_SETTLE_SAMPLES;
+
+    /**
+     * Gets the process-wide governor
+     */
+    public static QualityGovernor getInstance() {
+        return shared;
+    }
+
+    public Tier getTier() {
+        return tier;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Feeds one sample and applies any tier change it completes
+     * @return The tier after this sample
+     */
+    public Tier update(Sample sample) {
+        Tier previous;
+        Tier next;
+        synchronized (this) {
+            previous = tier;
+            next = previous;
+            samplesAtTier++;
+
+            Tier entering = targetTier(sample, previous, false);
+            boolean latencyOnly = entering.ordinal() > targetTier(sample.withoutLatency(), previous, false).ordinal();
+            if (latencyOnly && samplesAtTier <= LATENCY_SETTLE_SAMPLES) {
+                // Still judging latency measured at the previous tier
+                degradeStreak = 0;
+                upgradeStreak = 0;
+            } else if (entering.ordinal() > previous.ordinal()) {
+                upgradeStreak = 0;
+                if (++degradeStreak >= (latencyOnly ? LATENCY_DEGRADE_SAMPLES : DEGRADE_SAMPLES)) {
+                    next = entering;
+                }
+            } else {
+                degradeStreak = 0;
+                Tier exiting = targetTier(sample, previous, true);
+                if (exiting.ordinal() < previous.ordinal()) {
+                    if (++upgradeStreak >= UPGRADE_SAMPLES) {
+                        next = TIERS[previous.ordinal() - 1];
+                    }
+                } else {
+                    upgradeStreak = 0;
+                }
+            }
+
+            if (next == previous) {
+                return previous;
+            }
+            tier = next;
+            degradeStreak = 0;
+            upgradeStreak = 0;
+            samplesAtTier = 0;
+        }
+
+        for (Listener listener : listeners) {
+            listener.onTierChanged(previous, next);
+        }
+        return next;
+    }
+
+    /**
+     * Tier the sample calls for
+     * @param exiting Use the exit thresholds, which must be cleared before leaving a tier
+     */
+    static Tier targetTier(Sample sample, Tier current, boolean exiting) {
+        int level = 0;
+
+        if (sample.thermalStatus >= THERMAL_SEVERE) {
+            level = 3;
+        } else if (sample.thermalStatus >= THERMAL_MODERATE) {
+            level = 2;
+        } else if (sample.thermalStatus >= THERMAL_LIGHT) {
+            level = 1;
+        }
+
+        if (sample.batteryTempDeciC != Sample.UNKNOWN) {
+            int margin = exiting ? TEMP_MARGIN_DECI_C : 0;
+            for (int i = TEMP_ENTER_DECI_C.length - 1; i >= 0; i--) {
+                if (sample.batteryTempDeciC >= TEMP_ENTER_DECI_C[i] - margin) {
+                    level = Math.max(level, i + 1);
+                    break;
+                }
+            }
+        }
+
+        if (!sample.charging && sample.batteryPercent != Sample.UNKNOWN) {
+            int margin = exiting ? BATTERY_MARGIN_PERCENT : 0;
+            for (int i = BATTERY_ENTER_PERCENT.length - 1; i >= 0; i--) {
+                if (sample.batteryPercent <= BATTERY_ENTER_PERCENT[i] + margin) {
+                    level = Math.max(level, i + 1);
+                    break;
+                }
+            }
+        }
+
+        // Latency is relative: over budget costs one tier below the current one, and the
+        // current tier is held until latency recovers
+        if (sample.processingP95Ms != Sample.UNKNOWN) {
+            if (sample.processingP95Ms > LATENCY_BUDGET_MS) {
+                level = Math.max(level, current.ordinal() + 1);
+            } else if (exiting && sample.processingP95Ms > LATENCY_RECOVERED_MS) {
+                level = Math.max(level, current.ordinal());
+            }
+        }
+
+        return TIERS[Math.min(level, TIERS.length - 1)];
+    }
+}
@@ -0,0 +1,89 @@
+package com.egyptian.agent.performance;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Rolling Metrics File
+ * Appends one JSON line per snapshot to metrics-0.jsonl, rotating to metrics-1..N-1 when the
+ * active file grows past its size limit, so disk usage stays bounded at maxFiles * maxBytes.
+ */
+public class RollingMetricsFile {
+    private static final String TAG = "RollingMetricsFile";
+    private static final String PREFIX = "metrics-";
+    private static final String SUFFIX = ".jsonl";
+
+    private final File directory;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    public RollingMetricsFile(File directory, long maxBytes, int maxFiles) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    /**
+     * Appends a line, rotating first if the active file is full
+     * @return true if the line was written
+     */
+    public synchronized boolean append(String line) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create metrics directory: " + directory);
+            return false;
+        }
+
+        File active = fileAt(0);
+        if (active.length() >= maxBytes) {
+            rotate();
+        }
+
+        try (OutputStream out = new FileOutputStream(active, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append metrics", e);
+            return false;
+        }
+    }
+
+    /**
+     * Gets the metric files from newest to oldest
+     */
+    public synchronized File[] getFiles() {
+        int present = 0;
+        File[] files = new File[maxFiles];
+        for (int i = 0; i < maxFiles; i++) {
+            File file = fileAt(i);
+            if (file.exists()) {
+                files[present++] = file;
+            }
+        }
+        File[] result = new File[present];
+        System.arraycopy(files, 0, result, 0, present);
+        return result;
+    }
+
+    private void rotate() {
+        File oldest = fileAt(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            Log.w(TAG, "Could not delete " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File file = fileAt(i);
+            if (file.exists() && !file.renameTo(fileAt(i + 1))) {
+                Log.w(TAG, "Could not rotate " + file);
+            }
+        }
+    }
+
+    private File fileAt(int index) {
+        return new File(directory, PREFIX + index + SUFFIX);
+    }
+}
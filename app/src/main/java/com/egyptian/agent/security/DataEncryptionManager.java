@@ -8,8 +8,18 @@ import android.util.Log;
 import androidx.security.crypto.EncryptedSharedPreferences;
 import androidx.security.crypto.MasterKey;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Data encryption manager for sensitive information
@@ -19,6 +29,11 @@ public class DataEncryptionManager {
     private static final String TAG = "DataEncryptionManager";
     private static final String MASTER_KEY_ALIAS = "EgyptianAgentMasterKey";
     private static final String ENCRYPTED_SHARED_PREFS_NAME = "encrypted_shared_prefs";
+    private static final String BACKUP_KEY_ALIAS = "EgyptianAgentBackupKey";
+    private static final String ANDROID_KEYSTORE = "AndroidKeyStore";
+    private static final String BACKUP_KEY_FILE = "backup_key.wrapped";
+    private static final int GCM_NONCE_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
 
     private static DataEncryptionManager instance;
     private Context context;
@@ -133,6 +148,65 @@ public class DataEncryptionManager {
         return new String[]{name, number};
     }
 
+    /**
+     * Gets this device's copy of the backup store key
+     * The store key itself is sealed with the user's passphrase next to the backups (see
+     * BackupKeyFile), so backups restore on any phone; this copy, wrapped by a keystore key
+     * that never leaves the device, only lets backups run without asking for the passphrase.
+     * @return The key, or null if no backup passphrase was set up on this device
+     */
+    public synchronized SecretKey getBackupKey() throws GeneralSecurityException, IOException {
+        File file = new File(context.getNoBackupFilesDir(), BACKUP_KEY_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] contents = Files.readAllBytes(file.toPath());
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, getBackupWrappingKey(),
+            new GCMParameterSpec(GCM_TAG_BITS, contents, 0, GCM_NONCE_BYTES));
+        return new SecretKeySpec(cipher.doFinal(contents, GCM_NONCE_BYTES, contents.length - GCM_NONCE_BYTES), "AES");
+    }
+
+    /**
+     * Keeps this device's copy of the backup store key, wrapped by the keystore
+     */
+    public synchronized void storeBackupKey(SecretKey key) throws GeneralSecurityException, IOException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, getBackupWrappingKey());
+        byte[] nonce = cipher.getIV();
+        byte[] wrapped = cipher.doFinal(key.getEncoded());
+
+        File file = new File(context.getNoBackupFilesDir(), BACKUP_KEY_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+        byte[] contents = Arrays.copyOf(nonce, nonce.length + wrapped.length);
+        System.arraycopy(wrapped, 0, contents, nonce.length, wrapped.length);
+        Files.write(temp.toPath(), contents);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Log.i(TAG, "Backup key stored");
+    }
+
+    /**
+     * Gets the AES-256 GCM keystore key wrapping the device copy of the backup key
+     */
+    private SecretKey getBackupWrappingKey() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(ANDROID_KEYSTORE);
+        keyStore.load(null);
+        if (keyStore.containsAlias(BACKUP_KEY_ALIAS)) {
+            return (SecretKey) keyStore.getKey(BACKUP_KEY_ALIAS, null);
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, ANDROID_KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(
+                BACKUP_KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        Log.i(TAG, "Backup wrapping key created");
+        return generator.generateKey();
+    }
+
     /**
      * Clear all encrypted data
      */
@@ -6,6 +6,7 @@ import com.egyptian.agent.nlp.IntentType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -20,6 +21,18 @@ public class EgyptianNormalizer {
     
     // Common Egyptian names and their variations
     private static final Map<String, String> NAME_VARIATIONS = new HashMap<>();
+
+    // Slot patterns for results that carry an intent but no entities
+    private static final Pattern CONTACT_PATTERN = Pattern.compile(
+        "(?:اتصل\\s+(?:ب|على\\s+|مع\\s+)?|كلم\\s+|رن\\s+(?:على\\s+)?|(?:رسالة|واتساب)\\s+(?:لـ|ل)?)"
+        + "([\\u0621-\\u064a][\\u0621-\\u064a\\s]*)");
+    // Words that end a contact name
+    private static final Pattern CONTACT_END_PATTERN = Pattern.compile(
+        "\\s+(?:دلوقتي|النهارده|بكرة|الصبح|بالليل|الساعة|بعد|وقوله|قوله|قول|إنه|إني|إن|أن)(?:\\s|$)");
+    private static final Pattern MESSAGE_PATTERN = Pattern.compile(
+        "(?:^|\\s)(?:قوله|قول|إنه|إني|إن|أن)\\s+(.+)$");
+    private static final Pattern TIME_PATTERN = Pattern.compile(
+        "(?:^|\\s)((?:الساعة|بعد|بكرة|الصبح|بالليل).*)$");
     
     static {
         // Initialize dialect mappings
@@ -197,6 +210,71 @@ public class EgyptianNormalizer {
         }
     }
     
+    /**
+     * Extracts the contact name following a call or message verb
+     * @param text The command text
+     * @return The contact name, or empty string if none is found
+     */
+    public static String extractContactName(String text) {
+        String contact = firstGroup(CONTACT_PATTERN, text);
+        Matcher end = CONTACT_END_PATTERN.matcher(contact);
+        if (end.find()) {
+            contact = contact.substring(0, end.start());
+        }
+        return contact.trim();
+    }
+
+    /**
+     * Extracts the message following "قول", "إن" or similar
+     * @param text The command text
+     * @return The message, or empty string if none is found
+     */
+    public static String extractMessage(String text) {
+        return firstGroup(MESSAGE_PATTERN, text);
+    }
+
+    /**
+     * Extracts a time expression such as "بكرة الصبح" or "بعد ساعة"
+     * @param text The command text
+     * @return The time expression, or empty string if none is found
+     */
+    public static String extractTimeExpression(String text) {
+        return firstGroup(TIME_PATTERN, text);
+    }
+
+    /**
+     * Fills the contact, message and time entities the intent needs from the command text,
+     * keeping any entity already set
+     * @param result The intent result to fill
+     * @param text The command text
+     */
+    public static void extractEntities(IntentResult result, String text) {
+        IntentType intentType = result.getIntentType();
+        if (intentType == IntentType.CALL_CONTACT || intentType == IntentType.SEND_WHATSAPP) {
+            putIfAbsent(result, "contact", extractContactName(text));
+        }
+        if (intentType == IntentType.SEND_WHATSAPP) {
+            putIfAbsent(result, "message", extractMessage(text));
+        }
+        if (intentType == IntentType.SET_ALARM) {
+            putIfAbsent(result, "time", extractTimeExpression(text));
+        }
+    }
+
+    private static String firstGroup(Pattern pattern, String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1).trim() : "";
+    }
+
+    private static void putIfAbsent(IntentResult result, String key, String value) {
+        if (!value.isEmpty() && result.getEntity(key).isEmpty()) {
+            result.setEntity(key, value);
+        }
+    }
+
     /**
      * Classifies a basic intent from Egyptian text
      * @param text The Egyptian text to classify
@@ -217,7 +295,7 @@ public class EgyptianNormalizer {
         } else if (lowerText.contains("نبهني") || lowerText.contains("ذكرني") || lowerText.contains("المنبه")) {
             result.setIntentType(IntentType.SET_ALARM);
             result.setConfidence(0.7f);
-        } else if (lowerText.contains(" emergencies") != -1 || lowerText.contains("نجدة") != -1 || lowerText.contains("استغاثة") != -1) {
+        } else if (lowerText.contains(" emergencies") || lowerText.contains("نجدة") || lowerText.contains("استغاثة")) {
             result.setIntentType(IntentType.EMERGENCY);
             result.setConfidence(0.9f);
         } else {
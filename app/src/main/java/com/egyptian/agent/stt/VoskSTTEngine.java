@@ -3,6 +3,10 @@ package com.egyptian.agent.stt;
 import android.content.Context;
 import android.util.Log;
 
+import com.egyptian.agent.core.BackgroundTaskManager;
+import com.egyptian.agent.core.ThreadPlacement;
+import com.egyptian.agent.performance.PipelineTracer;
+
 import org.vosk.LibVosk;
 import org.vosk.Model;
 import org.vosk.Recognizer;
@@ -12,7 +16,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Vosk Speech-to-Text Engine
@@ -22,6 +25,7 @@ public class VoskSTTEngine {
     private static final String TAG = "VoskSTTEngine";
     
     private Context context;
+    private BackgroundTaskManager taskManager;
     private Model model;
     private Recognizer recognizer;
     private ExecutorService executorService;
@@ -35,7 +39,9 @@ public class VoskSTTEngine {
     
     public VoskSTTEngine(Context context, String modelPath) {
         this.context = context;
-        this.executorService = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
+        // Capture runs for as long as the microphone is open, so it has its own thread
+        this.executorService = taskManager.newStreamExecutor("vosk-capture", ThreadPlacement.Role.AUDIO_CAPTURE);
         
         initializeModel(modelPath);
     }
@@ -45,7 +51,7 @@ public class VoskSTTEngine {
      * @param modelPath Path to the model in assets
      */
     private void initializeModel(String modelPath) {
-        executorService.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.FILE_IO, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 // Extract model from assets to internal storage
                 String extractedModelPath = extractModelToInternalStorage(modelPath);
@@ -201,6 +207,7 @@ public class VoskSTTEngine {
                 );
 
                 audioRecord.startRecording();
+                long captureStart = PipelineTracer.startSpan();
 
                 byte[] buffer = new byte[bufferSize];
                 while (isListening) {
@@ -218,7 +225,10 @@ public class VoskSTTEngine {
                     }
                 }
 
-                // Get final result
+                PipelineTracer.endSpan(PipelineTracer.Stage.CAPTURE, captureStart);
+
+                // Get final result; streaming decode already ran inside the capture window
+                long asrStart = PipelineTracer.startSpan();
                 String finalResult = recognizer.getFinalResult();
                 Log.d(TAG, "Final recognition result: " + finalResult);
 
@@ -226,6 +236,7 @@ public class VoskSTTEngine {
                     // Parse the result to extract the text
                     org.json.JSONObject jsonObject = new org.json.JSONObject(finalResult);
                     String text = jsonObject.getString("text");
+                    PipelineTracer.endSpan(PipelineTracer.Stage.ASR, asrStart);
                     callback.onResult(text);
                 }
 
@@ -344,6 +355,27 @@ public class VoskSTTEngine {
         return null;
     }
 
+    /**
+     * Ends the utterance fed through recognizeAudio and starts a fresh one
+     * @return Recognized text of the remaining audio, or null if not available
+     */
+    public String finishAudio() {
+        if (!isInitialized || recognizer == null) {
+            return null;
+        }
+
+        try {
+            String result = recognizer.getFinalResult();
+            if (result != null && !result.isEmpty()) {
+                return new org.json.JSONObject(result).optString("text", null);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error finishing recognition", e);
+        }
+
+        return null;
+    }
+
     /**
      * Callback interface for STT results
      */
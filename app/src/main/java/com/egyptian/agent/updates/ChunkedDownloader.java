@@ -0,0 +1,344 @@
+package com.egyptian.agent.updates;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chunked Downloader
+ * Downloads a large file as fixed-size chunks fetched in parallel with Range requests. Each chunk
+ * is written in place into TARGET.download and checked against its own SHA-256, so a bad chunk is
+ * fetched again on its own. Finished chunks are recorded in TARGET.chunks only after their bytes
+ * are on disk, so a download interrupted at any point, including by process death, resumes
+ * with just the missing chunks. The complete file is moved onto the target atomically. Has no
+ * Android dependencies.
+ */
+public final class ChunkedDownloader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ATTEMPTS_PER_CHUNK = 3;
+    private static final String DOWNLOAD_SUFFIX = ".download";
+    private static final String STATE_SUFFIX = ".chunks";
+    private static final int STATE_MAGIC = 0x4541434b; // "EACK"
+    // Magic, size, chunk size, SHA-256 of the chunk list
+    private static final int STATE_HEADER_BYTES = 4 + 8 + 4 + 32;
+
+    /**
+     * Receives download progress; called from the chunk workers
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesDone, long totalBytes);
+    }
+
+    /**
+     * Thrown when the volume cannot hold the rest of the download and the reserve
+     */
+    public static final class InsufficientStorageException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public final long requiredBytes;
+        public final long availableBytes;
+
+        InsufficientStorageException(long requiredBytes, long availableBytes) {
+            super("Download needs " + requiredBytes + " bytes, " + availableBytes + " available");
+            this.requiredBytes = requiredBytes;
+            this.availableBytes = availableBytes;
+        }
+    }
+
+    private final String userAgent;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * @param executor Runs chunk fetches
+     * @param parallelism Chunks fetched at once
+     */
+    public ChunkedDownloader(String userAgent, int connectTimeoutMillis, int readTimeoutMillis,
+                             Executor executor, int parallelism) {
+        this.userAgent = userAgent;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Downloads a file, resuming an earlier interrupted download of the same target
+     * @param chunkSha256 Hex SHA-256 of each chunk; chunk i covers bytes [i * chunkSize, (i + 1) * chunkSize)
+     * @param reserveBytes Free space that must remain on the volume afterwards
+     * @param listener Progress listener, may be null
+     * @throws InsufficientStorageException before any download if the volume is too full
+     * @throws SecurityException if a chunk keeps failing its checksum
+     */
+    public void download(URL url, long size, int chunkSize, List<String> chunkSha256, File target,
+                         long reserveBytes, ProgressListener listener) throws IOException {
+        if (chunkSize <= 0 || chunkSha256.size() != chunkCount(size, chunkSize)) {
+            throw new IllegalArgumentException("Chunk list does not cover " + size + " bytes");
+        }
+        File data = new File(target.getPath() + DOWNLOAD_SUFFIX);
+        File stateFile = new File(target.getPath() + STATE_SUFFIX);
+        byte[] header = stateHeader(size, chunkSize, chunkSha256);
+
+        try (RandomAccessFile state = openState(stateFile, data, header, chunkSha256.size());
+             RandomAccessFile out = new RandomAccessFile(data, "rw")) {
+            byte[] done = new byte[chunkSha256.size()];
+            state.seek(STATE_HEADER_BYTES);
+            state.readFully(done);
+            List<Integer> pending = new ArrayList<>();
+            long remainingBytes = 0;
+            for (int i = 0; i < done.length; i++) {
+                if (done[i] != 1) {
+                    pending.add(i);
+                    remainingBytes += chunkLength(i, size, chunkSize);
+                }
+            }
+
+            // The file is sparse until written, so the missing chunks are what still needs space
+            long needed = remainingBytes + reserveBytes;
+            long available = target.getAbsoluteFile().getParentFile().getUsableSpace();
+            if (available < needed) {
+                throw new InsufficientStorageException(needed, available);
+            }
+            out.setLength(size);
+
+            Fetch fetch = new Fetch(url, size, chunkSize, chunkSha256, out.getChannel(), state, pending,
+                size - remainingBytes, listener);
+            fetch.run();
+            out.getChannel().force(true);
+        }
+
+        Files.move(data.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        stateFile.delete();
+    }
+
+    /**
+     * Opens the chunk state, starting over if it belongs to a different file
+     */
+    private static RandomAccessFile openState(File stateFile, File data, byte[] header, int chunkCount) throws IOException {
+        if (stateFile.exists() && data.exists() && stateFile.length() == STATE_HEADER_BYTES + chunkCount) {
+            byte[] existing = new byte[STATE_HEADER_BYTES];
+            try (RandomAccessFile in = new RandomAccessFile(stateFile, "r")) {
+                in.readFully(existing);
+            }
+            if (MessageDigest.isEqual(existing, header)) {
+                return new RandomAccessFile(stateFile, "rwd");
+            }
+        }
+
+        data.delete();
+        RandomAccessFile state = new RandomAccessFile(stateFile, "rwd");
+        state.setLength(0);
+        state.write(header);
+        state.write(new byte[chunkCount]);
+        return state;
+    }
+
+    private static byte[] stateHeader(long size, int chunkSize, List<String> chunkSha256) {
+        MessageDigest digest = RangedDownloader.sha256();
+        for (String hash : chunkSha256) {
+            digest.update(hash.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+        }
+        return ByteBuffer.allocate(STATE_HEADER_BYTES)
+            .putInt(STATE_MAGIC).putLong(size).putInt(chunkSize).put(digest.digest())
+            .array();
+    }
+
+    static int chunkCount(long size, int chunkSize) {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    private static long chunkLength(int index, long size, int chunkSize) {
+        return Math.min(chunkSize, size - (long) index * chunkSize);
+    }
+
+    /**
+     * One download run: workers take pending chunks in order until none are left or one fails
+     */
+    private final class Fetch {
+        private final URL url;
+        private final long size;
+        private final int chunkSize;
+        private final List<String> chunkSha256;
+        private final FileChannel out;
+        private final RandomAccessFile state;
+        private final List<Integer> pending;
+        private final AtomicInteger nextPending = new AtomicInteger();
+        private final AtomicLong bytesDone;
+        private final AtomicBoolean failed = new AtomicBoolean();
+        // The first failure; workers stopped by it report nothing further
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+        private final ProgressListener listener;
+
+        Fetch(URL url, long size, int chunkSize, List<String> chunkSha256, FileChannel out,
+              RandomAccessFile state, List<Integer> pending, long bytesDone, ProgressListener listener) {
+            this.url = url;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkSha256 = chunkSha256;
+            this.out = out;
+            this.state = state;
+            this.pending = pending;
+            this.bytesDone = new AtomicLong(bytesDone);
+            this.listener = listener;
+        }
+
+        void run() throws IOException {
+            List<FutureTask<Void>> workers = new ArrayList<>();
+            int workerCount = Math.min(parallelism, pending.size());
+            for (int i = 0; i < workerCount; i++) {
+                FutureTask<Void> worker = new FutureTask<>(this::work, null);
+                workers.add(worker);
+                executor.execute(worker);
+            }
+
+            for (FutureTask<Void> worker : workers) {
+                // Runs the worker here if the executor has not started it, so a busy executor
+                // cannot stall the download
+                worker.run();
+                try {
+                    worker.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fail(new IOException("Download interrupted", e));
+                } catch (ExecutionException e) {
+                    fail(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+
+            Exception firstError = error.get();
+            if (firstError instanceof IOException) {
+                throw (IOException) firstError;
+            }
+            if (firstError instanceof RuntimeException) {
+                throw (RuntimeException) firstError;
+            }
+            if (firstError != null) {
+                throw new IOException("Chunk download failed", firstError);
+            }
+        }
+
+        private void fail(Exception e) {
+            error.compareAndSet(null, e);
+            failed.set(true);
+        }
+
+        private void work() {
+            int k;
+            while (!failed.get() && (k = nextPending.getAndIncrement()) < pending.size()) {
+                try {
+                    fetchChunk(pending.get(k));
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void fetchChunk(int index) throws IOException {
+            long start = (long) index * chunkSize;
+            long length = chunkLength(index, size, chunkSize);
+            IOException lastError = null;
+
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS_PER_CHUNK; attempt++) {
+                try {
+                    String actual = fetchRange(start, length);
+                    if (actual.equalsIgnoreCase(chunkSha256.get(index))) {
+                        out.force(false);
+                        markDone(index);
+                        long done = bytesDone.addAndGet(length);
+                        if (listener != null) {
+                            listener.onProgress(done, size);
+                        }
+                        return;
+                    }
+                    lastError = null;
+                } catch (IOException e) {
+                    lastError = e;
+                }
+                if (failed.get()) {
+                    break;
+                }
+            }
+            if (lastError != null) {
+                throw lastError;
+            }
+            throw new SecurityException("Chunk " + index + " does not match its checksum");
+        }
+
+        /**
+         * Streams one byte range into place
+         * @return Hex SHA-256 of the bytes received
+         */
+        private String fetchRange(long start, long length) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setConnectTimeout(connectTimeoutMillis);
+                connection.setReadTimeout(readTimeoutMillis);
+                connection.setRequestProperty("User-Agent", userAgent);
+                connection.setRequestProperty("Accept-Encoding", "identity");
+                connection.setRequestProperty("Range", "bytes=" + start + "-" + (start + length - 1));
+
+                int responseCode = connection.getResponseCode();
+                if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                    throw new IOException("Range request failed with HTTP code: " + responseCode);
+                }
+                String contentRange = connection.getHeaderField("Content-Range");
+                if (contentRange == null || !contentRange.startsWith("bytes " + start + "-" + (start + length - 1))) {
+                    throw new IOException("Unexpected Content-Range: " + contentRange);
+                }
+
+                MessageDigest digest = RangedDownloader.sha256();
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                long position = start;
+                long end = start + length;
+                try (InputStream in = connection.getInputStream()) {
+                    int bytesRead;
+                    while (position < end
+                            && (bytesRead = in.read(buffer.array(), 0, (int) Math.min(BUFFER_SIZE, end - position))) != -1) {
+                        digest.update(buffer.array(), 0, bytesRead);
+                        buffer.limit(bytesRead).position(0);
+                        while (buffer.hasRemaining()) {
+                            position += out.write(buffer, position);
+                        }
+                        buffer.clear();
+                        if (failed.get()) {
+                            throw new IOException("Download cancelled");
+                        }
+                    }
+                }
+                if (position != end) {
+                    throw new IOException("Chunk at " + start + " ended early");
+                }
+                return RangedDownloader.toHex(digest.digest());
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        private void markDone(int index) throws IOException {
+            synchronized (state) {
+                state.seek(STATE_HEADER_BYTES + index);
+                state.write(1);
+            }
+        }
+    }
+}
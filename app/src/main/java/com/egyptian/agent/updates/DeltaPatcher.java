@@ -0,0 +1,114 @@
+package com.egyptian.agent.updates;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Delta Patcher
+ * Applies a bsdiff-style binary patch to the installed APK, streaming the new file out without
+ * holding either file in memory. Has no Android dependencies.
+ *
+ * The patch follows the streaming layout of bsdiff 4.3: a 16-byte magic, the new file size, then
+ * one compressed stream of control records. Each record is (diff length, extra length, old seek),
+ * followed by diff bytes that are added to the old file at the current old position and extra
+ * bytes that are copied as is. The stream is deflate rather than bzip2, which the platform
+ * cannot decode. Numbers are 8-byte little-endian sign-magnitude, as in bsdiff.
+ */
+public final class DeltaPatcher {
+    static final byte[] MAGIC = "EGYAGENT/BSDIFFZ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DeltaPatcher() {
+    }
+
+    /**
+     * Writes the patched file
+     * @param oldFile The file the patch was made against
+     * @param patch The patch, positioned at its start
+     * @param out Receives the new file; not closed
+     * @return Size of the new file
+     * @throws IOException if the patch is malformed
+     */
+    public static long apply(File oldFile, InputStream patch, OutputStream out) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        DataInputStream header = new DataInputStream(patch);
+        header.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a delta patch");
+        }
+        long newSize = readOffset(header);
+        if (newSize < 0) {
+            throw new IOException("Corrupt delta patch header");
+        }
+
+        DataInputStream body = new DataInputStream(new InflaterInputStream(patch));
+        byte[] diff = new byte[BUFFER_SIZE];
+        byte[] old = new byte[BUFFER_SIZE];
+        try (RandomAccessFile oldIn = new RandomAccessFile(oldFile, "r")) {
+            long oldSize = oldIn.length();
+            long oldPos = 0;
+            long newPos = 0;
+
+            while (newPos < newSize) {
+                long diffLength = readOffset(body);
+                long extraLength = readOffset(body);
+                long seek = readOffset(body);
+                if (diffLength < 0 || extraLength < 0 || newPos + diffLength + extraLength > newSize) {
+                    throw new IOException("Corrupt delta patch control record");
+                }
+
+                // Diff bytes: new = old + diff over the overlapping part of the old file
+                long remaining = diffLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(remaining, BUFFER_SIZE);
+                    body.readFully(diff, 0, count);
+                    int from = (int) Math.max(0, Math.min(count, -oldPos));
+                    int to = (int) Math.max(from, Math.min(count, oldSize - oldPos));
+                    if (to > from) {
+                        oldIn.seek(oldPos + from);
+                        oldIn.readFully(old, from, to - from);
+                        for (int i = from; i < to; i++) {
+                            diff[i] += old[i];
+                        }
+                    }
+                    out.write(diff, 0, count);
+                    oldPos += count;
+                    remaining -= count;
+                }
+
+                // Extra bytes: copied as is
+                remaining = extraLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(remaining, BUFFER_SIZE);
+                    body.readFully(diff, 0, count);
+                    out.write(diff, 0, count);
+                    remaining -= count;
+                }
+
+                newPos += diffLength + extraLength;
+                oldPos += seek;
+            }
+            return newSize;
+        } catch (EOFException e) {
+            throw new IOException("Truncated delta patch", e);
+        }
+    }
+
+    // bsdiff offtin: little-endian magnitude with the sign in the top bit
+    private static long readOffset(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (long) (in.readUnsignedByte()) << (8 * i);
+        }
+        return (value & Long.MIN_VALUE) != 0 ? -(value & Long.MAX_VALUE) : value;
+    }
+}
@@ -0,0 +1,238 @@
+package com.egyptian.agent.updates;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.egyptian.agent.core.BackgroundTaskManager;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Model download manager
+ * Fetches models too large to ship in the APK into the model registry directory (files/models).
+ * Each model is downloaded in chunks fetched in parallel and checked one by one, then moved into
+ * the registry in one rename, so readers never see a partial model. The spec of an unfinished
+ * download is saved, and resumePendingDownloads() finishes it after the process was killed.
+ */
+public class ModelDownloadManager {
+    private static final String TAG = "ModelDownloadManager";
+    public static final String MODEL_DIRECTORY = "models";
+    private static final String MODEL_VERSIONS_PREFS = "model_versions";
+    private static final String PENDING_DOWNLOADS_PREFS = "model_downloads";
+    private static final String URL_SCHEME = "https";
+    private static final int PARALLEL_CHUNKS = 4;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    // Left free on the volume so a model download never fills the phone
+    private static final long STORAGE_RESERVE_BYTES = 512L * 1024 * 1024;
+
+    private static ModelDownloadManager instance;
+    private final Context context;
+    private final BackgroundTaskManager taskManager;
+    private final ChunkedDownloader downloader;
+    private final Set<String> activeDownloads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private ModelDownloadManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
+        // Chunks are fetched on the DOWNLOAD lane rather than the NETWORK lane, where the
+        // download itself already holds one of its few threads. Workers the lane drops or has not
+        // started are run by the downloading thread instead.
+        this.downloader = new ChunkedDownloader("EgyptianAgent", CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS,
+            taskManager.laneExecutor(BackgroundTaskManager.TaskType.DOWNLOAD, BackgroundTaskManager.TaskPriority.LOW),
+            PARALLEL_CHUNKS);
+    }
+
+    public static synchronized ModelDownloadManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new ModelDownloadManager(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the model registry directory
+     */
+    public File getModelDirectory() {
+        return new File(context.getFilesDir(), MODEL_DIRECTORY);
+    }
+
+    /**
+     * Gets an installed model
+     * @return The model file, or null if it was never downloaded
+     */
+    public File getModelFile(String name) {
+        File model = new File(getModelDirectory(), name);
+        return model.isFile() ? model : null;
+    }
+
+    /**
+     * Gets the installed version of a model
+     * @return The version, or 0 if the model was never downloaded
+     */
+    public int getInstalledVersion(String name) {
+        return getModelFile(name) != null ? getModelVersionPrefs().getInt(name, 0) : 0;
+    }
+
+    /**
+     * Downloads and installs a model on the network lane
+     */
+    public void download(ModelSpec spec, DownloadListener listener) {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.NETWORK, BackgroundTaskManager.TaskPriority.LOW, () -> {
+            try {
+                downloadBlocking(spec, listener);
+            } catch (Exception e) {
+                Log.e(TAG, "Error downloading model " + spec.name, e);
+                if (listener != null) {
+                    listener.onError(spec.name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Downloads and installs a model on the calling thread
+     * @param listener May be null
+     * @throws ChunkedDownloader.InsufficientStorageException if the model does not fit
+     */
+    public void downloadBlocking(ModelSpec spec, DownloadListener listener) throws IOException {
+        File modelDir = getModelDirectory();
+        File target = new File(modelDir, spec.name);
+        // Model names come from the server, so never write outside the registry
+        if (!modelDir.equals(target.getParentFile())) {
+            throw new SecurityException("Invalid model name: " + spec.name);
+        }
+        if (!URL_SCHEME.equals(new URL(spec.url).getProtocol())) {
+            throw new SecurityException("Refusing non-HTTPS model URL");
+        }
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            throw new IOException("Cannot create " + modelDir);
+        }
+        if (!activeDownloads.add(spec.name)) {
+            Log.d(TAG, "Model " + spec.name + " is already downloading");
+            return;
+        }
+
+        try {
+            // Saved first so the download can be finished after the process is killed
+            savePending(spec);
+            Log.i(TAG, "Downloading model " + spec.name + " version " + spec.version);
+            downloader.download(new URL(spec.url), spec.size, spec.chunkSize, spec.chunkSha256, target,
+                STORAGE_RESERVE_BYTES, (done, total) -> {
+                    if (listener != null) {
+                        listener.onProgress(spec.name, done, total);
+                    }
+                });
+
+            getModelVersionPrefs().edit().putInt(spec.name, spec.version).apply();
+            getPendingPrefs().edit().remove(spec.name).apply();
+            Log.i(TAG, "Installed model " + spec.name + " version " + spec.version);
+            if (listener != null) {
+                listener.onInstalled(spec.name, spec.version);
+            }
+        } finally {
+            activeDownloads.remove(spec.name);
+        }
+    }
+
+    /**
+     * Resumes downloads that were still running when the process last stopped
+     */
+    public void resumePendingDownloads() {
+        for (Map.Entry<String, ?> entry : getPendingPrefs().getAll().entrySet()) {
+            try {
+                download(ModelSpec.fromJson(new JSONObject((String) entry.getValue())), null);
+            } catch (JSONException | ClassCastException e) {
+                Log.w(TAG, "Dropping unreadable pending download " + entry.getKey(), e);
+                getPendingPrefs().edit().remove(entry.getKey()).apply();
+            }
+        }
+    }
+
+    private void savePending(ModelSpec spec) {
+        try {
+            getPendingPrefs().edit().putString(spec.name, spec.toJson().toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Cannot save pending download " + spec.name, e);
+        }
+    }
+
+    private SharedPreferences getModelVersionPrefs() {
+        return context.getSharedPreferences(MODEL_VERSIONS_PREFS, Context.MODE_PRIVATE);
+    }
+
+    private SharedPreferences getPendingPrefs() {
+        return context.getSharedPreferences(PENDING_DOWNLOADS_PREFS, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Receives model download events; called on background threads
+     */
+    public interface DownloadListener {
+        void onProgress(String modelName, long bytesDone, long totalBytes);
+        void onInstalled(String modelName, int version);
+        void onError(String modelName, String errorMessage);
+    }
+
+    /**
+     * Describes a downloadable model, as listed by the model channel
+     */
+    public static class ModelSpec {
+        public final String id;
+        public final String name;
+        public final int version;
+        public final String url;
+        public final long size;
+        public final int chunkSize;
+        public final List<String> chunkSha256;
+
+        /**
+         * @param id Model id as used by DeviceClassDetector, e.g. "whisper-base"
+         * @param name File name in the model registry
+         * @param chunkSha256 Hex SHA-256 of each chunkSize piece of the file
+         */
+        public ModelSpec(String id, String name, int version, String url, long size, int chunkSize,
+                         List<String> chunkSha256) {
+            this.id = id;
+            this.name = name;
+            this.version = version;
+            this.url = url;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.chunkSha256 = Collections.unmodifiableList(new ArrayList<>(chunkSha256));
+        }
+
+        public static ModelSpec fromJson(JSONObject json) throws JSONException {
+            JSONArray chunks = json.getJSONArray("chunks");
+            List<String> hashes = new ArrayList<>(chunks.length());
+            for (int i = 0; i < chunks.length(); i++) {
+                hashes.add(chunks.getString(i));
+            }
+            String name = json.getString("name");
+            return new ModelSpec(json.optString("id", name), name, json.getInt("version"),
+                json.getString("url"), json.getLong("size"), json.getInt("chunkSize"), hashes);
+        }
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("name", name);
+            json.put("version", version);
+            json.put("url", url);
+            json.put("size", size);
+            json.put("chunkSize", chunkSize);
+            json.put("chunks", new JSONArray(chunkSha256));
+            return json;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.egyptian.agent.updates;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Ranged Downloader
+ * Downloads a file over HTTP into TARGET.part, hashing it with SHA-256 as the bytes arrive, and
+ * renames it into place only once the size and hash match. An interrupted download leaves the
+ * partial file behind; the next call resumes it with a Range request guarded by If-Range, so a
+ * file that changed on the server is fetched again from the start rather than spliced. Has no
+ * Android dependencies.
+ */
+public final class RangedDownloader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".part.validator";
+
+    /**
+     * Receives download progress; called on the downloading thread
+     */
+    public interface ProgressListener {
+        void onProgress(long bytesDone, long totalBytes);
+    }
+
+    private final String userAgent;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public RangedDownloader(String userAgent, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.userAgent = userAgent;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Downloads a file, resuming an earlier partial download of the same target
+     * @param expectedSha256 Hex SHA-256 of the complete file
+     * @param expectedSize Size of the complete file, or -1 if unknown
+     * @param listener Progress listener, may be null
+     * @throws SecurityException if the downloaded file does not match; the partial file is removed
+     */
+    public void download(URL url, File target, String expectedSha256, long expectedSize,
+                         ProgressListener listener) throws IOException {
+        File part = new File(target.getPath() + PART_SUFFIX);
+        File validatorFile = new File(target.getPath() + VALIDATOR_SUFFIX);
+        MessageDigest digest = sha256();
+
+        long offset = 0;
+        String validator = null;
+        if (part.exists() && validatorFile.exists()) {
+            validator = new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8);
+            offset = hashFile(part, digest);
+            if (expectedSize >= 0 && offset > expectedSize) {
+                offset = 0;
+                digest.reset();
+            }
+        }
+        if (offset == 0) {
+            part.delete();
+            validatorFile.delete();
+        }
+
+        if (expectedSize < 0 || offset < expectedSize) {
+            offset = fetch(url, part, validatorFile, validator, offset, digest, listener);
+        }
+
+        String actual = toHex(digest.digest());
+        if ((expectedSize >= 0 && offset != expectedSize) || !actual.equalsIgnoreCase(expectedSha256)) {
+            part.delete();
+            validatorFile.delete();
+            throw new SecurityException("Download of " + target.getName() + " does not match its checksum");
+        }
+
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Cannot replace " + target);
+        }
+        if (!part.renameTo(target)) {
+            throw new IOException("Cannot move download into " + target);
+        }
+        validatorFile.delete();
+    }
+
+    /**
+     * Streams the remainder of the file into the partial file
+     * @return Size of the partial file afterwards
+     */
+    private long fetch(URL url, File part, File validatorFile, String validator, long offset,
+                       MessageDigest digest, ProgressListener listener) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setRequestProperty("User-Agent", userAgent);
+            // Ranges are byte offsets into the stored file, so the body must not be re-encoded
+            connection.setRequestProperty("Accept-Encoding", "identity");
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                if (validator != null && !validator.isEmpty()) {
+                    connection.setRequestProperty("If-Range", validator);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            boolean append;
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL && offset > 0) {
+                String contentRange = connection.getHeaderField("Content-Range");
+                if (contentRange == null || !contentRange.startsWith("bytes " + offset + "-")) {
+                    throw new IOException("Unexpected Content-Range: " + contentRange);
+                }
+                append = true;
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                // No resume: a fresh download, or the file changed since the partial one
+                append = false;
+                offset = 0;
+                digest.reset();
+                writeValidator(validatorFile, connection);
+            } else {
+                if (responseCode == 416) {
+                    // The partial file is not a prefix of the current file
+                    part.delete();
+                    validatorFile.delete();
+                }
+                throw new IOException("Download failed with HTTP code: " + responseCode);
+            }
+
+            long length = connection.getContentLengthLong();
+            long total = length >= 0 ? offset + length : -1;
+            try (InputStream in = connection.getInputStream();
+                 FileOutputStream out = new FileOutputStream(part, append)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    digest.update(buffer, 0, bytesRead);
+                    offset += bytesRead;
+                    if (listener != null) {
+                        listener.onProgress(offset, total);
+                    }
+                }
+            }
+            return offset;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // A strong ETag, or else Last-Modified, lets a later Range request detect a changed file
+    private static void writeValidator(File validatorFile, HttpURLConnection connection) throws IOException {
+        String validator = connection.getHeaderField("ETag");
+        if (validator == null || validator.startsWith("W/")) {
+            validator = connection.getHeaderField("Last-Modified");
+        }
+        try (FileOutputStream out = new FileOutputStream(validatorFile)) {
+            out.write((validator != null ? validator : "").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Feeds a file into a digest
+     * @return The file size
+     */
+    static long hashFile(File file, MessageDigest digest) throws IOException {
+        long size = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, bytesRead);
+                size += bytesRead;
+            }
+        }
+        return size;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
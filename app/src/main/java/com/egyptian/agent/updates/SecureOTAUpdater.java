@@ -6,34 +6,59 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.util.Log;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import com.egyptian.agent.core.BackgroundTaskManager;
+import com.egyptian.agent.core.DeviceClassDetector;
+import com.egyptian.agent.core.MainApplication;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import javax.net.ssl.HttpsURLConnection;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * SecureOTAUpdater - Handles secure over-the-air updates for the Egyptian Agent
  * Implements secure download, verification, and installation of updates
+ * Downloads resume after a dropped connection and are SHA-256 checked as they stream to disk.
+ * When the server offers a patch against the installed APK, only the patch is downloaded; models
+ * are updated on their own channel without an APK update.
  */
 public class SecureOTAUpdater {
     private static final String TAG = "SecureOTAUpdater";
     private static final String UPDATE_URL = "https://egyptianagent.example.com/api/update"; // Placeholder URL
+    private static final String MODEL_UPDATE_URL = "https://egyptianagent.example.com/api/models"; // Placeholder URL
     private static final String UPDATE_CHANNEL = "stable"; // Options: stable, beta, alpha
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    // Outside the cache directory, which the system may purge at any time, so downloads resume
+    private static final String UPDATE_DIRECTORY = "updates";
+
     
     private Context context;
-    private ExecutorService executor;
+    private final BackgroundTaskManager taskManager;
+    private final RangedDownloader downloader;
     private UpdateListener listener;
+
+    // SHA-256 of the installed APK, keyed by its path and modification time
+    private String installedApkKey;
+    private String installedApkSha256;
     
     public SecureOTAUpdater(Context context) {
         this.context = context.getApplicationContext();
-        this.executor = Executors.newSingleThreadExecutor();
+        this.taskManager = BackgroundTaskManager.getInstance(context);
+        this.downloader = new RangedDownloader("EgyptianAgent/" + getCurrentVersionCode(),
+            CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
     }
     
     /**
@@ -47,7 +72,7 @@ public class SecureOTAUpdater {
      * Checks for available updates
      */
     public void checkForUpdates() {
-        executor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.NETWORK, BackgroundTaskManager.TaskPriority.LOW, () -> {
             try {
                 UpdateInfo latestUpdate = fetchLatestUpdateInfo();
                 
@@ -73,18 +98,25 @@ public class SecureOTAUpdater {
      * Downloads and installs an update
      */
     public void downloadAndInstallUpdate(UpdateInfo updateInfo) {
-        executor.execute(() -> {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.NETWORK, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 if (listener != null) {
                     listener.onDownloadStarted();
                 }
                 
-                // Download the update
-                File downloadedFile = downloadUpdate(updateInfo.getDownloadUrl(), updateInfo.getVersionCode());
-                
-                // Verify the download
-                if (!verifyDownload(downloadedFile, updateInfo.getChecksum())) {
-                    throw new SecurityException("Download verification failed");
+                // Download the patch if one applies to the installed APK, else the full APK;
+                // either way the result is verified against the new APK's SHA-256
+                pruneStaleDownloads(updateInfo.getVersionCode());
+                File downloadedFile = null;
+                if (updateInfo.hasPatch()) {
+                    try {
+                        downloadedFile = downloadAndApplyPatch(updateInfo);
+                    } catch (IOException | SecurityException e) {
+                        Log.w(TAG, "Delta update failed, downloading the full APK", e);
+                    }
+                }
+                if (downloadedFile == null) {
+                    downloadedFile = downloadUpdate(updateInfo);
                 }
                 
                 if (listener != null) {
@@ -110,71 +142,48 @@ public class SecureOTAUpdater {
      * Fetches information about the latest available update
      */
     private UpdateInfo fetchLatestUpdateInfo() throws IOException {
-        URL url = new URL(UPDATE_URL + "?channel=" + UPDATE_CHANNEL + "&current_version=" + getCurrentVersionCode());
-        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-        
+        JSONObject json = fetchJson(UPDATE_URL + "?channel=" + UPDATE_CHANNEL + "&current_version=" + getCurrentVersionCode());
         try {
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("User-Agent", "EgyptianAgent/" + getCurrentVersionCode());
-            
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                InputStream inputStream = connection.getInputStream();
-                String response = convertStreamToString(inputStream);
-                
-                // Parse the response (simplified - in real implementation, use JSON parsing)
-                // This is a simplified implementation - real implementation would parse JSON properly
-                return new UpdateInfo("1.1.0", 2, "https://example.com/update.apk", "checksum123");
-            } else {
-                throw new IOException("HTTP error code: " + responseCode);
+            UpdateInfo info = new UpdateInfo(json.getString("versionName"), json.getInt("versionCode"),
+                json.getString("url"), json.getString("sha256"));
+            info.setSize(json.optLong("size", -1));
+            info.setChangelog(json.optString("changelog", null));
+
+            // The server offers patches against recent releases; one applies only if it was made
+            // against exactly the APK installed here
+            JSONObject patch = json.optJSONObject("patch");
+            if (patch != null && patch.getString("baseSha256").equalsIgnoreCase(getInstalledApkSha256())) {
+                info.setPatch(patch.getString("url"), patch.getString("sha256"), patch.optLong("size", -1));
             }
-        } finally {
-            connection.disconnect();
+            return info;
+        } catch (JSONException e) {
+            throw new IOException("Malformed update info", e);
         }
     }
-    
+
     /**
-     * Downloads the update APK
+     * Fetches a JSON document from the update server
      */
-    private File downloadUpdate(String downloadUrl, int versionCode) throws IOException {
-        URL url = new URL(downloadUrl);
+    private JSONObject fetchJson(String address) throws IOException {
+        URL url = new URL(address);
         HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
         
         try {
             connection.setRequestMethod("GET");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestProperty("Accept", "application/json");
             connection.setRequestProperty("User-Agent", "EgyptianAgent/" + getCurrentVersionCode());
             
             int responseCode = connection.getResponseCode();
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                String fileName = "update_" + versionCode + ".apk";
-                File outputFile = new File(context.getCacheDir(), fileName);
-                
-                InputStream inputStream = connection.getInputStream();
-                FileOutputStream outputStream = new FileOutputStream(outputFile);
-                
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                long totalBytesRead = 0;
-                long fileSize = connection.getContentLength();
-                
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    totalBytesRead += bytesRead;
-                    
-                    // Notify progress
-                    if (fileSize > 0 && listener != null) {
-                        int progress = (int) ((totalBytesRead * 100) / fileSize);
-                        listener.onDownloadProgress(progress);
-                    }
+                try (InputStream inputStream = connection.getInputStream()) {
+                    return new JSONObject(convertStreamToString(inputStream));
+                } catch (JSONException e) {
+                    throw new IOException("Malformed response from " + url.getHost(), e);
                 }
-                
-                outputStream.close();
-                inputStream.close();
-                
-                return outputFile;
             } else {
-                throw new IOException("Download failed with HTTP code: " + responseCode);
+                throw new IOException("HTTP error code: " + responseCode);
             }
         } finally {
             connection.disconnect();
@@ -182,35 +191,166 @@ public class SecureOTAUpdater {
     }
     
     /**
-     * Verifies the downloaded file using checksum
+     * Gets the directory holding update downloads and their resume state
      */
-    private boolean verifyDownload(File downloadedFile, String expectedChecksum) throws NoSuchAlgorithmException, IOException {
-        String actualChecksum = calculateMD5Checksum(downloadedFile);
-        return expectedChecksum.equalsIgnoreCase(actualChecksum);
+    private File getUpdateDirectory() throws IOException {
+        File directory = new File(context.getNoBackupFilesDir(), UPDATE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        return directory;
     }
-    
+
     /**
-     * Calculates MD5 checksum of a file
+     * Deletes downloads of other versions; the system never purges this directory itself
      */
-    private String calculateMD5Checksum(File file) throws NoSuchAlgorithmException, IOException {
-        MessageDigest md = MessageDigest.getInstance("MD5");
-        try (InputStream inputStream = java.nio.file.Files.newInputStream(file.toPath())) {
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                md.update(buffer, 0, bytesRead);
+    private void pruneStaleDownloads(int versionCode) throws IOException {
+        File[] files = getUpdateDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        String current = "update_" + versionCode + ".";
+        for (File file : files) {
+            if (!file.getName().startsWith(current) && !file.delete()) {
+                Log.w(TAG, "Could not delete stale update file " + file.getName());
             }
         }
-        
-        byte[] digest = md.digest();
-        StringBuilder sb = new StringBuilder();
-        for (byte b : digest) {
-            sb.append(String.format("%02x", b));
+    }
+
+    /**
+     * Downloads the full update APK, resuming an earlier partial download
+     */
+    private File downloadUpdate(UpdateInfo updateInfo) throws IOException {
+        File outputFile = new File(getUpdateDirectory(), "update_" + updateInfo.getVersionCode() + ".apk");
+        downloader.download(requireHttps(updateInfo.getDownloadUrl()), outputFile, updateInfo.getChecksum(),
+            updateInfo.getSize(), this::notifyProgress);
+        return outputFile;
+    }
+
+    /**
+     * Downloads the patch for the installed APK and applies it
+     * The new APK is hashed while it is written, so it is never read back for verification.
+     */
+    private File downloadAndApplyPatch(UpdateInfo updateInfo) throws IOException {
+        File patchFile = new File(getUpdateDirectory(), "update_" + updateInfo.getVersionCode() + ".patch");
+        downloader.download(requireHttps(updateInfo.getPatchUrl()), patchFile, updateInfo.getPatchChecksum(),
+            updateInfo.getPatchSize(), this::notifyProgress);
+
+        File outputFile = new File(getUpdateDirectory(), "update_" + updateInfo.getVersionCode() + ".apk");
+        MessageDigest digest = RangedDownloader.sha256();
+        try (InputStream patch = new FileInputStream(patchFile);
+             OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)), digest)) {
+            DeltaPatcher.apply(new File(context.getApplicationInfo().sourceDir), patch, out);
+        } finally {
+            patchFile.delete();
         }
-        
-        return sb.toString();
+
+        if (!RangedDownloader.toHex(digest.digest()).equalsIgnoreCase(updateInfo.getChecksum())) {
+            outputFile.delete();
+            throw new SecurityException("Patched APK does not match its checksum");
+        }
+        Log.i(TAG, "Applied delta update to version " + updateInfo.getVersionCode());
+        return outputFile;
+    }
+
+    private void notifyProgress(long bytesDone, long totalBytes) {
+        if (totalBytes > 0 && listener != null) {
+            listener.onDownloadProgress((int) ((bytesDone * 100) / totalBytes));
+        }
+    }
+
+    /**
+     * Parses an update URL, refusing anything not served over HTTPS
+     */
+    private static URL requireHttps(String address) throws IOException {
+        URL url = new URL(address);
+        if (!"https".equals(url.getProtocol())) {
+            throw new SecurityException("Refusing non-HTTPS update URL");
+        }
+        return url;
     }
+
+    /**
+     * Gets the SHA-256 of the installed APK, hashing it once per install
+     */
+    private synchronized String getInstalledApkSha256() throws IOException {
+        File apk = new File(context.getApplicationInfo().sourceDir);
+        String key = apk.getPath() + "@" + apk.lastModified();
+        if (!key.equals(installedApkKey)) {
+            MessageDigest digest = RangedDownloader.sha256();
+            RangedDownloader.hashFile(apk, digest);
+            installedApkSha256 = RangedDownloader.toHex(digest.digest());
+            installedApkKey = key;
+        }
+        return installedApkSha256;
+    }
+
+    /**
+     * Checks the model channel and installs newer models
+     * Model updates do not need an APK update. A model is fetched if this device class is
+     * recommended to run it, or if an older version is already installed.
+     */
+    public void checkForModelUpdates() {
+        taskManager.executeTask(BackgroundTaskManager.TaskType.NETWORK, BackgroundTaskManager.TaskPriority.LOW, () -> {
+            try {
+                ModelDownloadManager models = ModelDownloadManager.getInstance(context);
+                DeviceClassDetector.ModelConfiguration config = DeviceClassDetector.getRecommendedModelConfig(
+                    ((MainApplication) context).getDeviceClass());
+
+                for (ModelDownloadManager.ModelSpec model : fetchModelUpdates()) {
+                    int installed = models.getInstalledVersion(model.name);
+                    boolean recommended = model.id.equals(config.asrModel) || model.id.equals(config.llmModel);
+                    if ((installed > 0 || recommended) && model.version > installed) {
+                        models.downloadBlocking(model, modelListener);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error checking for model updates", e);
+                if (listener != null) {
+                    listener.onError("Error checking for model updates: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches the models available on the model channel
+     */
+    private List<ModelDownloadManager.ModelSpec> fetchModelUpdates() throws IOException {
+        JSONObject json = fetchJson(MODEL_UPDATE_URL + "?channel=" + UPDATE_CHANNEL + "&current_version=" + getCurrentVersionCode());
+        List<ModelDownloadManager.ModelSpec> models = new ArrayList<>();
+        try {
+            JSONArray array = json.getJSONArray("models");
+            for (int i = 0; i < array.length(); i++) {
+                models.add(ModelDownloadManager.ModelSpec.fromJson(array.getJSONObject(i)));
+            }
+        } catch (JSONException e) {
+            throw new IOException("Malformed model update info", e);
+        }
+        return models;
+    }
+
+    // Forwards model download events to the update listener
+    private final ModelDownloadManager.DownloadListener modelListener = new ModelDownloadManager.DownloadListener() {
+        @Override
+        public void onProgress(String modelName, long bytesDone, long totalBytes) {
+            notifyProgress(bytesDone, totalBytes);
+        }
+
+        @Override
+        public void onInstalled(String modelName, int version) {
+            if (listener != null) {
+                listener.onModelUpdated(modelName, version);
+            }
+        }
+
+        @Override
+        public void onError(String modelName, String errorMessage) {
+            if (listener != null) {
+                listener.onError("Error updating model " + modelName + ": " + errorMessage);
+            }
+        }
+    };
     
     /**
      * Installs the downloaded update
@@ -265,6 +405,7 @@ public class SecureOTAUpdater {
         void onDownloadProgress(int progress);
         void onDownloadCompleted();
         void onUpdateInstalled();
+        void onModelUpdated(String modelName, int version);
         void onError(String errorMessage);
     }
     
@@ -276,7 +417,11 @@ public class SecureOTAUpdater {
         private int versionCode;
         private String downloadUrl;
         private String checksum;
+        private long size = -1;
         private String changelog;
+        private String patchUrl;
+        private String patchChecksum;
+        private long patchSize = -1;
         
         public UpdateInfo(String versionName, int versionCode, String downloadUrl, String checksum) {
             this.versionName = versionName;
@@ -290,9 +435,24 @@ public class SecureOTAUpdater {
         public int getVersionCode() { return versionCode; }
         public String getDownloadUrl() { return downloadUrl; }
         public String getChecksum() { return checksum; }
+        public long getSize() { return size; }
         public String getChangelog() { return changelog; }
+        public String getPatchUrl() { return patchUrl; }
+        public String getPatchChecksum() { return patchChecksum; }
+        public long getPatchSize() { return patchSize; }
+        public boolean hasPatch() { return patchUrl != null; }
         
         // Setters
+        public void setSize(long size) { this.size = size; }
         public void setChangelog(String changelog) { this.changelog = changelog; }
+
+        /**
+         * Sets the patch that turns the installed APK into this version
+         */
+        public void setPatch(String patchUrl, String patchChecksum, long patchSize) {
+            this.patchUrl = patchUrl;
+            this.patchChecksum = patchChecksum;
+            this.patchSize = patchSize;
+        }
     }
 }
\ No newline at end of file
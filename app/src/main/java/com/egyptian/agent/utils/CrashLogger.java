@@ -4,33 +4,36 @@ import android.content.Context;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 
 /**
  * Crash Logger
- * Handles error logging and crash reporting
+ * Handles error logging and crash reporting. Callers only enqueue the error; LogSink formats,
+ * redacts and writes it on its own thread, rotating and compressing the log file as it grows.
+ * Messages are redacted with PiiScanner before reaching logcat or the log file; logcat gets a
+ * copy of the throwable whose messages are redacted but whose frames and causes are kept.
+ * The fatal entry of an uncaught exception is queued ahead of everything else, so an error
+ * storm just before the crash cannot drop it.
  */
 public class CrashLogger {
     private static final String TAG = "CrashLogger";
     private static final String LOG_FILE_NAME = "crash_logs.txt";
-    
+    private static final long MAX_LOG_BYTES = 256 * 1024;
+    private static final int MAX_ROTATED_LOGS = 3;
+    private static final int MAX_PENDING_ENTRIES = 256;
+    private static final long CRASH_FLUSH_TIMEOUT_MS = 1500;
+    private static final int MAX_CAUSE_DEPTH = 16;
+
+    private static volatile LogSink sink;
+
     /**
      * Logs an error with context
      * @param context Context for the operation
      * @param throwable The error to log
      */
     public static void logError(Context context, Throwable throwable) {
-        String errorMessage = formatError(throwable);
-        Log.e(TAG, errorMessage, throwable);
-        
-        // Write to file for persistent logging
-        writeToFile(context, errorMessage);
+        logError(context, null, throwable);
     }
-    
+
     /**
      * Logs an error with message
      * @param context Context for the operation
@@ -38,99 +41,123 @@ public class CrashLogger {
      * @param throwable The error to log
      */
     public static void logError(Context context, String message, Throwable throwable) {
-        String errorMessage = formatError(message, throwable);
-        Log.e(TAG, errorMessage, throwable);
-        
+        logToLogcat(message, throwable);
+
         // Write to file for persistent logging
-        writeToFile(context, errorMessage);
+        getSink(context).write(message, throwable);
     }
-    
-    /**
-     * Formats an error for logging
-     * @param throwable The error to format
-     * @return Formatted error string
-     */
-    private static String formatError(Throwable throwable) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(getTimestamp()).append(" - ");
-        sb.append("Error: ").append(throwable.getMessage()).append("\n");
-        sb.append("Stack Trace:\n");
-        
-        for (StackTraceElement element : throwable.getStackTrace()) {
-            sb.append("  at ").append(element.toString()).append("\n");
+
+    private static void logToLogcat(String message, Throwable throwable) {
+        String redacted = message != null ? PiiScanner.redact(message) : "Error";
+        if (throwable != null) {
+            Log.e(TAG, redacted, RedactedThrowable.of(throwable, 0));
+        } else {
+            Log.e(TAG, redacted);
         }
-        
-        return sb.toString();
     }
-    
+
     /**
-     * Formats an error with custom message
-     * @param message Custom message
-     * @param throwable The error to format
-     * @return Formatted error string
+     * Logs uncaught exceptions and flushes the log before the previous handler ends the process
+     * @param context Context for the operation
      */
-    private static String formatError(String message, Throwable throwable) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(getTimestamp()).append(" - ");
-        sb.append("Message: ").append(message).append("\n");
-        sb.append("Error: ").append(throwable.getMessage()).append("\n");
-        sb.append("Stack Trace:\n");
-        
-        for (StackTraceElement element : throwable.getStackTrace()) {
-            sb.append("  at ").append(element.toString()).append("\n");
+    public static void registerGlobalExceptionHandler(Context context) {
+        Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        if (previous instanceof CrashHandler) {
+            return;
         }
-        
-        return sb.toString();
+        Thread.setDefaultUncaughtExceptionHandler(new CrashHandler(appContext, previous));
+        getSink(appContext);
     }
-    
-    /**
-     * Gets current timestamp
-     * @return Formatted timestamp
-     */
-    private static String getTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
-        return sdf.format(new Date());
+
+    private static final class CrashHandler implements Thread.UncaughtExceptionHandler {
+        private final Context context;
+        private final Thread.UncaughtExceptionHandler previous;
+
+        CrashHandler(Context context, Thread.UncaughtExceptionHandler previous) {
+            this.context = context;
+            this.previous = previous;
+        }
+
+        @Override
+        public void uncaughtException(Thread thread, Throwable throwable) {
+            try {
+                String message = "Uncaught exception in thread " + thread.getName();
+                logToLogcat(message, throwable);
+                LogSink crashSink = getSink(context);
+                crashSink.writeUrgent(message, throwable);
+                if (!crashSink.flush(CRASH_FLUSH_TIMEOUT_MS)) {
+                    Log.w(TAG, "Crash log not flushed in time");
+                }
+            } finally {
+                if (previous != null) {
+                    previous.uncaughtException(thread, throwable);
+                }
+            }
+        }
     }
-    
+
+    private static LogSink getSink(Context context) {
+        LogSink current = sink;
+        if (current == null) {
+            synchronized (CrashLogger.class) {
+                current = sink;
+                if (current == null) {
+                    current = LogSink.open(getLogFile(context), MAX_LOG_BYTES, MAX_ROTATED_LOGS, MAX_PENDING_ENTRIES);
+                    sink = current;
+                }
+            }
+        }
+        return current;
+    }
+
     /**
-     * Writes error to file
-     * @param context Context for the operation
-     * @param errorMessage The error message to write
+     * Stand-in for a throwable in logcat: prints as the original type with a redacted message,
+     * and carries the original frames and (redacted) causes
      */
-    private static void writeToFile(Context context, String errorMessage) {
-        try {
-            File logFile = new File(context.getFilesDir(), LOG_FILE_NAME);
-            FileWriter writer = new FileWriter(logFile, true); // Append mode
-            writer.append(errorMessage);
-            writer.append("\n---\n"); // Separator between logs
-            writer.flush();
-            writer.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to write error to file", e);
+    private static final class RedactedThrowable extends Throwable {
+        private final String typeName;
+
+        private RedactedThrowable(Throwable original, Throwable cause) {
+            super(PiiScanner.redact(original.getMessage()), cause, false, true);
+            this.typeName = original.getClass().getName();
+            setStackTrace(original.getStackTrace());
+        }
+
+        static Throwable of(Throwable original, int depth) {
+            Throwable cause = original.getCause();
+            Throwable redactedCause = cause != null && cause != original && depth < MAX_CAUSE_DEPTH
+                ? of(cause, depth + 1) : null;
+            return new RedactedThrowable(original, redactedCause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            // The original frames are copied in instead
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            String message = getMessage();
+            return message != null ? typeName + ": " + message : typeName;
         }
     }
-    
+
     /**
-     * Gets the crash log file
+     * Gets the crash log file; older logs are gzip-compressed next to it as crash_logs.txt.N.gz
      * @param context Context for the operation
      * @return The crash log file
      */
     public static File getLogFile(Context context) {
         return new File(context.getFilesDir(), LOG_FILE_NAME);
     }
-    
+
     /**
-     * Clears the crash log file
+     * Clears the crash log file and its rotated segments
      * @param context Context for the operation
      */
     public static void clearLogs(Context context) {
-        try {
-            File logFile = new File(context.getFilesDir(), LOG_FILE_NAME);
-            if (logFile.exists()) {
-                logFile.delete();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to clear logs", e);
-        }
+        getSink(context).clear();
     }
-}
\ No newline at end of file
+}
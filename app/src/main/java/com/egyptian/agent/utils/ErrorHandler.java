@@ -3,20 +3,18 @@ package com.egyptian.agent.utils;
 import android.content.Context;
 import android.util.Log;
 
+import com.egyptian.agent.core.BackgroundTaskManager;
 import com.egyptian.agent.core.TTSManager;
 import com.egyptian.agent.executors.GuardianNotificationSystem;
 import com.egyptian.agent.security.DataEncryptionManager;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Comprehensive error handling utility for production environment
  * Handles different types of errors and provides appropriate responses
  */
 public class ErrorHandler {
     private static final String TAG = "ErrorHandler";
-    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final long RETRY_DELAY_MS = 2000;
 
     /**
      * Handle a general error with appropriate logging and user feedback
@@ -49,10 +47,10 @@ public class ErrorHandler {
         // Inform user about the issue
         TTSManager.speak(context, "في مشكلة بسيطة. بحاول مرة تانية...");
 
-        // Retry the action in a background thread
-        executor.execute(() -> {
+        // Retry the action on the general lane after a delay, without parking a thread while waiting
+        BackgroundTaskManager taskManager = BackgroundTaskManager.getInstance(context);
+        taskManager.postToUIThreadDelayed(() -> taskManager.executeTask(BackgroundTaskManager.TaskType.GENERAL, () -> {
             try {
-                Thread.sleep(2000); // Wait 2 seconds before retry
                 retryAction.run();
             } catch (Exception retryError) {
                 Log.e(TAG, "Retry failed for operation: " + operation, retryError);
@@ -61,7 +59,7 @@ public class ErrorHandler {
                 // If retry fails, inform user
                 TTSManager.speak(context, "المحاولة الثانية فشلت. محتاج مساعدة.");
             }
-        });
+        }), RETRY_DELAY_MS);
     }
 
     /**
@@ -149,7 +147,8 @@ public class ErrorHandler {
      * Notify guardian of critical error
      */
     private static void notifyGuardianOfError(Context context, String operation, Throwable error) {
-        executor.execute(() -> {
+        BackgroundTaskManager.getInstance(context).executeTask(
+                BackgroundTaskManager.TaskType.NETWORK, BackgroundTaskManager.TaskPriority.HIGH, () -> {
             try {
                 String errorMessage = "Critical error in " + operation + ": " + error.getClass().getSimpleName() + 
                                      " - " + error.getMessage();
@@ -184,8 +183,6 @@ public class ErrorHandler {
      * Clean up resources when shutting down
      */
     public static void shutdown() {
-        if (!executor.isShutdown()) {
-            executor.shutdown();
-        }
+        // Background work runs on the shared BackgroundTaskManager lanes, which outlive this helper
     }
 }
\ No newline at end of file
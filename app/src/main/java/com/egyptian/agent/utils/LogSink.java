@@ -0,0 +1,449 @@
+package com.egyptian.agent.utils;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log Sink
+ * Asynchronous writer behind CrashLogger. Callers only add an entry to a lock-free queue; one
+ * daemon thread formats entries (timestamp, PII redaction, stack trace with its causes) and
+ * writes them through a buffered FileChannel. Once the file would pass maxBytes it is
+ * gzip-compressed into name.1.gz (older segments shift to .2.gz and so on, up to maxRotated)
+ * and a new file is started.
+ *
+ * Error storms stay cheap: at most capacity entries wait in the queue and the rest are counted
+ * and reported as a single line, and identical consecutive entries are written once, with
+ * their count reported when a different entry arrives or every REPEAT_REPORT_MILLIS. Urgent
+ * entries (the fatal crash) skip the queue, so a storm cannot push them out.
+ */
+public final class LogSink implements Closeable {
+    private static final String TAG = "LogSink";
+    private static final int BUFFER_BYTES = 16 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long REPEAT_REPORT_MILLIS = 10_000;
+    private static final String SEPARATOR = "\n---\n";
+
+    private final File file;
+    private final long maxBytes;
+    private final int maxRotated;
+    private final int capacity;
+
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Entry> urgent = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    // Owned by the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder text = new StringBuilder(1024);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long processed;
+    private String lastKey;
+    private int repeats;
+    private long firstRepeatMillis;
+    private long lastRepeatMillis;
+
+    private static final class Entry {
+        final long timeMillis;
+        final String message;
+        final Throwable throwable;
+
+        Entry(long timeMillis, String message, Throwable throwable) {
+            this.timeMillis = timeMillis;
+            this.message = message;
+            this.throwable = throwable;
+        }
+    }
+
+    private LogSink(File file, long maxBytes, int maxRotated, int capacity) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxRotated = maxRotated;
+        this.capacity = capacity;
+        this.writer = new Thread(this::run, "LogSink");
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Starts a sink appending to the file
+     * @param maxBytes Size at which the file is rotated
+     * @param maxRotated Compressed segments kept besides the live file
+     * @param capacity Entries that may wait in the queue before new ones are dropped
+     */
+    public static LogSink open(File file, long maxBytes, int maxRotated, int capacity) {
+        LogSink sink = new LogSink(file, maxBytes, maxRotated, capacity);
+        sink.writer.start();
+        return sink;
+    }
+
+    /**
+     * Queues an entry without blocking
+     * @param message Optional context message
+     * @param throwable Optional error; its stack trace is written
+     * @return False if the entry was dropped because the queue is full or the sink closed
+     */
+    public boolean write(String message, Throwable throwable) {
+        if (closed) {
+            return false;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(new Entry(System.currentTimeMillis(), message, throwable));
+        accepted.incrementAndGet();
+        LockSupport.unpark(writer);
+        return true;
+    }
+
+    /**
+     * Queues an entry ahead of the others, even when the queue is full, and writes it to the
+     * file as soon as it is formatted. Meant for the one fatal entry before the process dies.
+     * @return False if the sink is closed
+     */
+    public boolean writeUrgent(String message, Throwable throwable) {
+        if (closed) {
+            return false;
+        }
+        urgent.offer(new Entry(System.currentTimeMillis(), message, throwable));
+        accepted.incrementAndGet();
+        LockSupport.unpark(writer);
+        return true;
+    }
+
+    /**
+     * Deletes the live file and every rotated segment, after the entries already queued
+     */
+    public void clear() {
+        pending.incrementAndGet();
+        queue.offer((Runnable) this::deleteFiles);
+        accepted.incrementAndGet();
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits until everything queued before this call is in the file
+     * @return False if the timeout passed first
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = accepted.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        LockSupport.unpark(writer);
+        while (written < target) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !writer.isAlive()) {
+                return written >= target;
+            }
+            LockSupport.parkNanos(this, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(5)));
+        }
+        return true;
+    }
+
+    /**
+     * Gets how many entries were dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the rotated segment with this index, 1 being the newest
+     */
+    public File getRotatedFile(int index) {
+        return new File(file.getPath() + "." + index + ".gz");
+    }
+
+    /**
+     * Writes what is queued and stops the writer thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Entry first = urgent.poll();
+            if (first != null) {
+                try {
+                    // Written even if it repeats the last entry, and flushed straight to disk
+                    lastKey = null;
+                    append(first);
+                    drainBuffer();
+                } catch (IOException | RuntimeException e) {
+                    handleWriteFailure(e);
+                }
+                processed++;
+                continue;
+            }
+
+            Object item = queue.poll();
+            if (item == null) {
+                try {
+                    if (repeats > 0 && (closed
+                            || System.currentTimeMillis() - firstRepeatMillis >= REPEAT_REPORT_MILLIS)) {
+                        reportRepeats();
+                    }
+                    reportDropped();
+                    drainBuffer();
+                } catch (IOException e) {
+                    handleWriteFailure(e);
+                }
+                written = processed;
+
+                if (closed && queue.isEmpty() && urgent.isEmpty()) {
+                    closeChannel();
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+
+            pending.decrementAndGet();
+            try {
+                if (item instanceof Runnable) {
+                    drainBuffer();
+                    ((Runnable) item).run();
+                } else {
+                    append((Entry) item);
+                }
+            } catch (IOException | RuntimeException e) {
+                handleWriteFailure(e);
+            }
+            processed++;
+        }
+    }
+
+    private void append(Entry entry) throws IOException {
+        String key = keyOf(entry);
+        if (key.equals(lastKey)) {
+            if (repeats++ == 0) {
+                firstRepeatMillis = System.currentTimeMillis();
+            }
+            lastRepeatMillis = entry.timeMillis;
+            return;
+        }
+        reportRepeats();
+        lastKey = key;
+
+        text.setLength(0);
+        text.append(dateFormat.format(new Date(entry.timeMillis))).append(" - ");
+        if (entry.message != null) {
+            text.append("Message: ").append(PiiScanner.redact(entry.message)).append('\n');
+        }
+        Throwable throwable = entry.throwable;
+        if (throwable != null) {
+            text.append("Error: ").append(throwable.getClass().getName()).append(": ")
+                .append(PiiScanner.redact(throwable.getMessage())).append('\n');
+            text.append("Stack Trace:\n");
+            StackTraceElement[] stack = throwable.getStackTrace();
+            appendFrames(stack, new StackTraceElement[0]);
+
+            // Causes are written like printStackTrace does, with the frames shared with the
+            // enclosing trace folded into "... n more"
+            Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            seen.add(throwable);
+            for (Throwable cause = throwable.getCause(); cause != null && seen.add(cause);
+                    cause = cause.getCause()) {
+                text.append("Caused by: ").append(cause.getClass().getName()).append(": ")
+                    .append(PiiScanner.redact(cause.getMessage())).append('\n');
+                StackTraceElement[] causeStack = cause.getStackTrace();
+                appendFrames(causeStack, stack);
+                stack = causeStack;
+            }
+        }
+        text.append(SEPARATOR);
+        put(text);
+    }
+
+    private void appendFrames(StackTraceElement[] stack, StackTraceElement[] enclosing) {
+        int last = stack.length - 1;
+        int enclosingLast = enclosing.length - 1;
+        while (last >= 0 && enclosingLast >= 0 && stack[last].equals(enclosing[enclosingLast])) {
+            last--;
+            enclosingLast--;
+        }
+        for (int i = 0; i <= last; i++) {
+            text.append("  at ").append(stack[i]).append('\n');
+        }
+        int common = stack.length - 1 - last;
+        if (common > 0) {
+            text.append("  ... ").append(common).append(" more\n");
+        }
+    }
+
+    // Entries with the same message and the same error types, messages and throwing frames
+    // along the cause chain count as repeats
+    private static String keyOf(Entry entry) {
+        StringBuilder key = new StringBuilder();
+        key.append(entry.message);
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable throwable = entry.throwable; throwable != null && seen.add(throwable);
+                throwable = throwable.getCause()) {
+            key.append('|').append(throwable.getClass().getName())
+                .append('|').append(throwable.getMessage());
+            StackTraceElement[] stack = throwable.getStackTrace();
+            if (stack.length > 0) {
+                key.append('|').append(stack[0]);
+            }
+        }
+        return key.toString();
+    }
+
+    private void reportRepeats() throws IOException {
+        if (repeats > 0) {
+            text.setLength(0);
+            text.append("(previous entry repeated ").append(repeats).append(" more times, last at ")
+                .append(dateFormat.format(new Date(lastRepeatMillis))).append(')').append(SEPARATOR);
+            put(text);
+            repeats = 0;
+        }
+    }
+
+    private void reportDropped() throws IOException {
+        long count = dropped.getAndSet(0);
+        if (count > 0) {
+            text.setLength(0);
+            text.append(dateFormat.format(new Date())).append(" - ").append(count)
+                .append(" log entries dropped, queue full").append(SEPARATOR);
+            put(text);
+        }
+    }
+
+    private void put(CharSequence chars) throws IOException {
+        CharBuffer in = CharBuffer.wrap(chars);
+        encoder.reset();
+        while (encoder.encode(in, buffer, true).isOverflow()) {
+            drainBuffer();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drainBuffer();
+        }
+    }
+
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            if (channel == null) {
+                out = new FileOutputStream(file, true);
+                channel = out.getChannel();
+            }
+            if (channel.size() > 0 && channel.size() + buffer.remaining() > maxBytes) {
+                rotate();
+                out = new FileOutputStream(file, true);
+                channel = out.getChannel();
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Compresses the live file into segment 1, shifting the older segments up
+     */
+    private void rotate() throws IOException {
+        closeChannel();
+        File oldest = getRotatedFile(maxRotated);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Cannot delete " + oldest);
+        }
+        for (int i = maxRotated - 1; i >= 1; i--) {
+            File segment = getRotatedFile(i);
+            if (segment.exists() && !segment.renameTo(getRotatedFile(i + 1))) {
+                throw new IOException("Cannot rename " + segment);
+            }
+        }
+
+        if (maxRotated > 0) {
+            File target = getRotatedFile(1);
+            File temp = new File(target.getPath() + ".tmp");
+            byte[] copy = new byte[8192];
+            try (InputStream in = new FileInputStream(file);
+                 OutputStream gzip = new GZIPOutputStream(new FileOutputStream(temp), copy.length)) {
+                int read;
+                while ((read = in.read(copy)) != -1) {
+                    gzip.write(copy, 0, read);
+                }
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot rename " + temp);
+            }
+        }
+        if (!file.delete()) {
+            throw new IOException("Cannot delete " + file);
+        }
+    }
+
+    private void deleteFiles() {
+        closeChannel();
+        buffer.clear();
+        lastKey = null;
+        repeats = 0;
+        file.delete();
+        for (int i = 1; i <= maxRotated; i++) {
+            getRotatedFile(i).delete();
+        }
+    }
+
+    private void closeChannel() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+        out = null;
+        channel = null;
+    }
+
+    // The sink must outlive disk errors: drop the batch and reopen the file on the next write
+    private void handleWriteFailure(Exception e) {
+        buffer.clear();
+        closeChannel();
+        Log.w(TAG, "Failed to write " + file, e);
+    }
+}
@@ -4,6 +4,8 @@ import android.app.ActivityManager;
 import android.content.Context;
 import android.util.Log;
 
+import java.io.File;
+
 /**
  * Memory Optimizer
  * Handles memory management and optimization for the application
@@ -41,14 +43,14 @@ public class MemoryOptimizer {
     
     /**
      * Triggers memory optimizations
+     * Disk caches are left alone: deleting them frees no RAM, and the cache directory holds the
+     * prompt audio cache, which is expensive to rebuild and, on low-RAM phones, would be wiped
+     * on every pressure sample.
      * @param context Context for the operation
      */
     public static void triggerMemoryOptimizations(Context context) {
         Log.d(TAG, "Triggering memory optimizations");
         
-        // Clear caches if possible
-        clearCaches(context);
-        
         // Run garbage collection
         runGarbageCollection();
         
@@ -56,21 +58,6 @@ public class MemoryOptimizer {
         logMemoryStatus(context);
     }
     
-    /**
-     * Clears application caches
-     * @param context Context for the operation
-     */
-    private static void clearCaches(Context context) {
-        try {
-            // Clear internal cache
-            deleteRecursive(context.getCacheDir());
-            
-            Log.d(TAG, "Cleared application caches");
-        } catch (Exception e) {
-            Log.e(TAG, "Error clearing caches", e);
-        }
-    }
-    
     /**
      * Recursively deletes files in a directory
      * @param file The file or directory to delete
@@ -0,0 +1,165 @@
+package com.egyptian.agent.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Phrase Rewriter
+ * Compiles a set of literal replacement rules into a trie automaton and applies
+ * all of them in a single left-to-right pass (leftmost-longest, non-overlapping)
+ */
+public final class PhraseRewriter {
+    private static final int NO_STATE = 0;
+    private static final int ROOT = 1;
+
+    // Sorted distinct characters that occur in any pattern; index + 1 is the column
+    private final char[] alphabet;
+    private final int columns;
+    // transitions[state * columns + column] -> next state, or NO_STATE
+    private final int[] transitions;
+    // Replacement index accepted in each state, or -1
+    private final int[] accepting;
+    private final String[] replacements;
+
+    private PhraseRewriter(char[] alphabet, int[] transitions, int[] accepting, String[] replacements) {
+        this.alphabet = alphabet;
+        this.columns = alphabet.length + 1;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.replacements = replacements;
+    }
+
+    /**
+     * Rewrites the text, returning the same instance when no rule matches
+     * @param text Text to rewrite
+     * @return Rewritten text
+     */
+    public String rewrite(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder out = null;
+        int copiedUpTo = 0;
+        int length = text.length();
+        int position = 0;
+
+        while (position < length) {
+            int state = ROOT;
+            int matchEnd = -1;
+            int matchRule = -1;
+
+            for (int i = position; i < length; i++) {
+                int column = columnOf(text.charAt(i));
+                if (column == 0) {
+                    break;
+                }
+                state = transitions[state * columns + column];
+                if (state == NO_STATE) {
+                    break;
+                }
+                if (accepting[state] >= 0) {
+                    matchEnd = i + 1;
+                    matchRule = accepting[state];
+                }
+            }
+
+            if (matchRule < 0) {
+                position++;
+                continue;
+            }
+
+            if (out == null) {
+                out = new StringBuilder(length + 16);
+            }
+            out.append(text, copiedUpTo, position).append(replacements[matchRule]);
+            position = matchEnd;
+            copiedUpTo = matchEnd;
+        }
+
+        if (out == null) {
+            return text;
+        }
+        return out.append(text, copiedUpTo, length).toString();
+    }
+
+    private int columnOf(char c) {
+        int index = Arrays.binarySearch(alphabet, c);
+        return index >= 0 ? index + 1 : 0;
+    }
+
+    /**
+     * Creates a builder for a new rewriter
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Collects rules in priority order; the first rule registered for a pattern wins
+     */
+    public static final class Builder {
+        private final Map<String, String> rules = new LinkedHashMap<>();
+
+        public Builder add(String pattern, String replacement) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern must not be empty");
+            }
+            if (!rules.containsKey(pattern)) {
+                rules.put(pattern, replacement);
+            }
+            return this;
+        }
+
+        public PhraseRewriter build() {
+            // Collect the alphabet
+            StringBuilder chars = new StringBuilder();
+            for (String pattern : rules.keySet()) {
+                chars.append(pattern);
+            }
+            char[] all = chars.toString().toCharArray();
+            Arrays.sort(all);
+            int distinct = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (i == 0 || all[i] != all[i - 1]) {
+                    all[distinct++] = all[i];
+                }
+            }
+            char[] alphabet = Arrays.copyOf(all, distinct);
+            int columns = alphabet.length + 1;
+
+            // Upper bound on states: root plus one per pattern character
+            int maxStates = 2 + chars.length();
+            int[] transitions = new int[maxStates * columns];
+            int[] accepting = new int[maxStates];
+            Arrays.fill(accepting, -1);
+
+            List<String> replacements = new ArrayList<>(rules.size());
+            int nextState = ROOT + 1;
+            for (Map.Entry<String, String> rule : rules.entrySet()) {
+                String pattern = rule.getKey();
+                int state = ROOT;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int column = Arrays.binarySearch(alphabet, pattern.charAt(i)) + 1;
+                    int slot = state * columns + column;
+                    if (transitions[slot] == NO_STATE) {
+                        transitions[slot] = nextState++;
+                    }
+                    state = transitions[slot];
+                }
+                accepting[state] = replacements.size();
+                replacements.add(rule.getValue());
+            }
+
+            return new PhraseRewriter(
+                alphabet,
+                Arrays.copyOf(transitions, nextState * columns),
+                Arrays.copyOf(accepting, nextState),
+                replacements.toArray(new String[0])
+            );
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.egyptian.agent.utils;
+
+import java.util.Arrays;
+
+/**
+ * PII Scanner
+ * Finds Egyptian mobile numbers, email addresses and long runs of Arabic words (likely full
+ * names) in one forward pass over the characters, without regular expressions. Used to filter
+ * analytics properties and to redact crash logs and user feedback.
+ *
+ * - Mobile number: "01" followed by nine digits inside a run of ASCII or Arabic-Indic digits,
+ *   which may be split by single spaces or dashes (so +20 10 1234 5678 is found too)
+ * - Email: local@domain where the domain has a dot followed by at least two letters
+ * - Name: NAME_WORDS or more Arabic words in a row, separated only by whitespace
+ */
+public final class PiiScanner {
+    public static final String PHONE_MASK = "[phone]";
+    public static final String EMAIL_MASK = "[email]";
+    public static final String NAME_MASK = "[name]";
+
+    private static final int MOBILE_DIGITS = 11;
+    private static final int NAME_WORDS = 6;
+
+    private static final int PHONE = 0;
+    private static final int EMAIL = 1;
+    private static final int NAME = 2;
+    private static final String[] MASKS = {PHONE_MASK, EMAIL_MASK, NAME_MASK};
+
+    private PiiScanner() {
+    }
+
+    /**
+     * Checks whether the text contains any PII, stopping at the first finding
+     */
+    public static boolean containsPii(CharSequence text) {
+        return text != null && scan(text, null);
+    }
+
+    /**
+     * Replaces every PII span with its mask
+     * @return The text itself when it has no PII
+     */
+    public static String redact(String text) {
+        if (text == null) {
+            return null;
+        }
+        Spans spans = new Spans();
+        if (!scan(text, spans)) {
+            return text;
+        }
+
+        spans.sortByStart();
+        StringBuilder out = new StringBuilder(text.length());
+        int copied = 0;
+        for (int i = 0; i < spans.size; i++) {
+            int start = spans.start(i);
+            int end = spans.end(i);
+            if (end <= copied) {
+                continue; // Inside a span already masked
+            }
+            if (start < copied) {
+                // Overlaps the previous span: widen it
+                copied = end;
+                continue;
+            }
+            out.append(text, copied, start).append(MASKS[spans.kind(i)]);
+            copied = end;
+        }
+        return out.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * Scans the text once
+     * @param spans Receives every PII span, or null to return at the first one
+     * @return Whether any PII was found
+     */
+    private static boolean scan(CharSequence text, Spans spans) {
+        boolean found = false;
+        int length = text.length();
+
+        // Digit run: start, end of the last digit, previous digit and the length of an 01... candidate
+        int digitStart = -1;
+        int digitEnd = 0;
+        int previousDigit = -1;
+        int mobileLength = 0;
+
+        // Email: start of the current run of local-part characters, then the domain state after '@'
+        int localStart = -1;
+        boolean inDomain = false;
+        int emailStart = 0;
+        int emailEnd = 0;
+        int domainLength = 0;
+        int lettersAfterDot = -1;
+        boolean emailValid = false;
+
+        // Arabic words: start and end of the sequence, word count and whether inside a word
+        int nameStart = 0;
+        int nameEnd = 0;
+        int nameWords = 0;
+        boolean inWord = false;
+
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            boolean atEnd = i == length;
+
+            // Mobile numbers
+            int digit = atEnd ? -1 : digitValue(c);
+            if (digit >= 0) {
+                if (digitStart < 0) {
+                    digitStart = i;
+                    previousDigit = -1;
+                    mobileLength = 0;
+                }
+                if (mobileLength > 0) {
+                    mobileLength++;
+                } else if (digit == 1 && previousDigit == 0) {
+                    mobileLength = 2;
+                }
+                previousDigit = digit;
+                digitEnd = i + 1;
+            } else if (digitStart >= 0) {
+                boolean separator = (c == ' ' || c == '-') && digitEnd == i
+                    && i + 1 < length && digitValue(text.charAt(i + 1)) >= 0;
+                if (!separator) {
+                    if (mobileLength >= MOBILE_DIGITS) {
+                        found = true;
+                        if (spans == null) {
+                            return true;
+                        }
+                        spans.add(digitStart, digitEnd, PHONE);
+                    }
+                    digitStart = -1;
+                }
+            }
+
+            // Emails
+            boolean domainChar = !atEnd && isDomainChar(c);
+            if (inDomain && !domainChar) {
+                inDomain = false;
+                if (emailValid) {
+                    found = true;
+                    if (spans == null) {
+                        return true;
+                    }
+                    spans.add(emailStart, emailEnd, EMAIL);
+                }
+            }
+            if (inDomain) {
+                domainLength++;
+                if (c == '.') {
+                    lettersAfterDot = domainLength > 1 ? 0 : -1;
+                } else if (isAsciiLetter(c) && lettersAfterDot >= 0) {
+                    lettersAfterDot++;
+                } else {
+                    lettersAfterDot = -1;
+                }
+                if (lettersAfterDot >= 2) {
+                    emailValid = true;
+                }
+                if (emailValid) {
+                    emailEnd = i + 1;
+                }
+            } else if (c == '@' && localStart >= 0) {
+                inDomain = true;
+                emailStart = localStart;
+                domainLength = 0;
+                lettersAfterDot = -1;
+                emailValid = false;
+            }
+            localStart = !atEnd && isLocalChar(c) ? (localStart < 0 ? i : localStart) : -1;
+
+            // Arabic word sequences
+            if (!atEnd && isArabicLetter(c)) {
+                if (!inWord) {
+                    inWord = true;
+                    if (nameWords == 0) {
+                        nameStart = i;
+                    }
+                    nameWords++;
+                }
+                nameEnd = i + 1;
+            } else if (!atEnd && Character.isWhitespace(c)) {
+                inWord = false;
+            } else {
+                inWord = false;
+                if (nameWords >= NAME_WORDS) {
+                    found = true;
+                    if (spans == null) {
+                        return true;
+                    }
+                    spans.add(nameStart, nameEnd, NAME);
+                }
+                nameWords = 0;
+            }
+        }
+        return found;
+    }
+
+    private static int digitValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= '٠' && c <= '٩') {
+            return c - '٠';
+        }
+        return -1;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '.' || c == '-';
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isDomainChar(c) || c == '_' || c == '%' || c == '+';
+    }
+
+    // Arabic letters and diacritics, excluding Arabic-Indic digits and punctuation
+    private static boolean isArabicLetter(char c) {
+        return (c >= 'ؠ' && c <= 'ٟ') || (c >= 'ٮ' && c <= 'ۓ')
+            || (c >= 'ۺ' && c <= 'ۿ');
+    }
+
+    /**
+     * Found spans as packed (start, end, kind) triples
+     */
+    private static final class Spans {
+        int[] data = new int[12];
+        int size;
+
+        void add(int start, int end, int kind) {
+            if ((size + 1) * 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size * 3] = start;
+            data[size * 3 + 1] = end;
+            data[size * 3 + 2] = kind;
+            size++;
+        }
+
+        int start(int i) {
+            return data[i * 3];
+        }
+
+        int end(int i) {
+            return data[i * 3 + 1];
+        }
+
+        int kind(int i) {
+            return data[i * 3 + 2];
+        }
+
+        // Insertion sort, widest first on equal starts; a text rarely has more than a few spans
+        void sortByStart() {
+            for (int i = 1; i < size; i++) {
+                int start = data[i * 3];
+                int end = data[i * 3 + 1];
+                int kind = data[i * 3 + 2];
+                int j = i - 1;
+                while (j >= 0 && (data[j * 3] > start || (data[j * 3] == start && data[j * 3 + 1] < end))) {
+                    data[(j + 1) * 3] = data[j * 3];
+                    data[(j + 1) * 3 + 1] = data[j * 3 + 1];
+                    data[(j + 1) * 3 + 2] = data[j * 3 + 2];
+                    j--;
+                }
+                data[(j + 1) * 3] = start;
+                data[(j + 1) * 3 + 1] = end;
+                data[(j + 1) * 3 + 2] = kind;
+            }
+        }
+    }
+}
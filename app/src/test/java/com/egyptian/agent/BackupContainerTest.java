@@ -0,0 +1,151 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.backup.BackupContainer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the chunked, encrypted backup container
+ */
+public class BackupContainerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SecretKey newKey() throws Exception {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        return generator.generateKey();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTripsEntriesAcrossChunks() throws Exception {
+        File dir = folder.newFolder();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BackupContainer container = new BackupContainer(dir, newKey(), executor, 3);
+            byte[] large = randomBytes(BackupContainer.CHUNK_SIZE * 2 + 1000, 1);
+            byte[] text = new String(new char[5000]).replace('\0', 'a').getBytes("UTF-8");
+
+            BackupContainer.Writer writer = container.newBackup();
+            writer.addEntry("analytics/segment-0.log", new ByteArrayInputStream(large));
+            writer.addEntry("preferences.txt", new ByteArrayInputStream(text));
+            writer.addEntry("empty.txt", new ByteArrayInputStream(new byte[0]));
+            File manifestFile = new File(dir, "backup_1.ebk");
+            writer.commit(manifestFile, 1234L);
+            assertEquals(4, writer.getChunksWritten());
+
+            BackupContainer.Manifest manifest = container.readManifest(manifestFile);
+            assertEquals(1234L, manifest.createdMillis);
+            assertEquals(3, manifest.entries.size());
+            assertEquals("analytics/segment-0.log", manifest.entries.get(0).name);
+            assertEquals(large.length, manifest.entries.get(0).size);
+            assertTrue(Arrays.equals(large, readAll(container.openEntry(manifest.entries.get(0)))));
+            assertTrue(Arrays.equals(text, readAll(container.openEntry(manifest.entries.get(1)))));
+            assertEquals(0, readAll(container.openEntry(manifest.entries.get(2))).length);
+
+            // The repetitive entry was compressed
+            File[] chunks = new File(dir, "chunks").listFiles();
+            long smallest = Long.MAX_VALUE;
+            for (File chunk : chunks) {
+                smallest = Math.min(smallest, chunk.length());
+            }
+            assertTrue(smallest < text.length / 10);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIncrementalBackupRewritesOnlyChangedChunks() throws Exception {
+        File dir = folder.newFolder();
+        SecretKey key = newKey();
+        // Runs chunk work on the calling thread
+        BackupContainer container = new BackupContainer(dir, key, Runnable::run, 2);
+        byte[] data = randomBytes(BackupContainer.CHUNK_SIZE * 4, 2);
+
+        BackupContainer.Writer first = container.newBackup();
+        first.addEntry("feedback.txt", new ByteArrayInputStream(data));
+        BackupContainer.Manifest old = first.commit(new File(dir, "backup_1.ebk"), 1L);
+        assertEquals(4, first.getChunksWritten());
+
+        data[BackupContainer.CHUNK_SIZE * 3 + 7] ^= 1;
+        // A reopened store keeps its salt, so unchanged chunks keep their ids
+        BackupContainer reopened = new BackupContainer(dir, key, Runnable::run, 2);
+        BackupContainer.Writer second = reopened.newBackup();
+        second.addEntry("feedback.txt", new ByteArrayInputStream(data));
+        BackupContainer.Manifest latest = second.commit(new File(dir, "backup_2.ebk"), 2L);
+        assertEquals(1, second.getChunksWritten());
+        assertEquals(3, second.getChunksReused());
+
+        // Dropping the old backup frees only the chunk it alone used
+        assertEquals(1, reopened.collectGarbage(Collections.singletonList(latest)));
+        assertTrue(Arrays.equals(data, readAll(reopened.openEntry(latest.entries.get(0)))));
+        assertEquals(4, old.entries.get(0).size / BackupContainer.CHUNK_SIZE);
+    }
+
+    @Test
+    public void testRejectsTamperedChunk() throws Exception {
+        File dir = folder.newFolder();
+        BackupContainer container = new BackupContainer(dir, newKey(), Runnable::run, 1);
+        BackupContainer.Writer writer = container.newBackup();
+        writer.addEntry("guardian_info.txt", new ByteArrayInputStream(randomBytes(1000, 3)));
+        File manifestFile = new File(dir, "backup_1.ebk");
+        writer.commit(manifestFile, 1L);
+
+        File chunk = new File(dir, "chunks").listFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(chunk, "rw")) {
+            raf.seek(20);
+            int value = raf.read();
+            raf.seek(20);
+            raf.write(value ^ 0x40);
+        }
+
+        BackupContainer.Manifest manifest = container.readManifest(manifestFile);
+        try {
+            readAll(container.openEntry(manifest.entries.get(0)));
+            fail("Tampered chunk was accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("authentication"));
+        }
+
+        // A different key cannot open the store
+        try {
+            new BackupContainer(dir, newKey(), Runnable::run, 1);
+            fail("Store opened with the wrong key");
+        } catch (IOException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.backup.BackupKeyFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import javax.crypto.SecretKey;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the passphrase-sealed backup key
+ */
+public class BackupKeyFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnlocksWithThePassphraseOnly() throws Exception {
+        File file = new File(folder.newFolder(), BackupKeyFile.FILE_NAME);
+        SecretKey key = BackupKeyFile.create(file, "سر الحاج".toCharArray());
+
+        assertTrue(Arrays.equals(key.getEncoded(), BackupKeyFile.unlock(file, "سر الحاج".toCharArray()).getEncoded()));
+        try {
+            BackupKeyFile.unlock(file, "wrong".toCharArray());
+            fail("Unlocked with the wrong passphrase");
+        } catch (GeneralSecurityException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testChangingThePassphraseKeepsTheKey() throws Exception {
+        File file = new File(folder.newFolder(), BackupKeyFile.FILE_NAME);
+        SecretKey key = BackupKeyFile.create(file, "old".toCharArray());
+
+        BackupKeyFile.write(file, key, "new".toCharArray());
+
+        assertTrue(Arrays.equals(key.getEncoded(), BackupKeyFile.unlock(file, "new".toCharArray()).getEncoded()));
+    }
+}
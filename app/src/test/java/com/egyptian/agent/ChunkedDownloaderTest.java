@@ -0,0 +1,164 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.updates.ChunkedDownloader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for chunked, resumable model downloads, against a local HTTP server
+ */
+public class ChunkedDownloaderTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService executor;
+    private byte[] content;
+    private final Set<Long> failRanges = ConcurrentHashMap.newKeySet();
+    private final Set<Long> corruptOnceRanges = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[CHUNK_SIZE * 10 + 123];
+        new Random(7).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+        server.createContext("/model.gguf", this::serve);
+        server.start();
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdown();
+        executor.shutdown();
+    }
+
+    // Serves single byte ranges; some ranges fail or arrive corrupted once
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Integer.parseInt(bounds[1]);
+        if (failRanges.contains((long) start)) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = Arrays.copyOfRange(content, start, end + 1);
+        if (corruptOnceRanges.remove((long) start)) {
+            body[0] ^= 1;
+        }
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        exchange.sendResponseHeaders(206, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/model.gguf");
+    }
+
+    private List<String> chunkHashes() throws Exception {
+        List<String> hashes = new ArrayList<>();
+        for (int start = 0; start < content.length; start += CHUNK_SIZE) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(content, start, Math.min(CHUNK_SIZE, content.length - start));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            hashes.add(sb.toString());
+        }
+        return hashes;
+    }
+
+    private ChunkedDownloader downloader() {
+        return new ChunkedDownloader("test", 5000, 5000, executor, 3);
+    }
+
+    @Test
+    public void testDownloadsChunksInParallelAndRetriesBadChunk() throws Exception {
+        corruptOnceRanges.add((long) CHUNK_SIZE * 4);
+        File target = new File(folder.newFolder(), "model.gguf");
+
+        downloader().download(url(), content.length, CHUNK_SIZE, chunkHashes(), target, 0, null);
+
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+        assertEquals(12, requests.get());
+        assertFalse(new File(target.getPath() + ".download").exists());
+        assertFalse(new File(target.getPath() + ".chunks").exists());
+    }
+
+    @Test
+    public void testResumesOnlyMissingChunks() throws Exception {
+        failRanges.add((long) CHUNK_SIZE * 7);
+        File target = new File(folder.newFolder(), "model.gguf");
+        try {
+            downloader().download(url(), content.length, CHUNK_SIZE, chunkHashes(), target, 0, null);
+            fail("Download with a failing chunk completed");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertFalse(target.exists());
+
+        // A new downloader, as after process death, fetches what the first run did not finish
+        failRanges.clear();
+        int before = requests.get();
+        long[] firstProgress = {-1};
+        downloader().download(url(), content.length, CHUNK_SIZE, chunkHashes(), target, 0,
+            (done, total) -> {
+                synchronized (firstProgress) {
+                    if (firstProgress[0] < 0) {
+                        firstProgress[0] = done;
+                    }
+                }
+            });
+
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+        assertTrue(requests.get() - before < 11);
+        assertTrue(firstProgress[0] > CHUNK_SIZE);
+    }
+
+    @Test
+    public void testChecksStorageBeforeDownloading() throws Exception {
+        File target = new File(folder.newFolder(), "model.gguf");
+        try {
+            downloader().download(url(), content.length, CHUNK_SIZE, chunkHashes(), target, Long.MAX_VALUE / 2, null);
+            fail("Download started without enough space");
+        } catch (ChunkedDownloader.InsufficientStorageException expected) {
+            assertTrue(expected.requiredBytes > expected.availableBytes);
+        }
+        assertEquals(0, requests.get());
+    }
+}
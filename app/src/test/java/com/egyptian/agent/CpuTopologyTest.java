@@ -0,0 +1,77 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.core.CpuTopology;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for CpuTopology sysfs parsing
+ */
+public class CpuTopologyTest {
+
+    @Rule
+    public TemporaryFolder sysfs = new TemporaryFolder();
+
+    @Test
+    public void testParseCpuList() {
+        assertArrayEquals(new int[]{0, 1, 2, 3, 6, 7}, CpuTopology.parseCpuList("0-3,6-7"));
+        assertArrayEquals(new int[]{5}, CpuTopology.parseCpuList("5\n"));
+        assertArrayEquals(new int[0], CpuTopology.parseCpuList(""));
+        assertArrayEquals(new int[0], CpuTopology.parseCpuList(null));
+    }
+
+    @Test
+    public void testTwoPlusSixSplitByMaxFrequency() throws IOException {
+        // Helio G81: cpu0-5 Cortex-A55 @ 1.8GHz, cpu6-7 Cortex-A75 @ 2.0GHz
+        write("online", "0-7");
+        for (int cpu = 0; cpu < 8; cpu++) {
+            write("cpu" + cpu + "/cpufreq/cpuinfo_max_freq", cpu >= 6 ? "2000000" : "1800000");
+        }
+
+        CpuTopology topology = CpuTopology.parse(sysfs.getRoot());
+
+        assertTrue(topology.isHeterogeneous());
+        assertArrayEquals(new int[]{6, 7}, topology.getPerformanceCores());
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, topology.getEfficiencyCores());
+    }
+
+    @Test
+    public void testCapacityPreferredAndTriClusterGroupsPrimeWithBig() throws IOException {
+        write("online", "0-7");
+        int[] capacity = {250, 250, 250, 250, 700, 700, 700, 1024};
+        for (int cpu = 0; cpu < 8; cpu++) {
+            write("cpu" + cpu + "/cpu_capacity", String.valueOf(capacity[cpu]));
+            // Frequencies alone would rank the clusters differently
+            write("cpu" + cpu + "/cpufreq/cpuinfo_max_freq", "2000000");
+        }
+
+        CpuTopology topology = CpuTopology.parse(sysfs.getRoot());
+
+        assertArrayEquals(new int[]{4, 5, 6, 7}, topology.getPerformanceCores());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, topology.getEfficiencyCores());
+    }
+
+    @Test
+    public void testUniformOrUnreadableCoresAreNotSplit() throws IOException {
+        write("online", "0-3");
+
+        CpuTopology topology = CpuTopology.parse(sysfs.getRoot());
+
+        assertFalse(topology.isHeterogeneous());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, topology.getPerformanceCores());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, topology.getEfficiencyCores());
+    }
+
+    private void write(String path, String value) throws IOException {
+        File file = new File(sysfs.getRoot(), path);
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(value + "\n");
+        }
+    }
+}
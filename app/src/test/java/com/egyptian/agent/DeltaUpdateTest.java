@@ -0,0 +1,212 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.updates.DeltaPatcher;
+import com.egyptian.agent.updates.RangedDownloader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for resumable update downloads and delta patches, against a local HTTP server
+ */
+public class DeltaUpdateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private volatile byte[] content;
+    private volatile String etag = "\"v1\"";
+    private final List<String> ranges = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/update.apk", this::serve);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    // Serves content with Range and If-Range support
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        synchronized (ranges) {
+            ranges.add(String.valueOf(range));
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        byte[] body = content;
+        int start = 0;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().set("Content-Range",
+                "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+            exchange.sendResponseHeaders(206, body.length - start);
+        } else {
+            exchange.sendResponseHeaders(200, body.length);
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body, start, body.length - start);
+        }
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/update.apk");
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    // Leaves the state of a download that dropped after the given number of bytes
+    private static void writePartial(File target, byte[] data, int length, String validator) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(target.getPath() + ".part")) {
+            out.write(data, 0, length);
+        }
+        Files.write(new File(target.getPath() + ".part.validator").toPath(), validator.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testResumesPartialDownloadWithRange() throws Exception {
+        content = randomBytes(300_000, 1);
+        File target = new File(folder.newFolder(), "update.apk");
+        writePartial(target, content, 100_000, etag);
+
+        long[] lastProgress = new long[2];
+        new RangedDownloader("test", 5000, 5000).download(url(), target, sha256(content), content.length,
+            (done, total) -> {
+                lastProgress[0] = done;
+                lastProgress[1] = total;
+            });
+
+        assertEquals(Arrays.asList("bytes=100000-"), ranges);
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+        assertEquals(content.length, lastProgress[0]);
+        assertEquals(content.length, lastProgress[1]);
+        assertFalse(new File(target.getPath() + ".part").exists());
+    }
+
+    @Test
+    public void testRestartsWhenFileChangedOnServer() throws Exception {
+        byte[] stale = randomBytes(200_000, 2);
+        content = randomBytes(250_000, 3);
+        etag = "\"v2\"";
+        File target = new File(folder.newFolder(), "update.apk");
+        writePartial(target, stale, 50_000, "\"v1\"");
+
+        new RangedDownloader("test", 5000, 5000).download(url(), target, sha256(content), content.length, null);
+        assertTrue(Arrays.equals(content, Files.readAllBytes(target.toPath())));
+    }
+
+    @Test
+    public void testRejectsChecksumMismatch() throws Exception {
+        content = randomBytes(10_000, 4);
+        File target = new File(folder.newFolder(), "update.apk");
+        try {
+            new RangedDownloader("test", 5000, 5000).download(url(), target, sha256(new byte[1]), -1, null);
+            fail("Mismatched download was accepted");
+        } catch (SecurityException expected) {
+            // Expected
+        }
+        assertFalse(target.exists());
+        assertFalse(new File(target.getPath() + ".part").exists());
+    }
+
+    // bsdiff offtout
+    private static void writeOffset(OutputStream out, long value) throws IOException {
+        long magnitude = Math.abs(value);
+        for (int i = 0; i < 8; i++) {
+            int b = (int) (magnitude >>> (8 * i)) & 0xFF;
+            if (i == 7 && value < 0) {
+                b |= 0x80;
+            }
+            out.write(b);
+        }
+    }
+
+    @Test
+    public void testAppliesPatchAgainstOldFile() throws Exception {
+        byte[] old = randomBytes(200_000, 5);
+        File oldFile = folder.newFile();
+        Files.write(oldFile.toPath(), old);
+
+        // New file: old[0..150000) with every 1000th byte bumped, 5000 inserted bytes, then
+        // old[100000..110000) again via a backwards seek
+        byte[] inserted = randomBytes(5_000, 6);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        byte[] firstDiff = new byte[150_000];
+        for (int i = 0; i < firstDiff.length; i += 1000) {
+            firstDiff[i] = 1;
+        }
+        for (int i = 0; i < firstDiff.length; i++) {
+            expected.write(old[i] + firstDiff[i]);
+        }
+        expected.write(inserted);
+        expected.write(old, 100_000, 10_000);
+        byte[] newFile = expected.toByteArray();
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        patch.write("EGYAGENT/BSDIFFZ".getBytes(StandardCharsets.US_ASCII));
+        writeOffset(patch, newFile.length);
+        try (DeflaterOutputStream body = new DeflaterOutputStream(patch)) {
+            writeOffset(body, firstDiff.length);
+            writeOffset(body, inserted.length);
+            writeOffset(body, -50_000);
+            body.write(firstDiff);
+            body.write(inserted);
+            writeOffset(body, 10_000);
+            writeOffset(body, 0);
+            writeOffset(body, 0);
+            body.write(new byte[10_000]);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long size = DeltaPatcher.apply(oldFile, new ByteArrayInputStream(patch.toByteArray()), out);
+        assertEquals(newFile.length, size);
+        assertTrue(Arrays.equals(newFile, out.toByteArray()));
+
+        // A patch cut short is rejected rather than producing a short file
+        byte[] truncated = Arrays.copyOf(patch.toByteArray(), patch.size() / 2);
+        try {
+            DeltaPatcher.apply(oldFile, new ByteArrayInputStream(truncated), new ByteArrayOutputStream());
+            fail("Truncated patch was accepted");
+        } catch (IOException expectedError) {
+            // Expected
+        }
+    }
+}
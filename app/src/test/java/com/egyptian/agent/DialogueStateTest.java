@@ -0,0 +1,94 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.nlp.DialogueState;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for dialogue turn memory and follow-up resolution
+ */
+public class DialogueStateTest {
+    private static final long MAX_AGE = 60_000;
+    private DialogueState state;
+
+    @Before
+    public void setUp() {
+        state = new DialogueState(3, MAX_AGE);
+    }
+
+    private void call(String contact, long time) {
+        state.record(IntentType.CALL_CONTACT, Collections.singletonMap(DialogueState.CONTACT, contact), time);
+    }
+
+    @Test
+    public void testFillsPronounFromLastContact() {
+        call("أمي", 1000);
+
+        IntentResult result = new IntentResult(IntentType.SEND_WHATSAPP, 0.9f);
+        result.setEntity("message", "انا جاي");
+        assertTrue(state.resolveReferences(result, "ابعتله رسالة انا جاي", 2000));
+        assertEquals("أمي", result.getEntity("contact"));
+
+        // A named contact is left alone
+        IntentResult named = new IntentResult(IntentType.CALL_CONTACT, 0.9f);
+        named.setEntity("contact", "بابا");
+        assertFalse(state.resolveReferences(named, "اتصل ببابا", 2000));
+        assertEquals("بابا", named.getEntity("contact"));
+    }
+
+    @Test
+    public void testRebuildsBareRepeatFromLastTurn() {
+        call("خالتي", 1000);
+
+        IntentResult result = new IntentResult();
+        assertTrue(state.resolveReferences(result, "تاني", 2000));
+        assertEquals(IntentType.CALL_CONTACT, result.getIntentType());
+        assertEquals("خالتي", result.getEntity("contact"));
+        assertTrue(result.getConfidence() >= 0.5f);
+    }
+
+    @Test
+    public void testStaleTurnsDoNotResolve() {
+        call("أمي", 1000);
+        assertEquals("أمي", state.resolve(DialogueState.CONTACT, 1000 + MAX_AGE));
+        assertEquals("", state.resolve(DialogueState.CONTACT, 1001 + MAX_AGE));
+        assertNull(state.findLast(IntentType.CALL_CONTACT, 1001 + MAX_AGE));
+    }
+
+    @Test
+    public void testRingEvictsOldestAndKeepsIndexConsistent() {
+        state.record(IntentType.OPEN_APP, Collections.singletonMap(DialogueState.APP, "واتساب"), 1000);
+        call("أمي", 2000);
+        call("بابا", 3000);
+        assertEquals("واتساب", state.resolve(DialogueState.APP, 3000));
+
+        // The fourth turn pushes the app turn out of the three-turn ring
+        call("جدو", 4000);
+        assertEquals("", state.resolve(DialogueState.APP, 4000));
+        assertNull(state.findLast(IntentType.OPEN_APP, 4000));
+        assertEquals("جدو", state.resolve(DialogueState.CONTACT, 4000));
+
+        List<DialogueState.Turn> turns = state.getTurns();
+        assertEquals(3, turns.size());
+        assertEquals("جدو", turns.get(0).getEntity(DialogueState.CONTACT));
+
+        DialogueState restored = new DialogueState(3, MAX_AGE);
+        restored.restore(turns);
+        assertEquals("جدو", restored.resolve(DialogueState.CONTACT, 4000));
+        assertEquals(3000, restored.getTurns().get(1).timeMillis);
+    }
+
+    @Test
+    public void testDetectsReferences() {
+        assertTrue(DialogueState.refersTo(DialogueState.CONTACT, "كلمها"));
+        assertTrue(DialogueState.refersTo(DialogueState.CONTACT, "اتصل بيه"));
+        assertFalse(DialogueState.refersTo(DialogueState.CONTACT, "كلمني"));
+        assertTrue(DialogueState.refersTo(DialogueState.APP, "افتحه"));
+        assertTrue(DialogueState.isRepeatRequest("كلمه كمان مرة"));
+    }
+}
@@ -1,5 +1,7 @@
 package com.egyptian.agent;
 
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
 import com.egyptian.agent.stt.EgyptianNormalizer;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -65,6 +67,20 @@ public class EgyptianNormalizerTest {
         assertEquals("بعد ساعة", EgyptianNormalizer.extractTimeExpression("انبهني بعد ساعة"));
     }
 
+    @Test
+    public void testExtractEntitiesForIntent() {
+        // Test slot filling for results scored without generated entities
+        IntentResult whatsapp = new IntentResult(IntentType.SEND_WHATSAPP, 0.9f);
+        EgyptianNormalizer.extractEntities(whatsapp, "ابعت رسالة لأحمد قوله أنا جاي");
+        assertEquals("أحمد", whatsapp.getEntity("contact"));
+        assertEquals("أنا جاي", whatsapp.getEntity("message"));
+
+        IntentResult alarm = new IntentResult(IntentType.SET_ALARM, 0.9f);
+        EgyptianNormalizer.extractEntities(alarm, "نبهني الساعة سبعة");
+        assertEquals("الساعة سبعة", alarm.getEntity("time"));
+        assertEquals("", alarm.getEntity("contact"));
+    }
+
     @Test
     public void testNormalizeMixedText() {
         // Test mixed text with Egyptian dialect
@@ -0,0 +1,120 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.analytics.EventLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the segmented analytics EventLog
+ */
+public class EventLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCountsSurviveReopen() throws IOException {
+        File dir = folder.newFolder();
+        try (EventLog log = EventLog.open(dir)) {
+            log.append("command_processed", 1000, "intent=CALL_CONTACT");
+            log.append("command_processed", 2000, "");
+            log.append("wake_word", 3000, null);
+        }
+
+        try (EventLog log = EventLog.open(dir)) {
+            assertEquals(2, log.getCount("command_processed"));
+            assertEquals(1, log.getCount("wake_word"));
+            assertEquals(0, log.getCount("missing"));
+            assertEquals(3, log.getTotalCount());
+
+            log.append("wake_word", 4000, "مكالمة");
+            assertEquals(2, log.getCount("wake_word"));
+        }
+    }
+
+    @Test
+    public void testRotationDropsOldestSegmentFromCounters() throws IOException {
+        File dir = folder.newFolder();
+        int perSegment = 1024;
+        try (EventLog log = EventLog.open(dir)) {
+            // One segment of "old" events, then four segments of "new" ones push it out
+            for (int i = 0; i < perSegment; i++) {
+                log.append("old", i, "");
+            }
+            for (int i = 0; i < 4 * perSegment; i++) {
+                log.append("new", i, "");
+            }
+
+            assertEquals(0, log.getCount("old"));
+            assertEquals(4 * perSegment, log.getCount("new"));
+            assertEquals(4 * perSegment, log.getTotalCount());
+        }
+
+        File[] segments = dir.listFiles((d, name) -> name.endsWith(".log"));
+        assertEquals(4, segments.length);
+        try (EventLog log = EventLog.open(dir)) {
+            assertEquals(4 * perSegment, log.getTotalCount());
+        }
+    }
+
+    @Test
+    public void testFailedRotationChangesNothing() throws IOException {
+        File dir = folder.newFolder();
+        int perSegment = 1024;
+        try (EventLog log = EventLog.open(dir)) {
+            for (int i = 0; i < perSegment; i++) {
+                log.append("old", i, "");
+            }
+            for (int i = 0; i < 3 * perSegment; i++) {
+                log.append("new", i, "");
+            }
+
+            // A non-empty directory in place of the oldest segment cannot be deleted
+            File[] segments = dir.listFiles((d, name) -> name.endsWith(".log"));
+            Arrays.sort(segments);
+            File oldest = segments[0];
+            byte[] oldestBytes = Files.readAllBytes(oldest.toPath());
+            assertTrue(oldest.delete());
+            File blocker = new File(oldest, "blocker");
+            assertTrue(blocker.getParentFile().mkdir() && blocker.createNewFile());
+
+            try {
+                log.append("new", 0, "");
+                fail("Expected an IOException");
+            } catch (IOException expected) {
+                // The oldest segment could not be dropped
+            }
+            assertEquals(perSegment, log.getCount("old"));
+            assertEquals(3 * perSegment, log.getCount("new"));
+            assertEquals(4 * perSegment, log.getTotalCount());
+
+            // Once the segment can go, the same append rotates as usual
+            assertTrue(blocker.delete() && oldest.delete());
+            Files.write(oldest.toPath(), oldestBytes);
+            log.append("new", 0, "");
+            assertEquals(0, log.getCount("old"));
+            assertEquals(3 * perSegment + 1, log.getTotalCount());
+        }
+        assertEquals(4, dir.listFiles((d, name) -> name.endsWith(".log")).length);
+    }
+
+    @Test
+    public void testClearRemovesEverything() throws IOException {
+        File dir = folder.newFolder();
+        try (EventLog log = EventLog.open(dir)) {
+            log.append("command_processed", 1000, "");
+            log.clear();
+            assertEquals(0, log.getTotalCount());
+            assertTrue(log.getCounts().isEmpty());
+
+            log.append("wake_word", 2000, "");
+            assertEquals(1, log.getCount("wake_word"));
+        }
+    }
+}
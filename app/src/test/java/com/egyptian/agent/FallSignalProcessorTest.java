@@ -0,0 +1,121 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.accessibility.FallSignalProcessor;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the streaming fall detector, fed synthetic 50 Hz accelerometer traces
+ */
+public class FallSignalProcessorTest {
+    private static final float G = 9.80665f;
+    private static final long PERIOD_NANOS = 20_000_000L;
+
+    private final List<String> events = new ArrayList<>();
+    private FallSignalProcessor processor;
+    private long time;
+    private final Random noise = new Random(11);
+
+    @Before
+    public void setUp() {
+        processor = new FallSignalProcessor(512, new FallSignalProcessor.Listener() {
+            @Override
+            public void onFallSuspected(long timestampNanos, float peakAcceleration) {
+                events.add("suspected");
+            }
+
+            @Override
+            public void onFallConfirmed(long timestampNanos) {
+                events.add("confirmed");
+            }
+
+            @Override
+            public void onFallDismissed(long timestampNanos) {
+                events.add("dismissed");
+            }
+        });
+        time = 1_000_000_000L;
+    }
+
+    // Feeds a constant acceleration plus noise for a duration
+    private void feed(float x, float y, float z, float noiseLevel, long millis) {
+        for (long t = 0; t < millis * 1_000_000L; t += PERIOD_NANOS) {
+            processor.onSample(time,
+                x + (float) noise.nextGaussian() * noiseLevel,
+                y + (float) noise.nextGaussian() * noiseLevel,
+                z + (float) noise.nextGaussian() * noiseLevel);
+            time += PERIOD_NANOS;
+        }
+    }
+
+    private void freeFallAndImpact() {
+        feed(0, 0, G, 0.1f, 1000);        // Upright
+        feed(0, 0, 0.5f, 0.1f, 300);      // Free fall
+        feed(24, 5, 3, 0, 40);            // Impact
+    }
+
+    @Test
+    public void testConfirmsFallFollowedByStillness() {
+        freeFallAndImpact();
+        feed(G, 0, 0, 0.05f, 4500);       // Lying on the side, still
+        assertEquals(2, events.size());
+        assertEquals("suspected", events.get(0));
+        assertEquals("confirmed", events.get(1));
+        assertFalse(processor.isFallSuspected());
+    }
+
+    @Test
+    public void testDismissesWhenUserMovesAfterImpact() {
+        freeFallAndImpact();
+        feed(G, 0, 0, 3f, 4500);          // Getting up
+        assertEquals("dismissed", events.get(events.size() - 1));
+        assertFalse(events.contains("confirmed"));
+    }
+
+    @Test
+    public void testDismissesWhenOrientationIsUnchanged() {
+        freeFallAndImpact();
+        feed(0, 0, G, 0.05f, 4500);       // Upright again, e.g. phone caught and set down
+        assertEquals("dismissed", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testIgnoresSittingDownHard() {
+        feed(0, 0, G, 0.1f, 1000);
+        feed(0, 0, 1.6f * G, 0.5f, 200);  // Dropping into a chair: no free fall, moderate peak
+        feed(0, 0, G, 0.1f, 5000);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testIgnoresBriefFreeFallWithoutImpact() {
+        feed(0, 0, G, 0.1f, 1000);
+        feed(0, 0, 0.5f, 0.1f, 300);      // Phone tossed onto a cushion
+        feed(0, 0, G, 0.1f, 3000);
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testHardImpactAloneIsSuspected() {
+        feed(0, 0, G, 0.1f, 1000);
+        feed(32, 0, 5, 0, 20);            // Slumping against furniture
+        feed(G, 0, 0, 0.05f, 4500);
+        assertEquals("confirmed", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void testSkipsReplayedSamples() {
+        freeFallAndImpact();
+        long replayFrom = time - 10 * PERIOD_NANOS;
+        // A FIFO flush can repeat samples; they must not restart the timeline
+        for (int i = 0; i < 10; i++) {
+            processor.onSample(replayFrom + i * PERIOD_NANOS, 0, 0, G);
+        }
+        feed(G, 0, 0, 0.05f, 4500);
+        assertEquals("confirmed", events.get(events.size() - 1));
+    }
+}
@@ -0,0 +1,63 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.nlp.FastIntentClassifier;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for FastIntentClassifier against the shipped model asset
+ */
+public class FastIntentClassifierTest {
+    private FastIntentClassifier classifier;
+
+    @Before
+    public void setUp() throws IOException {
+        // Unit tests run from the app module directory
+        File model = new File("src/main/assets", FastIntentClassifier.ASSET_PATH);
+        try (InputStream in = new FileInputStream(model)) {
+            classifier = FastIntentClassifier.load(in);
+        }
+    }
+
+    @Test
+    public void testServesClearCommands() {
+        IntentResult call = classifier.classify("اتصل ب ماما");
+        assertEquals(IntentType.CALL_CONTACT, call.getIntentType());
+        assertFalse(classifier.shouldEscalate(call));
+
+        IntentResult alarm = classifier.classify("نبهني بكرة الساعة سبعة الصبح");
+        assertEquals(IntentType.SET_ALARM, alarm.getIntentType());
+        assertFalse(classifier.shouldEscalate(alarm));
+    }
+
+    @Test
+    public void testEscalatesOutOfScopeCommands() {
+        IntentResult result = classifier.classify("شغّل قرآن كريم");
+        assertEquals(IntentType.UNKNOWN, result.getIntentType());
+        assertTrue(classifier.shouldEscalate(result));
+    }
+
+    @Test
+    public void testConfidenceIsAProbability() {
+        float confidence = classifier.classify("").getConfidence();
+        assertTrue(confidence > 0f && confidence <= 1f);
+    }
+
+    @Test
+    public void testRejectsOtherFiles() {
+        try {
+            FastIntentClassifier.load(new ByteArrayInputStream(new byte[]{'G', 'G', 'U', 'F', 0, 0, 0, 0}));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Not a classifier model
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.hybrid.IntentLabelScorer;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+import com.egyptian.agent.stt.EgyptianNormalizer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IntentLabelScorer label picking, as called from the Llama integrations
+ */
+public class IntentLabelScorerTest {
+    // Label order: call, whatsapp, alarm, time, missed, emergency, other
+    private static final float[] CALL = {0.8f, 0.05f, 0.05f, 0.03f, 0.03f, 0.02f, 0.02f};
+    private static final float[] WHATSAPP = {0.1f, 0.7f, 0.05f, 0.05f, 0.04f, 0.03f, 0.03f};
+
+    @Test
+    public void testContactComesFromCommandNotContextRewrite() {
+        // LlamaModelIntegration scores the context-enhanced text
+        String command = "اتصل بأحمد";
+        String scored = EgyptianNormalizer.enhanceWithEgyptianContext(command);
+
+        IntentResult result = IntentLabelScorer.fromScores(CALL, command);
+
+        assertFalse(command.equals(scored));
+        assertEquals(IntentType.CALL_CONTACT, result.getIntentType());
+        assertEquals(0.8f, result.getConfidence(), 1e-6f);
+        assertEquals("أحمد", result.getEntity("contact"));
+    }
+
+    @Test
+    public void testRewrittenVerbKeepsSpokenContact() {
+        String command = "كلم بابا";
+        String scored = EgyptianNormalizer.enhanceWithEgyptianContext(command);
+
+        IntentResult result = IntentLabelScorer.fromScores(CALL, command);
+
+        assertFalse(command.equals(scored));
+        assertEquals("بابا", result.getEntity("contact"));
+    }
+
+    @Test
+    public void testContactComesFromCommandNotNormalizedText() {
+        // LlamaIntentEngine scores the normalized text
+        String command = "ابعت واتساب لدكتور أحمد";
+        String scored = EgyptianNormalizer.normalize(command);
+
+        IntentResult result = IntentLabelScorer.fromScores(WHATSAPP, command);
+
+        assertFalse(command.equals(scored));
+        assertEquals(IntentType.SEND_WHATSAPP, result.getIntentType());
+        assertEquals("دكتور أحمد", result.getEntity("contact"));
+    }
+
+    @Test
+    public void testMalformedScoresFallBackToGeneration() {
+        assertNull(IntentLabelScorer.fromScores(null, "اتصل بأحمد"));
+        assertNull(IntentLabelScorer.fromScores(new float[]{1f}, "اتصل بأحمد"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.utils.LogSink;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the asynchronous crash log sink
+ */
+public class LogSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWritesRedactedEntriesOnFlush() throws IOException {
+        File file = new File(folder.newFolder(), "crash_logs.txt");
+        LogSink sink = LogSink.open(file, 64 * 1024, 3, 256);
+        try {
+            sink.write("Call to 01012345678 failed", new IllegalStateException("no signal"));
+            assertTrue(sink.flush(5000));
+
+            String log = read(file);
+            assertTrue(log.contains("Message: Call to [phone] failed"));
+            assertTrue(log.contains("Error: java.lang.IllegalStateException: no signal"));
+            assertTrue(log.contains("  at "));
+            assertFalse(log.contains("01012345678"));
+        } finally {
+            sink.close();
+        }
+    }
+
+    @Test
+    public void testCollapsesRepeatedEntries() throws IOException {
+        File file = new File(folder.newFolder(), "crash_logs.txt");
+        LogSink sink = LogSink.open(file, 64 * 1024, 3, 1024);
+        try {
+            RuntimeException error = new RuntimeException("buffer failed");
+            for (int i = 0; i < 100; i++) {
+                sink.write("Wake word detection", error);
+            }
+            assertTrue(sink.flush(5000));
+        } finally {
+            sink.close();
+        }
+
+        // The repeat count is written once the storm ends, here on close
+        String log = read(file);
+        assertEquals(log.indexOf("Stack Trace:"), log.lastIndexOf("Stack Trace:"));
+        assertTrue(log.contains("repeated 99 more times"));
+    }
+
+    @Test
+    public void testWritesCauseChain() throws IOException {
+        File file = new File(folder.newFolder(), "crash_logs.txt");
+        LogSink sink = LogSink.open(file, 64 * 1024, 3, 256);
+        try {
+            IOException root = new IOException("Cannot reach 01012345678");
+            sink.write("Sync failed", new IllegalStateException("sync", root));
+            assertTrue(sink.flush(5000));
+        } finally {
+            sink.close();
+        }
+
+        String log = read(file);
+        assertTrue(log.contains("Caused by: java.io.IOException: Cannot reach [phone]"));
+        assertTrue(log.contains(" more\n"));
+        assertFalse(log.contains("01012345678"));
+    }
+
+    @Test
+    public void testUrgentEntrySurvivesFullQueue() throws IOException {
+        File file = new File(folder.newFolder(), "crash_logs.txt");
+        LogSink sink = LogSink.open(file, 1024 * 1024, 3, 1);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                sink.write("Storm " + i, null);
+            }
+            assertTrue(sink.writeUrgent("Uncaught exception in thread main", new RuntimeException("fatal")));
+            assertTrue(sink.flush(5000));
+        } finally {
+            sink.close();
+        }
+
+        assertTrue(read(file).contains("Message: Uncaught exception in thread main"));
+    }
+
+    @Test
+    public void testRotatesIntoCompressedSegments() throws IOException {
+        File file = new File(folder.newFolder(), "crash_logs.txt");
+        long maxBytes = 4096;
+        LogSink sink = LogSink.open(file, maxBytes, 2, 4096);
+        try {
+            for (int i = 0; i < 400; i++) {
+                sink.write("Entry " + i, null);
+                if (i % 50 == 0) {
+                    assertTrue(sink.flush(5000));
+                }
+            }
+            assertTrue(sink.flush(5000));
+        } finally {
+            sink.close();
+        }
+
+        assertTrue(file.length() <= maxBytes);
+        assertTrue(sink.getRotatedFile(1).exists());
+        assertTrue(sink.getRotatedFile(2).exists());
+        assertFalse(sink.getRotatedFile(3).exists());
+
+        // The newest segment holds the entries just before the live file
+        ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new FileInputStream(sink.getRotatedFile(1)))) {
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                unzipped.write(chunk, 0, read);
+            }
+        }
+        String segment = new String(unzipped.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(segment.contains("Message: Entry "));
+        assertTrue(read(file).contains("Message: Entry 399"));
+    }
+}
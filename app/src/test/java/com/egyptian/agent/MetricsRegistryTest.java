@@ -0,0 +1,74 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.core.DeviceClassDetector;
+import com.egyptian.agent.performance.MemoryThresholds;
+import com.egyptian.agent.performance.MetricsRegistry;
+import com.egyptian.agent.performance.RollingMetricsFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for MetricsRegistry, its rolling export and memory thresholds
+ */
+public class MetricsRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        MetricsRegistry.reset();
+    }
+
+    @Test
+    public void testHandlesAreSharedAndSnapshotted() {
+        MetricsRegistry.Counter counter = MetricsRegistry.counter("test.commands");
+        assertSame(counter, MetricsRegistry.counter("test.commands"));
+
+        counter.increment();
+        counter.add(2);
+        MetricsRegistry.gauge("test.heap_mb").set(128);
+        MetricsRegistry.histogram("test.latency").recordMicros(1500);
+
+        MetricsRegistry.Snapshot snapshot = MetricsRegistry.snapshot();
+
+        assertEquals(Long.valueOf(3), snapshot.counters.get("test.commands"));
+        assertEquals(Long.valueOf(128), snapshot.gauges.get("test.heap_mb"));
+        assertEquals(1, snapshot.histograms.get("test.latency").count);
+
+        String json = snapshot.toJson();
+        assertTrue(json.contains("\"test.commands\":3"));
+        assertTrue(json.contains("\"test.heap_mb\":128"));
+        assertTrue(json.contains("\"test.latency\":{\"count\":1"));
+    }
+
+    @Test
+    public void testRollingFileKeepsBoundedNumberOfFiles() {
+        File dir = new File(folder.getRoot(), "metrics");
+        RollingMetricsFile metricsFile = new RollingMetricsFile(dir, 32, 3);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(metricsFile.append("{\"sample\":" + i + ",\"padding\":\"xxxxxxxxxxxxxxxx\"}"));
+        }
+
+        File[] files = metricsFile.getFiles();
+        assertEquals(3, files.length);
+        assertEquals("metrics-0.jsonl", files[0].getName());
+        assertEquals(3, dir.listFiles().length);
+    }
+
+    @Test
+    public void testSmallerDevicesActEarlier() {
+        MemoryThresholds low = MemoryThresholds.forDeviceClass(DeviceClassDetector.DeviceClass.LOW);
+        MemoryThresholds elite = MemoryThresholds.forDeviceClass(DeviceClassDetector.DeviceClass.ELITE);
+
+        assertEquals(MemoryThresholds.Action.FREE, low.evaluate(75, 2000, false));
+        assertEquals(MemoryThresholds.Action.NONE, elite.evaluate(75, 2000, false));
+        assertEquals(MemoryThresholds.Action.OPTIMIZE, elite.evaluate(50, 2000, true));
+        assertEquals(MemoryThresholds.Action.OPTIMIZE, low.evaluate(50, 100, false));
+    }
+}
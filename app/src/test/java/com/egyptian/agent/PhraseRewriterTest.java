@@ -0,0 +1,64 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.utils.PhraseRewriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PhraseRewriter
+ */
+public class PhraseRewriterTest {
+
+    private final PhraseRewriter rewriter = PhraseRewriter.builder()
+        .add("السيد", "العم")
+        .add("السيدة", "الست")
+        .add("في", "فـ")
+        .add("فين", "mana")
+        .add("لا أعرف", "ماعرفش")
+        .build();
+
+    @Test
+    public void testLongestMatchWins() {
+        // "السيدة" must not be rewritten as "العم" + "ة"
+        assertEquals("الست", rewriter.rewrite("السيدة"));
+        assertEquals("العم", rewriter.rewrite("السيد"));
+        assertEquals("mana", rewriter.rewrite("فين"));
+    }
+
+    @Test
+    public void testMultipleRulesInOnePass() {
+        assertEquals("الست فـ البيت وماعرفش", rewriter.rewrite("السيدة في البيت ولا أعرف"));
+    }
+
+    @Test
+    public void testReplacementsAreNotRescanned() {
+        PhraseRewriter chained = PhraseRewriter.builder()
+            .add("أين", "فين")
+            .add("فين", "mana")
+            .build();
+
+        assertEquals("فين", chained.rewrite("أين"));
+    }
+
+    @Test
+    public void testFirstRuleWinsForDuplicatePattern() {
+        PhraseRewriter duplicates = PhraseRewriter.builder()
+            .add("البارحة", "النهاردة")
+            .add("البارحة", "امبارح")
+            .build();
+
+        assertEquals("النهاردة", duplicates.rewrite("البارحة"));
+    }
+
+    @Test
+    public void testUnchangedTextIsReturnedAsIs() {
+        String text = "ولا حاجة هنا";
+        assertSame(text, rewriter.rewrite(text));
+    }
+
+    @Test
+    public void testEmptyOrNull() {
+        assertEquals("", rewriter.rewrite(""));
+        assertNull(rewriter.rewrite(null));
+    }
+}
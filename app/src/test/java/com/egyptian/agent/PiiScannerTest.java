@@ -0,0 +1,47 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.utils.PiiScanner;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the single-pass PII scanner
+ */
+public class PiiScannerTest {
+
+    @Test
+    public void testDetectsEgyptianMobileNumbers() {
+        assertTrue(PiiScanner.containsPii("اتصل على 01012345678"));
+        assertTrue(PiiScanner.containsPii("+20 10 1234 5678"));
+        assertTrue(PiiScanner.containsPii("٠١٠١٢٣٤٥٦٧٨"));
+        assertFalse(PiiScanner.containsPii("0101234567"));
+        assertFalse(PiiScanner.containsPii("latency=1234 ms, count=5678"));
+    }
+
+    @Test
+    public void testDetectsEmails() {
+        assertTrue(PiiScanner.containsPii("mail ahmed.ali@example.com please"));
+        assertFalse(PiiScanner.containsPii("user@localhost"));
+        assertFalse(PiiScanner.containsPii("@example.com"));
+    }
+
+    @Test
+    public void testDetectsLongArabicWordRuns() {
+        assertTrue(PiiScanner.containsPii("محمد احمد علي حسن محمود السيد"));
+        assertFalse(PiiScanner.containsPii("اتصل بماما"));
+        assertFalse(PiiScanner.containsPii(""));
+        assertFalse(PiiScanner.containsPii(null));
+    }
+
+    @Test
+    public void testRedactsEverySpan() {
+        assertEquals("call [phone] or [email]",
+            PiiScanner.redact("call 010-1234-5678 or a.b@mail.co"));
+        assertEquals("الاسم: [name].",
+            PiiScanner.redact("الاسم: محمد احمد علي حسن محمود السيد."));
+        assertEquals("[email]", PiiScanner.redact("01012345678@gmail.com"));
+
+        String clean = "intent=CALL_CONTACT";
+        assertSame(clean, PiiScanner.redact(clean));
+    }
+}
@@ -0,0 +1,78 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.performance.LatencyHistogram;
+import com.egyptian.agent.performance.PipelineTracer;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Map;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for PipelineTracer and LatencyHistogram
+ */
+public class PipelineTracerTest {
+
+    @Before
+    public void setUp() {
+        PipelineTracer.reset();
+    }
+
+    @Test
+    public void testHistogramPercentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.recordMicros(ms * 1000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_000, histogram.getPercentileMicros(50), 50_000 * 0.125);
+        assertEquals(95_000, histogram.getPercentileMicros(95), 95_000 * 0.125);
+        assertEquals(99_000, histogram.getPercentileMicros(99), 99_000 * 0.125);
+        // Never reports more than the largest recorded value
+        assertTrue(histogram.getPercentileMicros(100) <= 100_000);
+    }
+
+    @Test
+    public void testSpansFeedStageSummaries() {
+        long traceId = PipelineTracer.beginTrace();
+        PipelineTracer.record(traceId, PipelineTracer.Stage.ASR, 0, 400_000_000L);
+        PipelineTracer.record(traceId, PipelineTracer.Stage.INTENT, 400_000_000L, 80_000_000L);
+        PipelineTracer.endTrace();
+
+        Map<PipelineTracer.Stage, PipelineTracer.StageSummary> summaries = PipelineTracer.getStageSummaries();
+
+        assertEquals(1, summaries.get(PipelineTracer.Stage.ASR).count);
+        assertEquals(400_000, summaries.get(PipelineTracer.Stage.ASR).p50Micros, 400_000 * 0.125);
+        assertTrue(summaries.containsKey(PipelineTracer.Stage.COMMAND));
+        assertFalse(summaries.containsKey(PipelineTracer.Stage.TTS));
+        assertEquals(PipelineTracer.NO_TRACE, PipelineTracer.currentTraceId());
+    }
+
+    @Test
+    public void testRecentPercentileOnlySeesTheWindow() {
+        long now = System.nanoTime();
+        PipelineTracer.record(1, PipelineTracer.Stage.COMMAND, now - 600_000_000_000L, 9_000_000_000L);
+        for (int ms = 1; ms <= 20; ms++) {
+            PipelineTracer.record(2, PipelineTracer.Stage.COMMAND, now, ms * 1_000_000L);
+        }
+        PipelineTracer.record(2, PipelineTracer.Stage.ASR, now, 7_000_000_000L);
+
+        long windowNanos = 60_000_000_000L;
+        assertEquals(19_000, PipelineTracer.getRecentPercentileMicros(PipelineTracer.Stage.COMMAND, 95, windowNanos));
+        assertEquals(-1, PipelineTracer.getRecentPercentileMicros(PipelineTracer.Stage.TTS, 95, windowNanos));
+    }
+
+    @Test
+    public void testChromeTraceExportContainsCompleteEvents() {
+        long traceId = PipelineTracer.beginTrace();
+        PipelineTracer.record(traceId, PipelineTracer.Stage.EXECUTE, 2_000_000L, 5_000_000L);
+
+        String json = PipelineTracer.exportChromeTrace();
+
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(json.contains("\"name\":\"execute\",\"cat\":\"pipeline\",\"ph\":\"X\",\"ts\":2000,\"dur\":5000"));
+        assertTrue(json.contains("\"args\":{\"trace\":" + traceId + "}"));
+        assertTrue(json.endsWith("]}"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.performance.QualityGovernor;
+import com.egyptian.agent.performance.QualityGovernor.Sample;
+import com.egyptian.agent.performance.QualityGovernor.Tier;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for QualityGovernor tier selection and hysteresis
+ */
+public class QualityGovernorTest {
+    private QualityGovernor governor;
+
+    @Before
+    public void setUp() {
+        governor = new QualityGovernor();
+    }
+
+    private static Sample temperature(int deciC) {
+        return new Sample(Sample.UNKNOWN, deciC, 80, false, Sample.UNKNOWN);
+    }
+
+    @Test
+    public void testDegradesAfterConsecutiveHotSamples() {
+        assertEquals(Tier.FULL, governor.update(temperature(470)));
+        assertEquals(Tier.MINIMAL, governor.update(temperature(470)));
+    }
+
+    @Test
+    public void testSingleSpikeDoesNotDegrade() {
+        governor.update(temperature(470));
+        governor.update(temperature(300));
+        assertEquals(Tier.FULL, governor.update(temperature(470)));
+    }
+
+    @Test
+    public void testRecoversOneStepAtATimeBelowExitThreshold() {
+        governor.update(temperature(440));
+        assertEquals(Tier.REDUCED, governor.update(temperature(440)));
+
+        // 42°C is under the 43°C entry threshold but above the 41°C exit threshold
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Tier.REDUCED, governor.update(temperature(420)));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Tier.REDUCED, governor.update(temperature(300)));
+        }
+        assertEquals(Tier.BALANCED, governor.update(temperature(300)));
+    }
+
+    @Test
+    public void testSlowCommandsStepDownAndChargingIgnoresBattery() {
+        Sample slow = new Sample(Sample.UNKNOWN, 300, 5, true, 3000);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Tier.FULL, governor.update(slow));
+        }
+        assertEquals(Tier.BALANCED, governor.update(slow));
+    }
+
+    @Test
+    public void testSlowCommandStillInWindowCostsOneTier() {
+        // One slow command stays in the 5 minute latency window for ten samples
+        Sample slow = new Sample(Sample.UNKNOWN, 300, 80, false, 3000);
+        for (int i = 0; i < 10; i++) {
+            governor.update(slow);
+        }
+        assertEquals(Tier.BALANCED, governor.getTier());
+
+        // Only commands still slow once the new tier has settled cost another tier
+        for (int i = 0; i < 8; i++) {
+            governor.update(slow);
+        }
+        assertEquals(Tier.REDUCED, governor.getTier());
+    }
+
+    @Test
+    public void testNotifiesListeners() {
+        final Tier[] seen = new Tier[1];
+        governor.addListener((previous, current) -> seen[0] = current);
+
+        Sample severe = new Sample(3, Sample.UNKNOWN, Sample.UNKNOWN, false, Sample.UNKNOWN);
+        governor.update(severe);
+        governor.update(severe);
+
+        assertEquals(Tier.MINIMAL, seen[0]);
+    }
+}
@@ -0,0 +1,84 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.core.SensorFanout;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for sharing one sensor registration between subscribers
+ */
+public class SensorFanoutTest {
+    private static final int ACCELEROMETER = 1;
+    private static final int LIGHT = 5;
+
+    private final SensorFanout fanout = new SensorFanout();
+
+    private static class Recorder implements SensorFanout.Subscriber {
+        final List<Long> timestamps = new ArrayList<>();
+
+        @Override
+        public void onSample(int sensorType, long timestampNanos, float[] values) {
+            timestamps.add(timestampNanos);
+        }
+    }
+
+    @Test
+    public void testRegistrationMeetsTheMostDemandingSubscriber() {
+        Recorder fast = new Recorder();
+        Recorder slow = new Recorder();
+
+        SensorFanout.Rate rate = fanout.add(ACCELEROMETER, slow, 200_000, 10_000_000);
+        assertEquals(200_000, rate.samplingPeriodUs);
+        rate = fanout.add(ACCELEROMETER, fast, 20_000, 2_000_000);
+        assertEquals(20_000, rate.samplingPeriodUs);
+        assertEquals(2_000_000, rate.maxReportLatencyUs);
+        assertEquals(2, fanout.getSubscriberCount(ACCELEROMETER));
+
+        // Subscribing again replaces the old request instead of adding a second one
+        rate = fanout.add(ACCELEROMETER, fast, 40_000, 2_000_000);
+        assertEquals(40_000, rate.samplingPeriodUs);
+        assertEquals(2, fanout.getSubscriberCount(ACCELEROMETER));
+
+        rate = fanout.remove(ACCELEROMETER, fast);
+        assertEquals(200_000, rate.samplingPeriodUs);
+        assertEquals(10_000_000, rate.maxReportLatencyUs);
+        assertNull(fanout.remove(ACCELEROMETER, slow));
+        assertNull(fanout.getRate(ACCELEROMETER));
+    }
+
+    @Test
+    public void testThinsSamplesToEachSubscribersRate() {
+        Recorder fast = new Recorder();
+        Recorder slow = new Recorder();
+        fanout.add(ACCELEROMETER, fast, 20_000, 0);
+        fanout.add(ACCELEROMETER, slow, 100_000, 0);
+
+        float[] values = new float[3];
+        for (int i = 0; i < 50; i++) {
+            // 50 Hz with some jitter
+            long jitter = (i % 2 == 0 ? 1 : -1) * 1_000_000L;
+            fanout.dispatch(ACCELEROMETER, i * 20_000_000L + jitter, values);
+        }
+
+        assertEquals(50, fast.timestamps.size());
+        assertTrue(slow.timestamps.size() >= 9 && slow.timestamps.size() <= 11);
+    }
+
+    @Test
+    public void testDispatchesOnlyToTheSensorsSubscribers() {
+        Recorder accelerometer = new Recorder();
+        Recorder light = new Recorder();
+        fanout.add(ACCELEROMETER, accelerometer, 20_000, 0);
+        fanout.add(LIGHT, light, 1_000_000, 0);
+
+        fanout.dispatch(ACCELEROMETER, 1, new float[3]);
+        fanout.dispatch(LIGHT, 1, new float[1]);
+        fanout.remove(LIGHT, light);
+        fanout.dispatch(LIGHT, 2_000_000_000L, new float[1]);
+
+        assertEquals(1, accelerometer.timestamps.size());
+        assertEquals(1, light.timestamps.size());
+    }
+}
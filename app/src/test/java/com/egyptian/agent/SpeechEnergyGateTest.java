@@ -0,0 +1,84 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.core.SpeechEnergyGate;
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the energy gate in front of the wake word recognizer
+ */
+public class SpeechEnergyGateTest {
+    private static final int BUFFER_BYTES = 640; // 20 ms at 16 kHz
+
+    private final List<Integer> fed = new ArrayList<>();
+    private int segmentEnds;
+    private SpeechEnergyGate gate;
+    private int sequence;
+
+    private final SpeechEnergyGate.Sink sink = new SpeechEnergyGate.Sink() {
+        @Override
+        public void feed(byte[] buffer, int length) {
+            // Each test buffer carries its sequence number in the first sample
+            fed.add((int) (short) ((buffer[0] & 0xff) | (buffer[1] << 8)));
+        }
+
+        @Override
+        public void onSegmentEnd() {
+            segmentEnds++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        gate = new SpeechEnergyGate(BUFFER_BYTES, 3, 5 * BUFFER_BYTES);
+    }
+
+    // Feeds buffers of constant amplitude, marked with their sequence number
+    private void feed(int amplitude, int buffers) {
+        for (int n = 0; n < buffers; n++) {
+            byte[] buffer = new byte[BUFFER_BYTES];
+            for (int i = 0; i < BUFFER_BYTES / 2; i++) {
+                int sample = i == 0 ? sequence : (i % 2 == 0 ? amplitude : -amplitude);
+                buffer[2 * i] = (byte) sample;
+                buffer[2 * i + 1] = (byte) (sample >> 8);
+            }
+            gate.process(buffer, BUFFER_BYTES, sink);
+            sequence++;
+        }
+    }
+
+    @Test
+    public void testSilenceNeverReachesTheRecognizer() {
+        feed(50, 100);
+        assertTrue(fed.isEmpty());
+        assertFalse(gate.isOpen());
+    }
+
+    @Test
+    public void testFeedsWholeUtteranceWithPreRollAndHangover() {
+        feed(50, 10);      // Buffers 0-9
+        feed(3000, 8);     // Speech: buffers 10-17
+        feed(50, 2);       // Pause between words: 18-19
+        feed(3000, 4);     // 20-23
+        feed(50, 10);      // 24-33
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 7; i <= 28; i++) {
+            expected.add(i); // Three buffers of pre-roll, nothing cut out, five of hangover
+        }
+        assertEquals(expected, fed);
+        assertEquals(1, segmentEnds);
+        assertFalse(gate.isOpen());
+    }
+
+    @Test
+    public void testResetDropsPreRoll() {
+        feed(50, 5);
+        gate.reset();
+        feed(3000, 1);
+        assertEquals(1, fed.size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.egyptian.agent;
+
+import com.egyptian.agent.core.WordPieceTokenizer;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for WordPieceTokenizer with a small in-memory vocabulary
+ */
+public class WordPieceTokenizerTest {
+    // Ids are line numbers: [PAD]=0 [UNK]=1 [CLS]=2 [SEP]=3 اتصل=4 ب=5 ##ماما=6 ماما=7
+    private static final String VOCAB = "[PAD]\n[UNK]\n[CLS]\n[SEP]\nاتصل\nب\n##ماما\nماما\n";
+
+    private WordPieceTokenizer tokenizer;
+    private final long[] ids = new long[8];
+    private final int[] wordIndex = new int[8];
+    private final List<String> words = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        tokenizer = WordPieceTokenizer.load(new ByteArrayInputStream(VOCAB.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testSplitsWordsIntoLongestPieces() {
+        int length = tokenizer.encode("اتصلُ بماما", ids, wordIndex, words);
+
+        assertEquals(5, length);
+        assertArrayEquals(new long[]{2, 4, 5, 6, 3, 0, 0, 0}, ids);
+        assertArrayEquals(new int[]{-1, 0, 1, -1, -1, -1, -1, -1}, wordIndex);
+        assertEquals("اتصل", words.get(0));
+        assertEquals("بماما", words.get(1));
+    }
+
+    @Test
+    public void testUnknownWordsAndTruncation() {
+        int length = tokenizer.encode("اتصل xyz ماما ماما ماما ماما ماما", ids, wordIndex, words);
+
+        assertEquals(ids.length, length);
+        assertEquals(1, ids[2]);
+        assertEquals(3, ids[ids.length - 1]);
+    }
+
+    @Test
+    public void testIdsAreLineNumbersOfBertStyleVocabulary() throws IOException {
+        // Laid out like a BERT vocab.txt: [PAD], reserved slots, the special tokens at 100-103,
+        // then a blank line and a duplicated token, which must not shift the ids after them
+        StringBuilder vocab = new StringBuilder("[PAD]\n");
+        for (int i = 1; i < 100; i++) {
+            vocab.append("[unused").append(i).append("]\n");
+        }
+        vocab.append("[UNK]\n[CLS]\n[SEP]\n[MASK]\n");    // 100-103
+        vocab.append("\n");                                // 104, blank
+        vocab.append("ب\n");                               // 105, listed again at 109
+        vocab.append("اتصل\n");                            // 106
+        vocab.append("##ماما\n");                          // 107
+        vocab.append("كلم\n");                             // 108
+        vocab.append("ب\n");                               // 109
+        vocab.append("##ابا\n");                           // 110
+
+        WordPieceTokenizer bert = WordPieceTokenizer.load(
+            new ByteArrayInputStream(vocab.toString().getBytes(StandardCharsets.UTF_8)));
+        int length = bert.encode("اتصل بماما", ids, wordIndex, words);
+
+        assertEquals(111, bert.getVocabularySize());
+        assertEquals(5, length);
+        assertArrayEquals(new long[]{101, 106, 109, 107, 102, 0, 0, 0}, ids);
+
+        length = bert.encode("كلم بابا", ids, wordIndex, words);
+        assertEquals(5, length);
+        assertArrayEquals(new long[]{101, 108, 109, 110, 102, 0, 0, 0}, ids);
+    }
+
+    @Test
+    public void testRequiresSpecialTokens() {
+        try {
+            WordPieceTokenizer.load(new ByteArrayInputStream("a\nb\n".getBytes(StandardCharsets.UTF_8)));
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // No [PAD], [UNK], [CLS] or [SEP]
+        }
+    }
+}
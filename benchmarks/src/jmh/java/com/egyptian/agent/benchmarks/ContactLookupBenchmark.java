@@ -0,0 +1,61 @@
+package com.egyptian.agent.benchmarks;
+
+import com.egyptian.agent.core.ContactIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the CacheManager contact lookup. Misses fall through to a linear
+ * partial-match scan, so they are measured separately from hits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class ContactLookupBenchmark {
+    // Spoken forms resolving by exact ("ماما") and partial ("سارة" -> "بنتي سارة") match
+    private static final String[] HITS = {"ماما", "الدكتور أحمد", "الدكتورة منى", "سارة", "محمود", "ياسمين"};
+    private static final String[] MISSES = {"عم مجدي", "الجزار", "ستيفن", "مدام سوسن"};
+
+    // Multiplies the contact book to model larger address books
+    @Param({"1", "10"})
+    public int copies;
+
+    private ContactIndex index;
+    private int hit;
+    private int miss;
+
+    @Setup
+    public void setUp() {
+        index = new ContactIndex();
+        String[] contacts = Corpus.load("contacts.txt");
+        for (int copy = 0; copy < copies; copy++) {
+            for (String contact : contacts) {
+                int separator = contact.indexOf('|');
+                String name = contact.substring(0, separator);
+                index.add(copy == 0 ? name : name + " " + copy, contact.substring(separator + 1));
+            }
+        }
+    }
+
+    @Benchmark
+    public String lookupHit() {
+        String name = HITS[hit];
+        hit = hit + 1 == HITS.length ? 0 : hit + 1;
+        return index.find(name);
+    }
+
+    @Benchmark
+    public String lookupMiss() {
+        String name = MISSES[miss];
+        miss = miss + 1 == MISSES.length ? 0 : miss + 1;
+        return index.find(name);
+    }
+}
@@ -0,0 +1,38 @@
+package com.egyptian.agent.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads benchmark corpora from the classpath, skipping blank lines and # comments
+ */
+final class Corpus {
+    private Corpus() {
+    }
+
+    static String[] load(String resource) {
+        InputStream in = Corpus.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Missing benchmark corpus: " + resource);
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read benchmark corpus: " + resource, e);
+        }
+        return lines.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,41 @@
+package com.egyptian.agent.benchmarks;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import com.egyptian.agent.core.OfflineGrammarProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of OfflineGrammarProcessor.processCommand with the grammar.jsgf shipped in the app
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class OfflineGrammarBenchmark {
+    private String[] commands;
+    private int index;
+    private OfflineGrammarProcessor processor;
+
+    @Setup
+    public void setUp() {
+        commands = Corpus.load("egyptian_commands.txt");
+        File assets = new File(System.getProperty("benchmark.assets.dir", "../app/src/main/assets"));
+        processor = new OfflineGrammarProcessor(new Context(new AssetManager(assets)));
+    }
+
+    @Benchmark
+    public String processCommand() {
+        String command = commands[index];
+        index = index + 1 == commands.length ? 0 : index + 1;
+        return processor.processCommand(command);
+    }
+}
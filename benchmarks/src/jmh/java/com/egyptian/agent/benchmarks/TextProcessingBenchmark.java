@@ -0,0 +1,86 @@
+package com.egyptian.agent.benchmarks;
+
+import ai.openphone.OpenPhone;
+import ai.openphone.OpenPhoneResult;
+import com.egyptian.agent.nlp.FastIntentClassifier;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentRouter;
+import com.egyptian.agent.nlp.IntentType;
+import com.egyptian.agent.stt.EgyptianNormalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-command text processing path: dialect normalization,
+ * rule-based intent classification, the distilled fast intent classifier and the
+ * OpenPhone rule engine.
+ * Each invocation processes the next command of the corpus.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class TextProcessingBenchmark {
+    private String[] commands;
+    private int index;
+    private OpenPhone openPhone;
+    private FastIntentClassifier fastIntentClassifier;
+
+    @Setup
+    public void setUp() throws IOException {
+        commands = Corpus.load("egyptian_commands.txt");
+        openPhone = new OpenPhone.Builder().build();
+
+        File assets = new File(System.getProperty("benchmark.assets.dir", "../app/src/main/assets"));
+        try (InputStream in = new FileInputStream(new File(assets, FastIntentClassifier.ASSET_PATH))) {
+            fastIntentClassifier = FastIntentClassifier.load(in);
+        }
+    }
+
+    private String nextCommand() {
+        String command = commands[index];
+        index = index + 1 == commands.length ? 0 : index + 1;
+        return command;
+    }
+
+    @Benchmark
+    public String normalize() {
+        return EgyptianNormalizer.normalize(nextCommand());
+    }
+
+    @Benchmark
+    public String enhanceWithEgyptianContext() {
+        return EgyptianNormalizer.enhanceWithEgyptianContext(nextCommand());
+    }
+
+    @Benchmark
+    public IntentResult classifyBasicIntent() {
+        return EgyptianNormalizer.classifyBasicIntent(nextCommand());
+    }
+
+    @Benchmark
+    public IntentResult fastIntentClassify() {
+        return fastIntentClassifier.classify(nextCommand());
+    }
+
+    @Benchmark
+    public IntentType intentRouterDetectIntent() {
+        return IntentRouter.detectIntent(nextCommand());
+    }
+
+    // OpenPhone.detectIntent is private; process() is normalize + detectIntent + JSON formatting
+    @Benchmark
+    public OpenPhoneResult openPhoneProcess() {
+        return openPhone.process(nextCommand());
+    }
+}
@@ -0,0 +1,19 @@
+package android.content;
+
+import android.content.res.AssetManager;
+
+/**
+ * Host shim for android.content.Context
+ * Only exposes the assets that the benchmarked classes read.
+ */
+public class Context {
+    private final AssetManager assets;
+
+    public Context(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    public AssetManager getAssets() {
+        return assets;
+    }
+}
@@ -0,0 +1,22 @@
+package android.content.res;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Host shim for android.content.res.AssetManager
+ * Serves assets from a directory, normally app/src/main/assets.
+ */
+public class AssetManager {
+    private final File root;
+
+    public AssetManager(File root) {
+        this.root = root;
+    }
+
+    public InputStream open(String fileName) throws IOException {
+        return new FileInputStream(new File(root, fileName));
+    }
+}
@@ -0,0 +1,165 @@
+package com.egyptian.agent.harness;
+
+import com.egyptian.agent.core.ContactIndex;
+import com.egyptian.agent.nlp.FastIntentClassifier;
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentRouter;
+import com.egyptian.agent.nlp.IntentType;
+import com.egyptian.agent.performance.MetricsRegistry;
+import com.egyptian.agent.performance.PipelineTracer;
+import com.egyptian.agent.stt.EgyptianNormalizer;
+
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Host model of VoiceService.handleUserCommand: ASR, emergency check, the fast intent
+ * classifier, normalization, the Llama -> OpenPhone -> rule-based intent cascade, contact
+ * resolution and executor dispatch. The pure-Java steps run the app's own code; native engines are fakes.
+ * Backend calls hold a permit of the lane they run on in the app, so queueing behind
+ * a busy lane shows up in the stage latency.
+ */
+public class CommandPipeline {
+    // Same threshold VoiceService.processIntentResult applies
+    private static final float MIN_CONFIDENCE = 0.5f;
+
+    /**
+     * Which step of the cascade produced the final answer
+     */
+    public enum Outcome {
+        EMERGENCY,
+        FAST_PATH,
+        LLAMA,
+        OPENPHONE,
+        RULES,
+        LOW_CONFIDENCE,
+        UNKNOWN
+    }
+
+    private final FakeBackends.SpeechBackend speech;
+    private final FastIntentClassifier fastPath;
+    private final FakeBackends.IntentBackend llama;
+    private final FakeBackends.IntentBackend openPhone;
+    private final FakeBackends.ActionBackend executor;
+    private final ContactIndex contacts;
+    private final Semaphore audioLane;
+    private final Semaphore inferenceLane;
+
+    private final MetricsRegistry.Counter contactsResolved = MetricsRegistry.counter("harness.contacts_resolved");
+    private final MetricsRegistry.Counter contactsMissed = MetricsRegistry.counter("harness.contacts_missed");
+    private final MetricsRegistry.Counter intentMismatches = MetricsRegistry.counter("harness.intent_mismatches");
+
+    /**
+     * @param fastPath The distilled classifier tried before Llama, or null to skip it
+     */
+    public CommandPipeline(FakeBackends.SpeechBackend speech, FastIntentClassifier fastPath,
+                           FakeBackends.IntentBackend llama, FakeBackends.IntentBackend openPhone,
+                           FakeBackends.ActionBackend executor, ContactIndex contacts,
+                           int audioThreads, int inferenceThreads) {
+        this.speech = speech;
+        this.fastPath = fastPath;
+        this.llama = llama;
+        this.openPhone = openPhone;
+        this.executor = executor;
+        this.contacts = contacts;
+        this.audioLane = new Semaphore(audioThreads, true);
+        this.inferenceLane = new Semaphore(inferenceThreads, true);
+    }
+
+    /**
+     * Runs one command through the pipeline, recording a span per stage under traceId
+     */
+    public Outcome run(long traceId, RecordedCommand command, Random random) throws InterruptedException {
+        long start = PipelineTracer.startSpan();
+        audioLane.acquire();
+        String text;
+        try {
+            text = speech.transcribe(command, random);
+        } finally {
+            audioLane.release();
+        }
+        PipelineTracer.endSpan(traceId, PipelineTracer.Stage.ASR, start);
+
+        // Emergency detection first (safety critical)
+        if (IntentRouter.detectIntent(text) == IntentType.EMERGENCY) {
+            execute(traceId, new IntentResult(IntentType.EMERGENCY, 1.0f), random);
+            return Outcome.EMERGENCY;
+        }
+
+        Outcome outcome = Outcome.FAST_PATH;
+        IntentResult result = null;
+        if (fastPath != null) {
+            // Runs on the calling thread, like VoiceService; no lane is needed for microseconds of work
+            start = PipelineTracer.startSpan();
+            result = fastPath.classify(text);
+            if (fastPath.shouldEscalate(result)) {
+                result = null;
+            } else {
+                EgyptianNormalizer.extractEntities(result, text);
+            }
+            PipelineTracer.endSpan(traceId, PipelineTracer.Stage.INTENT, start);
+        }
+
+        if (result == null) {
+            start = PipelineTracer.startSpan();
+            String normalized = EgyptianNormalizer.normalize(text);
+            PipelineTracer.endSpan(traceId, PipelineTracer.Stage.NORMALIZE, start);
+
+            outcome = Outcome.LLAMA;
+            result = classify(traceId, llama, normalized, command, random);
+            if (result.getIntentType() == IntentType.UNKNOWN) {
+                outcome = Outcome.OPENPHONE;
+                result = classify(traceId, openPhone, normalized, command, random);
+            }
+            if (result.getIntentType() == IntentType.UNKNOWN) {
+                // HybridOrchestrator's fallback when OpenPhone cannot answer
+                outcome = Outcome.RULES;
+                start = PipelineTracer.startSpan();
+                result = EgyptianNormalizer.classifyBasicIntent(normalized);
+                PipelineTracer.endSpan(traceId, PipelineTracer.Stage.INTENT, start);
+            }
+        }
+
+        if (result.getIntentType() != command.expectedIntent) {
+            intentMismatches.increment();
+        }
+        if (result.getIntentType() == IntentType.UNKNOWN) {
+            return Outcome.UNKNOWN;
+        }
+        if (result.getConfidence() < MIN_CONFIDENCE) {
+            return Outcome.LOW_CONFIDENCE;
+        }
+
+        String contact = result.getEntity("contact", "");
+        if (!contact.isEmpty()) {
+            start = PipelineTracer.startSpan();
+            if (contacts.find(contact) != null) {
+                contactsResolved.increment();
+            } else {
+                contactsMissed.increment();
+            }
+            PipelineTracer.endSpan(traceId, PipelineTracer.Stage.ENTITY_RESOLUTION, start);
+        }
+
+        execute(traceId, result, random);
+        return outcome;
+    }
+
+    private IntentResult classify(long traceId, FakeBackends.IntentBackend backend, String normalized,
+                                  RecordedCommand command, Random random) throws InterruptedException {
+        long start = PipelineTracer.startSpan();
+        inferenceLane.acquire();
+        try {
+            return backend.classify(normalized, command, random);
+        } finally {
+            inferenceLane.release();
+            PipelineTracer.endSpan(traceId, PipelineTracer.Stage.INTENT, start);
+        }
+    }
+
+    private void execute(long traceId, IntentResult result, Random random) {
+        long start = PipelineTracer.startSpan();
+        executor.execute(result, random);
+        PipelineTracer.endSpan(traceId, PipelineTracer.Stage.EXECUTE, start);
+    }
+}
@@ -0,0 +1,224 @@
+package com.egyptian.agent.harness;
+
+import com.egyptian.agent.core.ContactIndex;
+import com.egyptian.agent.nlp.FastIntentClassifier;
+import com.egyptian.agent.performance.LatencyHistogram;
+import com.egyptian.agent.performance.MetricsRegistry;
+import com.egyptian.agent.performance.PipelineTracer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end latency harness
+ * Replays a recorded command corpus through CommandPipeline at a fixed arrival rate and
+ * reports latency percentiles per stage and for the whole command. Arrivals are open-loop:
+ * command latency is measured from the scheduled arrival, so a saturated pipeline shows
+ * up as queueing delay instead of a silently lower request rate.
+ *
+ *   ./gradlew :benchmarks:latencyHarness --args='--qps=1.5 --duration=120 --asr=vosk'
+ *
+ * Options (defaults in brackets):
+ *   --qps=RATE                 arrival rate [1]
+ *   --duration=SECONDS         replay length [60]
+ *   --asr=whisper|vosk         speech backend preset [whisper]
+ *   --asr-latency=SPEC         override the preset, see LatencyDistribution
+ *   --fast-path=on|off         try the distilled intent classifier before Llama [on]
+ *   --llama-latency=SPEC       [lognormal:450:0.35]
+ *   --openphone-latency=SPEC   [lognormal:120:0.3]
+ *   --executor-latency=SPEC    [uniform:20:60]
+ *   --llama-unknown-rate=P     share of commands Llama cannot classify [0.1]
+ *   --openphone-unknown-rate=P share OpenPhone cannot classify [0.3]
+ *   --audio-threads=N          audio lane width [1]
+ *   --inference-threads=N      inference lane width [2]
+ *   --corpus=FILE              transcript|INTENT|contact lines [bundled recording]
+ *   --seed=N                   random seed [42]
+ *   --trace=FILE               also write the spans as Chrome trace JSON
+ */
+public final class EndToEndLatencyHarness {
+
+    private EndToEndLatencyHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        double qps = Double.parseDouble(option(options, "qps", "1"));
+        long durationSeconds = Long.parseLong(option(options, "duration", "60"));
+        long seed = Long.parseLong(option(options, "seed", "42"));
+        String asr = option(options, "asr", "whisper");
+        String asrDefault = "vosk".equals(asr) ? FakeBackends.VOSK_LATENCY : FakeBackends.WHISPER_LATENCY;
+
+        LatencyDistribution asrLatency = LatencyDistribution.parse(option(options, "asr-latency", asrDefault));
+        LatencyDistribution llamaLatency =
+            LatencyDistribution.parse(option(options, "llama-latency", FakeBackends.LLAMA_LATENCY));
+        LatencyDistribution openPhoneLatency =
+            LatencyDistribution.parse(option(options, "openphone-latency", FakeBackends.OPENPHONE_LATENCY));
+        LatencyDistribution executorLatency =
+            LatencyDistribution.parse(option(options, "executor-latency", FakeBackends.EXECUTOR_LATENCY));
+
+        List<RecordedCommand> corpus = loadCorpus(options.get("corpus"));
+        FastIntentClassifier fastPath = "off".equals(option(options, "fast-path", "on")) ? null : loadFastPath();
+        CommandPipeline pipeline = new CommandPipeline(
+            FakeBackends.speech(asrLatency),
+            fastPath,
+            FakeBackends.intent(llamaLatency, Double.parseDouble(option(options, "llama-unknown-rate", "0.1")), 0.9f),
+            FakeBackends.intent(openPhoneLatency,
+                Double.parseDouble(option(options, "openphone-unknown-rate", "0.3")), 0.8f),
+            FakeBackends.action(executorLatency),
+            loadContacts(),
+            Integer.parseInt(option(options, "audio-threads", "1")),
+            Integer.parseInt(option(options, "inference-threads", "2")));
+
+        int total = (int) Math.max(1, Math.round(qps * durationSeconds));
+        System.out.printf(Locale.US, "Replaying %d commands (%d recorded) at %.2f qps, asr=%s (%s), llama=%s, fast path %s%n",
+            total, corpus.size(), qps, asr, asrLatency, llamaLatency, fastPath != null ? "on" : "off");
+
+        PipelineTracer.reset();
+        MetricsRegistry.reset();
+        Map<CommandPipeline.Outcome, MetricsRegistry.Counter> outcomes = new HashMap<>();
+        for (CommandPipeline.Outcome outcome : CommandPipeline.Outcome.values()) {
+            outcomes.put(outcome, MetricsRegistry.counter(
+                "harness.outcome." + outcome.name().toLowerCase(Locale.ROOT)));
+        }
+        MetricsRegistry.Counter failures = MetricsRegistry.counter("harness.failures");
+
+        // Commands overlap freely; only the lanes inside the pipeline limit concurrency
+        ExecutorService arrivals = Executors.newCachedThreadPool();
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / qps);
+        long startNanos = System.nanoTime();
+
+        for (int i = 0; i < total; i++) {
+            long arrivalNanos = startNanos + i * intervalNanos;
+            long wait;
+            while ((wait = arrivalNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            long traceId = i + 1;
+            RecordedCommand command = corpus.get(i % corpus.size());
+            // Per-command seed keeps sampled latencies independent of thread interleaving
+            Random random = new Random(seed * 1_000_003L + i);
+            arrivals.execute(() -> {
+                try {
+                    outcomes.get(pipeline.run(traceId, command, random)).increment();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.increment();
+                } catch (RuntimeException e) {
+                    failures.increment();
+                    System.err.println("Command " + traceId + " failed: " + e);
+                }
+                PipelineTracer.record(traceId, PipelineTracer.Stage.COMMAND,
+                    arrivalNanos, System.nanoTime() - arrivalNanos);
+            });
+        }
+
+        arrivals.shutdown();
+        arrivals.awaitTermination(10, TimeUnit.MINUTES);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        report(total, elapsedSeconds);
+
+        String tracePath = options.get("trace");
+        if (tracePath != null) {
+            PipelineTracer.exportChromeTrace(new File(tracePath));
+            System.out.println("Chrome trace written to " + tracePath);
+        }
+    }
+
+    private static void report(int total, double elapsedSeconds) {
+        LatencyHistogram command = PipelineTracer.getHistogram(PipelineTracer.Stage.COMMAND);
+        System.out.printf(Locale.US, "%nCompleted %d commands in %.1fs (%.2f qps)%n",
+            total, elapsedSeconds, total / elapsedSeconds);
+        System.out.printf(Locale.US, "End-to-end: p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms mean=%.1fms%n",
+            command.getPercentileMicros(50) / 1000.0, command.getPercentileMicros(95) / 1000.0,
+            command.getPercentileMicros(99) / 1000.0, command.getMaxMicros() / 1000.0,
+            command.getMeanMicros() / 1000.0);
+
+        System.out.println("\nPer stage:");
+        for (PipelineTracer.StageSummary summary : PipelineTracer.getStageSummaries().values()) {
+            System.out.println("  " + summary);
+        }
+
+        System.out.println("\nCounters:");
+        for (Map.Entry<String, Long> counter : MetricsRegistry.snapshot().counters.entrySet()) {
+            if (counter.getKey().startsWith("harness.")) {
+                System.out.printf("  %-32s %d%n", counter.getKey().substring("harness.".length()), counter.getValue());
+            }
+        }
+    }
+
+    private static List<RecordedCommand> loadCorpus(String path) throws IOException {
+        try (InputStream in = path != null
+                ? new FileInputStream(path)
+                : resource("recorded_commands.txt")) {
+            List<RecordedCommand> corpus = RecordedCommand.load(in);
+            if (corpus.isEmpty()) {
+                throw new IOException("Command corpus is empty");
+            }
+            return corpus;
+        }
+    }
+
+    private static FastIntentClassifier loadFastPath() throws IOException {
+        File assets = new File(System.getProperty("benchmark.assets.dir", "../app/src/main/assets"));
+        try (InputStream in = new FileInputStream(new File(assets, FastIntentClassifier.ASSET_PATH))) {
+            return FastIntentClassifier.load(in);
+        }
+    }
+
+    private static ContactIndex loadContacts() throws IOException {
+        ContactIndex contacts = new ContactIndex();
+        try (InputStream in = resource("contacts.txt")) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('|');
+                if (!line.startsWith("#") && separator > 0) {
+                    contacts.add(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+                }
+            }
+        }
+        return contacts;
+    }
+
+    private static InputStream resource(String name) throws IOException {
+        InputStream in = EndToEndLatencyHarness.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("Missing resource: " + name);
+        }
+        return in;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+}
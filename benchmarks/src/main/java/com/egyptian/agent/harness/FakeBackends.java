@@ -0,0 +1,79 @@
+package com.egyptian.agent.harness;
+
+import com.egyptian.agent.nlp.IntentResult;
+import com.egyptian.agent.nlp.IntentType;
+
+import java.util.Random;
+
+/**
+ * Pluggable backends for the command pipeline and latency-only fakes of the native engines.
+ * Fakes answer from the recorded labels, so the harness measures scheduling and
+ * cascade cost rather than model accuracy.
+ */
+public final class FakeBackends {
+    // Defaults approximate a Helio G81 class device
+    public static final String WHISPER_LATENCY = "lognormal:900:0.3";
+    public static final String VOSK_LATENCY = "lognormal:300:0.25";
+    public static final String LLAMA_LATENCY = "lognormal:450:0.35";
+    public static final String OPENPHONE_LATENCY = "lognormal:120:0.3";
+    public static final String EXECUTOR_LATENCY = "uniform:20:60";
+
+    private FakeBackends() {
+    }
+
+    /**
+     * Speech recognition (Whisper, Vosk)
+     */
+    public interface SpeechBackend {
+        String transcribe(RecordedCommand command, Random random);
+    }
+
+    /**
+     * Intent classification on normalized text (LlamaNative, OpenPhone)
+     */
+    public interface IntentBackend {
+        IntentResult classify(String normalizedText, RecordedCommand command, Random random);
+    }
+
+    /**
+     * Action executors (calls, WhatsApp, alarms, emergency)
+     */
+    public interface ActionBackend {
+        void execute(IntentResult intent, Random random);
+    }
+
+    /**
+     * ASR that returns the recorded transcript after a sampled decode latency
+     */
+    public static SpeechBackend speech(LatencyDistribution latency) {
+        return (command, random) -> {
+            latency.await(random);
+            return command.transcript;
+        };
+    }
+
+    /**
+     * Classifier that returns the recorded intent, or UNKNOWN with the given probability
+     * to exercise the fallback cascade
+     */
+    public static IntentBackend intent(LatencyDistribution latency, double unknownRate, float confidence) {
+        return (normalizedText, command, random) -> {
+            latency.await(random);
+            if (command.expectedIntent == IntentType.UNKNOWN || random.nextDouble() < unknownRate) {
+                return new IntentResult();
+            }
+            IntentResult result = new IntentResult(command.expectedIntent, confidence);
+            if (!command.contact.isEmpty()) {
+                result.setEntity("contact", command.contact);
+            }
+            return result;
+        };
+    }
+
+    /**
+     * Executor that takes a sampled time to perform the action
+     */
+    public static ActionBackend action(LatencyDistribution latency) {
+        return (intent, random) -> latency.await(random);
+    }
+}
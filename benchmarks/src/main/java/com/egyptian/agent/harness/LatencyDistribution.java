@@ -0,0 +1,84 @@
+package com.egyptian.agent.harness;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Latency distribution of a fake backend, parsed from a spec string:
+ * "fixed:MS", "uniform:MIN_MS:MAX_MS" or "lognormal:MEDIAN_MS:SIGMA".
+ * Log-normal matches the long right tail of on-device inference.
+ */
+public final class LatencyDistribution {
+    private enum Kind { FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+    private final String spec;
+
+    private LatencyDistribution(Kind kind, double a, double b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new LatencyDistribution(Kind.FIXED, Double.parseDouble(parts[1]), 0, spec);
+                case "uniform":
+                    return new LatencyDistribution(Kind.UNIFORM,
+                        Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), spec);
+                case "lognormal":
+                    return new LatencyDistribution(Kind.LOGNORMAL,
+                        Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), spec);
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid latency distribution: " + spec
+            + " (expected fixed:MS, uniform:MIN:MAX or lognormal:MEDIAN:SIGMA)");
+    }
+
+    /**
+     * Draws a latency in nanoseconds
+     */
+    public long sampleNanos(Random random) {
+        double millis;
+        switch (kind) {
+            case UNIFORM:
+                millis = a + (b - a) * random.nextDouble();
+                break;
+            case LOGNORMAL:
+                millis = a * Math.exp(b * random.nextGaussian());
+                break;
+            case FIXED:
+            default:
+                millis = a;
+                break;
+        }
+        return (long) (Math.max(0, millis) * 1_000_000L);
+    }
+
+    /**
+     * Blocks the calling thread for one sampled latency, as a backend call would
+     */
+    public void await(Random random) {
+        long deadline = System.nanoTime() + sampleNanos(random);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,52 @@
+package com.egyptian.agent.harness;
+
+import com.egyptian.agent.nlp.IntentType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded spoken command: the transcript ASR produced, the intent it was labelled
+ * with and the contact it refers to (empty if none)
+ */
+public final class RecordedCommand {
+    public final String transcript;
+    public final IntentType expectedIntent;
+    public final String contact;
+
+    public RecordedCommand(String transcript, IntentType expectedIntent, String contact) {
+        this.transcript = transcript;
+        this.expectedIntent = expectedIntent;
+        this.contact = contact;
+    }
+
+    /**
+     * Reads "transcript|INTENT|contact" lines, skipping blank lines and # comments
+     */
+    public static List<RecordedCommand> load(InputStream in) throws IOException {
+        List<RecordedCommand> commands = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\|", -1);
+                if (fields.length < 2) {
+                    throw new IOException("Line " + lineNumber + ": expected transcript|INTENT|contact");
+                }
+                commands.add(new RecordedCommand(fields[0].trim(), IntentType.valueOf(fields[1].trim()),
+                    fields.length > 2 ? fields[2].trim() : ""));
+            }
+        }
+        return commands;
+    }
+}
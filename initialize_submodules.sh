@@ -24,4 +24,12 @@ else
     echo "  Run: git submodule add https://github.com/ggerganov/whisper.cpp external/faster-whisper"
 fi
 
+# Check if piper is properly initialized
+if [ -d "external/piper" ] && [ -f "external/piper/CMakeLists.txt" ]; then
+    echo "✓ piper submodule found"
+else
+    echo "✗ piper submodule not properly initialized (Piper TTS will fall back to system TTS)"
+    echo "  Run: git submodule add https://github.com/rhasspy/piper external/piper"
+fi
+
 echo "Submodule initialization complete."
\ No newline at end of file
@@ -0,0 +1,225 @@
+#!/usr/bin/env python3
+"""Trains the fast intent classifier shipped as app/src/main/assets/model/intent_classifier.bin.
+
+The model is a multinomial logistic regression over hashed character n-grams, distilled from
+commands labelled by the Llama classification prompt. Input lines are "command|INTENT" (extra
+"|..." fields and "#" comments are ignored), for example commands replayed through
+LlamaModelTesterActivity or llama.cpp and exported with the intent the LLM chose.
+
+Calibration: a temperature is fitted on 5-fold out-of-fold predictions, then the escalation
+threshold is the lowest confidence at which out-of-fold accepted answers still reach the
+target precision. Commands under the threshold (or classified UNKNOWN) go on to the LLM.
+
+    python3 scripts/train_intent_classifier.py \\
+        --data scripts/data/intent_commands_labelled.txt \\
+        --eval benchmarks/src/main/resources/recorded_commands.txt \\
+        --out app/src/main/assets/model/intent_classifier.bin
+
+Pure Python, no dependencies. featurize() must match FastIntentClassifier.normalize/classify.
+"""
+
+import argparse
+import math
+import random
+import struct
+
+MAGIC = 0x45494331  # "EIC1"
+FNV_OFFSET = 0x811C9DC5
+FNV_PRIME = 0x01000193
+
+CLASSES = [
+    "UNKNOWN", "CALL_CONTACT", "SEND_WHATSAPP", "SEND_VOICE_MESSAGE",
+    "SET_ALARM", "READ_TIME", "READ_MISSED_CALLS", "EMERGENCY",
+]
+
+
+def normalize(text):
+    out = [" "]
+    for ch in text:
+        c = ch.lower()
+        if "\u064b" <= c <= "\u0652" or c == "\u0640":
+            continue
+        if c in "أإآ":
+            c = "ا"
+        elif c == "ى":
+            c = "ي"
+        elif c == "ة":
+            c = "ه"
+        elif not c.isalnum():
+            c = " "
+        if c != " " or out[-1] != " ":
+            out.append(c)
+    if out[-1] != " ":
+        out.append(" ")
+    return out
+
+
+def featurize(text, buckets, min_n, max_n):
+    """Returns {bucket: count / sqrt(total)}, the sum the Java classifier accumulates."""
+    chars = normalize(text)
+    counts = {}
+    total = 0
+    for start in range(len(chars)):
+        h = FNV_OFFSET
+        for i in range(start, min(len(chars), start + max_n)):
+            h = ((h ^ ord(chars[i])) * FNV_PRIME) & 0xFFFFFFFF
+            if i - start + 1 >= min_n:
+                b = h & (buckets - 1)
+                counts[b] = counts.get(b, 0) + 1
+                total += 1
+    scale = 1.0 / math.sqrt(total) if total else 0.0
+    return {b: n * scale for b, n in counts.items()}
+
+
+def load(path):
+    samples = []
+    with open(path, encoding="utf-8") as f:
+        for line in f:
+            line = line.strip()
+            if not line or line.startswith("#"):
+                continue
+            fields = line.split("|")
+            if len(fields) < 2 or fields[1] not in CLASSES:
+                raise SystemExit("Bad line in %s: %s" % (path, line))
+            samples.append((fields[0], CLASSES.index(fields[1])))
+    return samples
+
+
+def softmax(scores, temperature=1.0):
+    top = max(scores)
+    exps = [math.exp((s - top) / temperature) for s in scores]
+    total = sum(exps)
+    return [e / total for e in exps]
+
+
+class Model:
+    def __init__(self, buckets, classes):
+        self.classes = classes
+        self.bias = [0.0] * classes
+        self.weights = {}  # bucket -> per-class weights; dense on export
+
+    def scores(self, features):
+        scores = list(self.bias)
+        for b, v in features.items():
+            w = self.weights.get(b)
+            if w:
+                for c in range(self.classes):
+                    scores[c] += w[c] * v
+        return scores
+
+    def train(self, data, epochs, lr, l2, seed):
+        rng = random.Random(seed)
+        order = list(range(len(data)))
+        for epoch in range(epochs):
+            rng.shuffle(order)
+            rate = lr / (1.0 + epoch * 0.1)
+            for i in order:
+                features, label = data[i]
+                probs = softmax(self.scores(features))
+                for c in range(self.classes):
+                    grad = probs[c] - (1.0 if c == label else 0.0)
+                    self.bias[c] -= rate * grad
+                    for b, v in features.items():
+                        w = self.weights.setdefault(b, [0.0] * self.classes)
+                        w[c] -= rate * (grad * v + l2 * w[c])
+
+
+def fit_temperature(logits, labels):
+    best_t, best_nll = 1.0, float("inf")
+    for step in range(5, 501, 5):
+        t = step / 100.0
+        nll = -sum(math.log(max(softmax(s, t)[y], 1e-12)) for s, y in zip(logits, labels))
+        if nll < best_nll:
+            best_t, best_nll = t, nll
+    return best_t
+
+
+def pick_threshold(probs, labels, precision):
+    unknown = CLASSES.index("UNKNOWN")
+    for step in range(30, 100):
+        threshold = step / 100.0
+        accepted = [(p, y) for p, y in zip(probs, labels)
+                    if max(p) >= threshold and p.index(max(p)) != unknown]
+        if not accepted:
+            break
+        correct = sum(1 for p, y in accepted if p.index(max(p)) == y)
+        if correct >= precision * len(accepted):
+            return threshold
+    return 0.99
+
+
+def report(name, model, data, temperature, threshold):
+    unknown = CLASSES.index("UNKNOWN")
+    correct = served = served_correct = 0
+    for features, label in data:
+        p = softmax(model.scores(features), temperature)
+        best = p.index(max(p))
+        correct += best == label
+        if best != unknown and p[best] >= threshold:
+            served += 1
+            served_correct += best == label
+    print("%s: accuracy %.3f, fast path serves %.1f%% at precision %.3f" % (
+        name, correct / len(data), 100.0 * served / len(data),
+        served_correct / served if served else 0.0))
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--data", required=True)
+    parser.add_argument("--eval")
+    parser.add_argument("--out", required=True)
+    parser.add_argument("--buckets", type=int, default=4096)
+    parser.add_argument("--min-n", type=int, default=2)
+    parser.add_argument("--max-n", type=int, default=4)
+    parser.add_argument("--epochs", type=int, default=30)
+    parser.add_argument("--lr", type=float, default=0.5)
+    parser.add_argument("--l2", type=float, default=1e-4)
+    parser.add_argument("--precision", type=float, default=0.95)
+    parser.add_argument("--seed", type=int, default=7)
+    args = parser.parse_args()
+    if args.buckets & (args.buckets - 1):
+        raise SystemExit("--buckets must be a power of two")
+
+    samples = load(args.data)
+    data = [(featurize(t, args.buckets, args.min_n, args.max_n), y) for t, y in samples]
+
+    # Out-of-fold logits for calibration
+    rng = random.Random(args.seed)
+    order = list(range(len(data)))
+    rng.shuffle(order)
+    folds = 5
+    logits, labels = [], []
+    for k in range(folds):
+        held = set(order[k::folds])
+        model = Model(args.buckets, len(CLASSES))
+        model.train([d for i, d in enumerate(data) if i not in held], args.epochs, args.lr, args.l2, args.seed)
+        for i in held:
+            logits.append(model.scores(data[i][0]))
+            labels.append(data[i][1])
+
+    temperature = fit_temperature(logits, labels)
+    threshold = pick_threshold([softmax(s, temperature) for s in logits], labels, args.precision)
+    print("%d samples, temperature %.2f, escalation threshold %.2f" % (len(data), temperature, threshold))
+
+    model = Model(args.buckets, len(CLASSES))
+    model.train(data, args.epochs, args.lr, args.l2, args.seed)
+    report("train", model, data, temperature, threshold)
+    if args.eval:
+        eval_data = [(featurize(t, args.buckets, args.min_n, args.max_n), y) for t, y in load(args.eval)]
+        report("eval", model, eval_data, temperature, threshold)
+
+    with open(args.out, "wb") as f:
+        f.write(struct.pack(">iiiiiff", MAGIC, args.buckets, args.min_n, args.max_n, len(CLASSES),
+                            temperature, threshold))
+        for name in CLASSES:
+            encoded = name.encode("utf-8")
+            f.write(struct.pack(">H", len(encoded)) + encoded)
+        f.write(struct.pack(">%df" % len(CLASSES), *model.bias))
+        zero = [0.0] * len(CLASSES)
+        for b in range(args.buckets):
+            f.write(struct.pack(">%df" % len(CLASSES), *model.weights.get(b, zero)))
+    print("Wrote " + args.out)
+
+
+if __name__ == "__main__":
+    main()